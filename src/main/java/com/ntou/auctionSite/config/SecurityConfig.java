@@ -2,8 +2,10 @@
 package com.ntou.auctionSite.config;
 
 import com.ntou.auctionSite.security.JwtAuthenticationFilter;
+import com.ntou.auctionSite.security.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -29,6 +31,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @Value("${cors.allowed-origins}")
     private String allowedOrigins;
 
@@ -68,7 +73,7 @@ public class SecurityConfig {
                     .requestMatchers(HttpMethod.GET, "/api/history/**").permitAll()
 
                     // 搜尋功能
-                    .requestMatchers("/api/search", "/api/blursearch").permitAll()
+                    .requestMatchers("/api/search", "/api/blursearch", "/api/fuzzysearch", "/api/autocomplete", "/api/search/filter").permitAll()
 
                     // 檔案上傳
                     .requestMatchers(HttpMethod.POST, "/api/upload/**").permitAll()
@@ -91,9 +96,18 @@ public class SecurityConfig {
                     .sessionCreationPolicy(SessionCreationPolicy.STATELESS) // 無狀態 session
             )
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class) // 加入 JWT Filter
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class) // 出價、下單限流（需要 JWT 解析出的使用者）
             .build();
     }
 
+    // RateLimitFilter 只在 security filter chain 中執行，不要再被自動註冊成一般的 servlet filter（那時還沒有登入資訊）
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -1,6 +1,8 @@
 package com.ntou.auctionSite.controller.bid;
 
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.service.bid.BidResult;
 import com.ntou.auctionSite.service.bid.BidService;
 import com.ntou.auctionSite.service.product.ProductService;
 import com.ntou.auctionSite.service.user.UserService;
@@ -35,7 +37,8 @@ public class BidController {
     @PostMapping("api/createAucs/{productID}")
     @Operation(
             summary = "建立拍賣商品",
-            description = "將商品設定為拍賣模式，需指定起標價和結束時間。時間格式為 ISO 8601 (yyyy-MM-ddTHH:mm:ss)"
+            description = "將商品設定為拍賣模式，需指定起標價和結束時間。時間格式為 ISO 8601 (yyyy-MM-ddTHH:mm:ss)。" +
+                    "可選擇啟用防狙標：截止前 softCloseWindow 秒內的出價會把截止時間延後 softCloseExtension 秒"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -87,14 +90,19 @@ public class BidController {
             @Parameter(description = "起標價格", example = "100", required = true)
             @RequestParam (name="price") int basicBidPrice,
             @Parameter(description = "拍賣結束時間 (ISO 8601 格式)", example = "2024-12-31T23:59:59", required = true)
-            @RequestParam (name="time") String endTime
+            @RequestParam (name="time") String endTime,
+            @Parameter(description = "防狙標觸發區間（秒），0 表示不啟用", example = "30")
+            @RequestParam (name="softCloseWindow", defaultValue = "0") int softCloseWindowSeconds,
+            @Parameter(description = "防狙標每次延長的秒數", example = "60")
+            @RequestParam (name="softCloseExtension", defaultValue = "0") int softCloseExtensionSeconds
     ){
         try{
             String username=authentication.getName();
             String currentUserId=userService.getUserInfo(username).id();
             //time要符合yyyy/MM/ddTHH:mm:ss格式
             LocalDateTime auctionEndTime = LocalDateTime.parse(endTime.trim());
-            Product auctionProduct=bidservice.createAuction(basicBidPrice,auctionEndTime,productID.trim(),currentUserId);
+            Product auctionProduct=bidservice.createAuction(basicBidPrice,auctionEndTime,productID.trim(),currentUserId,
+                    softCloseWindowSeconds,softCloseExtensionSeconds);
 
             return ResponseEntity.ok("Auction created successfully! ProductID: " + auctionProduct.getProductID());
         }
@@ -145,7 +153,7 @@ public class BidController {
     })
     public ResponseEntity<?>getAllAuctionProduct(){//取得所有拍賣中的商品
         try {
-            List<Product> products = bidservice.getAllAuctionProduct();
+            List<ProductSummary> products = bidservice.getAllAuctionProduct();
             return ResponseEntity.ok("Found " + products.size() + " auction products.");
         }
         catch (Exception e) {
@@ -183,6 +191,14 @@ public class BidController {
                             examples = @ExampleObject(value = "User is not authenticated or login is invalid")
                     )
             ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "拍賣已結束或商品不在拍賣中",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Bid error: The auction has ended or the product is inactive")
+                    )
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "拒絕執行",
@@ -213,12 +229,117 @@ public class BidController {
         try{
             String username=authentication.getName();
             String currentUserId=userService.getUserInfo(username).id();
-            bidservice.placeBid(bidPrice,productID.trim(),bidderID.trim(),currentUserId);
-            return ResponseEntity.ok("Bid placed successfully!");
+            BidResult result=bidservice.placeBid(bidPrice,productID.trim(),bidderID.trim(),currentUserId);
+            switch (result){
+                case ACCEPTED:
+                    return ResponseEntity.ok("Bid placed successfully!");
+                case OUTBID:
+                    return ResponseEntity.badRequest().body("Bid error: Bid must be higher than current highest bid");
+                default:
+                    return ResponseEntity.status(409).body("Bid error: The auction has ended or the product is inactive");
+            }
+        }
+        catch (NoSuchElementException e) {
+            return ResponseEntity.badRequest().body("Bid error: " + e.getMessage());
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Bid error: " + e.getMessage());
+        }
+        catch (SecurityException e){
+            return ResponseEntity.status(401).body("Authorization error: "+e.getMessage());
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("api/bids/{id}/proxy")
+    @Operation(
+            summary = "代理出價（設定最高出價）",
+            description = "設定願意支付的最高金額（不公開），其他買家出價時系統會以最小增額自動代為加價，直到超過此上限為止。" +
+                    "最高出價相同時，較早設定者得標"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "代理出價設定成功，目前為最高出價者",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Proxy bid placed successfully! You are the highest bidder.")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "最高出價不高於目前價格、已被其他代理出價超過，或參數不合法",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Bid error: Your maximum bid was outbid by another bidder")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "認證錯誤",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "User is not authenticated or login is invalid")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "拍賣已結束或商品不在拍賣中",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Bid error: The auction has ended or the product is inactive")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "未啟用拍賣引擎，無法使用代理出價",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Bid error: Proxy bidding requires the auction engine to be enabled")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Server error: xxx")
+                    )
+            )
+    })
+    public ResponseEntity<?> placeProxyBid(
+            @Parameter(description = "商品ID", example = "PRODEE140C9E", required = true)
+            @PathVariable("id") String productID,
+            Authentication authentication,
+            @Parameter(description = "最高出價金額", example = "500", required = true)
+            @RequestParam("maxPrice") int maxPrice,
+            @Parameter(description = "出價者ID", example = "U001", required = true)
+            @RequestParam("bidderId") String bidderID
+    ){//代理出價
+        try{
+            String username=authentication.getName();
+            String currentUserId=userService.getUserInfo(username).id();
+            BidResult result=bidservice.placeProxyBid(maxPrice,productID.trim(),bidderID.trim(),currentUserId);
+            switch (result){
+                case ACCEPTED:
+                    return ResponseEntity.ok("Proxy bid placed successfully! You are the highest bidder.");
+                case OUTBID:
+                    return ResponseEntity.badRequest().body("Bid error: Your maximum bid was outbid by another bidder");
+                default:
+                    return ResponseEntity.status(409).body("Bid error: The auction has ended or the product is inactive");
+            }
+        }
+        catch (NoSuchElementException e) {
+            return ResponseEntity.badRequest().body("Bid error: " + e.getMessage());
         }
         catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Bid error: " + e.getMessage());
         }
+        catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body("Bid error: " + e.getMessage());
+        }
         catch (SecurityException e){
             return ResponseEntity.status(401).body("Authorization error: "+e.getMessage());
         }
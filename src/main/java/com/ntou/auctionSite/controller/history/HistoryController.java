@@ -4,6 +4,7 @@ import com.ntou.auctionSite.dto.history.*;
 import com.ntou.auctionSite.model.history.*;
 import com.ntou.auctionSite.model.user.User;
 import com.ntou.auctionSite.repository.UserRepository;
+import com.ntou.auctionSite.service.history.BidLadderService;
 import com.ntou.auctionSite.service.history.HistoryService;
 import com.ntou.auctionSite.utils.JwtUtil;
 import io.swagger.v3.oas.annotations.Operation;
@@ -27,6 +28,9 @@ public class HistoryController {
     @Autowired
     private HistoryService historyService;
 
+    @Autowired
+    private BidLadderService bidLadderService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -178,6 +182,43 @@ public class HistoryController {
         }
     }
 
+    @GetMapping("/bid/product/{productId}/ladder")
+    @Operation(
+        summary = "查詢商品出價排行",
+        description = "依出價金額由高到低回傳一頁出價與不重複出價人數。進行中的拍賣由記憶體提供，已結束的拍賣由資料庫查詢；" +
+                "以回傳的 nextCursor 取得下一頁"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "成功取得出價排行",
+            content = @Content(mediaType = "application/json",
+                schema = @Schema(implementation = BidLadderResponse.class))),
+        @ApiResponse(responseCode = "400", description = "limit 或 cursor 不正確"),
+        @ApiResponse(responseCode = "500", description = "伺服器錯誤")
+    })
+    public ResponseEntity<?> getBidLadder(
+            @Parameter(description = "商品 ID", required = true)
+            @PathVariable String productId,
+            @Parameter(description = "每頁筆數", example = "10")
+            @RequestParam(defaultValue = "10") int limit,
+            @Parameter(description = "上一頁回傳的 nextCursor，第一頁不用帶")
+            @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(bidLadderService.getLadder(productId, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(java.util.Map.of(
+                "status", 400,
+                "message", e.getMessage(),
+                "productId", productId
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(java.util.Map.of(
+                "status", 500,
+                "message", "伺服器錯誤",
+                "error", e.getMessage()
+            ));
+        }
+    }
+
     @PostMapping("/bid")
     @Operation(
         summary = "新增競標歷史記錄",
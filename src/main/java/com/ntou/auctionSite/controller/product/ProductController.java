@@ -1,8 +1,17 @@
 package com.ntou.auctionSite.controller.product;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import com.ntou.auctionSite.dto.product.EditProductRequest;
+import com.ntou.auctionSite.dto.product.ProductCursorPageResponse;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.repository.UserRepository;
 import com.ntou.auctionSite.service.user.UserService;
@@ -14,10 +23,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.ntou.auctionSite.service.product.ProductImportService;
 import com.ntou.auctionSite.service.product.ProductService;
 
 @CrossOrigin("http://localhost:5173")
@@ -31,13 +44,17 @@ public class ProductController { // 負責處理商品新增、上下架、查
     private UserService userService;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private ProductImportService productImportService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     //取得所有商品
     //<?>表示可以是任何型態,前端可以提供第幾頁、每頁大小
     @GetMapping
     @Operation(
             summary = "取得商品列表（分頁）",
-            description = "分頁查詢所有商品，支援自訂每頁商品數量"
+            description = "分頁查詢所有商品（依建立時間由新到舊），支援自訂每頁商品數量；只回傳列表欄位，完整資料請用 GET /api/products/{id}"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -45,12 +62,20 @@ public class ProductController { // 負責處理商品新增、上下架、查
                     description = "成功取得商品列表",
                     content = @Content(
                             mediaType = "application/json",
-                            schema = @Schema(implementation = Product.class),
+                            schema = @Schema(implementation = ProductSummary.class),
                             examples = @ExampleObject(
                                     value = "[{\"productID\":\"P001\",\"productName\":\"餅乾\",\"productPrice\":100,\"productType\":\"DIRECT\",\"productStatus\":\"AVAILABLE\"}]"
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "頁碼或每頁數量小於 1",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Illegal argument: page and pageSize must be greater than 0")
+                    )
+            ),
             @ApiResponse(responseCode = "404", description = "找不到商品"),
             @ApiResponse(
                     responseCode = "500",
@@ -68,9 +93,12 @@ public class ProductController { // 負責處理商品新增、上下架、查
             @Parameter(description = "每頁商品數量", example = "10")
             @RequestParam(defaultValue = "10") int pageSize) {
         try {
-            List<Product> products = productService.getProductsByPage(page, pageSize);
+            List<ProductSummary> products = productService.getProductsByPage(page, pageSize);
             return ResponseEntity.ok(products);
         }
+        catch (IllegalArgumentException e){
+            return ResponseEntity.badRequest().body("Illegal argument: " + e.getMessage());
+        }
         catch (NoSuchElementException e){
             return ResponseEntity.status(404).body("Product not found"+e.getMessage());
         }
@@ -93,7 +121,7 @@ public class ProductController { // 負責處理商品新增、上下架、查
             @RequestParam(defaultValue = "asce") String order
     ) {
         try {
-            List<Product> products = productService.getAllProductSorted(sortBy, order);
+            List<ProductSummary> products = productService.getAllProductSorted(sortBy, order);
             return ResponseEntity.ok(products);
         }
         catch (NoSuchElementException e){
@@ -104,6 +132,65 @@ public class ProductController { // 負責處理商品新增、上下架、查
         }
     }
 
+    //以 cursor 翻頁取得排序後的商品，翻頁期間有新商品上架也不會重複或漏掉
+    @GetMapping("cursor")
+    @Operation(
+            summary = "取得商品列表（cursor 翻頁）",
+            description = "依指定欄位排序（同值時依商品ID），每頁回傳 nextCursor；下一頁把 nextCursor 帶入 cursor 參數，" +
+                    "帶 cursor 時沿用第一頁的排序方式。nextCursor 為 null 表示沒有下一頁"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "成功取得商品列表",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProductCursorPageResponse.class),
+                            examples = @ExampleObject(
+                                    value = "{\"products\":[{\"productID\":\"PRODE31B4FC9\",\"productName\":\"餅乾\",\"productPrice\":100}]," +
+                                            "\"nextCursor\":\"Y3JlYXRlZFRpbWV8REVTQ3x0fFBST0RFMzFCNEZDOXwxNzMwMDAwMDAwMDAw\"}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "cursor 不正確或每頁數量超出範圍",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Illegal argument: Invalid cursor")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Server error: xxx")
+                    )
+            )
+    })
+    public ResponseEntity<?> getProductsByCursor(
+            @Parameter(description = "排序欄位，與 /sorted 相同，不存在的欄位依照名稱排序", example = "createdTime")
+            @RequestParam(defaultValue = "createdTime") String sortBy,
+            @Parameter(description = "輸入desc為降序排序，輸入其他值就用升序排序", example = "desc")
+            @RequestParam(defaultValue = "desc") String order,
+            @Parameter(description = "每頁商品數量（1~100）", example = "20")
+            @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "上一頁回傳的 nextCursor，第一頁不需要")
+            @RequestParam(required = false) String cursor
+    ) {
+        try {
+            ProductCursorPageResponse response = productService.getProductsByCursor(sortBy, order, limit, cursor);
+            return ResponseEntity.ok(response);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Illegal argument: " + e.getMessage());
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(
             summary = "取得單一商品資訊",
@@ -142,7 +229,9 @@ public class ProductController { // 負責處理商品新增、上下架、查
             @Parameter(description = "商品ID", example = "PRODE31B4FC9", required = true)
             @PathVariable String id) {
         try {
-            return ResponseEntity.ok(productService.getProductById(id.trim()));
+            Product product = productService.getProductById(id.trim());
+            productService.recordView(product.getProductID());
+            return ResponseEntity.ok(product);
         }
         catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Product not found with ID: " + id);
@@ -216,6 +305,98 @@ public class ProductController { // 負責處理商品新增、上下架、查
         }
     }
 
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "application/ndjson", "text/csv"}) // 批次匯入商品
+    @Operation(
+            summary = "批次匯入商品",
+            description = "以串流上傳 NDJSON（每行一個商品 JSON）或 CSV（第一行為欄位名稱）批次新增商品，"
+                    + "每一列套用與新增商品相同的驗證規則，逐行以 NDJSON 回傳每一列的結果，最後一行為成功與失敗的數量"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "開始匯入，逐行回傳每一列的結果",
+                    content = @Content(
+                            mediaType = "application/x-ndjson",
+                            examples = @ExampleObject(
+                                    value = """
+                                {"line":1,"status":"CREATED","productID":"PROD1A2B3C4D"}
+                                {"line":2,"status":"FAILED","message":"Product price must be a positive integer and can't be zero!"}
+                                {"created":1,"failed":1}
+                                """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "未登入",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Unauthorized")
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(value = "Server error: xxx")
+                    )
+            )
+    })
+    public ResponseEntity<?> importProducts(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "NDJSON 或 CSV 格式的商品資料",
+                    required = true,
+                    content = {
+                            @Content(
+                                    mediaType = "application/x-ndjson",
+                                    examples = @ExampleObject(
+                                            value = "{\"productName\":\"原子筆\",\"productPrice\":30,\"productStock\":100,\"productType\":\"DIRECT\",\"productStatus\":\"ACTIVE\",\"productCategory\":\"文具\"}"
+                                    )
+                            ),
+                            @Content(
+                                    mediaType = "text/csv",
+                                    examples = @ExampleObject(
+                                            value = "productName,productPrice,productStock,productType,productStatus,productCategory\n原子筆,30,100,DIRECT,ACTIVE,文具"
+                                    )
+                            )
+                    }
+            )
+            HttpServletRequest request,
+            Authentication authentication
+    ) {
+        try {
+            if (authentication == null) {
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+            String currentUserId = userService.getUserInfo(authentication.getName()).id();
+            ProductImportService.Format format = MediaType.parseMediaType(request.getContentType()).getSubtype().equals("csv")
+                    ? ProductImportService.Format.CSV : ProductImportService.Format.NDJSON;
+            // 邊讀邊寫：每一列的結果寫入後立即送出，不需要等整個檔案處理完
+            StreamingResponseBody body = output -> {
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                ProductImportService.Summary summary = productImportService.importProducts(
+                        request.getInputStream(), format, currentUserId, result -> {
+                            try {
+                                writer.write(objectMapper.writeValueAsString(result));
+                                writer.write('\n');
+                                writer.flush();
+                            }
+                            catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                writer.write(objectMapper.writeValueAsString(summary));
+                writer.write('\n');
+                writer.flush();
+            };
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
+
 
     @PutMapping("/edit/{productID}") // 修改商品
     @Operation(
@@ -496,4 +677,48 @@ public class ProductController { // 負責處理商品新增、上下架、查
             return ResponseEntity.status(500).body("Server error: " + e.getMessage());
         }
     }
+
+    @GetMapping("/Category/counts")
+    @Operation(
+            summary = "取得每個分類的商品數",
+            description = "回傳每個分類中上架中（ACTIVE）的商品數，依分類名稱排序"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "成功取得分類商品數",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(
+                                    name = "成功取得分類商品數",
+                                    value = """
+                                {
+                                  "3C周邊": 12,
+                                  "家具": 3,
+                                  "文具": 8,
+                                  "運動用品": 5
+                                }
+                                """
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(
+                            mediaType = "text/plain",
+                            examples = @ExampleObject(
+                                    value = "Server error: xxx"
+                            )
+                    )
+            )
+    })
+    public ResponseEntity<?> getCategoryCounts(){
+        try{
+            return ResponseEntity.ok(productService.getCategoryCounts());
+        }
+        catch (Exception e){
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
 }
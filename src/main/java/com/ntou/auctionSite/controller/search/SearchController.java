@@ -1,9 +1,14 @@
 package com.ntou.auctionSite.controller.search;
 
+import com.ntou.auctionSite.dto.product.FacetSearchResponse;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.service.search.ProductFilter;
 import com.ntou.auctionSite.service.search.SearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,10 +21,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @RestController
-@Tag(name = "商品搜尋", description = "商品搜尋 API - 支援精確搜尋與模糊搜尋")
+@Tag(name = "商品搜尋", description = "商品搜尋 API - 支援精確搜尋、模糊搜尋、容錯搜尋、篩選與自動完成")
 public class SearchController {
     @Autowired
     private SearchService searchService;
@@ -35,7 +42,7 @@ public class SearchController {
                     description = "成功找到符合的商品",
                     content = @Content(
                             mediaType = "application/json",
-                            schema = @Schema(implementation = Product.class)
+                            schema = @Schema(implementation = ProductSummary.class)
                     )
             ),
             @ApiResponse(
@@ -67,7 +74,7 @@ public class SearchController {
     @GetMapping("api/blursearch")
     @Operation(
             summary = "模糊搜尋商品",
-            description = "根據關鍵字進行模糊搜尋，可搜尋商品名稱、描述等相關內容"
+            description = "根據關鍵字進行模糊搜尋，比對商品名稱、分類與描述；中文以相鄰兩字為單位比對，英文與數字不分大小寫，最後一個英文詞可只輸入開頭"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -75,7 +82,7 @@ public class SearchController {
                     description = "成功找到符合的商品",
                     content = @Content(
                             mediaType = "application/json",
-                            schema = @Schema(implementation = Product.class)
+                            schema = @Schema(implementation = ProductSummary.class)
                     )
             ),
             @ApiResponse(
@@ -102,4 +109,144 @@ public class SearchController {
             return ResponseEntity.status(500).body("Server error: " + e.getMessage());
         }
     }
+
+    @GetMapping("api/fuzzysearch")
+    @Operation(
+            summary = "容錯搜尋商品",
+            description = "與模糊搜尋相同，但容許拼錯字：英文詞 4 個字母以上可錯一個字、8 個以上可錯兩個（純數字不容錯），" +
+                    "連續 3 個以上的中文可錯一個字、6 個以上可錯兩個；完全符合的商品排在前面"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "成功找到符合的商品",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProductSummary.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "找不到符合的商品",
+                    content = @Content(mediaType = "text/plain")
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(mediaType = "text/plain")
+            )
+    })
+    public ResponseEntity<?> fuzzysearch(
+            @Parameter(description = "搜尋關鍵字 (容許錯字)", required = true, example = "iphnoe")
+            @RequestParam String keyword){
+        try{
+            return ResponseEntity.ok(searchService.fuzzySearch(keyword.trim()));
+        }
+        catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("(Fuzzysearch) No result for keyword:" + keyword);
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("api/autocomplete")
+    @Operation(
+            summary = "搜尋框自動完成",
+            description = "回傳以輸入文字開頭的商品名稱與分類，依商品熱門度（銷售量、瀏覽次數）排序；只包含上架中的商品，不分大小寫與全形半形"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "建議字詞（沒有符合時為空陣列）",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = String.class, example = "巧克力餅乾"))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(mediaType = "text/plain")
+            )
+    })
+    public ResponseEntity<?> autocomplete(
+            @Parameter(description = "目前輸入的文字", required = true, example = "巧克")
+            @RequestParam String prefix,
+            @Parameter(description = "最多回傳筆數（不超過設定的上限）", example = "10")
+            @RequestParam(defaultValue = "10") int limit){
+        try{
+            return ResponseEntity.ok(searchService.autocomplete(prefix, limit));
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("api/search/filter")
+    @Operation(
+            summary = "篩選搜尋商品",
+            description = "可同時依分類、類型、狀態、價格範圍與最低評分篩選，並可加上關鍵字；同一欄位的多個值為 OR，不同欄位為 AND。" +
+                    "回傳依相關度與商品訊號排序的商品、符合的總數，以及各欄位每個值的商品數（供篩選選單顯示）"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "篩選結果（沒有符合時 products 為空陣列）",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = FacetSearchResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "參數錯誤（最低價格大於最高價格）",
+                    content = @Content(mediaType = "text/plain")
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "搜尋索引尚未建立完成（啟動中）",
+                    content = @Content(mediaType = "text/plain")
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "伺服器錯誤",
+                    content = @Content(mediaType = "text/plain")
+            )
+    })
+    public ResponseEntity<?> filter(
+            @Parameter(description = "搜尋關鍵字 (可省略)", example = "餅乾")
+            @RequestParam(required = false) String keyword,
+            @Parameter(description = "商品分類，可重複", example = "零食")
+            @RequestParam(required = false) List<String> category,
+            @Parameter(description = "商品類型，可重複", example = "DIRECT")
+            @RequestParam(required = false) List<ProductTypes> type,
+            @Parameter(description = "商品狀態，可重複", example = "ACTIVE")
+            @RequestParam(required = false) List<Product.ProductStatuses> status,
+            @Parameter(description = "最低價格 (含)", example = "100")
+            @RequestParam(required = false) Integer minPrice,
+            @Parameter(description = "最高價格 (含)", example = "1000")
+            @RequestParam(required = false) Integer maxPrice,
+            @Parameter(description = "最低平均評分", example = "4")
+            @RequestParam(required = false) Double minRating,
+            @Parameter(description = "最多回傳筆數（不超過設定的上限）", example = "50")
+            @RequestParam(defaultValue = "50") int limit){
+        try{
+            ProductFilter filter = new ProductFilter(
+                    category == null ? null : new HashSet<>(category),
+                    type == null ? null : new HashSet<>(type),
+                    status == null ? null : new HashSet<>(status),
+                    minPrice, maxPrice, minRating);
+            return ResponseEntity.ok(searchService.filter(keyword, filter, limit));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(e.getMessage());
+        }
+        catch (Exception e) {
+            return ResponseEntity.status(500).body("Server error: " + e.getMessage());
+        }
+    }
 }
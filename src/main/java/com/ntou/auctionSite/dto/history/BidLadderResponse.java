@@ -0,0 +1,85 @@
+package com.ntou.auctionSite.dto.history;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 拍賣出價排行：依出價金額由高到低（同價時較早者在前）的一頁出價，
+ * 以及參與出價的不重複買家數；nextCursor 為 null 表示沒有更多出價
+ */
+public class BidLadderResponse {
+    @JsonProperty("productID")
+    private final String productID;
+
+    @JsonProperty("live")
+    private final boolean live;
+
+    @JsonProperty("distinctBidders")
+    private final int distinctBidders;
+
+    @JsonProperty("bids")
+    private final List<Rung> bids;
+
+    @JsonProperty("nextCursor")
+    private final String nextCursor;
+
+    public BidLadderResponse(String productID, boolean live, int distinctBidders, List<Rung> bids, String nextCursor) {
+        this.productID = productID;
+        this.live = live;
+        this.distinctBidders = distinctBidders;
+        this.bids = bids;
+        this.nextCursor = nextCursor;
+    }
+
+    public String getProductID() {
+        return productID;
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    public int getDistinctBidders() {
+        return distinctBidders;
+    }
+
+    public List<Rung> getBids() {
+        return bids;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /** 排行中的一筆出價 */
+    public static class Rung {
+        @JsonProperty("bidderID")
+        private final String bidderID;
+
+        @JsonProperty("bidAmount")
+        private final int bidAmount;
+
+        @JsonProperty("timeStamp")
+        private final LocalDateTime timeStamp;
+
+        public Rung(String bidderID, int bidAmount, LocalDateTime timeStamp) {
+            this.bidderID = bidderID;
+            this.bidAmount = bidAmount;
+            this.timeStamp = timeStamp;
+        }
+
+        public String getBidderID() {
+            return bidderID;
+        }
+
+        public int getBidAmount() {
+            return bidAmount;
+        }
+
+        public LocalDateTime getTimeStamp() {
+            return timeStamp;
+        }
+    }
+}
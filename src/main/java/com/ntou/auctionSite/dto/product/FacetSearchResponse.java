@@ -0,0 +1,44 @@
+package com.ntou.auctionSite.dto.product;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 篩選搜尋的結果：依分數排序的商品（最多 limit 筆）、符合條件的總數，
+ * 以及各欄位（category、type、status、price、rating）每個值的商品數；某欄位的數量不套用該欄位自己的條件
+ */
+@Schema(description = "篩選搜尋結果")
+public class FacetSearchResponse {
+    @JsonProperty("products")
+    private final List<ProductSummary> products;
+
+    @JsonProperty("total")
+    @Schema(description = "符合條件的商品總數", example = "128")
+    private final int total;
+
+    @JsonProperty("facets")
+    @Schema(description = "欄位 -> 值 -> 商品數；price 為價格區間（如 100-499、10000+），rating 為平均評分的整數部分",
+            example = "{\"category\":{\"零食\":12},\"type\":{\"DIRECT\":10,\"AUCTION\":2},\"price\":{\"0-99\":8,\"100-499\":4}}")
+    private final Map<String, Map<String, Integer>> facets;
+
+    public FacetSearchResponse(List<ProductSummary> products, int total, Map<String, Map<String, Integer>> facets) {
+        this.products = products;
+        this.total = total;
+        this.facets = facets;
+    }
+
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,29 @@
+package com.ntou.auctionSite.dto.product;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * 以 cursor 翻頁的商品列表：一頁商品（ProductSummary）與取得下一頁用的 nextCursor（null 表示沒有下一頁）
+ */
+public class ProductCursorPageResponse {
+    @JsonProperty("products")
+    private final List<ProductSummary> products;
+
+    @JsonProperty("nextCursor")
+    private final String nextCursor;
+
+    public ProductCursorPageResponse(List<ProductSummary> products, String nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ntou.auctionSite.dto.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 批次匯入商品時每一列的結果：line 為檔案中的行號（從 1 開始），成功時有 productID，失敗時有 message
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductImportResult {
+    public enum Status { CREATED, FAILED }
+
+    @JsonProperty("line")
+    private final int line;
+
+    @JsonProperty("status")
+    private final Status status;
+
+    @JsonProperty("productID")
+    private final String productID;
+
+    @JsonProperty("message")
+    private final String message;
+
+    private ProductImportResult(int line, Status status, String productID, String message) {
+        this.line = line;
+        this.status = status;
+        this.productID = productID;
+        this.message = message;
+    }
+
+    public static ProductImportResult created(int line, String productID) {
+        return new ProductImportResult(line, Status.CREATED, productID, null);
+    }
+
+    public static ProductImportResult failed(int line, String message) {
+        return new ProductImportResult(line, Status.FAILED, null, message);
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getProductID() {
+        return productID;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,97 @@
+package com.ntou.auctionSite.dto.product;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商品列表用的精簡資料：只有列表畫面需要的欄位，不含商品描述等大欄位
+ * ProductRepository 的列表查詢以 FIELDS 投影，MongoDB 只回傳這些欄位並直接轉成此類別；完整商品請用 GET /api/products/{id}
+ * 欄位名稱與 Product 相同，前端原本讀取的欄位不需要修改
+ */
+@Schema(description = "商品列表項目")
+public class ProductSummary {
+
+    //列表查詢的欄位投影（_id 預設會回傳）；@Query 用 FIELDS，MongoTemplate 查詢用 FIELD_NAMES，兩者要一致
+    public static final String FIELDS = "{ 'productName': 1, 'productPrice': 1, 'productImage': 1, 'productType': 1, " +
+            "'productStatus': 1, 'nowHighestBid': 1, 'auctionEndTime': 1 }";
+    public static final String[] FIELD_NAMES = {
+            "productName", "productPrice", "productImage", "productType", "productStatus", "nowHighestBid", "auctionEndTime"};
+
+    @Id
+    @JsonProperty("productID")
+    private String productID;
+
+    @JsonProperty("productName")
+    private String productName;
+
+    @JsonProperty("productPrice")
+    private int productPrice;
+
+    @JsonProperty("productImage")
+    private String productImage;
+
+    @JsonProperty("productType")
+    private ProductTypes productType;
+
+    @JsonProperty("productStatus")
+    private Product.ProductStatuses productStatus;
+
+    @JsonProperty("nowHighestBid")
+    private int nowHighestBid;
+
+    @JsonProperty("auctionEndTime")
+    private LocalDateTime auctionEndTime;
+
+    public ProductSummary() {
+    }
+
+    public static ProductSummary of(Product product) {
+        ProductSummary summary = new ProductSummary();
+        summary.productID = product.getProductID();
+        summary.productName = product.getProductName();
+        summary.productPrice = product.getProductPrice();
+        summary.productImage = product.getProductImage();
+        summary.productType = product.getProductType();
+        summary.productStatus = product.getProductStatus();
+        summary.nowHighestBid = product.getNowHighestBid();
+        summary.auctionEndTime = product.getAuctionEndTime();
+        return summary;
+    }
+
+    public String getProductID() {
+        return productID;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getProductPrice() {
+        return productPrice;
+    }
+
+    public String getProductImage() {
+        return productImage;
+    }
+
+    public ProductTypes getProductType() {
+        return productType;
+    }
+
+    public Product.ProductStatuses getProductStatus() {
+        return productStatus;
+    }
+
+    public int getNowHighestBid() {
+        return nowHighestBid;
+    }
+
+    public LocalDateTime getAuctionEndTime() {
+        return auctionEndTime;
+    }
+}
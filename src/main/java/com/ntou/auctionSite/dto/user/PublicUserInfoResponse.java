@@ -1,6 +1,6 @@
 package com.ntou.auctionSite.dto.user;
 
-import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.List;
@@ -39,7 +39,7 @@ public record PublicUserInfoResponse(
         boolean isBanned,
 
         @Schema(description = "正在販售的商品列表")
-        List<Product> sellingProducts
+        List<ProductSummary> sellingProducts
 
 
 ) {
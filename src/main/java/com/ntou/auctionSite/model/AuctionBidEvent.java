@@ -0,0 +1,39 @@
+package com.ntou.auctionSite.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "拍賣即時出價通知（透過 WebSocket 推送到 /topic/auction/{productID}）")
+public class AuctionBidEvent {
+    public enum EventTypes { BID, EXTENDED, CLOSED }//出價、防狙標延長、拍賣結束
+
+    @Schema(description = "事件類型", example = "BID")
+    private EventTypes type;
+
+    @Schema(description = "商品 ID", example = "PRODEE140C9E")
+    private String productID;
+
+    @Schema(description = "目前最高出價", example = "150")
+    private int nowHighestBid;
+
+    @Schema(description = "目前最高出價者 ID", example = "U001")
+    private String highestBidderID;
+
+    @Schema(description = "延長後的拍賣截止時間（僅 EXTENDED 事件）")
+    private LocalDateTime auctionEndTime;
+
+    @Schema(description = "拍賣結束時的商品狀態（僅 CLOSED 事件）", example = "SOLD")
+    private String productStatus;
+
+    @Schema(description = "事件時間")
+    private LocalDateTime timestamp;
+}
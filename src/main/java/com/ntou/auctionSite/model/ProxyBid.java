@@ -0,0 +1,50 @@
+package com.ntou.auctionSite.model;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDateTime;
+
+//代理出價：買家設定的最高出價（不公開），由拍賣引擎在被超過時自動以最小增額加價
+public class ProxyBid {
+    @Id
+    private String id;//productID + ":" + bidderID，每位買家在同一商品只會有一筆代理出價
+    private String productID;
+    private String bidderID;
+    private int maxPrice;//最高可接受的出價
+    private long seq;//在該商品上的出價順序，最高價相同時順序較早者得標
+    private LocalDateTime createdTime;
+
+    public ProxyBid() {
+    }
+
+    public ProxyBid(String productID, String bidderID, int maxPrice, long seq) {
+        this.id = idOf(productID, bidderID);
+        this.productID = productID;
+        this.bidderID = bidderID;
+        this.maxPrice = maxPrice;
+        this.seq = seq;
+        this.createdTime = LocalDateTime.now();
+    }
+
+    public static String idOf(String productID, String bidderID) {
+        return productID + ":" + bidderID;
+    }
+
+    public String getId() {return id;}
+    public void setId(String id) {this.id = id;}
+
+    public String getProductID() {return productID;}
+    public void setProductID(String productID) {this.productID = productID;}
+
+    public String getBidderID() {return bidderID;}
+    public void setBidderID(String bidderID) {this.bidderID = bidderID;}
+
+    public int getMaxPrice() {return maxPrice;}
+    public void setMaxPrice(int maxPrice) {this.maxPrice = maxPrice;}
+
+    public long getSeq() {return seq;}
+    public void setSeq(long seq) {this.seq = seq;}
+
+    public LocalDateTime getCreatedTime() {return createdTime;}
+    public void setCreatedTime(LocalDateTime createdTime) {this.createdTime = createdTime;}
+}
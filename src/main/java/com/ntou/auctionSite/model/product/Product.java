@@ -25,7 +25,14 @@ public class Product {
     private double averageRating;           //產品平均評分
     private int reviewCount;                //產品評論數量
     private int totalSales;                 //產品總銷售量
+    private int softCloseWindowSeconds;     //防狙標：截止前幾秒內的出價會延長拍賣 (0 表示不啟用)
+    private int softCloseExtensionSeconds;  //防狙標：每次延長的秒數
+    private String settlementOrderID;       //拍賣結束時為得標者保留的訂單ID (重試結算時沿用，確保只會有一張訂單)
+    private SettlementStatuses settlementStatus;   //拍賣結算狀態 (無人得標時為 null)
+    private LocalDateTime settlementClaimedTime;   //結算開始處理的時間，超過租約時間視為中斷可重新處理
+    private String stockDeductedOrderID;    //最近一次扣庫存的拍賣訂單ID (結算重試時不會重複扣庫存)
     public enum ProductStatuses { ACTIVE, INACTIVE, SOLD, BANNED,TERMINATE }//有效、無效、已售出、已封鎖、已結束
+    public enum SettlementStatuses { PENDING, PROCESSING, DONE }//待建立訂單、處理中、已建立訂單
 
     public Product() {
     }
@@ -87,5 +94,23 @@ public class Product {
     //產品總銷售量
     public int getTotalSales() { return totalSales; }
     public void setTotalSales(int totalSales) { this.totalSales = totalSales; }
+    //防狙標觸發區間（秒）
+    public int getSoftCloseWindowSeconds() { return softCloseWindowSeconds; }
+    public void setSoftCloseWindowSeconds(int softCloseWindowSeconds) { this.softCloseWindowSeconds = softCloseWindowSeconds; }
+    //防狙標延長秒數
+    public int getSoftCloseExtensionSeconds() { return softCloseExtensionSeconds; }
+    public void setSoftCloseExtensionSeconds(int softCloseExtensionSeconds) { this.softCloseExtensionSeconds = softCloseExtensionSeconds; }
+    //拍賣結算訂單ID
+    public String getSettlementOrderID() { return settlementOrderID; }
+    public void setSettlementOrderID(String settlementOrderID) { this.settlementOrderID = settlementOrderID; }
+    //拍賣結算狀態
+    public SettlementStatuses getSettlementStatus() { return settlementStatus; }
+    public void setSettlementStatus(SettlementStatuses settlementStatus) { this.settlementStatus = settlementStatus; }
+    //結算開始處理的時間
+    public LocalDateTime getSettlementClaimedTime() { return settlementClaimedTime; }
+    public void setSettlementClaimedTime(LocalDateTime settlementClaimedTime) { this.settlementClaimedTime = settlementClaimedTime; }
+    //已扣庫存的拍賣訂單ID
+    public String getStockDeductedOrderID() { return stockDeductedOrderID; }
+    public void setStockDeductedOrderID(String stockDeductedOrderID) { this.stockDeductedOrderID = stockDeductedOrderID; }
 }
 
@@ -1,54 +1,102 @@
 package com.ntou.auctionSite.repository;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.model.product.ProductTypes;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
 
     // ===== 基本查詢 =====
     List<Product> findBySellerID(String sellerID);
     List<Product> findByProductType(ProductTypes types);//查找是拍賣類還是直購類
     List<Product> findBySellerIDAndProductName(String sellerID, String productName);
     List<Product> findByProductName(String productName);
+    //只取商品名稱（批次匯入時一次取得賣家既有的商品名稱檢查重複）
+    @Query(value = "{ 'sellerID': ?0 }", fields = "{ 'productName': 1, '_id': 0 }")
+    List<Product> findProductNamesBySellerID(String sellerID);
+
+    // ===== 商品列表（只取 ProductSummary 的欄位） =====
+    //商品列表分頁：排序與 skip/limit 由資料庫處理，回傳 Slice 不另外查詢總筆數
+    @Query(value = "{}", fields = ProductSummary.FIELDS)
+    Slice<ProductSummary> findSummariesBy(Pageable pageable);
+
+    @Query(value = "{}", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesBy(Sort sort);
+
+    @Query(value = "{ 'productType': ?0 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesByProductType(ProductTypes type);
+
+    // ===== 拍賣到期排程 =====
+    //只查詢進行中的拍賣，使用 (productType, productStatus, auctionEndTime) 索引
+    List<Product> findByProductTypeAndProductStatus(ProductTypes type, Product.ProductStatuses status);
+    List<Product> findByProductTypeAndProductStatusAndAuctionEndTimeBefore(
+            ProductTypes type, Product.ProductStatuses status, LocalDateTime time);
+
+    // ===== 拍賣結算 =====
+    //尚未建立訂單的結算（啟動與定期補償時重新送出），使用 settlementStatus 稀疏索引
+    List<Product> findBySettlementStatus(Product.SettlementStatuses status);
+    List<Product> findBySettlementStatusAndSettlementClaimedTimeBefore(Product.SettlementStatuses status, LocalDateTime time);
 
     // ===== 模糊搜尋 =====
-    //用於模糊搜尋 ?0options:i表示忽略大小寫
-    @Query("{ '$or': [ " +
+    //搜尋索引尚未就緒時的備援查詢，?0 須先以 Pattern.quote 跳脫；options:i表示忽略大小寫
+    @Query(value = "{ '$or': [ " +
             "  { 'productName': { $regex: ?0, $options: 'i' } }, " +
             "  { 'productCategory': { $regex: ?0, $options: 'i' } } " +
-            "] }")
-    List<Product> searchProducts(String keyword);
+            "] }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> searchProducts(String keyword);
+
+    //依搜尋索引找到的 productID 取得列表資料（順序不保證，由呼叫端排序）
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesByProductIDIn(Collection<String> productIDs);
+
+    //精確搜尋商品名稱
+    @Query(value = "{ 'productName': ?0 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesByProductName(String productName);
 
     // ===== Selling Products 相關查詢 =====
     /**
      * 根據賣家 ID 和商品狀態查詢商品
-     * 用途：查詢賣家的上架商品、已售出商品等
+     * 用途：統計賣家的上架商品數量
      */
     List<Product> findBySellerIDAndProductStatus(String sellerID, Product.ProductStatuses status);
 
     /**
-     * 根據賣家 ID 和商品類型查詢商品
-     * 用途：查詢賣家的拍賣商品或直購商品
+     * 賣家的所有商品（列表用）
+     * 用途：賣家商品列表、使用者資訊中的販售商品
      */
-    List<Product> findBySellerIDAndProductType(String sellerID, ProductTypes type);
+    @Query(value = "{ 'sellerID': ?0 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesBySellerID(String sellerID);
 
     /**
-     * 查詢賣家的商品並按銷售量排序
-     * 用途：查看賣家的熱賣商品
+     * 根據賣家 ID 和商品狀態查詢商品（列表用）
+     * 用途：查詢賣家的上架商品、已售出商品等
      */
-    List<Product> findBySellerIDOrderByTotalSalesDesc(String sellerID);
+    @Query(value = "{ 'sellerID': ?0, 'productStatus': ?1 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesBySellerIDAndProductStatus(String sellerID, Product.ProductStatuses status);
 
     /**
-     * 查詢賣家的商品並按建立時間排序
-     * 用途：查看賣家最新上架的商品
+     * 根據賣家 ID 和商品類型查詢商品（列表用）
+     * 用途：查詢賣家的拍賣商品或直購商品
      */
-    List<Product> findBySellerIDOrderByCreatedTimeDesc(String sellerID);
+    @Query(value = "{ 'sellerID': ?0, 'productType': ?1 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesBySellerIDAndProductType(String sellerID, ProductTypes type);
 
-}
+    /**
+     * 查詢賣家的商品並依 sort 排序（列表用）
+     * 用途：查看賣家的熱賣商品（totalSales）、最新上架的商品（createdTime）
+     */
+    @Query(value = "{ 'sellerID': ?0 }", fields = ProductSummary.FIELDS)
+    List<ProductSummary> findSummariesBySellerID(String sellerID, Sort sort);
 
+}
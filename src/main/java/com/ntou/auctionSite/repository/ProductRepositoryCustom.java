@@ -0,0 +1,87 @@
+package com.ntou.auctionSite.repository;
+
+import com.ntou.auctionSite.model.product.Product;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * ProductRepository 的自訂查詢
+ * 需要條件式更新（原子操作）或自行組合查詢條件的功能放在這裡，由 ProductRepositoryCustomImpl 透過 MongoTemplate 實作
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * 條件式出價：只有在商品為 ACTIVE 的 AUCTION、尚未截止且目前最高價低於 bidPrice 時才會更新
+     * 只更新出價相關欄位（nowHighestBid、highestBidderID、updatedTime），不會覆寫整份文件
+     * 拍賣引擎寫回時使用：auctionEndTime 不為 null 時代表引擎已延長截止時間，一併寫回（只會往後延）
+     *
+     * @return true 表示出價已寫入；false 表示條件不符（被更高價搶先或拍賣已結束）
+     */
+    boolean applyBidIfHigher(String productID, int bidPrice, String bidderID, LocalDateTime now, LocalDateTime auctionEndTime);
+
+    /**
+     * 未啟用拍賣引擎時的出價：條件與 applyBidIfHigher 相同，並在同一個原子更新中依商品的防狙標設定延長截止時間
+     *
+     * @return 更新前的商品（呼叫端可依 SoftClose 規則算出延長後的截止時間）；條件不符時回傳 null
+     */
+    Product placeBidAtomically(String productID, int bidPrice, String bidderID, LocalDateTime now);
+
+    /**
+     * 結束拍賣（單一原子更新）：ACTIVE 的 AUCTION 在已截止或無人出價時才會結束
+     * 有得標者時設為 SOLD 並保留 reservedOrderID、結算狀態設為 PENDING；無人出價時設為 INACTIVE
+     *
+     * @return 結束後的商品；條件不符（已結束、尚未截止）時回傳 null
+     */
+    Product closeAuctionAtomically(String productID, LocalDateTime now, String reservedOrderID);
+
+    /**
+     * 取得結算的處理權：PENDING，或 PROCESSING 但開始時間早於 staleBefore（處理者已中斷）時才會成功
+     */
+    boolean claimSettlement(String productID, LocalDateTime now, LocalDateTime staleBefore);
+
+    //結算失敗，交回 PENDING 等待重試
+    void releaseSettlement(String productID);
+
+    //訂單已建立，結算完成
+    void completeSettlement(String productID);
+
+    /**
+     * 拍賣訂單扣庫存（單一原子更新）：只有庫存足夠且這張訂單尚未扣過庫存時才會扣除，並記錄 stockDeductedOrderID；
+     * 庫存扣到 0 時設為 INACTIVE。只更新庫存相關欄位，不會覆寫整份文件，結算重試時重複呼叫也只會扣一次
+     *
+     * @return 扣除後的商品；這張訂單已扣過或庫存不足時回傳 null
+     */
+    Product deductAuctionStock(String productID, String orderID, int quantity, LocalDateTime now);
+
+    /**
+     * 只寫回商品的指定欄位（賣家編輯、上下架），其他欄位維持資料庫中的值，
+     * 因此不會蓋掉讀取之後才寫回的出價（nowHighestBid、highestBidderID、auctionEndTime）
+     *
+     * @return 更新後資料庫中的商品；商品已被刪除時回傳 null
+     */
+    Product saveFields(Product product, Collection<String> fields);
+
+    /**
+     * keyset 分頁：依 (sortField, _id) 排序，從 (afterValue, afterProductID) 之後取 limit 筆，使用 (欄位, _id) 索引做範圍掃描
+     * afterProductID 為 null 時從第一筆開始；欄位為 null 或不存在的商品在升冪時排最前面、降冪時排最後面（與 MongoDB 排序一致）
+     * 只取 ProductSummary 的欄位與排序欄位（產生下一頁 cursor 用），其他欄位為預設值
+     */
+    List<Product> findSortedAfter(String sortField, Sort.Direction direction, Object afterValue, String afterProductID, int limit);
+
+    /**
+     * 以單一 aggregation 串流所有 ACTIVE 且有分類的商品，只投影 productID 與 productCategory（分類索引啟動時重建用）
+     * 使用完必須關閉 Stream 以釋放資料庫 cursor
+     */
+    Stream<Product> streamActiveCategories();
+
+    /**
+     * 串流所有商品，只投影搜尋索引需要的文字欄位（名稱、分類、描述）、篩選欄位（類型、價格）與排序訊號（狀態、銷售量、評分、評論數、瀏覽次數、建立時間）
+     * 搜尋索引啟動時重建用
+     * 使用完必須關閉 Stream 以釋放資料庫 cursor
+     */
+    Stream<Product> streamSearchDocuments();
+}
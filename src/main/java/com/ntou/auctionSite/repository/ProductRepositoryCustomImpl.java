@@ -0,0 +1,210 @@
+package com.ntou.auctionSite.repository;
+
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+//Spring Data 會依照命名規則(介面名稱+Impl)自動把這個類別掛到 ProductRepository 上
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ProductRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public boolean applyBidIfHigher(String productID, int bidPrice, String bidderID, LocalDateTime now, LocalDateTime auctionEndTime) {
+        Update update = new Update()
+                .set("nowHighestBid", bidPrice)
+                .set("highestBidderID", bidderID)
+                .set("updatedTime", now);
+        if (auctionEndTime != null) {
+            update.max("auctionEndTime", auctionEndTime);
+        }
+        return mongoTemplate.updateFirst(openAuctionBelow(productID, bidPrice, now), update, Product.class).getMatchedCount() == 1;
+    }
+
+    @Override
+    public Product placeBidAtomically(String productID, int bidPrice, String bidderID, LocalDateTime now) {
+        // 使用 pipeline 更新，才能在同一個原子操作中依文件自己的防狙標欄位計算新的截止時間（規則同 SoftClose）
+        Date bidTime = toDate(now);
+        Document windowEnd = new Document("$add", List.of(bidTime,
+                new Document("$multiply", List.of("$softCloseWindowSeconds", 1000))));
+        Document sniped = new Document("$and", List.of(
+                new Document("$gt", List.of("$softCloseWindowSeconds", 0)),
+                new Document("$gt", List.of("$softCloseExtensionSeconds", 0)),
+                new Document("$lt", List.of("$auctionEndTime", windowEnd))));
+        Document extendedEnd = new Document("$add", List.of("$auctionEndTime",
+                new Document("$multiply", List.of("$softCloseExtensionSeconds", 1000))));
+        Document set = new Document("nowHighestBid", bidPrice)
+                .append("highestBidderID", bidderID)
+                .append("updatedTime", bidTime)
+                .append("auctionEndTime", new Document("$cond", List.of(sniped, extendedEnd, "$auctionEndTime")));
+        AggregationOperation setStage = context -> new Document("$set", set);
+
+        return mongoTemplate.findAndModify(openAuctionBelow(productID, bidPrice, now),
+                AggregationUpdate.from(List.of(setStage)),
+                FindAndModifyOptions.options().returnNew(false),
+                Product.class);
+    }
+
+    @Override
+    public Product closeAuctionAtomically(String productID, LocalDateTime now, String reservedOrderID) {
+        Query query = new Query(Criteria.where("_id").is(productID)
+                .and("productStatus").is(Product.ProductStatuses.ACTIVE)
+                .and("productType").is(ProductTypes.AUCTION)
+                .orOperator(Criteria.where("auctionEndTime").lt(now), Criteria.where("highestBidderID").is(null)));
+        // 狀態、保留的訂單ID與結算狀態在同一個更新中決定，重複觸發時第二次不會符合 ACTIVE 條件
+        Document hasBidder = new Document("$ne", Arrays.asList(new Document("$ifNull", Arrays.asList("$highestBidderID", null)), null));
+        Document set = new Document("productStatus", cond(hasBidder, Product.ProductStatuses.SOLD.name(), Product.ProductStatuses.INACTIVE.name()))
+                .append("settlementOrderID", cond(hasBidder, reservedOrderID, null))
+                .append("settlementStatus", cond(hasBidder, Product.SettlementStatuses.PENDING.name(), null))
+                .append("settlementClaimedTime", null)
+                .append("updatedTime", toDate(now));
+        AggregationOperation setStage = context -> new Document("$set", set);
+
+        return mongoTemplate.findAndModify(query, AggregationUpdate.from(List.of(setStage)),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public boolean claimSettlement(String productID, LocalDateTime now, LocalDateTime staleBefore) {
+        Query query = new Query(Criteria.where("_id").is(productID).orOperator(
+                Criteria.where("settlementStatus").is(Product.SettlementStatuses.PENDING),
+                Criteria.where("settlementStatus").is(Product.SettlementStatuses.PROCESSING)
+                        .and("settlementClaimedTime").lt(staleBefore)));
+        Update update = new Update()
+                .set("settlementStatus", Product.SettlementStatuses.PROCESSING)
+                .set("settlementClaimedTime", now);
+        return mongoTemplate.updateFirst(query, update, Product.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public void releaseSettlement(String productID) {
+        Query query = new Query(Criteria.where("_id").is(productID)
+                .and("settlementStatus").is(Product.SettlementStatuses.PROCESSING));
+        mongoTemplate.updateFirst(query, new Update().set("settlementStatus", Product.SettlementStatuses.PENDING), Product.class);
+    }
+
+    @Override
+    public void completeSettlement(String productID) {
+        Query query = new Query(Criteria.where("_id").is(productID)
+                .and("settlementStatus").ne(Product.SettlementStatuses.DONE));
+        mongoTemplate.updateFirst(query, new Update().set("settlementStatus", Product.SettlementStatuses.DONE), Product.class);
+    }
+
+    @Override
+    public Product deductAuctionStock(String productID, String orderID, int quantity, LocalDateTime now) {
+        Query query = new Query(Criteria.where("_id").is(productID)
+                .and("stockDeductedOrderID").ne(orderID)
+                .and("productStock").gte(quantity));
+        Document remaining = new Document("$subtract", Arrays.asList("$productStock", quantity));
+        Document set = new Document("productStock", remaining)
+                .append("productStatus", cond(new Document("$lte", Arrays.asList(remaining, 0)),
+                        Product.ProductStatuses.INACTIVE.name(), "$productStatus"))
+                .append("stockDeductedOrderID", orderID)
+                .append("updatedTime", toDate(now));
+        AggregationOperation setStage = context -> new Document("$set", set);
+
+        return mongoTemplate.findAndModify(query, AggregationUpdate.from(List.of(setStage)),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public Product saveFields(Product product, Collection<String> fields) {
+        // 以 converter 轉成資料庫中的型別（enum、時間），再只取指定的欄位
+        Document document = new Document();
+        mongoTemplate.getConverter().write(product, document);
+        Update update = new Update();
+        for (String field : fields) {
+            if (document.containsKey(field)) {
+                update.set(field, document.get(field));
+            }
+            else {
+                update.unset(field);
+            }
+        }
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(product.getProductID())), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public List<Product> findSortedAfter(String sortField, Sort.Direction direction, Object afterValue, String afterProductID, int limit) {
+        Query query = new Query();
+        if (afterProductID != null) {
+            query.addCriteria(keysetAfter(sortField, direction.isAscending(), afterValue, afterProductID));
+        }
+        query.with(Sort.by(direction, sortField).and(Sort.by(direction, "_id"))).limit(limit);
+        query.fields().include(ProductSummary.FIELD_NAMES).include(sortField);
+        return mongoTemplate.find(query, Product.class);
+    }
+
+    @Override
+    public Stream<Product> streamActiveCategories() {
+        TypedAggregation<Product> aggregation = Aggregation.newAggregation(Product.class,
+                Aggregation.match(Criteria.where("productStatus").is(Product.ProductStatuses.ACTIVE)
+                        .and("productCategory").nin(null, "")),
+                Aggregation.project("productCategory"));
+        return mongoTemplate.aggregateStream(aggregation, Product.class);
+    }
+
+    @Override
+    public Stream<Product> streamSearchDocuments() {
+        Query query = new Query();
+        query.fields().include("productName", "productCategory", "productDescription", "productStatus",
+                "productType", "productPrice", "totalSales", "averageRating", "reviewCount", "viewCount", "createdTime");
+        return mongoTemplate.stream(query, Product.class);
+    }
+
+    // 排在 (value, id) 之後的商品：值較大（降冪時較小），或同值但 _id 較大（降冪時較小）
+    // MongoDB 排序時 null 比任何值都小，因此升冪時 null 之後接著所有非 null，降冪時所有非 null 之後才是 null
+    private static Criteria keysetAfter(String field, boolean ascending, Object value, String productID) {
+        Criteria sameValue = ascending
+                ? Criteria.where(field).is(value).and("_id").gt(productID)
+                : Criteria.where(field).is(value).and("_id").lt(productID);
+        if (value == null) {
+            return ascending ? new Criteria().orOperator(sameValue, Criteria.where(field).ne(null)) : sameValue;
+        }
+        if (ascending) {
+            return new Criteria().orOperator(Criteria.where(field).gt(value), sameValue);
+        }
+        return new Criteria().orOperator(Criteria.where(field).lt(value), sameValue, Criteria.where(field).is(null));
+    }
+
+    private static Document cond(Document condition, Object then, Object otherwise) {
+        return new Document("$cond", Arrays.asList(condition, then, otherwise));
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    // 所有條件放在同一個 filter，MongoDB 對單一文件的更新是原子的，兩個同價出價只會有一個成功
+    private static Query openAuctionBelow(String productID, int bidPrice, LocalDateTime now) {
+        return new Query(Criteria.where("_id").is(productID)
+                .and("productStatus").is(Product.ProductStatuses.ACTIVE)
+                .and("productType").is(ProductTypes.AUCTION)
+                .and("auctionEndTime").gt(now)
+                .and("nowHighestBid").lt(bidPrice));
+    }
+}
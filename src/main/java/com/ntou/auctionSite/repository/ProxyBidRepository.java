@@ -0,0 +1,13 @@
+package com.ntou.auctionSite.repository;
+
+import com.ntou.auctionSite.model.ProxyBid;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProxyBidRepository extends MongoRepository<ProxyBid, String> {
+    List<ProxyBid> findByProductID(String productID);
+    void deleteByProductID(String productID);
+}
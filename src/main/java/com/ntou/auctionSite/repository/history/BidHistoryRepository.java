@@ -4,7 +4,9 @@ import com.ntou.auctionSite.model.history.bidHistory;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BidHistoryRepository extends HistoryRepository<bidHistory> {
@@ -15,4 +17,7 @@ public interface BidHistoryRepository extends HistoryRepository<bidHistory> {
 
     @Query("{ 'userID': ?0, 'productID': ?1 }")
     List<bidHistory> findByUserIDAndProductID(String userId, String productId);
+
+    // 某個時間點（商品這一輪拍賣開始）之後金額最高的一筆出價，只取一筆不載入整個商品的競標紀錄
+    Optional<bidHistory> findFirstByProductIDAndTimeStampGreaterThanEqualOrderByBidAmountDesc(String productId, LocalDateTime since);
 }
@@ -1,10 +1,17 @@
 package com.ntou.auctionSite.runner;
 
+import com.ntou.auctionSite.model.ProxyBid;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.service.product.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -28,6 +35,9 @@ public class Runner implements ApplicationRunner {
         // 執行資料遷移：為舊使用者設定 remainingDrawTimes 預設值
         migrateUserDrawTimes();
 
+        // 建立查詢需要的索引
+        ensureIndexes();
+
         log.info("========== 初始化完成 ==========");
     }
 
@@ -61,4 +71,57 @@ public class Runner implements ApplicationRunner {
             // 不拋出異常，允許應用程式繼續啟動
         }
     }
+
+    /**
+     * 建立索引：Product 沒有標註 @Document，不會自動建立索引，因此在啟動時明確建立
+     * 索引已存在時 createIndex 不會重複建立
+     */
+    private void ensureIndexes() {
+        try {
+            IndexOperations productIndexes = mongoTemplate.indexOps(Product.class);
+            // 拍賣到期排程：只查詢 ACTIVE 的拍賣並依截止時間排序
+            productIndexes.createIndex(new Index()
+                    .on("productType", Sort.Direction.ASC)
+                    .on("productStatus", Sort.Direction.ASC)
+                    .on("auctionEndTime", Sort.Direction.ASC)
+                    .named("type_status_auctionEndTime"));
+
+            // 拍賣結算補償：只有得標的拍賣有 settlementStatus，使用稀疏索引
+            productIndexes.createIndex(new Index()
+                    .on("settlementStatus", Sort.Direction.ASC)
+                    .on("settlementClaimedTime", Sort.Direction.ASC)
+                    .sparse()
+                    .named("settlementStatus_claimedTime"));
+
+            // 賣家商品查詢與同名檢查：(sellerID, productName) 也涵蓋批次匯入取得賣家所有商品名稱的查詢（covered query）
+            productIndexes.createIndex(new Index()
+                    .on("sellerID", Sort.Direction.ASC)
+                    .on("productName", Sort.Direction.ASC)
+                    .named("sellerID_productName"));
+
+            // 商品列表排序與分頁：每個可排序欄位一個 (欄位, _id) 索引，升冪與降冪都能使用（反向掃描）
+            for (String field : ProductService.SORTABLE_FIELDS) {
+                productIndexes.createIndex(new Index()
+                        .on(field, Sort.Direction.ASC)
+                        .on("_id", Sort.Direction.ASC)
+                        .named("sort_" + field));
+            }
+
+            // 代理出價：拍賣引擎載入商品時依 productID 查詢
+            mongoTemplate.indexOps(ProxyBid.class).createIndex(new Index()
+                    .on("productID", Sort.Direction.ASC)
+                    .named("productID"));
+
+            // 出價排行：依商品查詢並以出價金額由高到低排序、翻頁；拍賣引擎重建時取某時間之後的最高出價也使用這個索引
+            mongoTemplate.indexOps(bidHistory.class).createIndex(new Index()
+                    .on("productID", Sort.Direction.ASC)
+                    .on("bidAmount", Sort.Direction.DESC)
+                    .on("timeStamp", Sort.Direction.ASC)
+                    .named("productID_bidAmount_desc"));
+
+            log.info("✅ 索引檢查完成");
+        } catch (Exception e) {
+            log.error("❌ 建立索引失敗：{}", e.getMessage(), e);
+        }
+    }
 }
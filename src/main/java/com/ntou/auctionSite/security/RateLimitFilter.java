@@ -0,0 +1,124 @@
+package com.ntou.auctionSite.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出價與下單的限流 Filter
+ * 放在 JwtAuthenticationFilter 之後，以登入的使用者為單位限流，超過限制時直接回傳 429，
+ * 不會進到 service 層查詢資料庫。未登入的請求不在這裡處理，交由後面的授權規則拒絕。
+ * 每個端點群組有各自的容量與補充速率：
+ * bids   - POST /api/bids/**（出價、代理出價）
+ * orders - POST /api/orders/**（得標下單、結帳）
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final List<EndpointGroup> groups;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private record EndpointGroup(String name, HttpMethod method, String pattern,
+                                 TokenBucketRateLimiter limiter, Counter allowed, Counter rejected) {
+    }
+
+    @Autowired
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           @Value("${auction.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${auction.rate-limit.bids.capacity:10}") int bidCapacity,
+                           @Value("${auction.rate-limit.bids.refill-per-second:5}") double bidRefillPerSecond,
+                           @Value("${auction.rate-limit.orders.capacity:5}") int orderCapacity,
+                           @Value("${auction.rate-limit.orders.refill-per-second:1}") double orderRefillPerSecond) {
+        this(meterRegistry, enabled,
+                new TokenBucketRateLimiter(bidCapacity, bidRefillPerSecond),
+                new TokenBucketRateLimiter(orderCapacity, orderRefillPerSecond));
+    }
+
+    public RateLimitFilter(MeterRegistry meterRegistry, boolean enabled,
+                           TokenBucketRateLimiter bidLimiter, TokenBucketRateLimiter orderLimiter) {
+        this.enabled = enabled;
+        this.groups = List.of(
+                group(meterRegistry, "bids", HttpMethod.POST, "/api/bids/**", bidLimiter),
+                group(meterRegistry, "orders", HttpMethod.POST, "/api/orders/**", orderLimiter));
+    }
+
+    private static EndpointGroup group(MeterRegistry meterRegistry, String name, HttpMethod method, String pattern,
+                                       TokenBucketRateLimiter limiter) {
+        Gauge.builder("rate.limit.buckets", limiter, TokenBucketRateLimiter::size)
+                .description("Users currently tracked by the rate limiter")
+                .tag("group", name)
+                .register(meterRegistry);
+        return new EndpointGroup(name, method, pattern, limiter,
+                meterRegistry.counter("rate.limit.requests", "group", name, "outcome", "allowed"),
+                meterRegistry.counter("rate.limit.requests", "group", name, "outcome", "rejected"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled || match(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        EndpointGroup group = match(request);
+        if (group == null || authentication == null || !authentication.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = group.limiter().tryAcquire(authentication.getName());
+        if (waitNanos == 0) {
+            group.allowed().increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+        group.rejected().increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too many requests, please try again later!");
+    }
+
+    private EndpointGroup match(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (EndpointGroup group : groups) {
+            if (group.method().matches(request.getMethod()) && pathMatcher.match(group.pattern(), path)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    // 定期移除已經補滿的 bucket，避免長時間累積所有曾經出價的使用者
+    @Scheduled(fixedDelayString = "${auction.rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        for (EndpointGroup group : groups) {
+            group.limiter().evictIdle();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ntou.auctionSite.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 以使用者為單位的 token bucket 限流器（無鎖）
+ * 每個使用者只保存一個 long：下一個 token 理論上可用的時間（GCRA 演算法，與 token bucket 等價）。
+ * 每次請求以 CAS 把這個時間往後推一個補充間隔，超過容量（burst）時拒絕，
+ * 因此不需要鎖，也不需要另外的補充執行緒。
+ * 時間已經落後於現在的項目代表 bucket 已經補滿，移除後與重新建立完全相同，因此可以安全地清除閒置項目。
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;   // 補充一個 token 需要的時間
+    private final long burstNanos;      // 容量換算成時間：最多可以預支多少
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity        bucket 容量（允許的瞬間請求數）
+     * @param refillPerSecond 每秒補充的 token 數
+     */
+    public TokenBucketRateLimiter(int capacity, double refillPerSecond) {
+        this(capacity, refillPerSecond, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(int capacity, double refillPerSecond, LongSupplier clock) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit capacity and refill rate must be greater than 0");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.clock = clock;
+    }
+
+    /**
+     * 嘗試取得一個 token
+     *
+     * @return 0 表示允許；否則為距離下一個 token 可用的奈秒數
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long available = bucket.get();
+            long next = Math.max(available, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return next - now - burstNanos;
+            }
+            if (bucket.compareAndSet(available, next)) {
+                return 0;
+            }
+        }
+    }
+
+    //移除已經補滿的 bucket（閒置的使用者），回傳移除的數量
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (var entry : buckets.entrySet()) {
+            // remove(key, value)：只移除檢查時的同一個 bucket；與同時進來的請求交錯時最多少計一次（bucket 本來就是滿的）
+            if (entry.getValue().get() <= now && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
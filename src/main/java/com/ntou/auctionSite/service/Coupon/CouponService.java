@@ -4,6 +4,7 @@ import com.ntou.auctionSite.model.coupon.Coupon;
 import com.ntou.auctionSite.model.coupon.CouponType;
 import com.ntou.auctionSite.repository.CouponRepository;
 import com.ntou.auctionSite.repository.OrderRepository;
+import com.ntou.auctionSite.utils.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,6 +17,8 @@ public class CouponService {//管理通用的優惠券
     private CouponRepository couponRepository;
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private IdGenerator idGenerator;
     public Coupon getCouponById(String couponID) {
         return couponRepository.findById(couponID)
                 .orElseThrow(() -> new NoSuchElementException("Coupon not found with couponID: " + couponID));
@@ -34,15 +37,10 @@ public class CouponService {//管理通用的優惠券
         if (coupon == null) {
             throw new IllegalArgumentException("Coupon cannot be null");
         }
-        String randomId;
         coupon.setCreatedTime(LocalDateTime.now());
         // 驗證欄位合法性
         validateCouponBeforeCreate(coupon);
-        do {
-            randomId = "COUP" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();//先用8位就好
-        }
-        while (couponRepository.findById(randomId).isPresent());
-        coupon.setCouponID(randomId);
+        coupon.setCouponID(idGenerator.next(IdGenerator.COUPON));
         return couponRepository.save(coupon);
     }
 
@@ -0,0 +1,134 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.AuctionBidEvent;
+import com.ntou.auctionSite.model.product.Product;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拍賣即時出價推播
+ * 透過既有的 STOMP broker 推送到 /topic/auction/{productID}。
+ * 出價事件會依商品合併：每個時間窗內只保留最新的一筆，時間窗結束時才送出，
+ * 因此搶標尾聲每個訂閱者每個時間窗最多只會收到一則訊息；拍賣結束事件則立即送出。
+ * 送出合併的出價與送出結束事件都在同一個商品的 pending 位置（compute）內進行，兩者不會交錯，
+ * 結束事件送出後留在 pending 到下一個時間窗，期間遲到的出價事件會被丟棄，不會在結束事件之後送出。
+ * 時間窗設為 0 以下時不合併，每筆出價都直接送出。
+ */
+@Component
+public class AuctionBroadcaster {
+
+    private static final String TOPIC_PREFIX = "/topic/auction/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    // 每個商品尚未送出的最新事件；CLOSED 表示已送出結束事件，下一次 flush 時移除
+    private final Map<String, AuctionBidEvent> pending = new ConcurrentHashMap<>();
+    // 不合併（時間窗 <= 0）時為 null
+    private final ScheduledExecutorService flusher;
+
+    public AuctionBroadcaster(SimpMessagingTemplate messagingTemplate,
+                              @Value("${auction.broadcast.window-ms:200}") long windowMs) {
+        this.messagingTemplate = messagingTemplate;
+        if (windowMs <= 0) {
+            this.flusher = null;
+            return;
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "auction-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    //出價成功：放入合併區，等時間窗結束再送出；不合併時直接送出
+    public void publishBid(String productID, int nowHighestBid, String highestBidderID) {
+        AuctionBidEvent event = AuctionBidEvent.builder()
+                .type(AuctionBidEvent.EventTypes.BID)
+                .productID(productID)
+                .nowHighestBid(nowHighestBid)
+                .highestBidderID(highestBidderID)
+                .timestamp(LocalDateTime.now())
+                .build();
+        if (flusher == null) {
+            send(event);
+            return;
+        }
+        pending.merge(productID, event, AuctionBroadcaster::higher);
+    }
+
+    //防狙標延長截止時間：立即送出，讓倒數計時馬上更新
+    public void publishExtended(String productID, LocalDateTime auctionEndTime) {
+        send(AuctionBidEvent.builder()
+                .type(AuctionBidEvent.EventTypes.EXTENDED)
+                .productID(productID)
+                .auctionEndTime(auctionEndTime)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+
+    //拍賣結束：丟棄尚未送出的出價事件，直接送出結果
+    public void publishClosed(Product product) {
+        AuctionBidEvent closed = AuctionBidEvent.builder()
+                .type(AuctionBidEvent.EventTypes.CLOSED)
+                .productID(product.getProductID())
+                .nowHighestBid(product.getNowHighestBid())
+                .highestBidderID(product.getHighestBidderID())
+                .productStatus(String.valueOf(product.getProductStatus()))
+                .timestamp(LocalDateTime.now())
+                .build();
+        if (flusher == null) {
+            send(closed);
+            return;
+        }
+        // 在 pending 位置內送出：正在送出的合併出價會先完成，之後的 flush 只會看到結束事件
+        pending.compute(product.getProductID(), (id, current) -> {
+            send(closed);
+            return closed;
+        });
+    }
+
+    //送出每個商品在這個時間窗內的最新事件；已結束的商品只移除結束標記
+    public void flush() {
+        for (String productID : pending.keySet()) {
+            pending.computeIfPresent(productID, (id, event) -> {
+                if (event.getType() != AuctionBidEvent.EventTypes.CLOSED) {
+                    send(event);
+                }
+                return null;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+    }
+
+    private void send(AuctionBidEvent event) {
+        try {
+            messagingTemplate.convertAndSend(TOPIC_PREFIX + event.getProductID(), event);
+        }
+        catch (Exception e) {
+            System.err.println("Error broadcasting auction event: " + e.getMessage());
+        }
+    }
+
+    // 不同請求執行緒的推播順序可能與出價順序不同，合併時保留價格較高的一筆；已結束的商品丟棄遲到的出價
+    private static AuctionBidEvent higher(AuctionBidEvent current, AuctionBidEvent incoming) {
+        if (current.getType() == AuctionBidEvent.EventTypes.CLOSED) {
+            return current;
+        }
+        return incoming.getNowHighestBid() >= current.getNowHighestBid() ? incoming : current;
+    }
+}
@@ -0,0 +1,431 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.ProxyBid;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.history.HistoryService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 記憶體內的拍賣引擎
+ * 依 productID 把拍賣分散到固定數量的單執行緒 lane：
+ * 同一個商品的出價一定在同一個 lane 上依序處理（不需要鎖），不同商品則在不同 lane 上平行處理。
+ * 出價在記憶體中判定後立即回應，再非同步寫回 MongoDB（競標紀錄 + 條件式更新出價欄位）。
+ * 代理出價（買家設定的最高出價）也保存在 lane 上，每次出價後由 ProxyBidResolver 一次結算所有代理出價。
+ * 啟用 BidJournal 時，出價在回應前先寫入本機 journal，當機時由 journal 補回尚未寫回 MongoDB 的出價。
+ * 每一項寫回失敗時各自以指數退避重試，出價寫回商品文件成功前狀態保持未寫回，
+ * 此時 close / closeIfEnded 會先補寫一次，仍失敗就拒絕結束拍賣（由到期排程稍後再試），避免以舊的最高價結算。
+ */
+@Component
+public class AuctionEngine {
+
+    private static final int MAX_PERSIST_ATTEMPTS = 5;
+    private static final long PERSIST_BACKOFF_MS = 50;
+
+    private final ProductRepository productRepository;
+    private final BidHistoryRepository bidHistoryRepository;
+    private final ProxyBidRepository proxyBidRepository;
+    private final HistoryService historyService;
+    private final BidJournal journal;
+    private final boolean enabled;
+    private final int minIncrement;
+    private final ExecutorService[] lanes;
+    private final ExecutorService persistExecutor;
+    private final Map<String, AuctionState> states = new ConcurrentHashMap<>();
+
+    public AuctionEngine(ProductRepository productRepository,
+                         BidHistoryRepository bidHistoryRepository,
+                         ProxyBidRepository proxyBidRepository,
+                         HistoryService historyService,
+                         boolean enabled,
+                         int laneCount,
+                         int persistThreads,
+                         int minIncrement) {
+        this(productRepository, bidHistoryRepository, proxyBidRepository, historyService, null,
+                enabled, laneCount, persistThreads, minIncrement);
+    }
+
+    @Autowired
+    public AuctionEngine(ProductRepository productRepository,
+                         BidHistoryRepository bidHistoryRepository,
+                         ProxyBidRepository proxyBidRepository,
+                         HistoryService historyService,
+                         BidJournal journal,
+                         @Value("${auction.engine.enabled:true}") boolean enabled,
+                         @Value("${auction.engine.lanes:0}") int laneCount,
+                         @Value("${auction.engine.persist-threads:2}") int persistThreads,
+                         @Value("${auction.proxy.min-increment:1}") int minIncrement) {
+        this.productRepository = productRepository;
+        this.bidHistoryRepository = bidHistoryRepository;
+        this.proxyBidRepository = proxyBidRepository;
+        this.historyService = historyService;
+        this.journal = journal != null && journal.isEnabled() ? journal : null;
+        this.enabled = enabled;
+        this.minIncrement = Math.max(1, minIncrement);
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            String name = "auction-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+        }
+        this.persistExecutor = Executors.newFixedThreadPool(Math.max(1, persistThreads), new ThreadFactory() {
+            private int seq = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                return new Thread(r, "auction-persist-" + seq++);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //出價：在商品所屬的 lane 上判定並更新記憶體狀態，出價成功後其他買家的代理出價會立即自動回應
+    public BidOutcome placeBid(String productID, String bidderID, int bidPrice) {
+        return join(onLane(productID, () -> applyBid(productID, bidderID, bidPrice)));
+    }
+
+    //代理出價：設定最高出價，由引擎代為以最小增額加價到不超過此金額為止
+    public BidOutcome placeProxyBid(String productID, String bidderID, int maxPrice) {
+        return join(onLane(productID, () -> applyProxyBid(productID, bidderID, maxPrice)));
+    }
+
+    //建立或重新開始拍賣時，以資料庫中的商品取代記憶體狀態，上一次拍賣留下的代理出價一併清除
+    public void register(Product product) {
+        join(onLane(product.getProductID(), () -> {
+            AuctionState state = AuctionState.from(product);
+            AuctionState previous = states.put(product.getProductID(), state);
+            CompletableFuture<Void> tail = previous != null ? previous.persistTail : CompletableFuture.completedFuture(null);
+            state.persistTail = tail.thenRunAsync(() -> retrying(product.getProductID(), "proxy bid cleanup",
+                    () -> proxyBidRepository.deleteByProductID(product.getProductID())), persistExecutor);
+            return null;
+        }));
+    }
+
+    //關閉記憶體中的拍賣，並等待這個商品所有已接受的出價寫回資料庫
+    //有出價寫回失敗時拋出 IllegalStateException，呼叫端不可以用資料庫中的舊狀態結算
+    public void close(String productID) {
+        CompletableFuture<Void> pending = join(onLane(productID, () -> {
+            // 尚未載入的商品也要建立已關閉的狀態，避免結束拍賣的過程中有出價從資料庫載入舊狀態
+            AuctionState state = states.computeIfAbsent(productID, AuctionState::new);
+            state.open = false;
+            return persisted(state);
+        }));
+        join(pending);
+    }
+
+    //結束拍賣：已有人出價時，只有記憶體中的截止時間已過（沒有被防狙標延長）才會關閉，關閉後等待寫回完成
+    //回傳 false 表示拍賣尚未截止，仍在進行（與 BidService.closeAuction 的檢查一致）
+    public boolean closeIfEnded(String productID, LocalDateTime now) {
+        CompletableFuture<Void> pending = join(onLane(productID, () -> {
+            AuctionState state = states.computeIfAbsent(productID, AuctionState::new);
+            if (state.open && state.highestBidderID != null
+                    && state.auctionEndTime != null && now.isBefore(state.auctionEndTime)) {
+                return null;
+            }
+            state.open = false;
+            return persisted(state);
+        }));
+        if (pending == null) {
+            return false;
+        }
+        join(pending);
+        return true;
+    }
+
+    //移除記憶體狀態，下一次出價會重新從資料庫載入（商品被編輯、上下架、刪除時使用）
+    //在 lane 外等待寫入完成（避免重新載入時讀到舊的最高價），同一個 lane 上其他商品的出價不必等這個商品的寫回
+    public void evict(String productID) {
+        CompletableFuture<Void> pending = join(onLane(productID, () -> {
+            AuctionState state = states.remove(productID);
+            return state != null ? persisted(state) : null;
+        }));
+        if (pending != null) {
+            try {
+                join(pending);
+            }
+            catch (IllegalStateException e) {
+                System.err.println("Error evicting auction " + productID + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // 啟動時從資料庫重建拍賣狀態，並以競標紀錄補回可能遺失的最高出價
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Product> auctions = productRepository.findByProductType(ProductTypes.AUCTION);
+            int restored = 0;
+            for (Product product : auctions) {
+                if (product.getProductStatus() != Product.ProductStatuses.ACTIVE) {
+                    continue;
+                }
+                join(onLane(product.getProductID(), () -> {
+                    states.computeIfAbsent(product.getProductID(), id -> restore(product));
+                    return null;
+                }));
+                restored++;
+            }
+            System.out.println("Auction engine rebuilt " + restored + " live auctions on " + lanes.length + " lanes");
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding auction engine: " + e.getMessage());
+        }
+    }
+
+    // 應用程式關閉時讓 lane 處理完手上的出價，再等待寫回完成
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : lanes) {
+                lane.awaitTermination(5, TimeUnit.SECONDS);
+            }
+            for (AuctionState state : states.values()) {
+                state.persistTail.get(5, TimeUnit.SECONDS);
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Error flushing auction engine: " + e.getMessage());
+        }
+        persistExecutor.shutdown();
+    }
+
+    // ===== 以下只會在 lane 執行緒上執行 =====
+
+    private BidOutcome applyBid(String productID, String bidderID, int bidPrice) {
+        AuctionState state = loadState(productID);
+        LocalDateTime now = LocalDateTime.now();
+        if (!state.isOpenAt(now)) {
+            return BidOutcome.rejected(BidResult.CLOSED);
+        }
+        if (bidPrice <= state.nowHighestBid) {
+            return BidOutcome.rejected(BidResult.OUTBID);
+        }
+        long seq = state.nextSeq++;
+        state.nowHighestBid = bidPrice;
+        state.highestBidderID = bidderID;
+        state.leaderSeq = seq;
+        List<ProxyBidResolver.Step> steps = new ArrayList<>();
+        steps.add(new ProxyBidResolver.Step(bidderID, bidPrice, seq));
+        return settle(state, bidderID, steps, List.of(), now);
+    }
+
+    private BidOutcome applyProxyBid(String productID, String bidderID, int maxPrice) {
+        AuctionState state = loadState(productID);
+        LocalDateTime now = LocalDateTime.now();
+        if (!state.isOpenAt(now)) {
+            return BidOutcome.rejected(BidResult.CLOSED);
+        }
+        if (maxPrice <= state.nowHighestBid) {
+            return BidOutcome.rejected(BidResult.OUTBID);
+        }
+        ProxyBid existing = state.proxies.get(bidderID);
+        if (existing != null && maxPrice <= existing.getMaxPrice()) {
+            throw new IllegalArgumentException("Maximum bid must be higher than your current maximum bid");
+        }
+        ProxyBid proxy = new ProxyBid(productID, bidderID, maxPrice, state.nextSeq++);
+        state.proxies.put(bidderID, proxy);
+        return settle(state, bidderID, new ArrayList<>(), List.of(proxy), now);
+    }
+
+    // 結算所有代理出價，更新記憶體狀態後把每一步出價與代理出價的變動一起寫回
+    private BidOutcome settle(AuctionState state, String bidderID, List<ProxyBidResolver.Step> steps,
+                              List<ProxyBid> savedProxies, LocalDateTime now) {
+        ProxyBidResolver.Resolution resolution = ProxyBidResolver.resolve(
+                state.nowHighestBid, state.highestBidderID, state.leaderSeq, state.proxies.values(), minIncrement);
+        steps.addAll(resolution.steps());
+        state.nowHighestBid = resolution.finalPrice();
+        state.highestBidderID = resolution.leaderID();
+        state.leaderSeq = resolution.leaderSeq();
+        // 防狙標：與出價在同一個 lane 任務內延長截止時間，之後的出價與關閉判斷都以新的截止時間為準
+        LocalDateTime extendedEnd = !steps.isEmpty() && state.extendIfSniped(now) ? state.auctionEndTime : null;
+
+        // 除了目前領先者之外，其他代理出價的上限都已經被超過，不會再有作用
+        List<String> exhausted = new ArrayList<>();
+        state.proxies.values().removeIf(proxy -> {
+            boolean spent = !proxy.getBidderID().equals(state.highestBidderID)
+                    || proxy.getMaxPrice() < state.nowHighestBid;
+            if (spent) {
+                exhausted.add(proxy.getId());
+            }
+            return spent;
+        });
+
+        List<bidHistory> histories = new ArrayList<>(steps.size());
+        for (ProxyBidResolver.Step step : steps) {
+            histories.add(new bidHistory(step.bidderID(), state.productID, step.price()));
+        }
+        persist(state, histories, savedProxies, exhausted, extendedEnd, now);
+
+        BidResult result = bidderID.equals(state.highestBidderID) ? BidResult.ACCEPTED : BidResult.OUTBID;
+        return new BidOutcome(result, !steps.isEmpty(), state.nowHighestBid, state.highestBidderID, extendedEnd);
+    }
+
+    private AuctionState loadState(String productID) {
+        AuctionState state = states.get(productID);
+        if (state != null) {
+            return state;
+        }
+        Product product = productRepository.findById(productID)
+                .orElseThrow(() -> new NoSuchElementException("Product not found with ProductID: " + productID));
+        if (product.getProductType() != ProductTypes.AUCTION) {
+            throw new IllegalArgumentException("Product is not for auction or product is inactive!");
+        }
+        state = AuctionState.from(product);
+        if (state.open) {
+            restoreProxies(state);
+        }
+        states.put(productID, state);
+        return state;
+    }
+
+    // 競標紀錄中若有比商品文件更高的出價（上次寫回前就當機），以紀錄為準並補寫回商品
+    // 只看商品建立之後的出價，同一個商品ID先前的拍賣留下的紀錄不算
+    private AuctionState restore(Product product) {
+        AuctionState state = AuctionState.from(product);
+        restoreProxies(state);
+        LocalDateTime since = product.getCreatedTime() != null ? product.getCreatedTime() : LocalDateTime.of(1970, 1, 1, 0, 0);
+        bidHistoryRepository.findFirstByProductIDAndTimeStampGreaterThanEqualOrderByBidAmountDesc(product.getProductID(), since)
+                .filter(top -> top.getBidAmount() > state.nowHighestBid)
+                .ifPresent(top -> {
+                    state.nowHighestBid = top.getBidAmount();
+                    state.highestBidderID = top.getUserID();
+                    state.lastWrite = new AuctionState.BidWrite(top.getBidAmount(), top.getUserID(), top.getTimeStamp(), null);
+                    AuctionState.BidWrite write = state.lastWrite;
+                    state.persistTail = state.persistTail.thenRunAsync(() -> writeBid(state, write), persistExecutor);
+                });
+        return state;
+    }
+
+    private void restoreProxies(AuctionState state) {
+        for (ProxyBid proxy : proxyBidRepository.findByProductID(state.productID)) {
+            state.proxies.put(proxy.getBidderID(), proxy);
+            state.nextSeq = Math.max(state.nextSeq, proxy.getSeq() + 1);
+        }
+        // 重建前的最高出價視為最早的出價，同價的代理出價不會因此搶走領先
+        state.leaderSeq = -1;
+    }
+
+    // 同一商品的寫入串接在 persistTail 後面依序執行；條件式更新保證較低的出價不會覆蓋較高的出價
+    // 啟用 journal 時先同步寫入 journal 才回應出價，寫回 MongoDB 完成後再通知 journal 可以回收
+    // 每一項寫入各自重試，其中一項失敗不會讓後面的寫入被跳過；出價寫回商品文件失敗時不通知 journal，由 journal 保留
+    private void persist(AuctionState state, List<bidHistory> histories, List<ProxyBid> savedProxies,
+                         List<String> deletedProxyIds, LocalDateTime extendedEnd, LocalDateTime acceptedAt) {
+        AuctionState.BidWrite write = histories.isEmpty() ? null
+                : new AuctionState.BidWrite(state.nowHighestBid, state.highestBidderID, acceptedAt, extendedEnd);
+        if (write != null) {
+            state.lastWrite = write;
+        }
+        long segment = journal != null && !histories.isEmpty() ? journal.append(histories, extendedEnd) : -1;
+        state.persistTail = state.persistTail.thenRunAsync(() -> {
+            for (ProxyBid proxy : savedProxies) {
+                retrying(state.productID, "proxy bid", () -> proxyBidRepository.save(proxy));
+            }
+            for (String id : deletedProxyIds) {
+                retrying(state.productID, "proxy bid removal", () -> proxyBidRepository.deleteById(id));
+            }
+            for (bidHistory history : histories) {
+                if (segment >= 0) {
+                    retrying(state.productID, "bid history",
+                            () -> historyService.recordBidHistory(history, () -> journal.persisted(segment, 1)));
+                }
+                else {
+                    retrying(state.productID, "bid history", () -> historyService.recordBidHistory(history));
+                }
+            }
+            if (write != null && writeBid(state, write) && segment >= 0) {
+                journal.persisted(segment, 1);
+            }
+        }, persistExecutor).exceptionally(e -> {
+            System.err.println("Error persisting bid for product " + state.productID + ": " + e.getMessage());
+            return null;
+        });
+    }
+
+    // 以條件式更新寫回出價；回傳 false 時已回應的出價仍未寫回
+    private boolean writeBid(AuctionState state, AuctionState.BidWrite write) {
+        boolean written = retrying(state.productID, "bid", () -> productRepository.applyBidIfHigher(
+                state.productID, write.price(), write.leaderID(), write.acceptedAt(), write.extendedEnd()));
+        if (written) {
+            // 條件不符（資料庫中已有更高的出價）也算已寫回
+            state.markPersisted(write.price());
+        }
+        return written;
+    }
+
+    // 等待這個商品的寫入完成；仍有未寫回的出價時先補寫最近一次的出價，再失敗就以 IllegalStateException 結束（在 lane 上呼叫）
+    private CompletableFuture<Void> persisted(AuctionState state) {
+        AuctionState.BidWrite latest = state.lastWrite;
+        CompletableFuture<Void> tail = state.persistTail;
+        if (latest != null) {
+            tail = tail.thenRunAsync(() -> {
+                if (state.hasUnpersistedBid()) {
+                    writeBid(state, latest);
+                }
+            }, persistExecutor);
+            state.persistTail = tail;
+        }
+        return tail.thenRun(() -> {
+            if (state.hasUnpersistedBid()) {
+                throw new IllegalStateException("Accepted bid " + state.nowHighestBid + " for product "
+                        + state.productID + " has not been written to the database yet");
+            }
+        });
+    }
+
+    // 寫入失敗時以指數退避重試，全部失敗回傳 false（在寫回執行緒上執行）
+    private static boolean retrying(String productID, String what, Runnable write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write.run();
+                return true;
+            }
+            catch (Exception e) {
+                if (attempt >= MAX_PERSIST_ATTEMPTS) {
+                    System.err.println("Error persisting " + what + " for product " + productID
+                            + " after " + attempt + " attempts: " + e.getMessage());
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PERSIST_BACKOFF_MS << (attempt - 1)));
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> onLane(String productID, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, lanes[Math.floorMod(productID.hashCode(), lanes.length)]);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
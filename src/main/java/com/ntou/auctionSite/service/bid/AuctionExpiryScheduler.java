@@ -0,0 +1,160 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 依拍賣截止時間排序的到期排程器
+ * 以 DelayQueue（最小堆積）保存每個拍賣的截止時間，由單一執行緒在截止當下呼叫 terminateAuction，
+ * 不再每 5 秒掃描所有拍賣商品。
+ * 截止時間改變時直接放入新的項目，舊項目在取出時比對 deadlines 後丟棄（lazy deletion），
+ * 因此排程與改期都是 O(log n)。
+ */
+@Component
+public class AuctionExpiryScheduler {
+
+    private final ProductRepository productRepository;
+    private final Consumer<String> expireAction;
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    // 每個拍賣目前有效的截止時間（epoch 毫秒），queue 中與此不符的項目都是過期的
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+    private final Thread worker;
+
+    @Autowired
+    public AuctionExpiryScheduler(ProductRepository productRepository, @Lazy BidService bidService) {
+        this(productRepository, bidService::terminateAuction);
+    }
+
+    public AuctionExpiryScheduler(ProductRepository productRepository, Consumer<String> expireAction) {
+        this.productRepository = productRepository;
+        this.expireAction = expireAction;
+        this.worker = new Thread(this::run, "auction-expiry");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    //新增或更新拍賣的截止時間
+    public void schedule(String productID, LocalDateTime auctionEndTime) {
+        // +1ms：terminateAuction 要求目前時間嚴格晚於截止時間
+        long deadline = auctionEndTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+        deadlines.put(productID, deadline);
+        queue.put(new Deadline(productID, deadline));
+    }
+
+    //取消排程（商品下架、刪除或拍賣已結束）
+    public void cancel(String productID) {
+        deadlines.remove(productID);
+    }
+
+    //依商品目前狀態決定要排程或取消
+    public void sync(Product product) {
+        if (product.getProductType() == ProductTypes.AUCTION
+                && product.getProductStatus() == Product.ProductStatuses.ACTIVE
+                && product.getAuctionEndTime() != null) {
+            schedule(product.getProductID(), product.getAuctionEndTime());
+        }
+        else {
+            cancel(product.getProductID());
+        }
+    }
+
+    public int scheduledCount() {
+        return deadlines.size();
+    }
+
+    // 啟動時只查詢 ACTIVE 的拍賣（有索引），不再載入所有歷史拍賣
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        try {
+            List<Product> activeAuctions = productRepository.findByProductTypeAndProductStatus(
+                    ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE);
+            for (Product product : activeAuctions) {
+                sync(product);
+            }
+            System.out.println("Auction expiry scheduler seeded with " + activeAuctions.size() + " active auctions");
+        }
+        catch (Exception e) {
+            System.err.println("Error seeding auction expiry scheduler: " + e.getMessage());
+        }
+    }
+
+    // 保險機制：低頻率補掃已過期但仍 ACTIVE 的拍賣（例如其他節點建立的拍賣），只查詢過期的部分
+    @Scheduled(fixedDelayString = "${auction.expiry.sweep-interval-ms:60000}")
+    public void sweepOverdue() {
+        try {
+            List<Product> overdue = productRepository.findByProductTypeAndProductStatusAndAuctionEndTimeBefore(
+                    ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, LocalDateTime.now());
+            for (Product product : overdue) {
+                schedule(product.getProductID(), product.getAuctionEndTime());
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Error sweeping overdue auctions: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Deadline next;
+            try {
+                next = queue.take();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            // 只有與目前截止時間相符的項目才會觸發，改期前的舊項目直接丟棄
+            if (!deadlines.remove(next.productID, next.deadline)) {
+                continue;
+            }
+            try {
+                expireAction.accept(next.productID);
+            }
+            catch (Exception e) {
+                System.err.println("Error terminating auction " + next.productID + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Deadline implements Delayed {
+        final String productID;
+        final long deadline;
+
+        Deadline(String productID, long deadline) {
+            this.productID = productID;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((Deadline) other).deadline);
+        }
+    }
+}
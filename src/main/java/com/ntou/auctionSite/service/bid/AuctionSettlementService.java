@@ -0,0 +1,238 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.cart.Cart;
+import com.ntou.auctionSite.model.order.Order;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.order.OrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 拍賣結算（建立得標訂單）的非同步流程
+ * 結束拍賣只做一次原子更新（SOLD + 保留訂單ID + 結算狀態 PENDING），建立訂單交由這裡在虛擬執行緒上處理，
+ * 同時執行的數量以 max-concurrency 限制，避免大量拍賣同時截止時佔滿資料庫連線。
+ * 冪等性：
+ * 1. 處理前以條件式更新把結算狀態由 PENDING 改為 PROCESSING，同一時間只有一個執行者能取得處理權；
+ *    處理者中斷（例如程式重啟）時，超過租約時間的 PROCESSING 可以重新取得
+ * 2. 訂單ID在結束拍賣時就已決定，重試一律使用同一個ID，訂單以 insert 寫入，
+ *    已存在時視為先前已建立成功，因此同一個商品不會產生兩張訂單；
+ *    庫存在訂單寫入後才以訂單ID為條件扣除，重試時不會重複扣庫存
+ * 失敗時交回 PENDING 並以指數退避重試；超過重試次數後留在 PENDING，由定期補償重新送出。
+ */
+@Component
+public class AuctionSettlementService {
+
+    private final ProductRepository productRepository;
+    private final OrderService orderService;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final Duration lease;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService retryScheduler;
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer lagTimer;
+    private final Counter settledCounter;
+    private final Counter retryCounter;
+    private final Counter failedCounter;
+
+    @Autowired
+    public AuctionSettlementService(ProductRepository productRepository,
+                                    OrderService orderService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${auction.settlement.max-concurrency:16}") int maxConcurrency,
+                                    @Value("${auction.settlement.max-attempts:5}") int maxAttempts,
+                                    @Value("${auction.settlement.retry-backoff-ms:1000}") long retryBackoffMs,
+                                    @Value("${auction.settlement.lease-ms:60000}") long leaseMs) {
+        this.productRepository = productRepository;
+        this.orderService = orderService;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = Math.max(0, retryBackoffMs);
+        this.lease = Duration.ofMillis(Math.max(1, leaseMs));
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("auction-settlement-", 0).factory());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "auction-settlement-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("auction.settlement.inflight", inFlight, AtomicInteger::get)
+                .description("Auction settlements submitted but not yet finished")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("auction.settlement.lag")
+                .description("Time from auction close to the winning order being created")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.settledCounter = meterRegistry.counter("auction.settlement.settled");
+        this.retryCounter = meterRegistry.counter("auction.settlement.retries");
+        this.failedCounter = meterRegistry.counter("auction.settlement.failed");
+    }
+
+    //送出結算：只有已保留訂單ID（有得標者）的拍賣需要建立訂單
+    public void submit(Product closedAuction) {
+        if (closedAuction == null || closedAuction.getSettlementOrderID() == null) {
+            return;
+        }
+        submit(closedAuction.getProductID(), 1);
+    }
+
+    private void submit(String productID, int attempt) {
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    settle(productID, attempt);
+                }
+                finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        catch (Exception e) {
+            // 關閉中不再接受新的結算，留在 PENDING 由下次啟動時補償
+            inFlight.decrementAndGet();
+            System.err.println("Error submitting settlement for " + productID + ": " + e.getMessage());
+        }
+    }
+
+    private void settle(String productID, int attempt) {
+        try {
+            permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        boolean claimed = false;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            claimed = productRepository.claimSettlement(productID, now, now.minus(lease));
+            if (!claimed) {
+                return;// 已完成，或其他執行者正在處理
+            }
+            Product product = productRepository.findById(productID).orElse(null);
+            if (product == null || product.getSettlementOrderID() == null) {
+                return;
+            }
+            createWinningOrder(product);
+            productRepository.completeSettlement(productID);
+            settledCounter.increment();
+            recordLag(product);
+        }
+        catch (Exception e) {
+            if (claimed) {
+                productRepository.releaseSettlement(productID);
+            }
+            retry(productID, attempt, e);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    private void createWinningOrder(Product product) {
+        String orderID = product.getSettlementOrderID();
+        Cart cart = new Cart();
+        cart.getItems().add(new Cart.CartItem(product.getProductID(), 1));
+        Order order = new Order();
+        order.setCart(cart);
+        try {
+            orderService.createOrder(order, product.getHighestBidderID(), ProductTypes.AUCTION, orderID);
+            System.out.println("Auction " + product.getProductID() + " settled, order: " + orderID);
+        }
+        catch (DuplicateKeyException e) {
+            // 訂單ID已存在：其他執行者已建立同一張訂單
+        }
+    }
+
+    private void retry(String productID, int attempt, Exception cause) {
+        if (attempt >= maxAttempts) {
+            failedCounter.increment();
+            System.err.println("Error settling auction " + productID + " after " + attempt + " attempts: " + cause.getMessage());
+            return;
+        }
+        retryCounter.increment();
+        long delay = retryBackoffMs << Math.min(attempt - 1, 10);
+        inFlight.incrementAndGet();
+        try {
+            retryScheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                submit(productID, attempt + 1);
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        catch (Exception e) {
+            inFlight.decrementAndGet();
+            System.err.println("Error scheduling settlement retry for " + productID + ": " + e.getMessage());
+        }
+    }
+
+    // 結算延遲：從拍賣截止（手動提前結束時為結束時間）到訂單建立
+    private void recordLag(Product product) {
+        LocalDateTime closedAt = product.getAuctionEndTime() != null ? product.getAuctionEndTime() : product.getUpdatedTime();
+        if (closedAt != null) {
+            long lagMs = Math.max(0, Duration.between(closedAt, LocalDateTime.now()).toMillis());
+            lagTimer.record(lagMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    // 啟動時與定期補償：重新送出尚未完成的結算（PENDING，或處理者中斷、租約已過期的 PROCESSING）
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${auction.settlement.recovery-interval-ms:60000}",
+            initialDelayString = "${auction.settlement.recovery-interval-ms:60000}")
+    public void recover() {
+        try {
+            List<Product> unsettled = new ArrayList<>(productRepository.findBySettlementStatus(Product.SettlementStatuses.PENDING));
+            unsettled.addAll(productRepository.findBySettlementStatusAndSettlementClaimedTimeBefore(
+                    Product.SettlementStatuses.PROCESSING, LocalDateTime.now().minus(lease)));
+            for (Product product : unsettled) {
+                submit(product);
+            }
+            if (!unsettled.isEmpty()) {
+                System.out.println("Resubmitted " + unsettled.size() + " unsettled auctions");
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Error recovering auction settlements: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
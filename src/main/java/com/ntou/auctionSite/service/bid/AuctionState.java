@@ -0,0 +1,79 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.product.Product;
+
+import com.ntou.auctionSite.model.ProxyBid;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 記憶體中的即時拍賣狀態
+ * 只會在商品所屬的 lane 執行緒上被修改，其他執行緒只做讀取（volatile 保證可見性）
+ */
+class AuctionState {
+    final String productID;
+    volatile int nowHighestBid;
+    volatile String highestBidderID;
+    volatile LocalDateTime auctionEndTime;
+    volatile boolean open;
+    int softCloseWindowSeconds;
+    int softCloseExtensionSeconds;
+    // 以下只在 lane 上存取：各買家仍有效的代理出價、出價順序計數器、目前最高出價的順序
+    final Map<String, ProxyBid> proxies = new HashMap<>();
+    long nextSeq;
+    long leaderSeq;
+    // 這個商品尚未完成的寫入，依序串接確保同一商品的寫入順序與出價順序一致（只在 lane 上存取）
+    CompletableFuture<Void> persistTail = CompletableFuture.completedFuture(null);
+    // 已確定寫回商品文件的最高出價（只在寫回執行緒上修改）；低於 nowHighestBid 表示有已回應但尚未寫回的出價
+    volatile int persistedPrice;
+    // 最近一次出價寫回的內容，寫回失敗時關閉或移除前以此補寫（只在 lane 上修改）
+    volatile BidWrite lastWrite;
+
+    // 一次出價寫回商品文件的內容
+    record BidWrite(int price, String leaderID, LocalDateTime acceptedAt, LocalDateTime extendedEnd) {
+    }
+
+    AuctionState(String productID) {
+        this.productID = productID;
+    }
+
+    static AuctionState from(Product product) {
+        AuctionState state = new AuctionState(product.getProductID());
+        state.nowHighestBid = product.getNowHighestBid();
+        state.persistedPrice = product.getNowHighestBid();
+        state.highestBidderID = product.getHighestBidderID();
+        state.auctionEndTime = product.getAuctionEndTime();
+        state.open = product.getProductStatus() == Product.ProductStatuses.ACTIVE;
+        state.softCloseWindowSeconds = product.getSoftCloseWindowSeconds();
+        state.softCloseExtensionSeconds = product.getSoftCloseExtensionSeconds();
+        return state;
+    }
+
+    //防狙標：出價落在截止前的觸發區間內時延長截止時間，有延長時回傳 true
+    boolean extendIfSniped(LocalDateTime bidTime) {
+        LocalDateTime extended = SoftClose.extendedEnd(auctionEndTime, softCloseWindowSeconds, softCloseExtensionSeconds, bidTime);
+        if (extended == null) {
+            return false;
+        }
+        auctionEndTime = extended;
+        return true;
+    }
+
+    //是否有已回應但尚未寫回商品文件的出價
+    boolean hasUnpersistedBid() {
+        return persistedPrice < nowHighestBid;
+    }
+
+    //出價已寫回（或資料庫中已有更高的出價）
+    void markPersisted(int price) {
+        persistedPrice = Math.max(persistedPrice, price);
+    }
+
+    //是否仍可出價
+    boolean isOpenAt(LocalDateTime now) {
+        return open && auctionEndTime != null && now.isBefore(auctionEndTime);
+    }
+}
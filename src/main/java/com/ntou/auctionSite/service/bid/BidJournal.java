@@ -0,0 +1,413 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 出價的本機 journal（append-only、memory-mapped、依大小切換 segment）
+ * 拍賣引擎接受出價後先把出價事件寫進 journal 再回應，MongoDB 的寫回仍在背景進行；
+ * 依 fsync-interval-ms 定期 force 到磁碟（0 表示每次寫入都 force，回應時出價已落地）。
+ * segment 中的出價全部寫回 MongoDB 後，已切換掉的 segment 會被刪除。
+ * 啟動時（engine 重建之前）重播所有留下來的 segment：補寫缺少的競標紀錄（以 historyID 判斷），
+ * 並以條件式更新把每個商品的最高出價補回商品文件，重播成功後才刪除檔案。
+ *
+ * 紀錄格式：[int 長度][int CRC32][long 出價時間(epoch 奈秒)][long 延長後截止時間(epoch 毫秒，-1 表示沒有)]
+ *          [int 出價金額][UTF productID][UTF bidderID][UTF historyID]
+ * 長度為 0 表示 segment 結尾；CRC 不符表示寫到一半就中斷，之後的內容忽略。
+ */
+@Component
+public class BidJournal {
+
+    private static final String SEGMENT_PREFIX = "bids-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 8;
+
+    /** 一筆出價事件 */
+    public record Entry(String historyID, String productID, String bidderID, int price,
+                        LocalDateTime timeStamp, LocalDateTime extendedEnd) {
+    }
+
+    private final ProductRepository productRepository;
+    private final BidHistoryRepository bidHistoryRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long fsyncIntervalMs;
+    private final Counter appendCounter;
+    private final Timer fsyncTimer;
+
+    private final Object writeLock = new Object();
+    // 每個 segment 尚未完成的寫入數（競標紀錄與商品出價欄位），歸零且已切換掉的 segment 可以刪除
+    private final Map<Long, AtomicLong> outstanding = new ConcurrentHashMap<>();
+    private Segment active;
+    private volatile boolean dirty;
+    private ScheduledExecutorService fsyncScheduler;
+
+    private static final class Segment {
+        final long index;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    @Autowired
+    public BidJournal(ProductRepository productRepository,
+                      BidHistoryRepository bidHistoryRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${auction.journal.enabled:false}") boolean enabled,
+                      @Value("${auction.journal.directory:./data/bid-journal}") String directory,
+                      @Value("${auction.journal.segment-bytes:67108864}") int segmentBytes,
+                      @Value("${auction.journal.fsync-interval-ms:10}") long fsyncIntervalMs) {
+        this.productRepository = productRepository;
+        this.bidHistoryRepository = bidHistoryRepository;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.max(4096, segmentBytes);
+        this.fsyncIntervalMs = Math.max(0, fsyncIntervalMs);
+        this.appendCounter = meterRegistry.counter("bid.journal.appends");
+        this.fsyncTimer = Timer.builder("bid.journal.fsync")
+                .description("Time spent forcing the bid journal to disk")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 啟動時先重播上次留下的出價，再開啟新的 segment（在拍賣引擎於 ApplicationReadyEvent 重建之前執行）
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> leftovers = segments();
+            long nextIndex = leftovers.isEmpty() ? 0 : indexOf(leftovers.get(leftovers.size() - 1)) + 1;
+            try {
+                int replayed = replay(leftovers);
+                for (Path path : leftovers) {
+                    Files.deleteIfExists(path);
+                }
+                System.out.println("Bid journal replayed " + replayed + " bids from " + leftovers.size() + " segments");
+            }
+            catch (Exception e) {
+                // 資料庫暫時無法寫入：保留檔案，下次啟動再重播
+                System.err.println("Error replaying bid journal, segments kept for next startup: " + e.getMessage());
+            }
+            synchronized (writeLock) {
+                active = openSegment(nextIndex);
+            }
+            if (fsyncIntervalMs > 0) {
+                fsyncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "bid-journal-fsync");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                fsyncScheduler.scheduleWithFixedDelay(this::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to open bid journal at " + directory, e);
+        }
+    }
+
+    /**
+     * 寫入一次出價產生的所有競標紀錄
+     *
+     * @return 紀錄所在的 segment；每筆競標紀錄寫入後、以及商品出價欄位寫回後，各以 {@link #persisted(long, int)} 回報一次
+     */
+    public long append(List<bidHistory> histories, LocalDateTime extendedEnd) {
+        long extendedMillis = extendedEnd == null ? -1 : extendedEnd.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<byte[]> records = new ArrayList<>(histories.size());
+        for (bidHistory history : histories) {
+            records.add(encode(history, extendedMillis));
+        }
+        int totalBytes = records.stream().mapToInt(record -> record.length).sum();
+        long segmentIndex;
+        synchronized (writeLock) {
+            // 同一次出價的紀錄放在同一個 segment（保留結尾的 0 長度標記）
+            if (active.buffer.remaining() < totalBytes + Integer.BYTES) {
+                rotate();
+            }
+            for (byte[] record : records) {
+                active.buffer.put(record);
+            }
+            segmentIndex = active.index;
+            // 每筆競標紀錄各一個單位，商品出價欄位的寫回另算一個單位
+            outstanding.get(segmentIndex).addAndGet(records.size() + 1L);
+            dirty = true;
+            if (fsyncIntervalMs == 0) {
+                forceLocked();
+            }
+        }
+        appendCounter.increment(records.size());
+        return segmentIndex;
+    }
+
+    //這個 segment 中有 count 個寫入已完成
+    public void persisted(long segmentIndex, int count) {
+        AtomicLong remaining = outstanding.get(segmentIndex);
+        if (remaining == null || remaining.addAndGet(-count) > 0) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (active != null && active.index == segmentIndex) {
+                return;// 目前使用中的 segment 不刪除
+            }
+            deleteSegment(segmentIndex);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (fsyncScheduler != null) {
+            fsyncScheduler.shutdownNow();
+        }
+        synchronized (writeLock) {
+            if (active != null) {
+                forceLocked();
+                closeQuietly(active);
+                // 正常關閉且全部寫回時不留檔案；還有未完成的寫入則保留到下次啟動重播
+                AtomicLong remaining = outstanding.get(active.index);
+                if (remaining != null && remaining.get() <= 0) {
+                    deleteSegment(active.index);
+                }
+                active = null;
+            }
+        }
+    }
+
+    // ===== 重播 =====
+
+    //讀取 segment 中所有完整的紀錄（寫到一半的尾端會被忽略）
+    public static List<Entry> read(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int crc = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                CRC32 checksum = new CRC32();
+                checksum.update(body);
+                if ((int) checksum.getValue() != crc) {
+                    break;
+                }
+                entries.add(decode(ByteBuffer.wrap(body)));
+            }
+        }
+        return entries;
+    }
+
+    private int replay(List<Path> paths) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Path path : paths) {
+            entries.addAll(read(path));
+        }
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        // 競標紀錄：只補寫資料庫中還沒有的（historyID 相同代表已寫入）
+        Set<String> existing = new HashSet<>();
+        List<String> ids = entries.stream().map(Entry::historyID).toList();
+        bidHistoryRepository.findAllById(ids).forEach(history -> existing.add(history.getHistoryID()));
+        List<bidHistory> missing = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (existing.add(entry.historyID())) {
+                missing.add(new bidHistory(entry.historyID(), entry.bidderID(), entry.timeStamp(),
+                        entry.productID(), entry.price(), null));
+            }
+        }
+        bidHistoryRepository.saveAll(missing);
+
+        // 商品：每個商品只以最高的出價做一次條件式更新，資料庫已有更高出價時不會覆蓋
+        Map<String, Entry> highest = new HashMap<>();
+        Map<String, LocalDateTime> latestEnd = new HashMap<>();
+        for (Entry entry : entries) {
+            highest.merge(entry.productID(), entry, (a, b) -> b.price() > a.price() ? b : a);
+            if (entry.extendedEnd() != null) {
+                latestEnd.merge(entry.productID(), entry.extendedEnd(), (a, b) -> b.isAfter(a) ? b : a);
+            }
+        }
+        for (Entry top : highest.values()) {
+            productRepository.applyBidIfHigher(top.productID(), top.price(), top.bidderID(), top.timeStamp(),
+                    latestEnd.get(top.productID()));
+        }
+        return entries.size();
+    }
+
+    // ===== 以下在 writeLock 內執行 =====
+
+    private void rotate() {
+        forceLocked();
+        Segment previous = active;
+        active = openSegment(previous.index + 1);
+        closeQuietly(previous);
+        AtomicLong remaining = outstanding.get(previous.index);
+        if (remaining != null && remaining.get() == 0) {
+            deleteSegment(previous.index);
+        }
+    }
+
+    private void force() {
+        if (!dirty) {
+            return;
+        }
+        synchronized (writeLock) {
+            forceLocked();
+        }
+    }
+
+    private void forceLocked() {
+        if (active == null || !dirty) {
+            return;
+        }
+        long start = System.nanoTime();
+        active.buffer.force();
+        dirty = false;
+        fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Segment openSegment(long index) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            outstanding.put(index, new AtomicLong());
+            return new Segment(index, path, channel, buffer);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to create bid journal segment " + path, e);
+        }
+    }
+
+    private void deleteSegment(long index) {
+        outstanding.remove(index);
+        try {
+            Files.deleteIfExists(directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)));
+        }
+        catch (IOException e) {
+            System.err.println("Error deleting bid journal segment " + index + ": " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        }
+        catch (IOException e) {
+            System.err.println("Error closing bid journal segment " + segment.path + ": " + e.getMessage());
+        }
+    }
+
+    // ===== 編碼 =====
+
+    private static byte[] encode(bidHistory history, long extendedMillis) {
+        byte[] productID = history.getProductID().getBytes(StandardCharsets.UTF_8);
+        byte[] bidderID = history.getUserID().getBytes(StandardCharsets.UTF_8);
+        byte[] historyID = history.getHistoryID().getBytes(StandardCharsets.UTF_8);
+        Instant time = history.getTimeStamp().atZone(ZoneId.systemDefault()).toInstant();
+        int bodyLength = Long.BYTES * 2 + Integer.BYTES
+                + Short.BYTES * 3 + productID.length + bidderID.length + historyID.length;
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.putLong(time.getEpochSecond() * 1_000_000_000L + time.getNano());
+        body.putLong(extendedMillis);
+        body.putInt(history.getBidAmount());
+        putString(body, productID);
+        putString(body, bidderID);
+        putString(body, historyID);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(body.array());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.putInt(bodyLength).putInt((int) checksum.getValue()).put(body.array());
+        return record.array();
+    }
+
+    private static Entry decode(ByteBuffer body) {
+        long timeNanos = body.getLong();
+        long extendedMillis = body.getLong();
+        int price = body.getInt();
+        String productID = getString(body);
+        String bidderID = getString(body);
+        String historyID = getString(body);
+        LocalDateTime time = LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(Math.floorDiv(timeNanos, 1_000_000_000L), Math.floorMod(timeNanos, 1_000_000_000L)),
+                ZoneId.systemDefault());
+        LocalDateTime extendedEnd = extendedMillis < 0 ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(extendedMillis), ZoneId.systemDefault());
+        return new Entry(historyID, productID, bidderID, price, time, extendedEnd);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
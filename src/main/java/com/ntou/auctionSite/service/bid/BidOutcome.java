@@ -0,0 +1,24 @@
+package com.ntou.auctionSite.service.bid;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次出價（含代理出價自動加價）處理完後的結果
+ * result 是對出價者本人的判定；priceChanged 表示目前最高價或最高出價者有變動，需要推播；
+ * extendedEndTime 在這次出價觸發防狙標延長時為新的截止時間，否則為 null
+ */
+public record BidOutcome(BidResult result, boolean priceChanged, int nowHighestBid, String highestBidderID,
+                         LocalDateTime extendedEndTime) {
+
+    public static BidOutcome accepted(int nowHighestBid, String highestBidderID, LocalDateTime extendedEndTime) {
+        return new BidOutcome(BidResult.ACCEPTED, true, nowHighestBid, highestBidderID, extendedEndTime);
+    }
+
+    public static BidOutcome rejected(BidResult result) {
+        return new BidOutcome(result, false, 0, null, null);
+    }
+
+    public boolean extended() {
+        return extendedEndTime != null;
+    }
+}
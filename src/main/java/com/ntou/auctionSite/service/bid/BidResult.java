@@ -0,0 +1,8 @@
+package com.ntou.auctionSite.service.bid;
+
+//出價結果
+public enum BidResult {
+    ACCEPTED,   //出價成功，成為目前最高出價者
+    OUTBID,     //出價不高於目前最高價（可能被同時出價的人搶先）
+    CLOSED      //拍賣已結束或商品不在拍賣中
+}
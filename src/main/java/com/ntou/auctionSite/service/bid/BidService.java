@@ -1,17 +1,16 @@
 package com.ntou.auctionSite.service.bid;
 
-import com.ntou.auctionSite.model.cart.Cart;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.history.bidHistory;
-import com.ntou.auctionSite.model.order.Order;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.model.product.ProductTypes;
 import com.ntou.auctionSite.repository.ProductRepository;
 import com.ntou.auctionSite.service.cart.CartService;
+import com.ntou.auctionSite.service.history.BidLadderService;
 import com.ntou.auctionSite.service.history.HistoryService;
-import com.ntou.auctionSite.service.order.OrderService;
 import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.utils.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -28,7 +27,7 @@ public class BidService {
     private ProductService productService;
 
     @Autowired
-    private OrderService orderService;
+    private AuctionSettlementService settlementService;
 
     @Autowired
     private CartService cartService;
@@ -36,11 +35,36 @@ public class BidService {
     @Autowired
     private HistoryService historyService;
 
+    @Autowired
+    private AuctionEngine auctionEngine;
+
+    @Autowired
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @Autowired
+    private AuctionBroadcaster auctionBroadcaster;
+
+    @Autowired
+    private BidLadderService bidLadderService;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    // 建立拍賣時寫回的欄位
+    private static final List<String> AUCTION_SETUP_FIELDS = List.of("nowHighestBid", "productPrice", "auctionEndTime",
+            "createdTime", "productType", "softCloseWindowSeconds", "softCloseExtensionSeconds",
+            "settlementOrderID", "settlementStatus", "settlementClaimedTime");
+
     // 用來格式化時間輸出
     DateTimeFormatter timeFormatter=DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
     // 建立拍賣商品：設定起標價與競標截止時間
     public Product createAuction(int basicBidPrice, LocalDateTime auctionEndTime,String productID,String currentUserId){//設定起標價 截止時間
-        Product auctionProduct=productService.getProductById(productID);
+        return createAuction(basicBidPrice,auctionEndTime,productID,currentUserId,0,0);
+    }
+    // 同上，另外設定防狙標：截止前 softCloseWindowSeconds 秒內的出價會把截止時間延後 softCloseExtensionSeconds 秒（0 表示不啟用）
+    public Product createAuction(int basicBidPrice, LocalDateTime auctionEndTime,String productID,String currentUserId,
+                                 int softCloseWindowSeconds,int softCloseExtensionSeconds){
+        Product auctionProduct=productService.getProductForUpdate(productID);
         if (auctionProduct==null) {
             throw new NoSuchElementException("Product not found!");
         }
@@ -50,6 +74,9 @@ public class BidService {
         if(basicBidPrice<=0){
             throw new IllegalArgumentException("BidPrice must greater than 0!!!");
         }
+        if(softCloseWindowSeconds<0 || softCloseExtensionSeconds<0){
+            throw new IllegalArgumentException("Soft close seconds must not be negative!");
+        }
         if(auctionProduct.getProductStock()<=0){
             throw new IllegalArgumentException("No available product in stock!!!");
         }
@@ -62,13 +89,28 @@ public class BidService {
             auctionProduct.setAuctionEndTime(auctionEndTime);
             auctionProduct.setCreatedTime(LocalDateTime.now());
             auctionProduct.setProductType(ProductTypes.AUCTION);
-            return repository.save(auctionProduct);
+            auctionProduct.setSoftCloseWindowSeconds(softCloseWindowSeconds);
+            auctionProduct.setSoftCloseExtensionSeconds(softCloseExtensionSeconds);
+            auctionProduct.setSettlementOrderID(null);//清除上一次拍賣的結算資訊
+            auctionProduct.setSettlementStatus(null);
+            auctionProduct.setSettlementClaimedTime(null);
+            // 只寫回拍賣設定的欄位，不會蓋掉讀取之後才寫回的瀏覽次數與評分
+            Product saved=repository.saveFields(auctionProduct,AUCTION_SETUP_FIELDS);
+            if (saved==null) {
+                throw new NoSuchElementException("Product not found!");
+            }
+            productService.evictProduct(productID);
+            if(auctionEngine.isEnabled()){
+                auctionEngine.register(saved);
+            }
+            expiryScheduler.schedule(saved.getProductID(),auctionEndTime);
+            return saved;
         }
     }
     //取得所有拍賣中的商品
-    public List<Product> getAllAuctionProduct(){
+    public List<ProductSummary> getAllAuctionProduct(){
         try{
-            List<Product> auctionProductList=repository.findByProductType(ProductTypes.AUCTION);//ACTIVE應該就是指拍賣中吧
+            List<ProductSummary> auctionProductList=repository.findSummariesByProductType(ProductTypes.AUCTION);//ACTIVE應該就是指拍賣中吧
             if(auctionProductList.isEmpty()){
                 throw new NoSuchElementException("No auctionProduct found!");
             }
@@ -80,106 +122,132 @@ public class BidService {
         }
     }
     //買家出價
-    public void placeBid(int bidPrice,String productID,String bidderID,String currentUserId){
-        Product auctionProduct = productService.getProductById(productID);
-        // 必須是 ACTIVE 且為 AUCTION 商品才可以拍賣
-        if(auctionProduct.getProductStatus()!=Product.ProductStatuses.ACTIVE ||
-           auctionProduct.getProductType()!=ProductTypes.AUCTION
-        ){
-            throw new IllegalArgumentException("Product is not for auction or product is inactive!");
-        }
-        if (auctionProduct == null) {
-            throw new NoSuchElementException("Product not found!");
-        }
+    //啟用拍賣引擎時在記憶體中判定；否則以單一條件式更新寫入，只有 ACTIVE 的 AUCTION、未截止且目前最高價低於出價時才會成功
+    public BidResult placeBid(int bidPrice,String productID,String bidderID,String currentUserId){
         if(bidPrice<=0){
             throw new IllegalArgumentException("BidPrice must greater than 0!!!");
         }
         if(!bidderID.equals(currentUserId)){//出價者和目前登入者不同要拒絕
             throw new SecurityException("You are not authorized to bid by other user's ID");
         }
-        else if(bidPrice<=auctionProduct.getNowHighestBid()){
-            throw new IllegalArgumentException("Bid must be higher than current highest bid");
+        BidOutcome outcome=auctionEngine.isEnabled()
+                ? auctionEngine.placeBid(productID,bidderID,bidPrice)
+                : placeBidDirectly(bidPrice,productID,bidderID);
+        publish(productID,outcome);
+        return outcome.result();
+    }
+
+    //代理出價：買家設定最高出價，被超過時由拍賣引擎以最小增額自動加價，一次請求就結算完所有代理出價
+    //代理出價保存在拍賣引擎的記憶體狀態中，因此需要啟用拍賣引擎
+    public BidResult placeProxyBid(int maxPrice,String productID,String bidderID,String currentUserId){
+        if(maxPrice<=0){
+            throw new IllegalArgumentException("BidPrice must greater than 0!!!");
+        }
+        if(!bidderID.equals(currentUserId)){
+            throw new SecurityException("You are not authorized to bid by other user's ID");
+        }
+        if(!auctionEngine.isEnabled()){
+            throw new IllegalStateException("Proxy bidding requires the auction engine to be enabled");
+        }
+        BidOutcome outcome=auctionEngine.placeProxyBid(productID,bidderID,maxPrice);
+        publish(productID,outcome);
+        return outcome.result();
+    }
+
+    //最高價有變動時推播給訂閱 /topic/auction/{productID} 的前端（只公開成交價，不公開代理出價的上限）
+    //觸發防狙標時改排新的截止時間（O(log n)，不需要重新掃描所有拍賣）並推播延長事件
+    //最高價或截止時間有變動時讓商品快取失效
+    private void publish(String productID,BidOutcome outcome){
+        if(outcome.extended() || outcome.priceChanged()){
+            productService.evictProduct(productID);
+        }
+        if(outcome.extended()){
+            expiryScheduler.schedule(productID,outcome.extendedEndTime());
+            auctionBroadcaster.publishExtended(productID,outcome.extendedEndTime());
+        }
+        if(outcome.priceChanged()){
+            auctionBroadcaster.publishBid(productID,outcome.nowHighestBid(),outcome.highestBidderID());
         }
-        else{
+    }
+
+    private BidOutcome placeBidDirectly(int bidPrice,String productID,String bidderID){
+        LocalDateTime now=LocalDateTime.now();
+        Product before=repository.placeBidAtomically(productID,bidPrice,bidderID,now);
+        if(before!=null){
             bidHistory bh = new bidHistory(bidderID,productID,bidPrice);
-            historyService.saveBidHistory(bh);
-            auctionProduct.setNowHighestBid(bidPrice);
-            //auctionProduct.setProductPrice(bidPrice);
-            auctionProduct.setUpdatedTime(LocalDateTime.now());
-            auctionProduct.setHighestBidderID(bidderID);
-            repository.save(auctionProduct);
+            historyService.recordBidHistory(bh);
             System.out.println("Bid placed successfully!");
+            //資料庫已在同一個更新中延長，這裡依相同規則算出新的截止時間
+            LocalDateTime extendedEnd=SoftClose.extendedEnd(before.getAuctionEndTime(),
+                    before.getSoftCloseWindowSeconds(),before.getSoftCloseExtensionSeconds(),now);
+            return BidOutcome.accepted(bidPrice,bidderID,extendedEnd);
         }
-    }
-    // 每 5 秒檢查一次拍賣是否到期（自動排程）
-    @Scheduled(fixedRate = 5000)//Scheduled用來設定5秒檢查一次
-    public void checkAndTerminateAuctions() {
-        List<Product> auctionList = repository.findByProductType(ProductTypes.AUCTION);
-
-        LocalDateTime now = LocalDateTime.now();
-        for (Product p : auctionList) {
-            if (p.getProductStatus() == Product.ProductStatuses.ACTIVE &&
-                    p.getAuctionEndTime() != null &&
-                    now.isAfter(p.getAuctionEndTime())) {
-                // 時間到,自動終止拍賣
-                terminateAuction(p.getProductID());
-            }
+        // 更新失敗才讀取商品，判斷是被搶先還是拍賣已結束
+        Product auctionProduct = productService.getProductById(productID);
+        if(auctionProduct.getProductType()!=ProductTypes.AUCTION){
+            throw new IllegalArgumentException("Product is not for auction or product is inactive!");
         }
+        if(auctionProduct.getProductStatus()!=Product.ProductStatuses.ACTIVE ||
+           auctionProduct.getAuctionEndTime()==null ||
+           !now.isBefore(auctionProduct.getAuctionEndTime())
+        ){
+            return BidOutcome.rejected(BidResult.CLOSED);
+        }
+        return BidOutcome.rejected(BidResult.OUTBID);
     }
     // 終止拍賣（時間到後執行）
     public void terminateAuction(String productID){//結束競拍
-        Product auctionProduct = productService.getProductById(productID);
-
-        if (auctionProduct.getProductStatus() != Product.ProductStatuses.ACTIVE) {
-            return;
+        //到期由 AuctionExpiryScheduler 在截止時間觸發
+        // 啟用拍賣引擎時先關閉記憶體中的拍賣並等待出價寫回，結束後移除狀態，下次出價會依資料庫重新載入
+        // 截止時間已被防狙標延長時不關閉（新的截止時間已重新排程）
+        if(auctionEngine.isEnabled() && !auctionEngine.closeIfEnded(productID,LocalDateTime.now())){
+            throw new IllegalStateException("The auction can't be terminate! The auction has not ended yet");
         }
-
-        auctionProduct.setProductStatus(Product.ProductStatuses.TERMINATE);
-        repository.save(auctionProduct);
-        if (auctionProduct.getHighestBidderID()==null) {//假如沒人出價，不能建立訂單
-            auctionProduct.setProductStatus(Product.ProductStatuses.INACTIVE);
-            repository.save(auctionProduct);
-            return;
-        }
-
-        if (auctionProduct.getProductType() != ProductTypes.AUCTION) {//必須檢查是拍賣商品
-            throw new IllegalArgumentException("Product is not an auction item");
+        try{
+            Product closedProduct=closeAuction(productID);
+            expiryScheduler.cancel(productID);
+            if(closedProduct!=null){
+                productService.productUpdated(closedProduct);
+                auctionBroadcaster.publishClosed(closedProduct);
+            }
         }
-
-        if (auctionProduct.getAuctionEndTime() == null) {
-            throw new IllegalStateException("Auction end time is not set for product: " + productID);
+        finally {
+            if(auctionEngine.isEnabled()){
+                auctionEngine.evict(productID);
+            }
+            bidLadderService.evict(productID);//結束後的出價排行改由資料庫查詢
+            productService.evictProduct(productID);
         }
+    }
 
+    //回傳結束後的商品，商品原本就不在拍賣中時回傳 null
+    //結束拍賣只做一次原子更新：有得標者設為 SOLD 並保留訂單ID，無人出價設為 INACTIVE；建立訂單交給結算流程非同步處理
+    private Product closeAuction(String productID){
         LocalDateTime currentTime=LocalDateTime.now();
-        //compareTo比較兩個localdate，>0表示前者比較晚發生
-        if(currentTime.compareTo(auctionProduct.getAuctionEndTime()) >0){
-            if(auctionProduct.getHighestBidderID()!=null){
-                System.out.println("Auction is terminated.Current time: "+timeFormatter.format(currentTime));
-                auctionProduct.setProductStatus(Product.ProductStatuses.SOLD);//設定為已售出
-                System.out.println("Auction winner is ID:"+auctionProduct.getHighestBidderID());
-                repository.save(auctionProduct);
-                String userId=auctionProduct.getHighestBidderID();
-                // 自動建立訂單
-                Cart cart = new Cart();
-
-                //先放進購物車
-                Cart.CartItem cartItem = new Cart.CartItem(auctionProduct.getProductID(), 1);
-                cart.getItems().add(cartItem);
-                Order order = new Order();
-                order.setCart(cart);
-                orderService.createOrder(order,auctionProduct.getHighestBidderID(),ProductTypes.AUCTION);
+        Product closedProduct=repository.closeAuctionAtomically(productID,currentTime,idGenerator.next(IdGenerator.ORDER));
+        if(closedProduct==null){
+            // 更新失敗才讀取商品，判斷是已經結束（重複觸發）還是不能結束
+            Product auctionProduct = productService.getProductById(productID);
+            if (auctionProduct.getProductStatus() != Product.ProductStatuses.ACTIVE) {
+                return null;
             }
-            else{
-
+            if (auctionProduct.getProductType() != ProductTypes.AUCTION) {//必須檢查是拍賣商品
+                throw new IllegalArgumentException("Product is not an auction item");
+            }
+            if (auctionProduct.getAuctionEndTime() == null) {
+                throw new IllegalStateException("Auction end time is not set for product: " + productID);
             }
-        }
-        else{
             throw new IllegalStateException("The auction can't be terminate! \n " +
                     "Because auction end time is: "+auctionProduct.getAuctionEndTime()+
-                    " but current time is: "+LocalDateTime.now()
+                    " but current time is: "+currentTime
             );
         }
+        if(closedProduct.getHighestBidderID()!=null){
+            System.out.println("Auction is terminated.Current time: "+timeFormatter.format(currentTime));
+            System.out.println("Auction winner is ID:"+closedProduct.getHighestBidderID());
+            // 自動建立訂單（非同步、可重試，同一個商品只會建立一張訂單）
+            settlementService.submit(closedProduct);
+        }
+        return closedProduct;
     }
-
-
 }
@@ -0,0 +1,95 @@
+package com.ntou.auctionSite.service.bid;
+
+import com.ntou.auctionSite.model.ProxyBid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 代理出價的一次性結算
+ * 不逐步模擬你來我往的加價，而是直接找出最高上限與次高上限：
+ * 得標者為上限最高者（相同時出價順序較早者），成交價為「次高上限 + 最小增額」與得標者上限取小。
+ * 每個被超過的代理出價會以其上限記成一筆出價，最後再記一筆得標者的出價，
+ * 因此競標紀錄與逐次出價的結果一致，但只需要一次計算。
+ * 只會在商品所屬的 lane 執行緒上呼叫。
+ */
+final class ProxyBidResolver {
+
+    private ProxyBidResolver() {
+    }
+
+    record Step(String bidderID, int price, long seq) {
+    }
+
+    record Resolution(int finalPrice, String leaderID, long leaderSeq, List<Step> steps) {
+        boolean changed() {
+            return !steps.isEmpty();
+        }
+    }
+
+    private record Competitor(String bidderID, int amount, long seq, boolean proxy) {
+    }
+
+    private static final Comparator<Competitor> RANKING = Comparator
+            .comparingInt(Competitor::amount).reversed()
+            .thenComparingLong(Competitor::seq);
+
+    /**
+     * @param price     目前最高價
+     * @param leaderID  目前最高出價者，尚無人出價時為 null
+     * @param leaderSeq 目前最高出價的順序（最高出價者沒有代理出價時用來比較同價的先後）
+     * @param proxies   這個商品所有仍有效的代理出價
+     * @param increment 最小加價金額
+     */
+    static Resolution resolve(int price, String leaderID, long leaderSeq, Collection<ProxyBid> proxies, int increment) {
+        List<Competitor> competitors = new ArrayList<>();
+        boolean leaderHasProxy = false;
+        for (ProxyBid proxy : proxies) {
+            boolean isLeader = proxy.getBidderID().equals(leaderID);
+            leaderHasProxy |= isLeader;
+            // 上限等於目前價格時，只有比目前最高出價更早設定的代理出價才算贏
+            if (isLeader || proxy.getMaxPrice() > price
+                    || (proxy.getMaxPrice() == price && proxy.getSeq() < leaderSeq)) {
+                competitors.add(new Competitor(proxy.getBidderID(), proxy.getMaxPrice(), proxy.getSeq(), true));
+            }
+        }
+        if (leaderID != null && !leaderHasProxy) {
+            competitors.add(new Competitor(leaderID, price, leaderSeq, false));
+        }
+        if (competitors.isEmpty()) {
+            return new Resolution(price, leaderID, leaderSeq, List.of());
+        }
+        competitors.sort(RANKING);
+
+        Competitor winner = competitors.get(0);
+        int finalPrice;
+        if (competitors.size() == 1) {
+            if (winner.bidderID().equals(leaderID)) {
+                return new Resolution(price, leaderID, leaderSeq, List.of());
+            }
+            finalPrice = Math.min(winner.amount(), price + increment);
+        }
+        else {
+            int runnerUp = competitors.get(1).amount();
+            finalPrice = winner.amount() == runnerUp ? runnerUp : Math.min(winner.amount(), runnerUp + increment);
+        }
+        finalPrice = Math.max(finalPrice, price);
+
+        // 被超過的代理出價依上限由低到高各記一筆，得標者最後記一筆
+        List<Step> steps = new ArrayList<>();
+        for (int i = competitors.size() - 1; i >= 1; i--) {
+            Competitor loser = competitors.get(i);
+            if (loser.proxy() && loser.amount() > price) {
+                steps.add(new Step(loser.bidderID(), loser.amount(), loser.seq()));
+            }
+        }
+        boolean winnerIsLeader = winner.bidderID().equals(leaderID);
+        if (!winnerIsLeader || finalPrice > price) {
+            steps.add(new Step(winner.bidderID(), finalPrice, winner.seq()));
+        }
+        long winnerSeq = winnerIsLeader && !winner.proxy() ? leaderSeq : winner.seq();
+        return new Resolution(finalPrice, winner.bidderID(), winnerSeq, steps);
+    }
+}
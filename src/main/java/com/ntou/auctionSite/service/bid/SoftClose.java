@@ -0,0 +1,31 @@
+package com.ntou.auctionSite.service.bid;
+
+import java.time.LocalDateTime;
+
+/**
+ * 防狙標（soft close）規則
+ * 在截止前最後 windowSeconds 秒內成功的出價，會把截止時間延後 extensionSeconds 秒。
+ * 拍賣引擎與資料庫條件式更新（ProductRepositoryCustomImpl.placeBidAtomically）都依照這個規則。
+ */
+public final class SoftClose {
+
+    private SoftClose() {
+    }
+
+    //是否有啟用防狙標
+    public static boolean enabled(int windowSeconds, int extensionSeconds) {
+        return windowSeconds > 0 && extensionSeconds > 0;
+    }
+
+    //回傳延長後的截止時間，不需要延長時回傳 null
+    public static LocalDateTime extendedEnd(LocalDateTime auctionEndTime, int windowSeconds, int extensionSeconds,
+                                            LocalDateTime bidTime) {
+        if (auctionEndTime == null || !enabled(windowSeconds, extensionSeconds)) {
+            return null;
+        }
+        if (!bidTime.plusSeconds(windowSeconds).isAfter(auctionEndTime)) {
+            return null;
+        }
+        return auctionEndTime.plusSeconds(extensionSeconds);
+    }
+}
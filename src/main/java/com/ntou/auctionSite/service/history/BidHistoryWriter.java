@@ -0,0 +1,356 @@
+package com.ntou.auctionSite.service.history;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 競標紀錄的批次寫入器（group commit）
+ * ASYNC 模式下出價流程只把紀錄放進有界佇列，由背景執行緒每累積 batch-size 筆或每 flush-interval-ms 毫秒
+ * 以 unordered bulk insert 一次寫入；應用程式關閉時會把佇列中剩下的紀錄寫完。
+ * SYNC 模式則維持每筆直接寫入，適合需要「回應成功即已落地」的部署。
+ * 紀錄的 historyID 在建立時就已產生，重試時重複的部分只會得到 duplicate key 錯誤，不會寫入兩次。
+ * ASYNC 模式下一批紀錄重試 MAX_ATTEMPTS 次仍失敗（資料庫暫時無法連線）時，等待 retry-backoff-ms（指數遞增）後放回佇列，
+ * 最多放回 MAX_REQUEUES 次；超過次數、佇列已滿或正在關閉時才放棄，並記在 bid.history.dropped
+ * （有啟用 BidJournal 時，這些出價仍在 journal 中，下次啟動會補寫）。
+ * 需要知道何時真正落地的呼叫端（例如 BidJournal）可以傳入 onWritten，寫入成功後才會被呼叫。
+ */
+@Component
+public class BidHistoryWriter {
+
+    public enum DurabilityMode { SYNC, ASYNC }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_REQUEUES = 5;
+    private static final long WAKE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final Runnable NOTHING = () -> { };
+
+    // 佇列中的一筆紀錄、寫入成功後的回呼，以及已經放回佇列的次數
+    private record Pending(bidHistory history, Runnable onWritten, int requeues) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final BidHistoryRepository bidHistoryRepository;
+    private final DurabilityMode mode;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long retryBackoffMs;
+    private final BlockingQueue<Pending> queue;
+    // 已接受但尚未寫入（含正在寫入）的筆數，flush() 以此判斷是否全部落地
+    private final AtomicLong pending = new AtomicLong();
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter overflowCounter;
+    private final Counter requeuedCounter;
+    private final Counter droppedCounter;
+    // 重試次數用完的批次，等待退避時間後放回佇列（只有 ASYNC 模式會建立）
+    private final ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+    private volatile boolean flushRequested = false;
+    private final Thread worker;
+
+    @Autowired
+    public BidHistoryWriter(MongoTemplate mongoTemplate,
+                            BidHistoryRepository bidHistoryRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${auction.history.mode:async}") String mode,
+                            @Value("${auction.history.batch-size:500}") int batchSize,
+                            @Value("${auction.history.flush-interval-ms:5}") long flushIntervalMs,
+                            @Value("${auction.history.queue-capacity:100000}") int queueCapacity,
+                            @Value("${auction.history.retry-backoff-ms:1000}") long retryBackoffMs) {
+        this(mongoTemplate, bidHistoryRepository, meterRegistry,
+                DurabilityMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)), batchSize, flushIntervalMs, queueCapacity, retryBackoffMs);
+    }
+
+    public BidHistoryWriter(MongoTemplate mongoTemplate,
+                            BidHistoryRepository bidHistoryRepository,
+                            MeterRegistry meterRegistry,
+                            DurabilityMode mode,
+                            int batchSize,
+                            long flushIntervalMs,
+                            int queueCapacity,
+                            long retryBackoffMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.bidHistoryRepository = bidHistoryRepository;
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, flushIntervalMs));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.retryBackoffMs = Math.max(0, retryBackoffMs);
+
+        Gauge.builder("bid.history.queue.depth", queue, BlockingQueue::size)
+                .description("Bid history records waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("bid.history.flush.latency")
+                .description("Time spent writing one batch of bid history records")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.writtenCounter = meterRegistry.counter("bid.history.written");
+        this.failedCounter = meterRegistry.counter("bid.history.failed");
+        this.overflowCounter = meterRegistry.counter("bid.history.overflow");
+        this.requeuedCounter = meterRegistry.counter("bid.history.requeued");
+        this.droppedCounter = meterRegistry.counter("bid.history.dropped");
+
+        this.worker = new Thread(this::run, "bid-history-writer");
+        this.worker.setDaemon(true);
+        if (mode == DurabilityMode.ASYNC) {
+            this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "bid-history-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.worker.start();
+        }
+        else {
+            this.retryScheduler = null;
+        }
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    //寫入一筆競標紀錄：SYNC 立即寫入；ASYNC 放入佇列，佇列滿了或已關閉時改由呼叫端直接寫入
+    public void write(bidHistory history) {
+        write(history, NOTHING);
+    }
+
+    //同上，寫入成功後呼叫 onWritten（寫入失敗不會呼叫）
+    public void write(bidHistory history, Runnable onWritten) {
+        if (mode == DurabilityMode.SYNC) {
+            bidHistoryRepository.save(history);
+            onWritten.run();
+            return;
+        }
+        pending.incrementAndGet();
+        Pending entry = new Pending(history, onWritten, 0);
+        if (!running || !queue.offer(entry)) {
+            overflowCounter.increment();
+            writeBatch(List.of(entry));
+        }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    //把目前為止接受的紀錄全部寫入後才回傳（背景執行緒手上的批次也會等待完成）
+    public void flush() {
+        flushRequested = true;
+        try {
+            drainAndWrite();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pending.get() > 0 && System.nanoTime() < deadline) {
+                drainAndWrite();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        finally {
+            flushRequested = false;
+        }
+    }
+
+    //已放棄（未寫入資料庫）的紀錄筆數
+    public long droppedRecords() {
+        return (long) droppedCounter.count();
+    }
+
+    // 關閉時停止背景執行緒並把剩下的紀錄寫完；還在退避等待的批次直接放回佇列一起寫
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (retryScheduler != null) {
+            for (Runnable requeue : retryScheduler.shutdownNow()) {
+                requeue.run();
+            }
+        }
+        flush();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                // 第一筆進來後最多再等 flush-interval-ms，或湊滿 batch-size 就寫入
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    // 分段等待，關閉或 flush() 時不必等到整個時間窗結束
+                    Pending next = queue.poll(Math.min(remaining, WAKE_CHECK_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                    else if (!running || flushRequested) {
+                        break;
+                    }
+                }
+                writeBatch(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e) {
+                System.err.println("Error in bid history writer: " + e.getMessage());
+            }
+        }
+    }
+
+    private void drainAndWrite() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<bidHistory> histories = new ArrayList<>(batch.size());
+        for (Pending entry : batch) {
+            histories.add(entry.history());
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, bidHistory.class)
+                            .insert(histories)
+                            .execute();
+                    writtenCounter.increment(batch.size());
+                    notifyWritten(batch, Set.of());
+                    return;
+                }
+                catch (BulkOperationException e) {
+                    // unordered：其他紀錄已經寫入，只有個別紀錄失敗（重試時的 duplicate key 代表先前已寫入）
+                    Set<Integer> failedIndexes = new HashSet<>();
+                    e.getErrors().stream().filter(error -> error.getCode() != 11000)
+                            .forEach(error -> failedIndexes.add(error.getIndex()));
+                    long failed = failedIndexes.size();
+                    writtenCounter.increment(batch.size() - failed);
+                    if (failed > 0) {
+                        // 個別紀錄的錯誤（非連線問題）重試也不會成功，直接放棄
+                        failedCounter.increment(failed);
+                        droppedCounter.increment(failed);
+                        System.err.println("Error writing " + failed + " bid history records: " + e.getMessage());
+                    }
+                    notifyWritten(batch, failedIndexes);
+                    return;
+                }
+                catch (Exception e) {
+                    if (attempt >= MAX_ATTEMPTS) {
+                        failedCounter.increment(batch.size());
+                        System.err.println("Error writing bid history batch of " + batch.size() + ": " + e.getMessage());
+                        requeueLater(batch);
+                        return;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50L * attempt));
+                }
+            }
+        }
+        finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    // 退避後把批次放回佇列；pending 在放回前就先加上，flush() 會等待這些紀錄
+    private void requeueLater(List<Pending> batch) {
+        List<Pending> retry = new ArrayList<>(batch.size());
+        for (Pending entry : batch) {
+            if (entry.requeues() < MAX_REQUEUES) {
+                retry.add(new Pending(entry.history(), entry.onWritten(), entry.requeues() + 1));
+            }
+        }
+        drop(batch.size() - retry.size());
+        if (retry.isEmpty()) {
+            return;
+        }
+        if (retryScheduler == null || !running) {
+            drop(retry.size());
+            return;
+        }
+        pending.addAndGet(retry.size());
+        long delay = retryBackoffMs << Math.min(retry.get(0).requeues() - 1, 10);
+        try {
+            retryScheduler.schedule(() -> requeue(retry), delay, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            // 正在關閉
+            pending.addAndGet(-retry.size());
+            drop(retry.size());
+        }
+    }
+
+    private void requeue(List<Pending> retry) {
+        for (Pending entry : retry) {
+            if (queue.offer(entry)) {
+                requeuedCounter.increment();
+            }
+            else {
+                pending.decrementAndGet();
+                drop(1);
+            }
+        }
+    }
+
+    private void drop(int count) {
+        if (count > 0) {
+            droppedCounter.increment(count);
+            System.err.println("Dropped " + count + " bid history records after repeated write failures");
+        }
+    }
+
+    private static void notifyWritten(List<Pending> batch, Set<Integer> failedIndexes) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (failedIndexes.contains(i)) {
+                continue;
+            }
+            try {
+                batch.get(i).onWritten().run();
+            }
+            catch (Exception e) {
+                System.err.println("Error in bid history write callback: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.ntou.auctionSite.service.history;
+
+import com.ntou.auctionSite.dto.history.BidLadderResponse;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 拍賣出價排行（bid ladder）
+ * 進行中的拍賣在記憶體中保存依金額排序、最多 capacity 筆的出價與不重複買家集合，出價時直接更新；
+ * 第一次查詢時才從資料庫載入既有的出價並合併（以 historyID 去除重複）。
+ * 已結束的拍賣、或翻頁超過記憶體保存的範圍時，改用 (productID, bidAmount desc, timeStamp) 索引查詢。
+ * 翻頁使用 cursor（上一頁最後一筆的金額、時間、historyID），不使用 skip。
+ */
+@Service
+public class BidLadderService {
+
+    // 排序：金額由高到低，同價時較早者在前，最後以 historyID 區分
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt(Entry::bidAmount).reversed()
+            .thenComparing(Entry::timeStamp)
+            .thenComparing(Entry::historyID);
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductRepository productRepository;
+    private final int capacity;
+    private final int maxPageSize;
+    private final Map<String, Ladder> ladders = new ConcurrentHashMap<>();
+
+    // 時間取到毫秒，與 MongoDB 儲存的精度一致，cursor 在記憶體與資料庫間才能接續
+    record Entry(String historyID, String bidderID, int bidAmount, LocalDateTime timeStamp) {
+        static Entry of(bidHistory history) {
+            return new Entry(history.getHistoryID(), history.getUserID(), history.getBidAmount(),
+                    history.getTimeStamp().truncatedTo(ChronoUnit.MILLIS));
+        }
+    }
+
+    private static final class Ladder {
+        final ConcurrentSkipListSet<Entry> top = new ConcurrentSkipListSet<>(ORDER);
+        final Set<String> bidders = ConcurrentHashMap.newKeySet();
+        volatile boolean loaded;
+        // 記憶體中是否包含這個拍賣的所有出價（沒有被截掉過），是的話翻頁不需要查詢資料庫
+        volatile boolean complete = true;
+    }
+
+    @Autowired
+    public BidLadderService(MongoTemplate mongoTemplate,
+                            ProductRepository productRepository,
+                            @Value("${auction.ladder.capacity:200}") int capacity,
+                            @Value("${auction.ladder.max-page-size:100}") int maxPageSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.productRepository = productRepository;
+        this.capacity = Math.max(1, capacity);
+        this.maxPageSize = Math.max(1, maxPageSize);
+    }
+
+    //出價流程寫入競標紀錄時呼叫：進行中的拍賣直接更新記憶體中的排行
+    public void record(bidHistory history) {
+        add(ladders.computeIfAbsent(history.getProductID(), id -> new Ladder()), Entry.of(history));
+    }
+
+    //手動新增的競標紀錄：只有已在記憶體中的排行才更新，不為已結束的拍賣建立排行
+    public void recordIfTracked(bidHistory history) {
+        Ladder ladder = ladders.get(history.getProductID());
+        if (ladder != null) {
+            add(ladder, Entry.of(history));
+        }
+    }
+
+    //拍賣結束時移除記憶體中的排行，之後改由資料庫查詢
+    public void evict(String productID) {
+        ladders.remove(productID);
+    }
+
+    /**
+     * 取得出價排行
+     *
+     * @param limit  每頁筆數
+     * @param cursor 上一頁回傳的 nextCursor，第一頁為 null
+     */
+    public BidLadderResponse getLadder(String productID, int limit, String cursor) {
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        Entry after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor);
+        Ladder ladder = ladders.get(productID);
+        if (ladder == null && isLive(productID)) {
+            ladder = ladders.computeIfAbsent(productID, id -> new Ladder());
+        }
+        if (ladder == null) {
+            // 已結束的拍賣：全部由資料庫查詢
+            List<Entry> page = queryAfter(productID, after, limit + 1);
+            return response(productID, false, countDistinctBidders(productID), page, limit);
+        }
+
+        ensureLoaded(productID, ladder);
+        List<Entry> page = new ArrayList<>(limit + 1);
+        Iterator<Entry> iterator = (after == null ? ladder.top : ladder.top.tailSet(after, false)).iterator();
+        while (iterator.hasNext() && page.size() <= limit) {
+            page.add(iterator.next());
+        }
+        if (page.size() <= limit && !ladder.complete) {
+            // 記憶體只保存前 capacity 筆，更舊的出價從資料庫接續
+            Entry last = page.isEmpty() ? after : page.get(page.size() - 1);
+            page.addAll(queryAfter(productID, last, limit + 1 - page.size()));
+        }
+        return response(productID, true, ladder.bidders.size(), page, limit);
+    }
+
+    // ===== 內部 =====
+
+    // 寫入時鎖住單一商品的排行（同時截掉多餘的尾端不會截過頭），讀取不需要鎖
+    private void add(Ladder ladder, Entry entry) {
+        ladder.bidders.add(entry.bidderID());
+        synchronized (ladder) {
+            ladder.top.add(entry);
+            while (ladder.top.size() > capacity) {
+                ladder.top.pollLast();
+                ladder.complete = false;
+            }
+        }
+    }
+
+    // 第一次查詢時合併資料庫中既有的出價（出價流程早已寫入記憶體的部分以 historyID 去重）
+    private void ensureLoaded(String productID, Ladder ladder) {
+        if (ladder.loaded) {
+            return;
+        }
+        synchronized (ladder) {
+            if (ladder.loaded) {
+                return;
+            }
+            List<Entry> stored = queryAfter(productID, null, capacity + 1);
+            for (Entry entry : stored) {
+                add(ladder, entry);
+            }
+            if (stored.size() > capacity) {
+                ladder.complete = false;
+            }
+            ladder.bidders.addAll(distinctBidders(productID));
+            ladder.loaded = true;
+        }
+    }
+
+    private boolean isLive(String productID) {
+        Product product = productRepository.findById(productID).orElse(null);
+        return product != null && product.getProductType() == ProductTypes.AUCTION
+                && product.getProductStatus() == Product.ProductStatuses.ACTIVE;
+    }
+
+    private BidLadderResponse response(String productID, boolean live, int distinctBidders, List<Entry> page, int limit) {
+        // 多取一筆用來判斷是否還有下一頁
+        boolean hasMore = page.size() > limit;
+        List<Entry> visible = hasMore ? page.subList(0, limit) : page;
+        List<BidLadderResponse.Rung> rungs = new ArrayList<>(visible.size());
+        for (Entry entry : visible) {
+            rungs.add(new BidLadderResponse.Rung(entry.bidderID(), entry.bidAmount(), entry.timeStamp()));
+        }
+        String nextCursor = hasMore ? encodeCursor(visible.get(visible.size() - 1)) : null;
+        return new BidLadderResponse(productID, live, distinctBidders, rungs, nextCursor);
+    }
+
+    // 依 (productID, bidAmount desc, timeStamp asc, _id asc) 排序，從 after 之後取 limit 筆
+    private List<Entry> queryAfter(String productID, Entry after, int limit) {
+        Criteria criteria = Criteria.where("productID").is(productID);
+        if (after != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("bidAmount").lt(after.bidAmount()),
+                    Criteria.where("bidAmount").is(after.bidAmount()).and("timeStamp").gt(after.timeStamp()),
+                    Criteria.where("bidAmount").is(after.bidAmount()).and("timeStamp").is(after.timeStamp())
+                            .and("_id").gt(after.historyID()));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.desc("bidAmount"), Sort.Order.asc("timeStamp"), Sort.Order.asc("_id")))
+                .limit(limit);
+        List<Entry> entries = new ArrayList<>();
+        for (bidHistory history : mongoTemplate.find(query, bidHistory.class)) {
+            entries.add(Entry.of(history));
+        }
+        return entries;
+    }
+
+    private int countDistinctBidders(String productID) {
+        return distinctBidders(productID).size();
+    }
+
+    private List<String> distinctBidders(String productID) {
+        return mongoTemplate.findDistinct(new Query(Criteria.where("productID").is(productID)),
+                "userID", bidHistory.class, String.class);
+    }
+
+    // cursor：金額|epoch 毫秒|historyID，以 URL-safe Base64 編碼
+    static String encodeCursor(Entry entry) {
+        long millis = entry.timeStamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String raw = entry.bidAmount() + "|" + millis + "|" + entry.historyID();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Entry decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[1])), ZoneId.systemDefault());
+            return new Entry(parts[2], null, Integer.parseInt(parts[0]), time);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -27,6 +27,12 @@ public class HistoryService {
     @Autowired
     private ReviewHistoryRepository reviewHistoryRepository;
 
+    @Autowired
+    private BidHistoryWriter bidHistoryWriter;
+
+    @Autowired
+    private BidLadderService bidLadderService;
+
     // ===== 通用 History 操作 =====
 
     public List<History> getAllHistoriesByUserId(String userId) {
@@ -89,7 +95,21 @@ public class HistoryService {
     }
 
     public bidHistory saveBidHistory(bidHistory history) {
-        return bidHistoryRepository.save(history);
+        bidHistory saved = bidHistoryRepository.save(history);
+        bidLadderService.recordIfTracked(saved);
+        return saved;
+    }
+
+    // 出價流程使用：更新記憶體中的出價排行，再交給 BidHistoryWriter 批次寫入，依 auction.history.mode 決定同步或非同步
+    public void recordBidHistory(bidHistory history) {
+        bidLadderService.record(history);
+        bidHistoryWriter.write(history);
+    }
+
+    // 同上，寫入成功後呼叫 onWritten（BidJournal 用來判斷 segment 中的出價是否都已落地）
+    public void recordBidHistory(bidHistory history, Runnable onWritten) {
+        bidLadderService.record(history);
+        bidHistoryWriter.write(history, onWritten);
     }
 
     // ===== BrowseHistory 操作 =====
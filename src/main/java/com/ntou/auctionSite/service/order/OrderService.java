@@ -12,7 +12,9 @@ import com.ntou.auctionSite.repository.ProductRepository;
 import com.ntou.auctionSite.service.Coupon.CouponService;
 import com.ntou.auctionSite.service.Coupon.UserCouponService;
 import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.utils.IdGenerator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -29,20 +31,30 @@ public class OrderService {
     private final ProductService productService;
     private final CouponService couponService;
     private final UserCouponService userCouponService;
+    private final IdGenerator idGenerator;
     //結帳功能:建立訂單、檢查與更新庫存
     public Order createOrder(Order order, String buyerID, ProductTypes types){
+        return createOrder(order, buyerID, types, null);
+    }
+
+    //同上，但使用事先保留的訂單ID（拍賣結算重試時沿用同一個ID）
+    //拍賣訂單先以 insert 寫入，該ID的訂單已存在時視為先前已建立；之後才以條件式更新扣庫存（每張訂單只扣一次），
+    //因此寫入訂單或扣庫存任何一步失敗後重試，都不會產生第二張訂單或重複扣庫存
+    public Order createOrder(Order order, String buyerID, ProductTypes types, String reservedOrderID){
+        String orderID = reservedOrderID != null ? reservedOrderID : idGenerator.next(IdGenerator.ORDER);
         Cart cart= order.getCart();
         List<OrderItem> orderItems = new ArrayList<>();
         double totalPrice=0.0;
         double defaultShippingFee=100.0;
         for (Cart.CartItem item : cart.getItems()) {
-            Product product = productService.getProductById(item.getProductId());
+            Product product = productService.getProductForUpdate(item.getProductId());
             if (product == null) {
                 throw new NoSuchElementException("Product not found: " + item.getProductId());
             }
 
             if (types == ProductTypes.AUCTION) {//拍賣商品建立訂單
-                if (product.getProductStock() < item.getQuantity()) {
+                // 這張訂單先前已扣過庫存（上次重試中斷）時不再檢查
+                if (!orderID.equals(product.getStockDeductedOrderID()) && product.getProductStock() < item.getQuantity()) {
                     throw new IllegalStateException("Out of stock! product: " + product.getProductName());
                 }
                 // 先前競拍成功時，會將該商品設為SOLD
@@ -51,12 +63,6 @@ public class OrderService {
                     throw new IllegalStateException(
                             "The auction has not yet completed. Product ID: " + product.getProductID());
                 }
-                // 扣庫存
-                product.setProductStock(product.getProductStock() - item.getQuantity());
-                if(product.getProductStock()==0){//庫存數量變成0要設為INACTIVE
-                    product.setProductStatus(Product.ProductStatuses.INACTIVE);
-                }
-                productRepository.save(product);
 
                 orderItems.add(new OrderItem(
                         product.getProductID(),
@@ -75,7 +81,7 @@ public class OrderService {
                 if(product.getProductStock()==0){
                     product.setProductStatus(Product.ProductStatuses.INACTIVE);
                 }
-                productRepository.save(product);
+                productService.productUpdated(saveStock(product));
 
                 orderItems.add(new OrderItem(
                         product.getProductID(),
@@ -86,16 +92,32 @@ public class OrderService {
             }
             totalPrice+=product.getProductPrice()*item.getQuantity();
         }
-        //訂單ID設為隨機10碼
         order.setBuyerID(buyerID);
-        order.setOrderID("ORD" + UUID.randomUUID().toString().substring(0, 10).toUpperCase());//訂單用隨機id
+        order.setOrderID(orderID);
         order.setOrderType(types);
         order.setOrderTime(LocalDateTime.now());
         order.setOrderStatus(Order.OrderStatuses.PENDING);
         order.setOrderItems(orderItems);
         order.setShippingFee(defaultShippingFee);//運費預設100元
         order.setTotalPrice(totalPrice+defaultShippingFee);
-        return orderRepository.save(order);
+        if (types != ProductTypes.AUCTION) {
+            return reservedOrderID != null ? orderRepository.insert(order) : orderRepository.save(order);
+        }
+        Order saved;
+        try {
+            saved = orderRepository.insert(order);
+        }
+        catch (DuplicateKeyException e) {
+            // 上一次已建立訂單（可能在扣庫存前中斷），沿用既有的訂單繼續扣庫存
+            saved = orderRepository.findByOrderID(orderID).orElseThrow(() -> e);
+        }
+        for (OrderItem item : saved.getOrderItems()) {
+            Product updated = productRepository.deductAuctionStock(item.getProductID(), orderID, item.getQuantity(), LocalDateTime.now());
+            if (updated != null) {
+                productService.productUpdated(updated);
+            }
+        }
+        return saved;
     }
 
     //付款功能
@@ -163,7 +185,7 @@ public class OrderService {
             }
         }
         if(sendProduct!=null){
-            Product product=productService.getProductById(sendProduct.getProductID());
+            Product product=productService.getProductForUpdate(sendProduct.getProductID());
             // createOrder 已經扣了買的那 1 件，這裡只需要扣送的那 1 件
             if (product.getProductStock() < 1) {
                 throw new IllegalStateException(
@@ -175,8 +197,8 @@ public class OrderService {
             if (product.getProductStock() == 0) {
                 product.setProductStatus(Product.ProductStatuses.INACTIVE);
             }
-            productRepository.save(product);
-            
+            productService.productUpdated(saveStock(product));
+
             // 返回送的商品價格作為折扣金額
             return sendProduct.getPrice();
         }
@@ -185,6 +207,15 @@ public class OrderService {
         }
     }
 
+    //只寫回庫存與狀態，不會蓋掉讀取之後才寫回的瀏覽次數與評分
+    private Product saveStock(Product product) {
+        Product saved = productRepository.saveFields(product, List.of("productStock", "productStatus"));
+        if (saved == null) {
+            throw new NoSuchElementException("Product not found: " + product.getProductID());
+        }
+        return saved;
+    }
+
     public Order getOrderById(String orderID){
             // 使用 findByOrderID 明確查詢 orderID 欄位，而不是依賴 findById（可能查詢 _id）
             return orderRepository.findByOrderID(orderID.trim())
@@ -0,0 +1,123 @@
+package com.ntou.auctionSite.service.product;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 商品分類索引：記錄每個分類中 ACTIVE 商品的數量
+ * 以 productID -> 分類 記錄每個 ACTIVE 商品目前計入的分類，商品被修改時依新的狀態與分類調整數量，
+ * 同一個商品重複更新不會重複計算。分類以 ConcurrentSkipListMap 依名稱排序保存，
+ * 查詢分類列表與數量只需要 O(分類數)，不再每次讀取整個商品集合。
+ * 啟動時以單一 aggregation 串流 ACTIVE 商品重建；重建完成前 isReady() 為 false，由呼叫端改用完整掃描。
+ */
+@Component
+public class CategoryIndex {
+
+    private final ProductRepository productRepository;
+    // productID -> 目前計入的分類（只有 ACTIVE 且有分類的商品）
+    private final Map<String, String> categoryOf = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Integer> counts = new ConcurrentSkipListMap<>();
+    // 一般更新取 read lock 可以同時進行，重建時取 write lock，避免重建期間的更新被覆蓋
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public CategoryIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 商品新增、修改、上下架、售出後呼叫，依商品目前的狀態與分類更新
+    public void update(Product product) {
+        if (product == null || product.getProductID() == null) {
+            return;
+        }
+        String category = product.getProductStatus() == Product.ProductStatuses.ACTIVE
+                ? normalize(product.getProductCategory()) : null;
+        set(product.getProductID(), category);
+    }
+
+    // 商品刪除後呼叫
+    public void remove(String productID) {
+        if (productID != null) {
+            set(productID, null);
+        }
+    }
+
+    // 有 ACTIVE 商品的分類，依名稱排序
+    public List<String> categories() {
+        return new ArrayList<>(counts.keySet());
+    }
+
+    // 每個分類的 ACTIVE 商品數，依分類名稱排序
+    public Map<String, Integer> counts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try (Stream<Product> products = productRepository.streamActiveCategories()) {
+            categoryOf.clear();
+            counts.clear();
+            products.forEach(product -> apply(product.getProductID(), normalize(product.getProductCategory())));
+            ready = true;
+            System.out.println("Category index rebuilt with " + counts.size() + " categories, "
+                    + categoryOf.size() + " active products");
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding category index: " + e.getMessage());
+        }
+        finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    private void set(String productID, String category) {
+        rebuildLock.readLock().lock();
+        try {
+            apply(productID, category);
+        }
+        finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    // 同一個商品的更新在 compute 中依序執行，舊分類減一、新分類加一
+    private void apply(String productID, String category) {
+        categoryOf.compute(productID, (id, previous) -> {
+            if (previous != null && !previous.equals(category)) {
+                counts.computeIfPresent(previous, (name, count) -> count <= 1 ? null : count - 1);
+            }
+            if (category != null && !category.equals(previous)) {
+                counts.merge(category, 1, Integer::sum);
+            }
+            return category;
+        });
+    }
+
+    private static String normalize(String category) {
+        if (category == null) {
+            return null;
+        }
+        String trimmed = category.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
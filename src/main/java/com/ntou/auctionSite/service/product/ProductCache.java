@@ -0,0 +1,171 @@
+package com.ntou.auctionSite.service.product;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 商品詳細資料的 read-through 快取
+ * 依 productID 分成多個 segment，每個 segment 是一個有容量上限的 LRU（access-order LinkedHashMap），
+ * 超過容量時淘汰最久未讀取的商品，超過存活時間（TTL）的商品在下次讀取時重新從資料庫載入。
+ * 商品被修改時由寫入的地方呼叫 invalidate；每個 segment 有版本號，載入期間同一 segment 有失效時不放入快取，
+ * 避免把失效前讀到的舊資料寫回快取。
+ * 拍賣商品的最高價隨出價變動，使用較短的 auctionTtlMs（0 表示拍賣商品不進快取，每次都讀資料庫）。
+ * 快取回傳的是共用的物件，只能讀取；要修改商品請用 ProductService.getProductForUpdate 從資料庫讀取。
+ */
+@Component
+public class ProductCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long auctionTtlNanos;
+    private final LongSupplier clock;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter sizeEvictionCounter;
+    private final Counter expiredEvictionCounter;
+
+    private record Entry(Product product, long expiresAt) {
+    }
+
+    private final class Segment extends LinkedHashMap<String, Entry> {
+        final int capacity;
+        long version;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                sizeEvictionCounter.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Autowired
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${auction.product-cache.enabled:true}") boolean enabled,
+                        @Value("${auction.product-cache.max-size:10000}") int maxSize,
+                        @Value("${auction.product-cache.ttl-ms:30000}") long ttlMs,
+                        @Value("${auction.product-cache.auction-ttl-ms:0}") long auctionTtlMs) {
+        this(meterRegistry, enabled, maxSize, ttlMs, auctionTtlMs, System::nanoTime);
+    }
+
+    public ProductCache(MeterRegistry meterRegistry, boolean enabled, int maxSize, long ttlMs, long auctionTtlMs,
+                        LongSupplier clock) {
+        this.enabled = enabled && maxSize > 0 && ttlMs > 0;
+        this.ttlNanos = Math.max(0, ttlMs) * 1_000_000;
+        this.auctionTtlNanos = Math.max(0, auctionTtlMs) * 1_000_000;
+        this.clock = clock;
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+
+        this.hitCounter = meterRegistry.counter("product.cache.requests", "result", "hit");
+        this.missCounter = meterRegistry.counter("product.cache.requests", "result", "miss");
+        this.sizeEvictionCounter = meterRegistry.counter("product.cache.evictions", "cause", "size");
+        this.expiredEvictionCounter = meterRegistry.counter("product.cache.evictions", "cause", "expired");
+        Gauge.builder("product.cache.size", this, ProductCache::size)
+                .description("Products currently held in the product cache")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //有未過期的快取就直接回傳，否則以 loader 從資料庫載入；loader 拋出的例外（例如商品不存在）直接往外拋，不快取
+    public Product get(String productID, Function<String, Product> loader) {
+        if (!enabled) {
+            return loader.apply(productID);
+        }
+        Segment segment = segmentOf(productID);
+        long version;
+        synchronized (segment) {
+            Entry entry = segment.get(productID);
+            if (entry != null) {
+                if (clock.getAsLong() - entry.expiresAt() < 0) {
+                    hitCounter.increment();
+                    return entry.product();
+                }
+                segment.remove(productID);
+                expiredEvictionCounter.increment();
+            }
+            version = segment.version;
+        }
+        missCounter.increment();
+        // 在鎖外讀資料庫，同一 segment 的其他商品不用等待
+        Product product = loader.apply(productID);
+        long ttl = ttlOf(product);
+        if (ttl > 0) {
+            synchronized (segment) {
+                if (segment.version == version) {
+                    segment.put(productID, new Entry(product, clock.getAsLong() + ttl));
+                }
+            }
+        }
+        return product;
+    }
+
+    //商品被修改或刪除時呼叫，下次讀取會重新從資料庫載入
+    public void invalidate(String productID) {
+        if (!enabled || productID == null) {
+            return;
+        }
+        Segment segment = segmentOf(productID);
+        synchronized (segment) {
+            segment.version++;
+            segment.remove(productID);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.version++;
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private long ttlOf(Product product) {
+        if (product == null) {
+            return 0;
+        }
+        return product.getProductType() == ProductTypes.AUCTION ? auctionTtlNanos : ttlNanos;
+    }
+
+    private Segment segmentOf(String productID) {
+        int h = productID.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
@@ -0,0 +1,101 @@
+package com.ntou.auctionSite.service.product;
+
+import com.ntou.auctionSite.model.product.Product;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * 商品列表的 cursor（keyset 分頁）
+ * 記錄排序方式與上一頁最後一筆商品的排序值、productID，下一頁從這一筆之後開始查詢，
+ * 翻頁期間有新商品上架也不會重複或漏掉。
+ * 排序值依型別編碼（整數、小數、時間以 epoch 毫秒、字串、null），以 URL-safe Base64 編碼成不透明的字串。
+ */
+public record ProductCursor(String sortBy, Sort.Direction direction, Object value, String productID) {
+
+    //以這一頁最後一筆商品建立下一頁的 cursor
+    static ProductCursor after(Product last, String sortBy, Sort.Direction direction) {
+        return new ProductCursor(sortBy, direction, sortValue(last, sortBy), last.getProductID());
+    }
+
+    // 欄位名稱需與 ProductService.SORTABLE_FIELDS 一致
+    static Object sortValue(Product product, String sortBy) {
+        switch (sortBy) {
+            case "productPrice":
+                return product.getProductPrice();
+            case "productStock":
+                return product.getProductStock();
+            case "createdTime":
+                return product.getCreatedTime();
+            case "updatedTime":
+                return product.getUpdatedTime();
+            case "auctionEndTime":
+                return product.getAuctionEndTime();
+            case "nowHighestBid":
+                return product.getNowHighestBid();
+            case "viewCount":
+                return product.getViewCount();
+            case "averageRating":
+                return product.getAverageRating();
+            case "reviewCount":
+                return product.getReviewCount();
+            case "totalSales":
+                return product.getTotalSales();
+            default:
+                return product.getProductName();
+        }
+    }
+
+    // 格式：排序欄位|方向|型別|productID|值（值放最後，字串中可以包含 |）
+    public String encode() {
+        String type;
+        String raw;
+        if (value == null) {
+            type = "n";
+            raw = "";
+        }
+        else if (value instanceof Integer number) {
+            type = "i";
+            raw = number.toString();
+        }
+        else if (value instanceof Double number) {
+            type = "d";
+            raw = number.toString();
+        }
+        else if (value instanceof LocalDateTime time) {
+            type = "t";
+            raw = String.valueOf(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        else {
+            type = "s";
+            raw = value.toString();
+        }
+        String token = sortBy + "|" + direction.name() + "|" + type + "|" + productID + "|" + raw;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 5);
+            if (!ProductService.SORTABLE_FIELDS.contains(parts[0])) {
+                throw new IllegalArgumentException("Unknown sort field");
+            }
+            Object value = switch (parts[2]) {
+                case "n" -> null;
+                case "i" -> Integer.parseInt(parts[4]);
+                case "d" -> Double.parseDouble(parts[4]);
+                case "t" -> LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[4])), ZoneId.systemDefault());
+                case "s" -> parts[4];
+                default -> throw new IllegalArgumentException("Unknown value type");
+            };
+            return new ProductCursor(parts[0], Sort.Direction.valueOf(parts[1]), value, parts[3]);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
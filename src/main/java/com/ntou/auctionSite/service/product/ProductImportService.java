@@ -0,0 +1,271 @@
+package com.ntou.auctionSite.service.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.ntou.auctionSite.dto.product.ProductImportResult;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.utils.IdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 商品批次匯入
+ * 逐行讀取 NDJSON（每行一個商品 JSON）或 CSV（第一行為欄位名稱）的串流，每一列套用與新增商品相同的
+ * trimProductFields / validateProductFields 規則；同名檢查使用一開始取得的賣家商品名稱集合（檔案內重複的名稱也會擋下），
+ * 不再每一列查詢資料庫。通過的商品每 batch-size 筆以 unordered bulk insert 寫入，
+ * 每一列的結果寫入後立即交給 onResult 回傳，記憶體中最多只保留一批商品。
+ * 只匯入新增商品時可以設定的欄位，瀏覽數、評價、出價等欄位一律從 0 開始。
+ */
+@Service
+public class ProductImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    // 匯入結束時的統計
+    public record Summary(int created, int failed) {
+    }
+
+    private static final int MAX_ID_ATTEMPTS = 3;
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ProductService productService;
+    private final ProductRepository productRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdGenerator idGenerator;
+    private final int batchSize;
+
+    // 一列通過驗證、等待寫入的商品
+    private record Row(int line, Product product) {
+    }
+
+    @Autowired
+    public ProductImportService(ProductService productService,
+                                ProductRepository productRepository,
+                                MongoTemplate mongoTemplate,
+                                ObjectMapper objectMapper,
+                                IdGenerator idGenerator,
+                                @Value("${auction.product-import.batch-size:500}") int batchSize) {
+        this.productService = productService;
+        this.productRepository = productRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.idGenerator = idGenerator;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public Summary importProducts(InputStream input, Format format, String sellerID,
+                                  Consumer<ProductImportResult> onResult) throws IOException {
+        Set<String> names = new HashSet<>();
+        for (Product existing : productRepository.findProductNamesBySellerID(sellerID)) {
+            if (existing.getProductName() != null) {
+                names.add(existing.getProductName().trim());
+            }
+        }
+        int[] counts = new int[2];// 成功、失敗
+        Consumer<ProductImportResult> counting = result -> {
+            counts[result.getStatus() == ProductImportResult.Status.CREATED ? 0 : 1]++;
+            onResult.accept(result);
+        };
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Row> batch = new ArrayList<>(batchSize);
+        List<String> header = null;
+        String text;
+        int line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (line == 1 && text.startsWith("\uFEFF")) {//去除 BOM
+                text = text.substring(1);
+            }
+            if (text.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && header == null) {
+                header = parseCsvLine(text);
+                continue;
+            }
+            try {
+                Product product = format == Format.CSV ? fromCsv(header, parseCsvLine(text)) : fromJson(text);
+                prepare(product, sellerID);
+                if (!names.add(product.getProductName())) {
+                    throw new IllegalStateException("同一個賣家已經存在同名商品！");
+                }
+                batch.add(new Row(line, product));
+            }
+            catch (Exception e) {
+                counting.accept(ProductImportResult.failed(line, e.getMessage()));
+                continue;
+            }
+            if (batch.size() >= batchSize) {
+                insert(batch, counting);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch, counting);
+        }
+        return new Summary(counts[0], counts[1]);
+    }
+
+    // 與 ProductService.createProduct 相同的處理：去除空白、設定賣家與時間、驗證欄位、依庫存設定狀態
+    private void prepare(Product product, String sellerID) {
+        product.setSellerID(sellerID);
+        productService.trimProductFields(product);
+        LocalDateTime now = LocalDateTime.now();
+        product.setCreatedTime(now);
+        product.setUpdatedTime(now);
+        productService.validateProductFields(product);
+        productService.updateProductStatus(product);
+        product.setProductID(newProductID());
+    }
+
+    // 以 unordered bulk insert 寫入一批；productID 重複（例如節點編號設定重複）的商品換一個 ID 重試
+    private void insert(List<Row> batch, Consumer<ProductImportResult> onResult) {
+        List<Row> remaining = batch;
+        for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+            List<Row> retry = new ArrayList<>();
+            Map<Integer, String> failures = new HashMap<>();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)
+                        .insert(remaining.stream().map(Row::product).toList())
+                        .execute();
+            }
+            catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    failures.put(error.getIndex(), error.getCode() == DUPLICATE_KEY ? null : error.getMessage());
+                }
+            }
+            catch (Exception e) {
+                System.err.println("Error importing product batch of " + remaining.size() + ": " + e.getMessage());
+                for (Row row : remaining) {
+                    onResult.accept(ProductImportResult.failed(row.line(), "Server error: " + e.getMessage()));
+                }
+                return;
+            }
+            for (int i = 0; i < remaining.size(); i++) {
+                Row row = remaining.get(i);
+                if (!failures.containsKey(i)) {
+                    productService.productCreated(row.product());
+                    onResult.accept(ProductImportResult.created(row.line(), row.product().getProductID()));
+                }
+                else if (failures.get(i) == null && attempt < MAX_ID_ATTEMPTS) {
+                    row.product().setProductID(newProductID());
+                    retry.add(row);
+                }
+                else {
+                    onResult.accept(ProductImportResult.failed(row.line(),
+                            failures.get(i) == null ? "Duplicate productID" : failures.get(i)));
+                }
+            }
+            remaining = retry;
+        }
+    }
+
+    private String newProductID() {
+        return idGenerator.next(IdGenerator.PRODUCT);
+    }
+
+    // 只取新增商品時可以設定的欄位
+    private static Product importable(Product source) {
+        Product product = new Product();
+        product.setProductName(source.getProductName());
+        product.setProductDescription(source.getProductDescription());
+        product.setProductPrice(source.getProductPrice());
+        product.setProductImage(source.getProductImage());
+        product.setProductType(source.getProductType());
+        product.setProductStock(source.getProductStock());
+        product.setProductCategory(source.getProductCategory());
+        product.setProductStatus(source.getProductStatus());
+        product.setAuctionEndTime(source.getAuctionEndTime());
+        return product;
+    }
+
+    private Product fromJson(String text) throws IOException {
+        return importable(objectMapper.readValue(text, Product.class));
+    }
+
+    private static Product fromCsv(List<String> header, List<String> values) {
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("Too many columns: expected " + header.size() + " but got " + values.size());
+        }
+        Product product = new Product();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            String column = header.get(i).trim();
+            try {
+                switch (column) {
+                    case "productName" -> product.setProductName(value);
+                    case "productDescription" -> product.setProductDescription(value);
+                    case "productPrice" -> product.setProductPrice(Integer.parseInt(value));
+                    case "productImage" -> product.setProductImage(value);
+                    case "productType" -> product.setProductType(ProductTypes.valueOf(value.toUpperCase(Locale.ROOT)));
+                    case "productStock" -> product.setProductStock(Integer.parseInt(value));
+                    case "productCategory" -> product.setProductCategory(value);
+                    case "productStatus" -> product.setProductStatus(Product.ProductStatuses.valueOf(value.toUpperCase(Locale.ROOT)));
+                    case "auctionEndTime" -> product.setAuctionEndTime(LocalDateTime.parse(value));
+                    default -> { }// 其他欄位不匯入
+                }
+            }
+            catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid value for " + column + ": " + value);
+            }
+        }
+        return product;
+    }
+
+    // 解析一行 CSV：逗號分隔，欄位可用雙引號包住（內含逗號），雙引號內的 "" 代表一個雙引號；不支援跨行的欄位
+    static List<String> parseCsvLine(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                }
+                else if (c == '"') {
+                    quoted = false;
+                }
+                else {
+                    value.append(c);
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -1,9 +1,19 @@
 package com.ntou.auctionSite.service.product;
 import com.ntou.auctionSite.dto.product.EditProductRequest;
+import com.ntou.auctionSite.dto.product.ProductCursorPageResponse;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.model.product.ProductTypes;
 import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.search.AutocompleteIndex;
+import com.ntou.auctionSite.service.search.SearchIndex;
+import com.ntou.auctionSite.utils.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -13,9 +23,32 @@ import java.util.*;
 public class ProductService {
     @Autowired
     private ProductRepository repository;
+    @Autowired
+    private AuctionEngine auctionEngine;
+    @Autowired
+    private AuctionExpiryScheduler expiryScheduler;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private CategoryIndex categoryIndex;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private AutocompleteIndex autocompleteIndex;
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
+    @Autowired
+    private IdGenerator idGenerator;
 
     private final Map<String, Product> productMap = new HashMap<>();
 
+    //可排序的欄位，每個欄位都有 (欄位, _id) 複合索引（Runner 建立），其他值依商品名稱排序
+    public static final List<String> SORTABLE_FIELDS = List.of(
+            "productName", "productPrice", "productStock", "createdTime", "updatedTime", "auctionEndTime",
+            "nowHighestBid", "viewCount", "averageRating", "reviewCount", "totalSales");
+    //cursor 分頁每頁最多筆數
+    public static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     public List<Product> getAllProduct(){
             try{
                 List<Product> productList=repository.findAll();
@@ -29,71 +62,96 @@ public class ProductService {
             return Collections.emptyList();//回傳一個不可更改的空list
         }
     }
-    //默認升序
-    public List<Product> getAllProductSorted(String sortBy,String order){
-        List<Product> productList=getAllProduct();
-        Comparator<Product> comparator;
-        switch(sortBy.trim()){
-            case "productPrice":
-                comparator=Comparator.comparing(Product::getProductPrice);
-                break;
-            case "productStock":
-                comparator=Comparator.comparing(Product::getProductStock);
-                break;
-            case "createdTime":
-                comparator=Comparator.comparing(Product::getCreatedTime);
-                break;
-            case "updatedTime":
-                comparator=Comparator.comparing(Product::getUpdatedTime);
-                break;
-            case "auctionEndTime":
-                comparator=Comparator.comparing(Product::getAuctionEndTime);
-                break;
-            case "nowHighestBid":
-                comparator=Comparator.comparing(Product::getNowHighestBid);
-                break;
-            case "viewCount":
-                comparator=Comparator.comparing(Product::getViewCount);
-                break;
-            case "averageRating":
-                comparator=Comparator.comparing(Product::getAverageRating);
-                break;
-            case "reviewCount":
-                comparator=Comparator.comparing(Product::getReviewCount);
-                break;
-            case "totalSales":
-                comparator=Comparator.comparing(Product::getTotalSales);
-                break;
-            default:
-                comparator=Comparator.comparing(Product::getProductName);
-                break;
-        }
-        if(order.trim().equals("desc")){
-            comparator = comparator.reversed();
-        }
-        productList.sort(comparator);
-        return productList;
+    //默認升序；排序交給資料庫以索引完成，不再把整個商品集合載入記憶體排序；只取列表欄位
+    public List<ProductSummary> getAllProductSorted(String sortBy,String order){
+        try{
+            return repository.findSummariesBy(sortOf(sortBy,order));
+        }
+        catch(Exception e){
+            System.err.println("Error fetching products: " + e.getMessage());
+            return Collections.emptyList();
+        }
     }
 
+    //同值時再依 productID（_id）排序，翻頁時順序才固定
+    public static Sort sortOf(String sortBy,String order){
+        Sort.Direction direction=directionOf(order);
+        return Sort.by(direction,sortFieldOf(sortBy)).and(Sort.by(direction,"productID"));
+    }
+
+    private static String sortFieldOf(String sortBy){
+        String field=sortBy==null ? "productName" : sortBy.trim();
+        return SORTABLE_FIELDS.contains(field) ? field : "productName";
+    }
+
+    private static Sort.Direction directionOf(String order){
+        return order!=null && order.trim().equals("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+    }
+
+    //以 cursor 翻頁（keyset）：cursor 為上一頁回傳的 nextCursor，第一頁為 null；帶 cursor 時沿用 cursor 中的排序方式
+    //每一頁都是 (排序欄位, _id) 索引上從上一頁最後一筆之後開始的範圍掃描，成本不隨頁數增加，翻頁期間新增商品也不會重複或漏掉
+    public ProductCursorPageResponse getProductsByCursor(String sortBy,String order,int limit,String cursor){
+        if(limit<1 || limit>MAX_CURSOR_PAGE_SIZE){
+            throw new IllegalArgumentException("limit must be between 1 and "+MAX_CURSOR_PAGE_SIZE);
+        }
+        ProductCursor after=cursor==null || cursor.isBlank() ? null : ProductCursor.decode(cursor.trim());
+        String field=after!=null ? after.sortBy() : sortFieldOf(sortBy);
+        Sort.Direction direction=after!=null ? after.direction() : directionOf(order);
+        //多取一筆用來判斷是否還有下一頁
+        List<Product> products=repository.findSortedAfter(field,direction,
+                after==null ? null : after.value(),after==null ? null : after.productID(),limit+1);
+        List<ProductSummary> page=products.stream().limit(limit).map(ProductSummary::of).toList();
+        if(products.size()<=limit){
+            return new ProductCursorPageResponse(page,null);
+        }
+        return new ProductCursorPageResponse(page,ProductCursor.after(products.get(limit-1),field,direction).encode());
+    }
+
+    //經由快取讀取，回傳的商品只能讀取；拍賣商品依設定不快取或只快取很短的時間
     public Product getProductById(String ProductID) {
+        return productCache.get(ProductID, this::getProductForUpdate);
+    }
+
+    //直接從資料庫讀取，要修改後存回的地方使用，改完需呼叫 evictProduct
+    public Product getProductForUpdate(String ProductID) {
         return repository.findById(ProductID)
                 .orElseThrow(() -> new NoSuchElementException("Product not found with ProductID: " + ProductID));
     }
 
-    public List<Product> getProductsByPage(int page, int pageSize) {
-        List<Product> allProducts = getAllProductSorted("createdTime","desc");
-        int total = allProducts.size();
-        int fromIndex = (page - 1) * pageSize;
-        if (fromIndex >= total) {
-            return Collections.emptyList(); // 超過總頁數就回空
-        }
+    //商品頁被瀏覽時呼叫，次數先累積在記憶體，定期批次寫回 viewCount
+    public void recordView(String productID) {
+        viewCountBuffer.record(productID);
+    }
+
+    //商品在其他 service 被修改（評價、出價）時讓快取失效
+    public void evictProduct(String productID) {
+        productCache.invalidate(productID);
+    }
+
+    //商品狀態或分類可能改變（售出、拍賣結束）時呼叫：讓快取失效並更新分類索引、搜尋索引與自動完成
+    public void productUpdated(Product product) {
+        productCache.invalidate(product.getProductID());
+        categoryIndex.update(product);
+        searchIndex.update(product);
+        autocompleteIndex.update(product);
+    }
 
-        int toIndex = Math.min(fromIndex + pageSize, total); // 不超過總筆數
-        return allProducts.subList(fromIndex, toIndex);
+    //新商品寫入後呼叫（上架、匯入）：更新分類索引、搜尋索引與自動完成，拍賣商品另外排入到期結束排程
+    public void productCreated(Product product) {
+        productUpdated(product);
+        expiryScheduler.sync(product);
+    }
+
+    //分頁查詢（page 從 1 開始），依建立時間由新到舊；只向資料庫取這一頁（skip + limit）的列表欄位，不計算總筆數
+    public List<ProductSummary> getProductsByPage(int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("page and pageSize must be greater than 0");
+        }
+        Pageable pageable = PageRequest.of(page - 1, pageSize, sortOf("createdTime", "desc"));
+        return repository.findSummariesBy(pageable).getContent();
     }
 
     public Product createProduct(Product product,String currentUserId){//創建商品
-        String randomId;
         product.setSellerID(currentUserId);//先設定sellerID再檢查
         trimProductFields(product);
         List<Product> existing = repository.findBySellerIDAndProductName(
@@ -102,36 +160,35 @@ public class ProductService {
             throw new IllegalStateException("同一個賣家已經存在同名商品！");
         }
 
-        do {
-            randomId = "PROD" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();//先用8位就好
-        }
-        while (repository.findById(randomId).isPresent());
-
-        product.setProductID(randomId);
+        product.setProductID(idGenerator.next(IdGenerator.PRODUCT));//依時間遞增、不會重複，不需要再查詢是否存在
         product.setCreatedTime(LocalDateTime.now());
         product.setUpdatedTime(LocalDateTime.now());
         validateProductFields(product);//驗證合法性
         updateProductStatus(product);
-        return repository.save(product);
+        Product saved = repository.save(product);
+        productCreated(saved);
+        return saved;
     }
     public Product editProduct(String productId, EditProductRequest request, String currentUserId) {
-        Product product = getProductById(productId);
+        Product product = getProductForUpdate(productId);
         trimProductFields(product);
         trimEditRequest(request);
         // 限制只能改自己上架的商品
         if (!product.getSellerID().equals(currentUserId)) {
             throw new SecurityException("You are not authorized to edit this product");
         }
-        //僅更新有值的欄位
-        if (request.getProductName() != null) {product.setProductName(request.getProductName());}
-        if (request.getProductDescription() != null) {product.setProductDescription(request.getProductDescription());}
-        if (request.getProductImage() != null) {product.setProductImage(request.getProductImage());}
+        //僅更新有值的欄位，寫回時也只寫這些欄位
+        List<String> fields = new ArrayList<>(List.of("productStatus", "updatedTime"));
+        if (request.getProductName() != null) {product.setProductName(request.getProductName()); fields.add("productName");}
+        if (request.getProductDescription() != null) {product.setProductDescription(request.getProductDescription()); fields.add("productDescription");}
+        if (request.getProductImage() != null) {product.setProductImage(request.getProductImage()); fields.add("productImage");}
         if (request.getProductType() != null && request.getProductType()!=ProductTypes.AUCTION) {
             product.setProductType(request.getProductType());
+            fields.add("productType");
         }
-        if (request.getProductStock() != null) {product.setProductStock(request.getProductStock());}
-        if (request.getProductPrice() != null ) {product.setProductPrice(request.getProductPrice());}
-        if (request.getProductCategory() != null) {product.setProductCategory(request.getProductCategory());}
+        if (request.getProductStock() != null) {product.setProductStock(request.getProductStock()); fields.add("productStock");}
+        if (request.getProductPrice() != null ) {product.setProductPrice(request.getProductPrice()); fields.add("productPrice");}
+        if (request.getProductCategory() != null) {product.setProductCategory(request.getProductCategory()); fields.add("productCategory");}
         if (request.getProductStatus() != null &&
                 request.getProductStatus() != Product.ProductStatuses.BANNED) {
             product.setProductStatus(request.getProductStatus());
@@ -141,36 +198,66 @@ public class ProductService {
         validateProductFields(product);
         product.setUpdatedTime(LocalDateTime.now());
         updateProductStatus(product);
-        return repository.save(product);
+        Product saved = saveFields(product, fields);
+        refreshAuction(saved);
+        return saved;
     }
 
     public Product publishProduct(String productID,String currentUserId){//上架商品
-        Product product = getProductById(productID);
+        Product product = getProductForUpdate(productID);
         if (!product.getSellerID().equals(currentUserId)) {
             throw new SecurityException("You are not authorized to edit this product");
         }
         product.setProductStatus(Product.ProductStatuses.ACTIVE);
         product.setUpdatedTime(LocalDateTime.now());
-        return repository.save(product);
+        Product saved = saveFields(product, List.of("productStatus", "updatedTime"));
+        refreshAuction(saved);
+        return saved;
     }
 
     public Product withdrawProduct(String productID,String currentUserId){//下架商品
-        Product product = getProductById(productID);
+        Product product = getProductForUpdate(productID);
         if (!product.getSellerID().equals(currentUserId)) {
             throw new SecurityException("You are not authorized to edit this product");
         }
         product.setProductStatus(Product.ProductStatuses.INACTIVE);
         product.setUpdatedTime(LocalDateTime.now());
-        return repository.save(product);
+        Product saved = saveFields(product, List.of("productStatus", "updatedTime"));
+        refreshAuction(saved);
+        return saved;
     }
     public void deleteProduct(String productID,String currentUserId) {//刪除商品
-        Product product = getProductById(productID);
+        Product product = getProductForUpdate(productID);
         if (!product.getSellerID().equals(currentUserId)) {
             throw new SecurityException("You are not authorized to edit this product");
         }
         repository.delete(product);
+        productCache.invalidate(productID);
+        categoryIndex.remove(productID);
+        searchIndex.remove(productID);
+        autocompleteIndex.remove(productID);
+        expiryScheduler.cancel(productID);
+        if (auctionEngine.isEnabled()) {
+            auctionEngine.evict(productID);
+        }
     }
-    private void updateProductStatus(Product product) {//庫存=0時設為SOLD
+    //只寫回修改的欄位，讀取後才寫回的出價不會被舊值蓋掉
+    private Product saveFields(Product product, Collection<String> fields) {
+        Product saved = repository.saveFields(product, fields);
+        if (saved == null) {
+            throw new NoSuchElementException("Product not found with ProductID: " + product.getProductID());
+        }
+        return saved;
+    }
+
+    private void refreshAuction(Product product) {//商品被修改時，讓快取失效、更新分類與搜尋索引、自動完成、到期排程，並讓拍賣引擎下次出價重新從資料庫載入
+        productUpdated(product);
+        expiryScheduler.sync(product);
+        if (auctionEngine.isEnabled()) {
+            auctionEngine.evict(product.getProductID());
+        }
+    }
+    void updateProductStatus(Product product) {//庫存=0時設為SOLD
         if (product.getProductStock() == 0) {
             product.setProductStatus(Product.ProductStatuses.SOLD);
         }
@@ -180,8 +267,11 @@ public class ProductService {
         }
     }
 
+    //有 ACTIVE 商品的分類（依名稱排序），由分類索引回傳；索引尚未重建完成時才掃描所有商品
     public List<String> getAllCategory(){
-
+        if(categoryIndex.isReady()){
+            return categoryIndex.categories();
+        }
         Set<String> categories=new HashSet<String>() ;
         List<Product> productList=getAllProduct();
         for(Product temp:productList){
@@ -195,7 +285,22 @@ public class ProductService {
         Collections.sort(result);
         return result;
     }
-    private void trimProductFields(Product p) {//將字串型態欄位去除空白
+
+    //每個分類的 ACTIVE 商品數（依分類名稱排序）
+    public Map<String, Integer> getCategoryCounts(){
+        if(categoryIndex.isReady()){
+            return categoryIndex.counts();
+        }
+        Map<String, Integer> counts=new TreeMap<>();
+        for(Product temp:getAllProduct()){
+            if(temp.getProductStatus()==Product.ProductStatuses.ACTIVE
+                    && temp.getProductCategory()!=null && !temp.getProductCategory().isBlank()){
+                counts.merge(temp.getProductCategory().trim(),1,Integer::sum);
+            }
+        }
+        return counts;
+    }
+    void trimProductFields(Product p) {//將字串型態欄位去除空白
         if (p.getProductName() != null) p.setProductName(p.getProductName().trim());
         if (p.getProductDescription() != null) p.setProductDescription(p.getProductDescription().trim());
         if (p.getProductImage() != null) p.setProductImage(p.getProductImage().trim());
@@ -210,7 +315,7 @@ public class ProductService {
         if (req.getProductCategory() != null) {req.setProductCategory(req.getProductCategory().trim());}
     }
 
-    private void validateProductFields(Product product) {//驗證商品欄位
+    void validateProductFields(Product product) {//驗證商品欄位
         int price=product.getProductPrice();
         String priceStr = String.valueOf(price);//轉成字串，方便後面探段位數
         int digitCount = priceStr.length();
@@ -8,6 +8,7 @@ import com.ntou.auctionSite.model.user.User;
 import com.ntou.auctionSite.repository.*;
 import com.ntou.auctionSite.repository.history.HistoryRepository;
 import com.ntou.auctionSite.repository.history.ReviewHistoryRepository;
+import com.ntou.auctionSite.utils.IdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -30,6 +31,8 @@ public class ReviewService {
     private ProductRepository productRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private IdGenerator idGenerator;
     //創建評論並確保一個user只能對一個商品頻論一次
     //此外要有購買過該商品才可以評論
     public Review createReview(Review review,String username){
@@ -45,12 +48,8 @@ public class ReviewService {
         if(starCount > 5 || starCount < 1){
             throw new IllegalArgumentException("Star count must be between 1 and 5!");
         }
-        String reviewID;
-        do {
-            reviewID = "REVW" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();//先用8位就好
-        }
-        while (reviewRepository.findById(reviewID).isPresent());
-        Product product=productService.getProductById(review.getProductID());
+        String reviewID = idGenerator.next(IdGenerator.REVIEW);
+        Product product=productService.getProductForUpdate(review.getProductID());
         int reviewCount=product.getReviewCount();
         String sellerId=product.getSellerID();
         double averageRating=product.getAverageRating();
@@ -60,7 +59,7 @@ public class ReviewService {
         //更新商品平均星數、評論數
         product.setReviewCount(reviewCount+1);
         product.setAverageRating(newAvgRating);
-        productRepository.save(product);
+        productService.productUpdated(saveRating(product, List.of("reviewCount", "averageRating")));//評分與評論數是搜尋排序的訊號
         //更新賣家平均星數
         User seller=userRepository.findById(sellerId)
                 .orElseThrow(() -> new NoSuchElementException("Seller not found with id: " + sellerId));
@@ -102,7 +101,7 @@ public class ReviewService {
         if(imgURL != null && !imgURL.isEmpty()){
             review.setImgURL(imgURL);
         }
-        Product product=productService.getProductById(review.getProductID());
+        Product product=productService.getProductForUpdate(review.getProductID());
         int reviewCount=product.getReviewCount();
         int oldStar=review.getStarCount();
         String sellerId= product.getSellerID();
@@ -116,7 +115,7 @@ public class ReviewService {
         review.setComment(content);
         review.setStarCount(starCount);
         review.setUpdatedTime(LocalDateTime.now());
-        productRepository.save(product);
+        productService.productUpdated(saveRating(product, List.of("averageRating")));
         //更新賣家平均星數
         User seller=userRepository.findById(sellerId)
                 .orElseThrow(() -> new NoSuchElementException("Seller not found with id: " + sellerId));
@@ -131,6 +130,15 @@ public class ReviewService {
         return reviewRepository.save(review);
     }
 
+    //只寫回評分相關欄位，不會蓋掉讀取之後才寫回的瀏覽次數、出價與庫存
+    private Product saveRating(Product product, List<String> fields) {
+        Product saved = productRepository.saveFields(product, fields);
+        if (saved == null) {
+            throw new NoSuchElementException("Product not found with id: " + product.getProductID());
+        }
+        return saved;
+    }
+
     //檢查某使用者是否購買過某商品
     boolean hasBuyed(String userID,String productID){
         List<Order> orderList=orderRepository.findBuyedProduct(userID,Order.OrderStatuses.COMPLETED,productID);
@@ -1,11 +1,13 @@
 package com.ntou.auctionSite.service.product;
 
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.model.product.ProductTypes;
 import com.ntou.auctionSite.model.user.User;
 import com.ntou.auctionSite.repository.ProductRepository;
 import com.ntou.auctionSite.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -18,6 +20,7 @@ import java.util.Map;
  *
  * 設計理念：不需要獨立的 SellingProduct collection
  * 直接透過 Product.sellerID 查詢即可
+ * 商品列表只回傳 ProductSummary（資料庫端投影），完整商品由 GET /api/products/{id} 取得
  */
 @Service
 @RequiredArgsConstructor
@@ -31,17 +34,17 @@ public class SellingProductsService {
      *
      * @param sellerId 賣家 ID（必須是 User._id）
      */
-    public List<Product> getSellerProducts(String sellerId) {
+    public List<ProductSummary> getSellerProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerID(sellerId);
+        return productRepository.findSummariesBySellerID(sellerId);
     }
 
     /**
      * 取得賣家的上架商品（ACTIVE）
      */
-    public List<Product> getSellerActiveProducts(String sellerId) {
+    public List<ProductSummary> getSellerActiveProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDAndProductStatus(
+        return productRepository.findSummariesBySellerIDAndProductStatus(
                 sellerId,
                 Product.ProductStatuses.ACTIVE
         );
@@ -50,9 +53,9 @@ public class SellingProductsService {
     /**
      * 取得賣家的已售出商品
      */
-    public List<Product> getSellerSoldProducts(String sellerId) {
+    public List<ProductSummary> getSellerSoldProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDAndProductStatus(
+        return productRepository.findSummariesBySellerIDAndProductStatus(
                 sellerId,
                 Product.ProductStatuses.SOLD
         );
@@ -61,9 +64,9 @@ public class SellingProductsService {
     /**
      * 取得賣家的下架商品（INACTIVE）
      */
-    public List<Product> getSellerInactiveProducts(String sellerId) {
+    public List<ProductSummary> getSellerInactiveProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDAndProductStatus(
+        return productRepository.findSummariesBySellerIDAndProductStatus(
                 sellerId,
                 Product.ProductStatuses.INACTIVE
         );
@@ -72,9 +75,9 @@ public class SellingProductsService {
     /**
      * 取得賣家的拍賣商品
      */
-    public List<Product> getSellerAuctionProducts(String sellerId) {
+    public List<ProductSummary> getSellerAuctionProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDAndProductType(
+        return productRepository.findSummariesBySellerIDAndProductType(
                 sellerId,
                 ProductTypes.AUCTION
         );
@@ -83,9 +86,9 @@ public class SellingProductsService {
     /**
      * 取得賣家的直購商品
      */
-    public List<Product> getSellerDirectProducts(String sellerId) {
+    public List<ProductSummary> getSellerDirectProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDAndProductType(
+        return productRepository.findSummariesBySellerIDAndProductType(
                 sellerId,
                 ProductTypes.DIRECT
         );
@@ -94,17 +97,17 @@ public class SellingProductsService {
     /**
      * 取得賣家的熱賣商品（依銷售量排序）
      */
-    public List<Product> getSellerBestSellingProducts(String sellerId) {
+    public List<ProductSummary> getSellerBestSellingProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDOrderByTotalSalesDesc(sellerId);
+        return productRepository.findSummariesBySellerID(sellerId, Sort.by(Sort.Direction.DESC, "totalSales"));
     }
 
     /**
      * 取得賣家最新上架的商品（依建立時間排序）
      */
-    public List<Product> getSellerLatestProducts(String sellerId) {
+    public List<ProductSummary> getSellerLatestProducts(String sellerId) {
         validateSellerExists(sellerId);
-        return productRepository.findBySellerIDOrderByCreatedTimeDesc(sellerId);
+        return productRepository.findSummariesBySellerID(sellerId, Sort.by(Sort.Direction.DESC, "createdTime"));
     }
 
     /**
@@ -0,0 +1,167 @@
+package com.ntou.auctionSite.service.product;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.ntou.auctionSite.model.product.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 商品瀏覽次數的緩衝計數器
+ * 每次瀏覽只在記憶體中對該商品的 LongAdder 加一（熱門商品的大量瀏覽分散在多個 cell，不會互相搶鎖），
+ * 每隔 flush-interval-ms 把累積的次數以 unordered bulk $inc 寫回 viewCount，每批最多 batch-size 個商品；
+ * 熱門商品在一個間隔內不論被瀏覽幾次都只寫一次資料庫。寫入失敗的次數加回緩衝，下次再寫
+ * （bulk 只有部分失敗時，只加回失敗的那幾個商品）；
+ * 應用程式關閉時會把尚未寫回的次數寫完。
+ */
+@Component
+public class ViewCountBuffer {
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Map<String, Slot> pending = new ConcurrentHashMap<>();
+    private final Counter flushedCounter;
+    private final Counter failedCounter;
+
+    // 一個商品的累積次數；idleFlushes 只由 flush 讀寫，retired 表示已從 map 移除
+    private static final class Slot {
+        final LongAdder views = new LongAdder();
+        volatile boolean retired;
+        int idleFlushes;
+    }
+
+    @Autowired
+    public ViewCountBuffer(MongoTemplate mongoTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${auction.view-count.enabled:true}") boolean enabled,
+                           @Value("${auction.view-count.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+
+        Gauge.builder("product.views.pending", pending, Map::size)
+                .description("Products with view counts not yet written to MongoDB")
+                .register(meterRegistry);
+        this.flushedCounter = meterRegistry.counter("product.views.flushed");
+        this.failedCounter = meterRegistry.counter("product.views.failed");
+    }
+
+    //記錄一次瀏覽
+    public void record(String productID) {
+        record(productID, 1);
+    }
+
+    private void record(String productID, long views) {
+        if (!enabled || productID == null) {
+            return;
+        }
+        long remaining = views;
+        while (remaining > 0) {
+            Slot slot = pending.get(productID);
+            if (slot == null) {
+                slot = pending.computeIfAbsent(productID, id -> new Slot());
+            }
+            slot.views.add(remaining);
+            if (!slot.retired) {
+                return;
+            }
+            // 這個商品剛好被 flush 移除：flush 可能已標記 retired 但還沒從 map 移除，先確保舊 slot 離開 map，
+            // 再把留在舊 slot 的次數移到新的 slot（否則會一直拿到同一個舊 slot）
+            pending.remove(productID, slot);
+            remaining = slot.views.sumThenReset();
+        }
+    }
+
+    //尚未寫回資料庫的瀏覽次數
+    public long pendingViews(String productID) {
+        Slot slot = pending.get(productID);
+        return slot == null ? 0 : slot.views.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${auction.view-count.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<String, Long> batch = new LinkedHashMap<>();
+        for (Map.Entry<String, Slot> entry : pending.entrySet()) {
+            Slot slot = entry.getValue();
+            // sumThenReset 對每個 cell 是原子的，取出的同時有新的瀏覽會留到下一次
+            long views = slot.views.sumThenReset();
+            if (views == 0) {
+                // 連續兩個間隔都沒有瀏覽的商品移除，避免 map 無限成長
+                // 先標記 retired 再移除：標記前加上的次數由這裡放回，標記後加上的由 record 自己移到新的 slot
+                if (++slot.idleFlushes >= 2) {
+                    slot.retired = true;
+                    pending.remove(entry.getKey(), slot);
+                    long late = slot.views.sumThenReset();
+                    if (late > 0) {
+                        record(entry.getKey(), late);
+                    }
+                }
+                continue;
+            }
+            slot.idleFlushes = 0;
+            batch.put(entry.getKey(), views);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(Map<String, Long> batch) {
+        List<String> productIDs = new ArrayList<>(batch.keySet());
+        try {
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+            for (String productID : productIDs) {
+                // viewCount 是 int，$inc 的值也用 int，避免欄位被轉成 64 位元
+                int views = (int) Math.min(batch.get(productID), Integer.MAX_VALUE);
+                operations.updateOne(new Query(Criteria.where("_id").is(productID)), new Update().inc("viewCount", views));
+            }
+            operations.execute();
+            flushedCounter.increment(productIDs.size());
+        }
+        catch (BulkOperationException e) {
+            // unordered bulk 中其他商品已寫入，只加回失敗的商品，避免重複計算
+            List<BulkWriteError> errors = e.getErrors();
+            failedCounter.increment(errors.size());
+            flushedCounter.increment(productIDs.size() - errors.size());
+            System.err.println("Error flushing view counts for " + errors.size() + " of " + productIDs.size() + " products: " + e.getMessage());
+            for (BulkWriteError error : errors) {
+                String productID = productIDs.get(error.getIndex());
+                record(productID, batch.get(productID));
+            }
+        }
+        catch (Exception e) {
+            failedCounter.increment(productIDs.size());
+            System.err.println("Error flushing view counts for " + productIDs.size() + " products: " + e.getMessage());
+            batch.forEach(this::record);
+        }
+    }
+
+    // 應用程式關閉時寫回尚未寫入的瀏覽次數
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,411 @@
+package com.ntou.auctionSite.service.search;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 搜尋框的自動完成
+ * 上架中（ACTIVE）商品的名稱與分類（經 SearchTokenizer.normalize）存在一棵壓縮字典樹（radix tree）中，
+ * 只有一個子節點且本身不是候選字的節點會與子節點合併，邊上存的是整段字串而非單一字元。
+ * 每個候選字的權重是所有使用它的商品熱門度總和（1 + 銷售量與瀏覽次數的 log1p 加權），
+ * 每個節點預先保存子樹中權重最高的 max-results 個候選字，查詢只需沿著前綴走到節點並複製清單，不需要走訪子樹。
+ * 商品的寫入流程經由 ProductService 更新；權重增加時只需在路徑上的清單插入，
+ * 權重減少且原本在清單中時才由子節點的清單重新合併。啟動時串流所有商品重建。
+ */
+@Component
+public class AutocompleteIndex {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final int maxResults;
+    private final double salesWeight;
+    private final double viewWeight;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node("");
+    // 正規化後的字串 -> 候選字；productID -> 該商品貢獻的候選字與權重
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    private volatile boolean ready;
+
+    @Autowired
+    public AutocompleteIndex(ProductRepository productRepository,
+                             @Value("${auction.autocomplete.enabled:true}") boolean enabled,
+                             @Value("${auction.autocomplete.max-results:10}") int maxResults,
+                             @Value("${auction.autocomplete.sales-weight:1.0}") double salesWeight,
+                             @Value("${auction.autocomplete.view-weight:0.2}") double viewWeight) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.maxResults = Math.max(1, maxResults);
+        this.salesWeight = salesWeight;
+        this.viewWeight = viewWeight;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 候選字數
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 以 prefix 開頭、權重最高的候選字（顯示用的原始文字），最多 limit 筆（不超過 max-results）
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = SearchTokenizer.normalize(prefix);
+        if (key.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int index = childIndex(node, key.charAt(i));
+                if (index < 0) {
+                    return List.of();
+                }
+                Node child = node.children[index];
+                int common = commonPrefix(child.label, key, i);
+                if (i + common == key.length()) {
+                    node = child;// 前綴結束在這條邊上
+                    break;
+                }
+                if (common < child.label.length()) {
+                    return List.of();
+                }
+                i += common;
+                node = child;
+            }
+            int count = Math.min(limit, node.top.length);
+            List<String> result = new ArrayList<>(count);
+            for (int k = 0; k < count; k++) {
+                result.add(node.top[k].text);
+            }
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 商品新增或修改後呼叫；非 ACTIVE 的商品移除它的候選字
+    public void update(Product product) {
+        if (!enabled || product == null || product.getProductID() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            withdraw(product.getProductID());
+            if (product.getProductStatus() == Product.ProductStatuses.ACTIVE) {
+                contribute(product, true);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 商品刪除後呼叫
+    public void remove(String productID) {
+        if (!enabled || productID == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            withdraw(productID);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try (Stream<Product> products = productRepository.streamSearchDocuments()) {
+            root = new Node("");
+            entries.clear();
+            contributions.clear();
+            // 先建好整棵樹，最後一次由下往上算出每個節點的清單
+            products.filter(product -> product.getProductStatus() == Product.ProductStatuses.ACTIVE)
+                    .forEach(product -> contribute(product, false));
+            computeTop(root);
+            ready = true;
+            System.out.println("Autocomplete index rebuilt with " + entries.size() + " suggestions");
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding autocomplete index: " + e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 商品的熱門度
+    double popularity(Product product) {
+        return 1 + salesWeight * Math.log1p(Math.max(product.getTotalSales(), 0))
+                + viewWeight * Math.log1p(Math.max(product.getViewCount(), 0));
+    }
+
+    // 呼叫端持有 write lock
+    private void contribute(Product product, boolean maintainTop) {
+        Map<String, String> texts = new HashMap<>();
+        for (String text : new String[]{product.getProductName(), product.getProductCategory()}) {
+            String key = SearchTokenizer.normalize(text);
+            if (!key.isEmpty()) {
+                texts.putIfAbsent(key, text.strip());
+            }
+        }
+        if (texts.isEmpty()) {
+            return;
+        }
+        double weight = popularity(product);
+        contributions.put(product.getProductID(), new Contribution(texts.keySet().toArray(new String[0]), weight));
+        for (Map.Entry<String, String> text : texts.entrySet()) {
+            Entry entry = entries.get(text.getKey());
+            List<Node> path;
+            if (entry == null) {
+                entry = new Entry(text.getKey(), text.getValue());
+                entries.put(entry.key, entry);
+                path = insert(entry.key);
+                path.get(path.size() - 1).entry = entry;
+            }
+            else {
+                path = maintainTop ? find(entry.key) : null;
+            }
+            entry.weight += weight;
+            entry.products++;
+            if (maintainTop) {
+                raise(path, entry);
+            }
+        }
+    }
+
+    private void withdraw(String productID) {
+        Contribution contribution = contributions.remove(productID);
+        if (contribution == null) {
+            return;
+        }
+        for (String key : contribution.keys()) {
+            Entry entry = entries.get(key);
+            List<Node> path = find(key);
+            entry.weight -= contribution.weight();
+            entry.products--;
+            if (entry.products == 0) {
+                entries.remove(key);
+                path.get(path.size() - 1).entry = null;
+            }
+            lower(path, entry);
+        }
+    }
+
+    // 權重增加（或新加入）：路徑上每個節點只需把它插入清單
+    private void raise(List<Node> path, Entry entry) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            Set<Entry> merged = new LinkedHashSet<>(Arrays.asList(node.top));
+            merged.add(entry);
+            node.top = best(merged);
+        }
+    }
+
+    // 權重減少或移除：原本在清單中的節點由自己與子節點的清單重新合併；之後整理不再需要的節點
+    private void lower(List<Node> path, Entry entry) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            if (Arrays.asList(node.top).contains(entry)) {
+                recompute(node);
+            }
+        }
+        for (int i = path.size() - 1; i > 0; i--) {
+            compact(path.get(i - 1), path.get(i));
+        }
+    }
+
+    private void recompute(Node node) {
+        Set<Entry> merged = new LinkedHashSet<>();
+        if (node.entry != null) {
+            merged.add(node.entry);
+        }
+        for (Node child : node.children) {
+            merged.addAll(Arrays.asList(child.top));
+        }
+        node.top = best(merged);
+    }
+
+    private void computeTop(Node node) {
+        for (Node child : node.children) {
+            computeTop(child);
+        }
+        recompute(node);
+    }
+
+    // 權重由高到低取前 max-results 個，同權重依文字排序
+    private Entry[] best(Set<Entry> candidates) {
+        return candidates.stream()
+                .filter(entry -> entry.products > 0)
+                .sorted((a, b) -> a.weight != b.weight ? Double.compare(b.weight, a.weight) : a.key.compareTo(b.key))
+                .limit(maxResults)
+                .toArray(Entry[]::new);
+    }
+
+    // 移除沒有候選字也沒有子節點的節點；沒有候選字且只剩一個子節點時與子節點合併
+    private void compact(Node parent, Node node) {
+        if (node.entry != null) {
+            return;
+        }
+        int index = childIndex(parent, node.label.charAt(0));
+        if (node.children.length == 0) {
+            Node[] children = new Node[parent.children.length - 1];
+            System.arraycopy(parent.children, 0, children, 0, index);
+            System.arraycopy(parent.children, index + 1, children, index, children.length - index);
+            parent.children = children;
+        }
+        else if (node.children.length == 1) {
+            Node child = node.children[0];
+            child.label = node.label + child.label;
+            parent.children[index] = child;
+        }
+    }
+
+    // 從根到 key 的節點，不存在時建立（必要時把邊切開）
+    private List<Node> insert(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int index = childIndex(node, key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                addChild(node, -index - 1, leaf);
+                path.add(leaf);
+                return path;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[]{child};
+                middle.top = child.top;
+                node.children[index] = middle;
+                child = middle;
+            }
+            i += common;
+            node = child;
+            path.add(node);
+        }
+        return path;
+    }
+
+    // 從根到 key 的節點（key 必須存在）
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            node = node.children[childIndex(node, key.charAt(i))];
+            i += node.label.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    // 子節點依邊的第一個字元排序，以二分搜尋尋找；找不到時回傳 -(插入位置) - 1
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = node.children[middle].label.charAt(0);
+            if (label < first) {
+                low = middle + 1;
+            }
+            else if (label > first) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static void addChild(Node node, int index, Node child) {
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        node.children = children;
+    }
+
+    // label 與 key 從 offset 開始相同的字元數
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        Entry entry;
+        Entry[] top = NO_ENTRIES;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    // 候選字：text 為第一個使用它的商品的原始文字
+    private static final class Entry {
+        final String key;
+        final String text;
+        double weight;
+        int products;
+
+        Entry(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private record Contribution(String[] keys, double weight) {
+    }
+}
@@ -0,0 +1,508 @@
+package com.ntou.auctionSite.service.search;
+
+import java.util.Arrays;
+
+/**
+ * 非負整數集合的壓縮 bitmap（Roaring bitmap 的做法）
+ * 以整數的高 16 位元分成多個區塊，每個區塊依內容選擇容器：
+ * 元素不超過 4096 個時存成排序的 char 陣列（每個元素 2 bytes），超過時改存 65536 位元的 bitmap（固定 8KB），
+ * 稀疏與密集的集合都不會浪費空間。AND / OR 逐區塊進行，兩邊都是 bitmap 時直接以 64 位元 word 運算。
+ * 不是執行緒安全的，由呼叫端（SearchIndex 的 lock）保護。
+ */
+public final class CompressedBitmap {
+
+    // 陣列容器的上限；超過時 bitmap 容器（1024 個 long）反而比較小
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    public void remove(int value) {
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index].remove((char) value);
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        }
+        else {
+            containers[index] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            }
+            else if (keys[i] > other.keys[j]) {
+                j++;
+            }
+            else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // 交集的元素數，不建立結果（計算 facet 數量用）
+    public int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            }
+            else if (keys[i] > other.keys[j]) {
+                j++;
+            }
+            else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            }
+            else if (i == size || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            }
+            else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    // 由小到大的所有元素
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n = containers[i].fill(values, n, keys[i] << 16);
+        }
+        return values;
+    }
+
+    // 佔用的大約記憶體（bytes），用於比較壓縮效果
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    // 一個區塊（低 16 位元）的容器；add、remove 可能換成另一種容器，呼叫端要使用回傳值
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract int fill(int[] values, int offset, int high);
+
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(cardinality * 2, ARRAY_MAX)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+                // 從 bitmap 轉回來或大量刪除後，陣列只用到四分之一以下時縮小
+                if (values.length > 16 && cardinality <= values.length / 4) {
+                    values = Arrays.copyOf(values, cardinality * 2);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    }
+                    else if (values[i] > array.values[j]) {
+                        j++;
+                    }
+                    else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    }
+                    else if (values[i] > array.values[j]) {
+                        j++;
+                    }
+                    else {
+                        n++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        n++;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX) {
+                return toBitmap().or(array);
+            }
+            char[] result = new char[cardinality + array.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[n++] = values[i++];
+                }
+                else if (i == cardinality || values[i] > array.values[j]) {
+                    result[n++] = array.values[j++];
+                }
+                else {
+                    result[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        int fill(int[] target, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                target[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16L + values.length * 2L;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            int cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & bitmap.words[i];
+                cardinality += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = cardinality;
+            return cardinality <= ARRAY_MAX ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                cardinality += Long.bitCount(words[i] & bitmap.words[i]);
+            }
+            return cardinality;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    result.add(array.values[i]);
+                }
+                return result;
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] |= bitmap.words[i];
+                cardinality += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer result = new BitmapContainer();
+            System.arraycopy(words, 0, result.words, 0, words.length);
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        @Override
+        int fill(int[] target, int offset, int high) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16L + words.length * 8L;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.ntou.auctionSite.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * 在依字母順序排列的英數詞字典中，找出與查詢詞編輯距離（插入、刪除、替換與相鄰兩字互換各算一次）不超過 maxEdits 的詞
+ * 依序走訪字典，相鄰的詞共用相同前綴已算好的 DP 列，效果等同在 trie 上執行 Levenshtein automaton；
+ * 某個前綴的 DP 列最小值已超過 maxEdits 時，以它開頭的詞都不可能符合，直接跳到下一個前綴。
+ * prefix 為 true 時比對的是詞的前綴（最後一個查詢詞可能還沒輸入完）。
+ * 超過 deadline（System.nanoTime()）時停止走訪，回傳目前已找到的詞。
+ */
+final class FuzzyTermMatcher {
+
+    // 每走訪幾個詞檢查一次時間
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private FuzzyTermMatcher() {
+    }
+
+    // 符合的詞、詞編號與編輯距離
+    record Match(String term, int id, int distance) {
+    }
+
+    static List<Match> match(NavigableMap<String, Integer> words, String query, int maxEdits, boolean prefix, long deadline) {
+        List<Match> matches = new ArrayList<>();
+        int m = query.length();
+        // rows[d] 為字典詞前 d 個字元與查詢詞的 DP 列；best[d] 為前 d 個字元中任一前綴與查詢詞的最小距離
+        int[][] rows = new int[16][];
+        int[] best = new int[16];
+        rows[0] = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            rows[0][j] = j;
+        }
+        best[0] = m;
+        String previous = "";
+        int computed = 0;
+        int visited = 0;
+        Map.Entry<String, Integer> entry = words.firstEntry();
+        while (entry != null) {
+            if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            String word = entry.getKey();
+            int depth = Math.min(commonPrefix(previous, word), computed);
+            int pruned = -1;
+            while (depth < word.length()) {
+                if (depth + 1 == rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                    best = Arrays.copyOf(best, best.length * 2);
+                }
+                if (rows[depth + 1] == null) {
+                    rows[depth + 1] = new int[m + 1];
+                }
+                int[] above = rows[depth];
+                int[] row = rows[depth + 1];
+                char c = word.charAt(depth);
+                row[0] = depth + 1;
+                int min = row[0];
+                for (int j = 1; j <= m; j++) {
+                    int cost = query.charAt(j - 1) == c ? 0 : 1;
+                    row[j] = Math.min(Math.min(above[j], row[j - 1]) + 1, above[j - 1] + cost);
+                    if (j > 1 && depth > 0 && c == query.charAt(j - 2) && word.charAt(depth - 1) == query.charAt(j - 1)) {
+                        row[j] = Math.min(row[j], rows[depth - 1][j - 2] + 1);
+                    }
+                    min = Math.min(min, row[j]);
+                }
+                depth++;
+                best[depth] = Math.min(best[depth - 1], row[m]);
+                if (min > maxEdits) {
+                    pruned = depth;
+                    break;
+                }
+            }
+            previous = word;
+            computed = depth;
+            if (pruned > 0) {
+                String stem = word.substring(0, pruned);
+                // 前綴比對時，這個前綴之前已經符合的話，以它開頭的詞都符合（距離不會再變小）
+                if (prefix && best[pruned] <= maxEdits) {
+                    for (Map.Entry<String, Integer> matched : words.subMap(stem, true, stem + Character.MAX_VALUE, false).entrySet()) {
+                        matches.add(new Match(matched.getKey(), matched.getValue(), best[pruned]));
+                    }
+                }
+                entry = words.ceilingEntry(stem + Character.MAX_VALUE);
+                continue;
+            }
+            int distance = prefix ? best[depth] : rows[depth][m];
+            if (distance <= maxEdits) {
+                matches.add(new Match(word, entry.getValue(), distance));
+            }
+            entry = words.higherEntry(word);
+        }
+        return matches;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,276 @@
+package com.ntou.auctionSite.service.search;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商品的 facet 索引，使用 SearchIndex 的文件編號，由 SearchIndex 在同一個 lock 下更新
+ * 分類、類型、狀態的每個值，以及價格區間與評分區間各有一個 CompressedBitmap；
+ * 篩選時同一個欄位的值取 OR、不同欄位取 AND，價格與評分只有落在範圍邊界的區間才逐筆比對。
+ * 每個欄位的數量以「其他欄位的條件」篩選後計算，勾選某個分類時仍看得到其他分類的數量。
+ */
+final class ProductFacets {
+
+    // 價格區間的分界：[0, 100)、[100, 500)、...、[10000, ∞)
+    static final int[] PRICE_BOUNDS = {100, 500, 1000, 5000, 10000};
+    // 評分區間依平均評分的整數部分：0、1、2、3、4、5
+    static final int RATING_BUCKETS = 6;
+
+    enum Facet {
+        CATEGORY("category"), TYPE("type"), STATUS("status"), PRICE("price"), RATING("rating");
+
+        final String key;
+
+        Facet(String key) {
+            this.key = key;
+        }
+    }
+
+    private final CompressedBitmap all = new CompressedBitmap();
+    private final Map<String, CompressedBitmap> categories = new HashMap<>();
+    private final Map<ProductTypes, CompressedBitmap> types = new EnumMap<>(ProductTypes.class);
+    private final Map<Product.ProductStatuses, CompressedBitmap> statuses = new EnumMap<>(Product.ProductStatuses.class);
+    private final CompressedBitmap[] priceBuckets = newBuckets(PRICE_BOUNDS.length + 1);
+    private final CompressedBitmap[] ratingBuckets = newBuckets(RATING_BUCKETS);
+
+    // 文件編號 -> 目前的值（移除舊值用）
+    private String[] categoryOf = new String[1024];
+    private ProductTypes[] typeOf = new ProductTypes[1024];
+    private Product.ProductStatuses[] statusOf = new Product.ProductStatuses[1024];
+    private int[] priceOf = new int[1024];
+    private double[] ratingOf = new double[1024];
+
+    // 索引中的所有文件
+    CompressedBitmap all() {
+        return all;
+    }
+
+    void set(int doc, Product product) {
+        clear(doc);
+        ensureCapacity(doc);
+        all.add(doc);
+        categoryOf[doc] = product.getProductCategory();
+        if (categoryOf[doc] != null) {
+            categories.computeIfAbsent(categoryOf[doc], category -> new CompressedBitmap()).add(doc);
+        }
+        typeOf[doc] = product.getProductType();
+        if (typeOf[doc] != null) {
+            types.computeIfAbsent(typeOf[doc], type -> new CompressedBitmap()).add(doc);
+        }
+        statusOf[doc] = product.getProductStatus();
+        if (statusOf[doc] != null) {
+            statuses.computeIfAbsent(statusOf[doc], status -> new CompressedBitmap()).add(doc);
+        }
+        priceOf[doc] = product.getProductPrice();
+        priceBuckets[priceBucket(priceOf[doc])].add(doc);
+        ratingOf[doc] = product.getAverageRating();
+        ratingBuckets[ratingBucket(ratingOf[doc])].add(doc);
+    }
+
+    void clear(int doc) {
+        if (!all.contains(doc)) {
+            return;
+        }
+        all.remove(doc);
+        removeFrom(categories, categoryOf[doc], doc);
+        removeFrom(types, typeOf[doc], doc);
+        removeFrom(statuses, statusOf[doc], doc);
+        priceBuckets[priceBucket(priceOf[doc])].remove(doc);
+        ratingBuckets[ratingBucket(ratingOf[doc])].remove(doc);
+        categoryOf[doc] = null;
+        typeOf[doc] = null;
+        statusOf[doc] = null;
+    }
+
+    /**
+     * 每個欄位各自的條件展開成 bitmap（以 Facet.ordinal() 為索引），沒有條件的欄位為 null；
+     * 同一次查詢的篩選與各欄位數量共用，不必重複展開
+     */
+    CompressedBitmap[] constraints(ProductFilter filter) {
+        CompressedBitmap[] constraints = new CompressedBitmap[Facet.values().length];
+        if (!filter.categories().isEmpty()) {
+            constraints[Facet.CATEGORY.ordinal()] = union(filter.categories().stream().map(categories::get).toList());
+        }
+        if (!filter.types().isEmpty()) {
+            constraints[Facet.TYPE.ordinal()] = union(filter.types().stream().map(types::get).toList());
+        }
+        if (!filter.statuses().isEmpty()) {
+            constraints[Facet.STATUS.ordinal()] = union(filter.statuses().stream().map(statuses::get).toList());
+        }
+        if (filter.minPrice() != null || filter.maxPrice() != null) {
+            constraints[Facet.PRICE.ordinal()] = priceRange(
+                    filter.minPrice() == null ? Integer.MIN_VALUE : filter.minPrice(),
+                    filter.maxPrice() == null ? Integer.MAX_VALUE : filter.maxPrice());
+        }
+        if (filter.minRating() != null) {
+            constraints[Facet.RATING.ordinal()] = ratingAtLeast(filter.minRating());
+        }
+        return constraints;
+    }
+
+    /**
+     * 符合所有條件的文件；exclude 的欄位不套用（計算該欄位的數量用，傳 null 表示全部套用）。沒有任何條件時回傳 null
+     */
+    static CompressedBitmap combine(CompressedBitmap[] constraints, Facet exclude) {
+        CompressedBitmap result = null;
+        for (Facet facet : Facet.values()) {
+            if (facet != exclude && constraints[facet.ordinal()] != null) {
+                result = result == null ? constraints[facet.ordinal()] : result.and(constraints[facet.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 每個欄位各個值的商品數（只列出大於 0 的值）；scope 為篩選前的範圍（全部商品或關鍵字搜尋的結果）
+     */
+    Map<String, Map<String, Integer>> counts(CompressedBitmap[] constraints, CompressedBitmap scope) {
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        for (Facet facet : Facet.values()) {
+            CompressedBitmap others = combine(constraints, facet);
+            CompressedBitmap base = others == null ? scope : scope.and(others);
+            Map<String, Integer> values = new LinkedHashMap<>();
+            switch (facet) {
+                case CATEGORY -> categories.entrySet().stream()
+                        .map(entry -> Map.entry(entry.getKey(), base.andCardinality(entry.getValue())))
+                        .filter(entry -> entry.getValue() > 0)
+                        .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .forEach(entry -> values.put(entry.getKey(), entry.getValue()));
+                case TYPE -> types.forEach((type, docs) -> putCount(values, type.name(), base.andCardinality(docs)));
+                case STATUS -> statuses.forEach((status, docs) -> putCount(values, status.name(), base.andCardinality(docs)));
+                case PRICE -> {
+                    for (int i = 0; i < priceBuckets.length; i++) {
+                        putCount(values, priceLabel(i), base.andCardinality(priceBuckets[i]));
+                    }
+                }
+                case RATING -> {
+                    for (int i = 0; i < ratingBuckets.length; i++) {
+                        putCount(values, String.valueOf(i), base.andCardinality(ratingBuckets[i]));
+                    }
+                }
+            }
+            counts.put(facet.key, values);
+        }
+        return counts;
+    }
+
+    // 完全落在範圍內的區間整個取 OR，跨過邊界的區間逐筆比對價格
+    private CompressedBitmap priceRange(int min, int max) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < priceBuckets.length; i++) {
+            long low = i == 0 ? Long.MIN_VALUE : PRICE_BOUNDS[i - 1];
+            long high = i == PRICE_BOUNDS.length ? Long.MAX_VALUE : PRICE_BOUNDS[i] - 1L;
+            if (high < min || low > max || priceBuckets[i].isEmpty()) {
+                continue;
+            }
+            if (low >= min && high <= max) {
+                result = result.or(priceBuckets[i]);
+                continue;
+            }
+            for (int doc : priceBuckets[i].toArray()) {
+                if (priceOf[doc] >= min && priceOf[doc] <= max) {
+                    result.add(doc);
+                }
+            }
+        }
+        return result;
+    }
+
+    private CompressedBitmap ratingAtLeast(double minRating) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < ratingBuckets.length; i++) {
+            if (i + 1 <= minRating && i < RATING_BUCKETS - 1) {
+                continue;
+            }
+            if (i >= minRating) {
+                result = result.or(ratingBuckets[i]);
+                continue;
+            }
+            for (int doc : ratingBuckets[i].toArray()) {
+                if (ratingOf[doc] >= minRating) {
+                    result.add(doc);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int priceBucket(int price) {
+        int index = Arrays.binarySearch(PRICE_BOUNDS, price);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static int ratingBucket(double rating) {
+        return (int) Math.max(0, Math.min(RATING_BUCKETS - 1, Math.floor(rating)));
+    }
+
+    // 價格區間的名稱，例如 "100-499"、"10000+"
+    static String priceLabel(int bucket) {
+        if (bucket == PRICE_BOUNDS.length) {
+            return PRICE_BOUNDS[bucket - 1] + "+";
+        }
+        return (bucket == 0 ? 0 : PRICE_BOUNDS[bucket - 1]) + "-" + (PRICE_BOUNDS[bucket] - 1);
+    }
+
+    private static CompressedBitmap union(List<CompressedBitmap> bitmaps) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (CompressedBitmap bitmap : bitmaps) {
+            if (bitmap != null) {
+                result = result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static CompressedBitmap and(CompressedBitmap left, CompressedBitmap right) {
+        return left == null ? right : left.and(right);
+    }
+
+    private static void putCount(Map<String, Integer> values, String key, int count) {
+        if (count > 0) {
+            values.put(key, count);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, CompressedBitmap> bitmaps, K key, int doc) {
+        if (key == null) {
+            return;
+        }
+        CompressedBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(doc);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private void ensureCapacity(int doc) {
+        if (doc < categoryOf.length) {
+            return;
+        }
+        int capacity = Math.max(doc + 1, categoryOf.length * 2);
+        categoryOf = Arrays.copyOf(categoryOf, capacity);
+        typeOf = Arrays.copyOf(typeOf, capacity);
+        statusOf = Arrays.copyOf(statusOf, capacity);
+        priceOf = Arrays.copyOf(priceOf, capacity);
+        ratingOf = Arrays.copyOf(ratingOf, capacity);
+    }
+
+    private static CompressedBitmap[] newBuckets(int count) {
+        CompressedBitmap[] buckets = new CompressedBitmap[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = new CompressedBitmap();
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ntou.auctionSite.service.search;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+
+import java.util.Set;
+
+/**
+ * 商品篩選條件：同一個欄位的多個值之間為 OR，不同欄位之間為 AND；空集合或 null 表示不限制
+ * 價格與評分為包含上下限的範圍（價格依 productPrice，評分依 averageRating）
+ */
+public record ProductFilter(Set<String> categories,
+                            Set<ProductTypes> types,
+                            Set<Product.ProductStatuses> statuses,
+                            Integer minPrice,
+                            Integer maxPrice,
+                            Double minRating) {
+
+    public ProductFilter {
+        categories = categories == null ? Set.of() : Set.copyOf(categories);
+        types = types == null ? Set.of() : Set.copyOf(types);
+        statuses = statuses == null ? Set.of() : Set.copyOf(statuses);
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+    }
+
+    // 不限制任何條件
+    public static ProductFilter none() {
+        return new ProductFilter(null, null, null, null, null, null);
+    }
+}
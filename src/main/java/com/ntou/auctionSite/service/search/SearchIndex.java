@@ -0,0 +1,749 @@
+package com.ntou.auctionSite.service.search;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 商品搜尋的記憶體反向索引
+ * 商品名稱、分類與描述（只取前 max-description-length 個字）經 SearchTokenizer 斷詞後，每個詞對應一份依文件編號排序的 posting list；
+ * 查詢時取出每個查詢詞的 posting list，由短到長求交集（以 galloping search 跳過不可能的文件），
+ * 最後一個英數詞當作前綴，展開成字典中所有以它開頭的詞取聯集（輸入到一半也能找到）。
+ * 符合的商品以 BM25（posting list 同時保存詞頻，另記錄每個商品的詞數）加上 SearchRanking 的商品訊號計分，
+ * 用大小為 limit 的 heap 取分數最高的商品，不需要排序所有符合的商品。
+ * 容錯查詢（fuzzySearch）把英數詞展開成字典中第一個字母相同、編輯距離夠近的詞（FuzzyTermMatcher），較長的中文則以 n-gram 重疊的比例判斷，容許少數錯字。
+ * 分類、類型、狀態、價格與評分的篩選由 ProductFacets 以相同的文件編號保存成 CompressedBitmap，與關鍵字的結果取 AND。
+ * 每個商品記錄自己的詞，修改時只調整有變動的 posting list；商品的寫入流程經由 ProductService.productUpdated 更新索引。
+ * posting list 變成空的時候把詞移出字典並回收詞編號，字典大小只隨目前商品中的詞成長，不會累積已經沒有商品的詞。
+ * 查詢取 read lock 可以同時進行，更新與重建取 write lock。
+ * 啟動時串流所有商品重建；重建完成前 isReady() 為 false，由呼叫端改用資料庫的 regex 查詢。
+ */
+@Component
+public class SearchIndex {
+
+    // 前綴展開最多的詞數，避免一兩個字母展開成大量的詞
+    static final int MAX_PREFIX_TERMS = 64;
+    // BM25 參數：詞頻飽和程度與文件長度正規化程度
+    static final double BM25_K1 = 1.2;
+    static final double BM25_B = 0.75;
+    // 容錯查詢：英數詞長度達到 4 可有一個錯字、達到 8 可有兩個，純數字（型號、容量）不容錯；
+    // 第一個字母必須正確（很少打錯），只需走訪以同一個字母開頭的詞
+    static final int FUZZY_ONE_TYPO_LENGTH = 4;
+    static final int FUZZY_TWO_TYPOS_LENGTH = 8;
+    // 容錯查詢：連續的中文達到 3 個字可有一個錯字、達到 6 個字可有兩個
+    static final int FUZZY_CJK_ONE_TYPO_LENGTH = 3;
+    static final int FUZZY_CJK_TWO_TYPOS_LENGTH = 6;
+    // 每差一個字元，該詞的分數乘上 TYPO_PENALTY；容錯查詢時中文單字的分數權重（bigram 為 1）
+    static final double TYPO_PENALTY = 0.5;
+    static final double FUZZY_UNIGRAM_WEIGHT = 0.3;
+
+    private final ProductRepository productRepository;
+    private final SearchRanking ranking;
+    private final boolean enabled;
+    private final int maxDescriptionLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // productID -> 文件編號；文件編號 -> productID、該文件的詞（詞編號，已排序）、詞數與排序訊號
+    private final Map<String, Integer> docOf = new HashMap<>();
+    private String[] productIDs = new String[1024];
+    private int[][] termsOf = new int[1024][];
+    private int[] docLength = new int[1024];
+    private double[] staticScore = new double[1024];
+    private long[] createdMillis = new long[1024];
+    private long totalLength;
+    private final Postings freeDocs = new Postings();
+    private int nextDoc;
+
+    // 詞 -> 詞編號 -> posting list；英數詞另外依字母順序保存，用於前綴查詢
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+    // 詞編號 -> 詞（回收時從字典移除用）；已回收、可重複使用的詞編號
+    private final List<String> termText = new ArrayList<>();
+    private final Postings freeTerms = new Postings();
+    private final TreeMap<String, Integer> words = new TreeMap<>();
+    private ProductFacets facets = new ProductFacets();
+    private volatile boolean ready;
+
+    @Autowired
+    public SearchIndex(ProductRepository productRepository,
+                       SearchRanking ranking,
+                       @Value("${auction.search.enabled:true}") boolean enabled,
+                       @Value("${auction.search.max-description-length:500}") int maxDescriptionLength) {
+        this.productRepository = productRepository;
+        this.ranking = ranking;
+        this.enabled = enabled;
+        this.maxDescriptionLength = Math.max(0, maxDescriptionLength);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 索引中的商品數
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docOf.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 字典中的詞數（只包含仍有商品的詞）
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return termIds.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 商品新增或修改後呼叫，依商品目前的名稱、分類、描述與排序訊號更新
+    public void update(Product product) {
+        if (!enabled || product == null || product.getProductID() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            apply(product);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 商品刪除後呼叫
+    public void remove(String productID) {
+        if (!enabled || productID == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer doc = docOf.remove(productID);
+            if (doc == null) {
+                return;
+            }
+            for (int term : termsOf[doc]) {
+                removePosting(term, doc);
+            }
+            totalLength -= docLength[doc];
+            facets.clear(doc);
+            productIDs[doc] = null;
+            termsOf[doc] = null;
+            freeDocs.add(doc, 0);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 回傳符合所有查詢詞的 productID，依分數由高到低，最多 limit 筆
+     */
+    public List<String> search(String keyword, int limit) {
+        List<SearchTokenizer.Term> terms = SearchTokenizer.queryTerms(keyword);
+        if (terms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Group> groups = termGroups(terms);
+            if (groups == null) {
+                return List.of();
+            }
+            return productIDsOf(rank(candidates(groups), groups, limit));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 關鍵字（可為空白，表示不限）加上篩選條件：回傳分數最高的 limit 個 productID、符合的總數與各欄位的數量
+     * 沒有關鍵字時只依商品訊號排序
+     */
+    public FilterResult filter(String keyword, ProductFilter filter, int limit) {
+        List<SearchTokenizer.Term> terms = SearchTokenizer.queryTerms(keyword);
+        lock.readLock().lock();
+        try {
+            List<Group> groups = List.of();
+            CompressedBitmap scope = facets.all();
+            if (!terms.isEmpty()) {
+                groups = termGroups(terms);
+                scope = groups == null ? new CompressedBitmap() : toBitmap(candidates(groups));
+            }
+            CompressedBitmap[] constraints = facets.constraints(filter);
+            CompressedBitmap all = ProductFacets.combine(constraints, null);
+            int[] matched = (all == null ? scope : scope.and(all)).toArray();
+            int[] top = rank(new DocList(matched, matched.length), groups == null ? List.of() : groups, Math.max(limit, 0));
+            return new FilterResult(productIDsOf(top), matched.length, facets.counts(constraints, scope));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 篩選結果：productIDs 依分數由高到低；facets 為 欄位 -> 值 -> 商品數
+    public record FilterResult(List<String> productIDs, int total, Map<String, Map<String, Integer>> facets) {
+    }
+
+    /**
+     * 容錯查詢：回傳符合所有查詢詞（容許少數錯字）的 productID，依分數由高到低，最多 limit 筆
+     * 英數詞展開成編輯距離在容許範圍內的詞，錯字越多權重越低，完全相同的詞排在前面；
+     * budgetNanos 為展開字典的時間上限，超過時只用已經找到的詞查詢
+     */
+    public List<String> fuzzySearch(String keyword, int limit, long budgetNanos) {
+        List<SearchTokenizer.Term> queryWords = SearchTokenizer.queryWords(keyword);
+        if (queryWords.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        long deadline = System.nanoTime() + Math.max(0, budgetNanos);
+        lock.readLock().lock();
+        try {
+            List<Group> groups = new ArrayList<>();
+            List<DocList> lists = new ArrayList<>();
+            for (int i = 0; i < queryWords.size(); i++) {
+                SearchTokenizer.Term word = queryWords.get(i);
+                boolean found = word.cjk()
+                        ? addCjkWord(word.text(), deadline, groups, lists)
+                        : addLatinWord(word.text(), i == queryWords.size() - 1, deadline, groups, lists);
+                if (!found) {
+                    return List.of();
+                }
+            }
+            return productIDsOf(rank(intersect(lists.toArray(DocList[]::new)), groups, limit));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 英數詞：可容許的錯字數為 0 時與一般查詢相同，否則由 FuzzyTermMatcher 展開；沒有任何符合的詞時回傳 false
+    private boolean addLatinWord(String word, boolean prefix, long deadline, List<Group> groups, List<DocList> lists) {
+        int maxEdits = maxEdits(word);
+        Group group;
+        if (maxEdits == 0) {
+            group = Group.of(prefix ? prefixPostings(word) : exactPostings(word));
+        }
+        else {
+            String first = word.substring(0, Character.charCount(word.codePointAt(0)));
+            List<FuzzyTermMatcher.Match> matches = new ArrayList<>(FuzzyTermMatcher.match(
+                    words.subMap(first, true, first + Character.MAX_VALUE, false), word, maxEdits, prefix, deadline));
+            matches.removeIf(match -> postings.get(match.id()).size == 0);
+            matches.sort(Comparator.comparingInt(FuzzyTermMatcher.Match::distance)
+                    .thenComparing(match -> -postings.get(match.id()).size));
+            int count = Math.min(matches.size(), MAX_PREFIX_TERMS);
+            List<Postings> expanded = new ArrayList<>(count);
+            double[] weights = new double[count];
+            for (int i = 0; i < count; i++) {
+                expanded.add(postings.get(matches.get(i).id()));
+                weights[i] = Math.pow(TYPO_PENALTY, matches.get(i).distance());
+            }
+            group = new Group(expanded, weights, false);
+        }
+        if (group.lists().isEmpty()) {
+            return false;
+        }
+        groups.add(group);
+        lists.add(union(group.lists()));
+        return true;
+    }
+
+    // 連續的中文：太短時與一般查詢相同（每個 bigram 都要出現）；較長時容許 t 個錯字，
+    // 一個錯字最多讓一個單字與兩個 bigram 不符合，因此要求至少 (單字數 - t) 個單字與 (bigram 數 - 2t) 個 bigram（至少一個）出現；
+    // 計數超過 deadline 時退回一般查詢（每個 bigram 都要出現）
+    private boolean addCjkWord(String text, long deadline, List<Group> groups, List<DocList> lists) {
+        int length = text.codePointCount(0, text.length());
+        if (length < FUZZY_CJK_ONE_TYPO_LENGTH) {
+            for (SearchTokenizer.Term term : SearchTokenizer.queryTerms(text)) {
+                List<Postings> group = exactPostings(term.text());
+                if (group.isEmpty()) {
+                    return false;
+                }
+                groups.add(Group.of(group));
+                lists.add(union(group));
+            }
+            return true;
+        }
+        int typos = length >= FUZZY_CJK_TWO_TYPOS_LENGTH ? 2 : 1;
+        Set<String> unigrams = new LinkedHashSet<>();
+        Set<String> bigrams = new LinkedHashSet<>();
+        for (int i = 0; i < text.length(); ) {
+            int next = i + Character.charCount(text.codePointAt(i));
+            unigrams.add(text.substring(i, next));
+            if (next < text.length()) {
+                bigrams.add(text.substring(i, next + Character.charCount(text.codePointAt(next))));
+            }
+            i = next;
+        }
+        int needUnigrams = Math.max(1, unigrams.size() - typos);
+        int needBigrams = Math.max(1, bigrams.size() - 2 * typos);
+        List<Postings> unigramLists = new ArrayList<>();
+        List<Postings> bigramLists = new ArrayList<>();
+        unigrams.forEach(gram -> unigramLists.addAll(exactPostings(gram)));
+        bigrams.forEach(gram -> bigramLists.addAll(exactPostings(gram)));
+        if (unigramLists.size() < needUnigrams || bigramLists.size() < needBigrams) {
+            return false;
+        }
+        DocList bigramDocs = docsWithHits(bigramLists, needBigrams, deadline);
+        DocList unigramDocs = bigramDocs == null || bigramDocs.size() == 0 ? bigramDocs : docsWithHits(unigramLists, needUnigrams, deadline);
+        DocList matched;
+        if (unigramDocs == null) {
+            if (bigramLists.size() < bigrams.size()) {
+                return false;
+            }
+            matched = intersect(bigramLists.stream().map(Postings::view).toArray(DocList[]::new));
+        }
+        else {
+            matched = intersect(new DocList[]{bigramDocs, unigramDocs});
+        }
+        if (matched.size() == 0) {
+            return false;
+        }
+        List<Postings> grams = new ArrayList<>(bigramLists);
+        grams.addAll(unigramLists);
+        double[] weights = new double[grams.size()];
+        Arrays.fill(weights, 0, bigramLists.size(), 1.0);
+        Arrays.fill(weights, bigramLists.size(), grams.size(), FUZZY_UNIGRAM_WEIGHT);
+        groups.add(new Group(grams, weights, true));
+        lists.add(matched);
+        return true;
+    }
+
+    // 出現在至少 need 個 posting list 中的文件（已排序）：把文件編號接在一起排序後，同一個文件連續出現的次數就是它符合的 n-gram 數，
+    // 工作量只與掃過的 posting 數成正比，不需要配置與文件數一樣大的陣列；超過 deadline 時回傳 null
+    private static DocList docsWithHits(List<Postings> lists, int need, long deadline) {
+        int total = 0;
+        for (Postings list : lists) {
+            total += list.size;
+        }
+        int[] docs = new int[total];
+        int n = 0;
+        for (Postings list : lists) {
+            if (System.nanoTime() > deadline) {
+                return null;
+            }
+            System.arraycopy(list.docs, 0, docs, n, list.size);
+            n += list.size;
+        }
+        Arrays.sort(docs, 0, n);
+        if (System.nanoTime() > deadline) {
+            return null;
+        }
+        int size = 0;
+        for (int i = 0; i < n; ) {
+            int run = i;
+            while (run < n && docs[run] == docs[i]) {
+                run++;
+            }
+            if (run - i >= need) {
+                docs[size++] = docs[i];
+            }
+            i = run;
+        }
+        return new DocList(docs, size);
+    }
+
+    private static int maxEdits(String word) {
+        if (word.chars().allMatch(Character::isDigit)) {
+            return 0;
+        }
+        return word.length() >= FUZZY_TWO_TYPOS_LENGTH ? 2 : word.length() >= FUZZY_ONE_TYPO_LENGTH ? 1 : 0;
+    }
+
+    // 每個查詢詞對應的 posting list（前綴查詢可能有多個）；任何一個詞沒有商品時回傳 null
+    private List<Group> termGroups(List<SearchTokenizer.Term> terms) {
+        List<Group> groups = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            SearchTokenizer.Term term = terms.get(i);
+            boolean prefix = i == terms.size() - 1 && !term.cjk();
+            List<Postings> group = prefix ? prefixPostings(term.text()) : exactPostings(term.text());
+            if (group.isEmpty()) {
+                return null;
+            }
+            groups.add(Group.of(group));
+        }
+        return groups;
+    }
+
+    // 符合所有查詢詞的文件
+    private DocList candidates(List<Group> groups) {
+        DocList[] lists = new DocList[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            lists[i] = union(groups.get(i).lists());
+        }
+        return intersect(lists);
+    }
+
+    private List<String> productIDsOf(int[] docs) {
+        List<String> result = new ArrayList<>(docs.length);
+        for (int doc : docs) {
+            result.add(productIDs[doc]);
+        }
+        return result;
+    }
+
+    private static CompressedBitmap toBitmap(DocList docs) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i < docs.size(); i++) {
+            bitmap.add(docs.docs()[i]);
+        }
+        return bitmap;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try (Stream<Product> products = productRepository.streamSearchDocuments()) {
+            docOf.clear();
+            productIDs = new String[1024];
+            termsOf = new int[1024][];
+            docLength = new int[1024];
+            staticScore = new double[1024];
+            createdMillis = new long[1024];
+            totalLength = 0;
+            freeDocs.size = 0;
+            nextDoc = 0;
+            termIds.clear();
+            postings.clear();
+            termText.clear();
+            freeTerms.size = 0;
+            words.clear();
+            facets = new ProductFacets();
+            products.forEach(this::apply);
+            ready = true;
+            System.out.println("Search index rebuilt with " + docOf.size() + " products, " + termIds.size() + " terms");
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding search index: " + e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 呼叫端持有 write lock
+    private void apply(Product product) {
+        DocTerms terms = termsOf(product);
+        Integer existing = docOf.get(product.getProductID());
+        int doc = existing != null ? existing : allocate(product.getProductID());
+        int[] previous = existing != null ? termsOf[doc] : new int[0];
+        // 兩邊都已排序，只處理有變動的詞；仍存在的詞更新詞頻
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < terms.ids().length) {
+            if (j == terms.ids().length || (i < previous.length && previous[i] < terms.ids()[j])) {
+                removePosting(previous[i++], doc);
+            }
+            else if (i == previous.length || terms.ids()[j] < previous[i]) {
+                postings.get(terms.ids()[j]).add(doc, terms.freqs()[j]);
+                j++;
+            }
+            else {
+                postings.get(terms.ids()[j]).add(doc, terms.freqs()[j]);
+                i++;
+                j++;
+            }
+        }
+        termsOf[doc] = terms.ids();
+        totalLength += terms.length() - (existing != null ? docLength[doc] : 0);
+        docLength[doc] = terms.length();
+        staticScore[doc] = ranking.staticScore(product);
+        createdMillis[doc] = SearchRanking.createdMillis(product);
+        facets.set(doc, product);
+    }
+
+    private int allocate(String productID) {
+        int doc;
+        if (freeDocs.size > 0) {
+            doc = freeDocs.docs[--freeDocs.size];
+        }
+        else {
+            doc = nextDoc++;
+            if (doc == productIDs.length) {
+                productIDs = Arrays.copyOf(productIDs, doc * 2);
+                termsOf = Arrays.copyOf(termsOf, doc * 2);
+                docLength = Arrays.copyOf(docLength, doc * 2);
+                staticScore = Arrays.copyOf(staticScore, doc * 2);
+                createdMillis = Arrays.copyOf(createdMillis, doc * 2);
+            }
+        }
+        productIDs[doc] = productID;
+        docOf.put(productID, doc);
+        return doc;
+    }
+
+    private DocTerms termsOf(Product product) {
+        String description = product.getProductDescription();
+        if (description != null && description.length() > maxDescriptionLength) {
+            description = description.substring(0, maxDescriptionLength);
+        }
+        Map<String, Integer> terms = SearchTokenizer.indexTerms(
+                joinNonNull(product.getProductName(), product.getProductCategory(), description));
+        // 詞編號與詞頻放在同一個 long 一起排序：高 32 位元為詞編號，低 32 位元為詞頻
+        long[] packed = new long[terms.size()];
+        int n = 0;
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            Integer id = termIds.get(term.getKey());
+            if (id == null) {
+                id = allocateTerm(term.getKey());
+            }
+            packed[n++] = ((long) id << 32) | term.getValue();
+            length += term.getValue();
+        }
+        Arrays.sort(packed);
+        int[] ids = new int[n];
+        int[] freqs = new int[n];
+        for (int k = 0; k < n; k++) {
+            ids[k] = (int) (packed[k] >>> 32);
+            freqs[k] = (int) packed[k];
+        }
+        return new DocTerms(ids, freqs, length);
+    }
+
+    // 新的詞：優先使用回收的詞編號（其 posting list 已換成新的空 list）
+    private int allocateTerm(String term) {
+        int id;
+        if (freeTerms.size > 0) {
+            id = freeTerms.docs[--freeTerms.size];
+            termText.set(id, term);
+        }
+        else {
+            id = postings.size();
+            postings.add(new Postings());
+            termText.add(term);
+        }
+        termIds.put(term, id);
+        if (!SearchTokenizer.isCjk(term.codePointAt(0))) {
+            words.put(term, id);
+        }
+        return id;
+    }
+
+    // 從詞的 posting list 移除文件；變成空的時候把詞移出字典並回收詞編號
+    // 呼叫端持有 write lock；正在更新的商品新的詞都已有商品或剛配置，不會是這裡回收的詞
+    private void removePosting(int term, int doc) {
+        Postings list = postings.get(term);
+        list.remove(doc);
+        if (list.size > 0) {
+            return;
+        }
+        String text = termText.get(term);
+        termIds.remove(text);
+        words.remove(text);
+        termText.set(term, null);
+        postings.set(term, new Postings());
+        freeTerms.add(term, 0);
+    }
+
+    private List<Postings> exactPostings(String term) {
+        Integer id = termIds.get(term);
+        if (id == null || postings.get(id).size == 0) {
+            return List.of();
+        }
+        return List.of(postings.get(id));
+    }
+
+    // 所有以 prefix 開頭、仍有商品的英數詞
+    private List<Postings> prefixPostings(String prefix) {
+        List<Postings> matched = new ArrayList<>();
+        for (Integer id : words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            Postings list = postings.get(id);
+            if (list.size > 0) {
+                matched.add(list);
+                if (matched.size() == MAX_PREFIX_TERMS) {
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    // 同一個查詢詞的多個 posting list 取聯集
+    private DocList union(List<Postings> group) {
+        if (group.size() == 1) {
+            return group.get(0).view();
+        }
+        BitSet union = new BitSet(nextDoc);
+        for (Postings list : group) {
+            for (int i = 0; i < list.size; i++) {
+                union.set(list.docs[i]);
+            }
+        }
+        int[] docs = union.stream().toArray();
+        return new DocList(docs, docs.length);
+    }
+
+    // 依文件編號遞增掃過符合的商品，每個 posting list 保留目前位置往後 gallop 取得詞頻；
+    // 前綴或容錯展開的詞取乘上權重後分數最高的一個，容錯查詢的中文 n-gram 則加總
+    private int[] rank(DocList matched, List<Group> groups, int limit) {
+        int documents = docOf.size();
+        double averageLength = documents == 0 ? 1 : Math.max(1.0, (double) totalLength / documents);
+        double[][] idf = new double[groups.size()][];
+        int[][] cursors = new int[groups.size()][];
+        for (int g = 0; g < groups.size(); g++) {
+            List<Postings> group = groups.get(g).lists();
+            idf[g] = new double[group.size()];
+            cursors[g] = new int[group.size()];
+            for (int p = 0; p < group.size(); p++) {
+                int df = group.get(p).size;
+                idf[g][p] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+            }
+        }
+        long now = System.currentTimeMillis();
+        TopK top = new TopK(Math.min(limit, matched.size()));
+        for (int i = 0; i < matched.size(); i++) {
+            int doc = matched.docs()[i];
+            double norm = BM25_K1 * (1 - BM25_B + BM25_B * docLength[doc] / averageLength);
+            double text = 0;
+            for (int g = 0; g < groups.size(); g++) {
+                Group group = groups.get(g);
+                double best = 0;
+                for (int p = 0; p < group.lists().size(); p++) {
+                    Postings list = group.lists().get(p);
+                    int at = gallop(list.docs, list.size, cursors[g][p], doc);
+                    cursors[g][p] = at;
+                    if (at < list.size && list.docs[at] == doc) {
+                        int tf = list.freqs[at];
+                        double score = group.weights()[p] * idf[g][p] * tf * (BM25_K1 + 1) / (tf + norm);
+                        best = group.additive() ? best + score : Math.max(best, score);
+                    }
+                }
+                text += best;
+            }
+            top.offer(doc, ranking.textWeight() * text + staticScore[doc] + ranking.recencyScore(createdMillis[doc], now));
+        }
+        return top.drainSorted();
+    }
+
+    // 由最短的 posting list 開始，逐一保留也出現在其他 list 中的文件；不修改傳入的 list
+    static DocList intersect(DocList[] lists) {
+        DocList[] sorted = lists.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(DocList::size));
+        int[] result = sorted[0].docs();
+        int size = sorted[0].size();
+        for (int k = 1; k < sorted.length && size > 0; k++) {
+            DocList other = sorted[k];
+            int[] kept = new int[size];
+            int n = 0;
+            int from = 0;
+            for (int i = 0; i < size && from < other.size(); i++) {
+                from = gallop(other.docs(), other.size(), from, result[i]);
+                if (from < other.size() && other.docs()[from] == result[i]) {
+                    kept[n++] = result[i];
+                    from++;
+                }
+            }
+            result = kept;
+            size = n;
+        }
+        return new DocList(result, size);
+    }
+
+    // 從 from 開始找第一個 >= target 的位置：先以 1、2、4... 的步伐跳，再在最後一段二分搜尋
+    private static int gallop(int[] docs, int size, int from, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && docs[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        int index = Arrays.binarySearch(docs, low, high, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static String joinNonNull(String... parts) {
+        StringBuilder text = new StringBuilder();
+        for (String part : parts) {
+            if (part != null) {
+                text.append(part).append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    // 已排序、不重複的文件編號與各自的詞頻
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        // 已存在時只更新詞頻
+        void add(int doc, int freq) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                freqs[index] = freq;
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            System.arraycopy(freqs, index, freqs, index + 1, size - index);
+            docs[index] = doc;
+            freqs[index] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+                System.arraycopy(freqs, index + 1, freqs, index, size - index - 1);
+                size--;
+            }
+        }
+
+        // 查詢時直接讀取內部陣列（持有 read lock，期間不會被修改）
+        DocList view() {
+            return new DocList(docs, size);
+        }
+    }
+
+    // 已排序的文件編號，只使用前 size 個
+    record DocList(int[] docs, int size) {
+    }
+
+    // 一個查詢詞對應的 posting list 與各自的權重；additive 為 true 時分數加總，否則取最高的一個
+    private record Group(List<Postings> lists, double[] weights, boolean additive) {
+        static Group of(List<Postings> lists) {
+            double[] weights = new double[lists.size()];
+            Arrays.fill(weights, 1.0);
+            return new Group(lists, weights, false);
+        }
+    }
+
+    // 一個商品的詞編號（已排序）、對應的詞頻與總詞數
+    private record DocTerms(int[] ids, int[] freqs, int length) {
+    }
+}
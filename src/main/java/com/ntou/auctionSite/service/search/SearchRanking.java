@@ -0,0 +1,90 @@
+package com.ntou.auctionSite.service.search;
+
+import com.ntou.auctionSite.model.product.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+
+/**
+ * 搜尋結果的排序分數
+ * 分數 = text-weight × BM25 文字相關度 + 商品訊號：
+ * 銷售量、瀏覽次數、評論數取 log1p（避免少數熱門商品的數值壓過其他訊號），
+ * 平均評分換算成 0~1 後依評論數打折（只有一兩則評論的高分不完全採信），
+ * 上架時間以 recency-half-life-days 為半衰期遞減，ACTIVE 的商品另外加上 active-weight。
+ * 除了上架時間之外的訊號與查詢無關，商品寫入索引時先算好（staticScore），查詢時只需加上文字分數與新舊分數。
+ */
+@Component
+public class SearchRanking {
+
+    // 評論數達到此數量時，平均評分採信一半
+    static final double RATING_CONFIDENCE_REVIEWS = 5;
+
+    private final double textWeight;
+    private final double salesWeight;
+    private final double ratingWeight;
+    private final double reviewWeight;
+    private final double viewWeight;
+    private final double recencyWeight;
+    private final double recencyHalfLifeMillis;
+    private final double activeWeight;
+
+    @Autowired
+    public SearchRanking(@Value("${auction.search.ranking.text-weight:1.0}") double textWeight,
+                         @Value("${auction.search.ranking.sales-weight:0.3}") double salesWeight,
+                         @Value("${auction.search.ranking.rating-weight:0.5}") double ratingWeight,
+                         @Value("${auction.search.ranking.review-weight:0.2}") double reviewWeight,
+                         @Value("${auction.search.ranking.view-weight:0.1}") double viewWeight,
+                         @Value("${auction.search.ranking.recency-weight:0.5}") double recencyWeight,
+                         @Value("${auction.search.ranking.recency-half-life-days:30}") double recencyHalfLifeDays,
+                         @Value("${auction.search.ranking.active-weight:3.0}") double activeWeight) {
+        this.textWeight = textWeight;
+        this.salesWeight = salesWeight;
+        this.ratingWeight = ratingWeight;
+        this.reviewWeight = reviewWeight;
+        this.viewWeight = viewWeight;
+        this.recencyWeight = recencyWeight;
+        this.recencyHalfLifeMillis = Math.max(1, recencyHalfLifeDays) * 24 * 60 * 60 * 1000;
+        this.activeWeight = activeWeight;
+    }
+
+    // 預設權重（與設定檔的預設值相同）
+    public static SearchRanking defaults() {
+        return new SearchRanking(1.0, 0.3, 0.5, 0.2, 0.1, 0.5, 30, 3.0);
+    }
+
+    public double textWeight() {
+        return textWeight;
+    }
+
+    // 與查詢無關的訊號分數
+    public double staticScore(Product product) {
+        double rating = Math.min(Math.max(product.getAverageRating(), 0), 5) / 5;
+        int reviews = Math.max(product.getReviewCount(), 0);
+        double score = salesWeight * Math.log1p(Math.max(product.getTotalSales(), 0))
+                + ratingWeight * rating * reviews / (reviews + RATING_CONFIDENCE_REVIEWS)
+                + reviewWeight * Math.log1p(reviews)
+                + viewWeight * Math.log1p(Math.max(product.getViewCount(), 0));
+        if (product.getProductStatus() == Product.ProductStatuses.ACTIVE) {
+            score += activeWeight;
+        }
+        return score;
+    }
+
+    // 新舊分數：剛上架為 recency-weight，每經過一個半衰期減半；沒有上架時間為 0
+    public double recencyScore(long createdMillis, long nowMillis) {
+        if (createdMillis == Long.MIN_VALUE) {
+            return 0;
+        }
+        double age = Math.max(0, nowMillis - createdMillis);
+        return recencyWeight * Math.pow(0.5, age / recencyHalfLifeMillis);
+    }
+
+    // 商品的上架時間（毫秒），沒有時為 Long.MIN_VALUE
+    static long createdMillis(Product product) {
+        return product.getCreatedTime() == null
+                ? Long.MIN_VALUE
+                : product.getCreatedTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -1,23 +1,62 @@
 package com.ntou.auctionSite.service.search;
 
-import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.dto.product.FacetSearchResponse;
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
 
 //提供根據關鍵字搜尋、模糊搜尋等功能
 @Service
-@RequiredArgsConstructor
 public class SearchService {
     
     private final ProductRepository productRepository;
-    public List<Product> searchByKeyword(String keyword){//精確搜尋
+    private final SearchIndex searchIndex;
+    private final AutocompleteIndex autocompleteIndex;
+    private final int maxResults;
+    private final long fuzzyBudgetNanos;
+
+    @Autowired
+    public SearchService(ProductRepository productRepository,
+                         SearchIndex searchIndex,
+                         AutocompleteIndex autocompleteIndex,
+                         @Value("${auction.search.max-results:500}") int maxResults,
+                         @Value("${auction.search.fuzzy.budget-ms:5}") long fuzzyBudgetMillis) {
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.autocompleteIndex = autocompleteIndex;
+        this.maxResults = Math.max(1, maxResults);
+        this.fuzzyBudgetNanos = Math.max(0, fuzzyBudgetMillis) * 1_000_000;
+    }
+
+    public List<ProductSummary> searchByKeyword(String keyword){//精確搜尋
+        try{
+            List<ProductSummary> productList=productRepository.findSummariesByProductName(keyword);
+            if(productList.isEmpty()){
+                throw new NoSuchElementException("No product found!");
+            }
+            return productList;
+        }
+        catch(Exception e) {
+            System.err.println("Error fetching products: " + e.getMessage());
+            return Collections.emptyList();//回傳一個不可更改的空list
+        }
+    }
+    //搜尋索引就緒時以索引找出分數最高的 productID（文字相關度加商品訊號），再向資料庫取列表欄位；否則以跳脫後的關鍵字做 regex 查詢
+    public List<ProductSummary> blurSearch(String keyword){
         try{
-            List<Product> productList=productRepository.findByProductName(keyword);
+            List<ProductSummary> productList = searchIndex.isReady()
+                    ? fetchInOrder(searchIndex.search(keyword, maxResults))
+                    : productRepository.searchProducts(Pattern.quote(keyword));
             if(productList.isEmpty()){
                 throw new NoSuchElementException("No product found!");
             }
@@ -28,9 +67,13 @@ public class SearchService {
             return Collections.emptyList();//回傳一個不可更改的空list
         }
     }
-    public List<Product> blurSearch(String keyword){
+
+    //容錯搜尋：拼錯字（英文錯字、中文品牌名打錯一個字）也找得到，完全符合的排在前面；搜尋索引尚未就緒時與 blurSearch 相同
+    public List<ProductSummary> fuzzySearch(String keyword){
         try{
-            List<Product> productList=productRepository.searchProducts(keyword);
+            List<ProductSummary> productList = searchIndex.isReady()
+                    ? fetchInOrder(searchIndex.fuzzySearch(keyword, maxResults, fuzzyBudgetNanos))
+                    : productRepository.searchProducts(Pattern.quote(keyword));
             if(productList.isEmpty()){
                 throw new NoSuchElementException("No product found!");
             }
@@ -41,4 +84,32 @@ public class SearchService {
             return Collections.emptyList();//回傳一個不可更改的空list
         }
     }
+
+    //關鍵字（可省略）加上分類、類型、狀態、價格、評分篩選，回傳排序後的商品、總數與各欄位的數量；搜尋索引尚未就緒時拋出 IllegalStateException
+    public FacetSearchResponse filter(String keyword, ProductFilter filter, int limit){
+        if (!searchIndex.isReady()) {
+            throw new IllegalStateException("Search index is not ready");
+        }
+        SearchIndex.FilterResult result = searchIndex.filter(keyword, filter, Math.min(Math.max(limit, 0), maxResults));
+        return new FacetSearchResponse(fetchInOrder(result.productIDs()), result.total(), result.facets());
+    }
+
+    //搜尋框自動完成：以 prefix 開頭的熱門商品名稱與分類；沒有符合時回傳空 list（不視為錯誤）
+    public List<String> autocomplete(String prefix, int limit){
+        return autocompleteIndex.complete(prefix, limit);
+    }
+
+    //$in 不保證順序，依索引回傳的順序排列
+    private List<ProductSummary> fetchInOrder(List<String> productIDs) {
+        if (productIDs.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Integer> rank = new HashMap<>();
+        for (int i = 0; i < productIDs.size(); i++) {
+            rank.put(productIDs.get(i), i);
+        }
+        List<ProductSummary> products = productRepository.findSummariesByProductIDIn(productIDs);
+        products.sort(Comparator.comparingInt(product -> rank.getOrDefault(product.getProductID(), Integer.MAX_VALUE)));
+        return products;
+    }
 }
@@ -0,0 +1,148 @@
+package com.ntou.auctionSite.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 搜尋用的斷詞
+ * 先做 NFKC 正規化（全形英數轉半形）並轉小寫，再依字元種類切開：
+ * 中日韓文字沒有空白分隔，以 bigram（相鄰兩個字）為詞，建立索引時另外加入單字，讓一個字的查詢也能找到；
+ * 英文與數字以連續的字母、數字為一個詞；其他符號與空白都是分隔字元。
+ */
+public final class SearchTokenizer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SearchTokenizer() {
+    }
+
+    // NFKC 正規化、轉小寫，連續空白合併成一個並去掉頭尾空白（自動完成比對前綴用）
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    // 建立索引用：單字 + bigram + 英數詞與各自出現的次數（依第一次出現的順序）
+    public static Map<String, Integer> indexTerms(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk()) {
+                terms.merge(run.text(), 1, Integer::sum);
+                continue;
+            }
+            String cjk = run.text();
+            for (int i = 0; i < cjk.length(); ) {
+                int first = cjk.codePointAt(i);
+                int next = i + Character.charCount(first);
+                terms.merge(cjk.substring(i, next), 1, Integer::sum);
+                if (next < cjk.length()) {
+                    terms.merge(cjk.substring(i, next + Character.charCount(cjk.codePointAt(next))), 1, Integer::sum);
+                }
+                i = next;
+            }
+        }
+        return terms;
+    }
+
+    // 查詢用：中日韓文字只用 bigram（只有一個字時用單字），所有 bigram 都出現才算符合，效果接近子字串比對
+    public static List<Term> queryTerms(String text) {
+        List<Term> terms = new ArrayList<>();
+        Set<String> seen = new LinkedHashSet<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk()) {
+                if (seen.add(run.text())) {
+                    terms.add(new Term(run.text(), false));
+                }
+                continue;
+            }
+            String cjk = run.text();
+            int first = cjk.codePointAt(0);
+            if (Character.charCount(first) == cjk.length()) {
+                if (seen.add(cjk)) {
+                    terms.add(new Term(cjk, true));
+                }
+                continue;
+            }
+            for (int i = 0; i < cjk.length(); ) {
+                int next = i + Character.charCount(cjk.codePointAt(i));
+                if (next >= cjk.length()) {
+                    break;
+                }
+                String bigram = cjk.substring(i, next + Character.charCount(cjk.codePointAt(next)));
+                if (seen.add(bigram)) {
+                    terms.add(new Term(bigram, true));
+                }
+                i = next;
+            }
+        }
+        return terms;
+    }
+
+    // 容錯查詢用：每段連續的中日韓文字、每個英數詞各為一個 Term，重複的只保留一個
+    public static List<Term> queryWords(String text) {
+        Set<Term> words = new LinkedHashSet<>();
+        for (Run run : runs(text)) {
+            words.add(new Term(run.text(), run.cjk()));
+        }
+        return new ArrayList<>(words);
+    }
+
+    // 查詢詞；cjk 為 false 的是英數詞
+    public record Term(String text, boolean cjk) {
+    }
+
+    private record Run(String text, boolean cjk) {
+    }
+
+    private static List<Run> runs(String text) {
+        List<Run> runs = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return runs;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            boolean cjk = isCjk(codePoint);
+            if (!cjk && !Character.isLetterOrDigit(codePoint)) {
+                flush(runs, current, currentCjk);
+                continue;
+            }
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(runs, current, currentCjk);
+            }
+            currentCjk = cjk;
+            current.appendCodePoint(codePoint);
+        }
+        flush(runs, current, currentCjk);
+        return runs;
+    }
+
+    private static void flush(List<Run> runs, StringBuilder current, boolean cjk) {
+        if (current.length() > 0) {
+            runs.add(new Run(current.toString(), cjk));
+            current.setLength(0);
+        }
+    }
+
+    static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || script == Character.UnicodeScript.BOPOMOFO;
+    }
+}
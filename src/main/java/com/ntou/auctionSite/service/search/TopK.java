@@ -0,0 +1,90 @@
+package com.ntou.auctionSite.service.search;
+
+/**
+ * 取分數最高的 k 筆（同分時編號小的優先）
+ * 以大小為 k 的 min-heap 保存目前最好的 k 筆，堆頂是其中最差的一筆；新的一筆比堆頂好才取代並往下調整，
+ * n 筆共 O(n log k)，不需要把所有候選排序。
+ */
+final class TopK {
+
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    TopK(int k) {
+        ids = new int[Math.max(0, k)];
+        scores = new double[ids.length];
+    }
+
+    void offer(int id, double score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        }
+        else if (size > 0 && worse(0, id, score)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 依分數由高到低排列的編號；呼叫後不可再 offer
+    int[] drainSorted() {
+        // heap sort：每次把堆頂（最差）換到尾端，最後由好到壞排列
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        int[] result = new int[size];
+        System.arraycopy(ids, 0, result, 0, size);
+        size = 0;
+        return result;
+    }
+
+    // 位置 i 的那筆是否比 (id, score) 差
+    private boolean worse(int i, int id, double score) {
+        return scores[i] < score || (scores[i] == score && ids[i] > id);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, ids[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && worse(child + 1, ids[child], scores[child])) {
+                child++;
+            }
+            if (!worse(child, ids[i], scores[i])) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -1,10 +1,10 @@
 package com.ntou.auctionSite.service.user;
 
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.dto.user.UpdatePasswordRequest;
 import com.ntou.auctionSite.dto.user.UpdateUserRequest;
 import com.ntou.auctionSite.dto.user.UserInfoResponse;
 import com.ntou.auctionSite.dto.user.PublicUserInfoResponse;
-import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.model.user.User;
 import com.ntou.auctionSite.repository.ProductRepository;
 import com.ntou.auctionSite.repository.UserRepository;
@@ -35,7 +35,7 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("使用者不存在"));
 
         // 取得該使用者正在販售的商品
-        List<Product> sellingProducts = productRepository.findBySellerID(user.getId());
+        List<ProductSummary> sellingProducts = productRepository.findSummariesBySellerID(user.getId());
 
         return new UserInfoResponse(
                 user.getId(),
@@ -101,7 +101,7 @@ public class UserService {
         user = userRepository.save(user);
 
         // 取得該使用者正在販售的商品
-        List<Product> sellingProducts = productRepository.findBySellerID(user.getId());
+        List<ProductSummary> sellingProducts = productRepository.findSummariesBySellerID(user.getId());
 
         return new UserInfoResponse(
                 user.getId(),
@@ -148,7 +148,7 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("使用者不存在"));
 
         // 取得該使用者正在販售的商品
-        List<Product> sellingProducts = productRepository.findBySellerID(userId);
+        List<ProductSummary> sellingProducts = productRepository.findSummariesBySellerID(userId);
 
         return new PublicUserInfoResponse(
                 user.getId(),
@@ -0,0 +1,97 @@
+package com.ntou.auctionSite.utils;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 商品、訂單、優惠券、評論共用的 ID 產生器（Snowflake 格式）
+ * 64 位元依序為：41 位元毫秒時間（自 2025-01-01 起，約可用 69 年）、10 位元節點編號、12 位元同一毫秒內的序號，
+ * 再以 Crockford Base32 編成固定 13 碼接在前綴後面（例如 PROD0C5XH2M4W0001），字串排序與產生順序一致，
+ * 寫入 _id 索引時都落在最右邊的頁面。
+ * 同一個節點產生的 ID 不會重複，不需要再用 findById 檢查；多台伺服器時以 auction.id.node-id 指定不同的節點編號。
+ * 以 CAS 更新「時間 + 序號」，不使用鎖；同一毫秒的序號用完或系統時間倒退時，沿用上一個時間繼續往後遞增，不會等待也不會重複。
+ */
+@Component
+public class IdGenerator {
+
+    public static final String PRODUCT = "PROD";
+    public static final String ORDER = "ORD";
+    public static final String COUPON = "COUP";
+    public static final String REVIEW = "REVW";
+
+    static final long EPOCH = 1735689600000L;// 2025-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long node;
+    private final LongSupplier clock;
+    // 上一個發出的 (時間 << SEQUENCE_BITS | 序號)，只會增加
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public IdGenerator(@Value("${auction.id.node-id:-1}") int nodeId) {
+        this(nodeId < 0 ? defaultNodeId() : nodeId, System::currentTimeMillis);
+    }
+
+    public IdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("node-id must be between 0 and " + MAX_NODE);
+        }
+        this.node = nodeId;
+        this.clock = clock;
+    }
+
+    public int getNodeId() {
+        return (int) node;
+    }
+
+    //前綴 + 13 碼
+    public String next(String prefix) {
+        char[] id = new char[prefix.length() + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), id, 0);
+        long value = nextLong();
+        for (int i = id.length - 1; i >= prefix.length(); i--) {
+            id[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(id);
+    }
+
+    public long nextLong() {
+        long now = clock.getAsLong() - EPOCH;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            // 時間前進時序號從 0 開始；同一毫秒、序號用完（進位到時間）或時間倒退時接在上一個後面
+            next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+        }
+        while (!last.compareAndSet(prev, next));
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    // 沒有設定節點編號時，以主機名稱與 PID 推算（單機部署足夠，多台伺服器請明確設定）
+    private static int defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        }
+        catch (Exception e) {
+            System.err.println("Error resolving host name for id node: " + e.getMessage());
+            host = "localhost";
+        }
+        String identity = host + "/" + ManagementFactory.getRuntimeMXBean().getPid();
+        return (identity.hashCode() & 0x7fffffff) % (MAX_NODE + 1);
+    }
+}
@@ -0,0 +1,352 @@
+package com.ntou.auctionSite.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ntou.auctionSite.controller.bid.BidController;
+import com.ntou.auctionSite.dto.user.UserInfoResponse;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.*;
+import com.ntou.auctionSite.service.history.BidLadderService;
+import com.ntou.auctionSite.service.history.HistoryService;
+import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.service.user.UserService;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 併發出價壓力測試工具
+ * 以真正的 BidController → BidService → AuctionEngine 處理出價，資料層換成 InMemoryAuctionStore；
+ * 每個買家是一條 virtual thread，依設定的分布（平均或集中在少數熱門拍賣）連續出價，
+ * 量測吞吐量與 p50/p99/p999 延遲，結束後檢查正確性：
+ * 每個拍賣的最高價依寫入順序嚴格遞增、商品最高價與最高的成功出價一致、
+ * 每個成功的出價都寫入了商品與競標紀錄（沒有遺失）。
+ * 結果可以寫成 JSON，方便比較不同版本。
+ */
+class BidLoadHarness {
+
+    enum Distribution { UNIFORM, HOT }
+
+    /**
+     * 壓力測試設定
+     *
+     * @param viaController true 時經由 BidController（MockMvc），false 時直接呼叫 BidService.placeBid
+     * @param engineEnabled true 時使用拍賣引擎，false 時使用資料庫條件式更新
+     * @param hotAuctions   HOT 分布時的熱門拍賣數
+     * @param hotShare      HOT 分布時出價落在熱門拍賣的比例
+     */
+    record Config(boolean viaController, boolean engineEnabled, int bidders, int auctions, int bidsPerBidder,
+                  Distribution distribution, int hotAuctions, double hotShare, int writeLatencyMicros, long seed) {
+
+        //以 -Dloadtest.xxx 覆寫預設值
+        static Config fromSystemProperties(Distribution distribution) {
+            return new Config(
+                    !"service".equalsIgnoreCase(System.getProperty("loadtest.target", "controller")),
+                    Boolean.parseBoolean(System.getProperty("loadtest.engine", "true")),
+                    Integer.getInteger("loadtest.bidders", 2000),
+                    Integer.getInteger("loadtest.auctions", 100),
+                    Integer.getInteger("loadtest.bids-per-bidder", 50),
+                    distribution,
+                    Integer.getInteger("loadtest.hot-auctions", 3),
+                    Double.parseDouble(System.getProperty("loadtest.hot-share", "0.9")),
+                    Integer.getInteger("loadtest.write-latency-micros", 200),
+                    Long.getLong("loadtest.seed", 20251018L));
+        }
+    }
+
+    record Result(Config config, long requests, long accepted, long outbid, long closed, long errors,
+                  double elapsedSeconds, double throughput, double p50Millis, double p99Millis, double p999Millis,
+                  double maxMillis, Map<String, Boolean> invariants, List<String> violations) {
+
+        boolean invariantsHold() {
+            return violations.isEmpty();
+        }
+    }
+
+    // 買家端記錄的成功出價
+    private record Accepted(String productID, String bidderID, int price) {
+    }
+
+    private final Config config;
+    private final InMemoryAuctionStore store;
+    private final AuctionEngine engine;
+    private final BidService bidService;
+    private final MockMvc mockMvc;
+    private final List<String> productIDs = new ArrayList<>();
+
+    BidLoadHarness(Config config) {
+        this.config = config;
+        this.store = new InMemoryAuctionStore(config.writeLatencyMicros());
+
+        HistoryService historyService = mock(HistoryService.class);
+        doAnswer(invocation -> {
+            store.saveHistory(invocation.getArgument(0));
+            return null;
+        }).when(historyService).recordBidHistory(any(bidHistory.class));
+        doAnswer(invocation -> {
+            store.saveHistory(invocation.getArgument(0));
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(historyService).recordBidHistory(any(bidHistory.class), any(Runnable.class));
+
+        ProductService productService = mock(ProductService.class);
+        when(productService.getProductById(anyString()))
+                .thenAnswer(invocation -> store.product(invocation.getArgument(0)));
+        UserService userService = mock(UserService.class);
+        when(userService.getUserInfo(anyString())).thenAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            return new UserInfoResponse(username, username, null, null, null, null, 0, 0, false, List.of(), 0);
+        });
+
+        ProductRepository productRepository = store.productRepository();
+        this.engine = new AuctionEngine(productRepository, store.bidHistoryRepository(),
+                store.proxyBidRepository(), historyService, config.engineEnabled(), 0, 2, 1);
+        this.bidService = new BidService();
+        ReflectionTestUtils.setField(bidService, "repository", productRepository);
+        ReflectionTestUtils.setField(bidService, "productService", productService);
+        ReflectionTestUtils.setField(bidService, "historyService", historyService);
+        ReflectionTestUtils.setField(bidService, "auctionEngine", engine);
+        ReflectionTestUtils.setField(bidService, "expiryScheduler", mock(AuctionExpiryScheduler.class));
+        ReflectionTestUtils.setField(bidService, "auctionBroadcaster", mock(AuctionBroadcaster.class));
+        ReflectionTestUtils.setField(bidService, "settlementService", mock(AuctionSettlementService.class));
+        ReflectionTestUtils.setField(bidService, "bidLadderService", mock(BidLadderService.class));
+
+        BidController controller = new BidController();
+        ReflectionTestUtils.setField(controller, "bidservice", bidService);
+        ReflectionTestUtils.setField(controller, "productService", productService);
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        this.mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        for (int i = 0; i < config.auctions(); i++) {
+            String productID = String.format("PRODLOAD%04d", i);
+            store.createAuction(productID, 100);
+            productIDs.add(productID);
+        }
+    }
+
+    Result run() throws InterruptedException {
+        // 買家看到的目前價格（相當於 WebSocket 推播），出價時以此為基準加價
+        Map<String, AtomicInteger> board = new ConcurrentHashMap<>();
+        productIDs.forEach(id -> board.put(id, new AtomicInteger(100)));
+        long[][] latencies = new long[config.bidders()][];
+        List<Accepted> accepted = new CopyOnWriteArrayList<>();
+        AtomicInteger outbid = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+
+        List<Thread> bidders = new ArrayList<>(config.bidders());
+        for (int b = 0; b < config.bidders(); b++) {
+            int index = b;
+            String bidderID = "LOADU" + b;
+            Random random = new Random(config.seed() + b);
+            latencies[b] = new long[config.bidsPerBidder()];
+            bidders.add(Thread.ofVirtual().name("bidder-" + b).unstarted(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < config.bidsPerBidder(); i++) {
+                    String productID = pickAuction(random);
+                    int price = board.get(productID).get() + 1 + random.nextInt(5);
+                    long start = System.nanoTime();
+                    try {
+                        BidResult result = bid(productID, bidderID, price);
+                        latencies[index][i] = System.nanoTime() - start;
+                        switch (result) {
+                            case ACCEPTED -> {
+                                accepted.add(new Accepted(productID, bidderID, price));
+                                board.get(productID).accumulateAndGet(price, Math::max);
+                            }
+                            case OUTBID -> outbid.incrementAndGet();
+                            default -> closed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        latencies[index][i] = System.nanoTime() - start;
+                        errors.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+                    }
+                }
+            }));
+        }
+
+        bidders.forEach(Thread::start);
+        long start = System.nanoTime();
+        startGate.countDown();
+        for (Thread bidder : bidders) {
+            bidder.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        // 關閉記憶體中的拍賣並等待寫回，之後才檢查資料層
+        if (engine.isEnabled()) {
+            productIDs.forEach(engine::close);
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        List<String> violations = new ArrayList<>();
+        Map<String, Boolean> invariants = checkInvariants(accepted, violations);
+        if (!errors.isEmpty()) {
+            violations.add(errors.size() + " requests failed, first: " + errors.get(0));
+        }
+        invariants.put("noErrors", errors.isEmpty());
+        return new Result(config, all.length, accepted.size(), outbid.get(), closed.get(), errors.size(),
+                elapsedSeconds, all.length / elapsedSeconds,
+                percentileMillis(all, 0.50), percentileMillis(all, 0.99), percentileMillis(all, 0.999),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6, invariants, violations);
+    }
+
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    //把結果寫成 JSON，檔名包含目標、模式、分布與時間
+    static Path writeJson(Result result, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Config config = result.config();
+        String name = String.format("bid-load-%s-%s-%s-%s.json",
+                config.viaController() ? "controller" : "service",
+                config.engineEnabled() ? "engine" : "direct",
+                config.distribution().name().toLowerCase(),
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")));
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", LocalDateTime.now().toString());
+        json.put("javaVersion", System.getProperty("java.version"));
+        json.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        json.put("config", config);
+        json.put("requests", result.requests());
+        json.put("accepted", result.accepted());
+        json.put("outbid", result.outbid());
+        json.put("closed", result.closed());
+        json.put("errors", result.errors());
+        json.put("elapsedSeconds", result.elapsedSeconds());
+        json.put("throughputPerSecond", result.throughput());
+        Map<String, Double> latency = new LinkedHashMap<>();
+        latency.put("p50", result.p50Millis());
+        latency.put("p99", result.p99Millis());
+        latency.put("p999", result.p999Millis());
+        latency.put("max", result.maxMillis());
+        json.put("latencyMillis", latency);
+        json.put("invariants", result.invariants());
+        json.put("violations", result.violations());
+        Path file = directory.resolve(name);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), json);
+        return file;
+    }
+
+    // ===== 內部 =====
+
+    private String pickAuction(Random random) {
+        int hot = Math.min(config.hotAuctions(), productIDs.size());
+        if (config.distribution() == Distribution.HOT && hot > 0
+                && (hot == productIDs.size() || random.nextDouble() < config.hotShare())) {
+            return productIDs.get(random.nextInt(hot));
+        }
+        if (config.distribution() == Distribution.HOT && hot > 0) {
+            return productIDs.get(hot + random.nextInt(productIDs.size() - hot));
+        }
+        return productIDs.get(random.nextInt(productIDs.size()));
+    }
+
+    private BidResult bid(String productID, String bidderID, int price) throws Exception {
+        if (!config.viaController()) {
+            return bidService.placeBid(price, productID, bidderID, bidderID);
+        }
+        MockHttpServletResponse response = mockMvc.perform(post("/api/bids/{id}", productID)
+                        .param("price", String.valueOf(price))
+                        .param("bidderId", bidderID)
+                        .principal(new UsernamePasswordAuthenticationToken(bidderID, null, List.of())))
+                .andReturn().getResponse();
+        String body = response.getContentAsString();
+        if (response.getStatus() == 200) {
+            return BidResult.ACCEPTED;
+        }
+        if (response.getStatus() == 400 && body.contains("higher than current highest bid")) {
+            return BidResult.OUTBID;
+        }
+        if (response.getStatus() == 409) {
+            return BidResult.CLOSED;
+        }
+        throw new IllegalStateException("Unexpected response " + response.getStatus() + ": " + body);
+    }
+
+    private Map<String, Boolean> checkInvariants(List<Accepted> accepted, List<String> violations) {
+        Map<String, List<Accepted>> acceptedByProduct = new HashMap<>();
+        for (Accepted bid : accepted) {
+            acceptedByProduct.computeIfAbsent(bid.productID(), id -> new ArrayList<>()).add(bid);
+        }
+        boolean monotonic = true;
+        boolean noLostBids = true;
+        boolean finalPriceMatches = true;
+        for (String productID : productIDs) {
+            List<bidHistory> histories = store.histories(productID);
+            List<Accepted> bids = acceptedByProduct.getOrDefault(productID, List.of());
+
+            // 商品的最高價依寫入順序嚴格遞增，且同一個價位只有一位得標者
+            List<Integer> applied = store.appliedPrices(productID);
+            for (int i = 1; i < applied.size(); i++) {
+                if (applied.get(i) <= applied.get(i - 1)) {
+                    monotonic = false;
+                    violations.add(productID + ": highest bid went " + applied.get(i - 1) + " -> " + applied.get(i));
+                    break;
+                }
+            }
+            if (bids.stream().map(Accepted::price).distinct().count() != bids.size()) {
+                monotonic = false;
+                violations.add(productID + ": more than one bid accepted at the same price");
+            }
+
+            // 每個回應成功的出價都寫入了商品與競標紀錄，且沒有多出來的紀錄
+            Set<String> recorded = new HashSet<>();
+            histories.forEach(h -> recorded.add(h.getUserID() + "@" + h.getBidAmount()));
+            Set<String> acknowledged = new HashSet<>();
+            bids.forEach(b -> acknowledged.add(b.bidderID() + "@" + b.price()));
+            if (histories.size() != bids.size() || applied.size() != bids.size() || !recorded.equals(acknowledged)) {
+                noLostBids = false;
+                violations.add(productID + ": " + bids.size() + " accepted bids but " + histories.size()
+                        + " histories and " + applied.size() + " product updates");
+            }
+
+            // 商品的最高價與得標者等於最後一個成功的出價
+            Product product = store.product(productID);
+            Accepted top = bids.stream().max(Comparator.comparingInt(Accepted::price)).orElse(null);
+            int expectedPrice = top == null ? 100 : top.price();
+            String expectedBidder = top == null ? null : top.bidderID();
+            if (product.getNowHighestBid() != expectedPrice || !Objects.equals(product.getHighestBidderID(), expectedBidder)) {
+                finalPriceMatches = false;
+                violations.add(productID + ": stored highest bid " + product.getNowHighestBid() + " by "
+                        + product.getHighestBidderID() + ", expected " + expectedPrice + " by " + expectedBidder);
+            }
+        }
+        Map<String, Boolean> invariants = new LinkedHashMap<>();
+        invariants.put("monotonicHighestBid", monotonic);
+        invariants.put("noLostBids", noLostBids);
+        invariants.put("finalPriceMatchesHighestAccepted", finalPriceMatches);
+        return invariants;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
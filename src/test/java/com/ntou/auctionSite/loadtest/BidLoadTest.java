@@ -0,0 +1,102 @@
+package com.ntou.auctionSite.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 併發出價壓力測試
+ * 一般建置只跑小規模的版本，確認壓力測試工具與正確性檢查可以運作；
+ * 完整的壓力測試以 -Dbenchmark=true 啟用，規模可用 -Dloadtest.bidders、-Dloadtest.auctions、
+ * -Dloadtest.bids-per-bidder、-Dloadtest.target=service、-Dloadtest.engine=false 等調整，
+ * 結果寫到 -Dloadtest.output（預設 target/load-test）下的 JSON 檔。
+ */
+@DisplayName("併發出價壓力測試 (BidLoadHarness)")
+class BidLoadTest {
+
+    @TempDir
+    Path directory;
+
+    private static BidLoadHarness.Result run(BidLoadHarness.Config config) throws Exception {
+        BidLoadHarness harness = new BidLoadHarness(config);
+        try {
+            return harness.run();
+        } finally {
+            harness.shutdown();
+        }
+    }
+
+    private static void print(BidLoadHarness.Result result, Path file) {
+        System.out.printf("[load] %s: %d requests in %.2fs, %.0f req/s, p50=%.2fms p99=%.2fms p999=%.2fms, " +
+                        "accepted=%d outbid=%d -> %s%n",
+                result.config().distribution(), result.requests(), result.elapsedSeconds(), result.throughput(),
+                result.p50Millis(), result.p99Millis(), result.p999Millis(), result.accepted(), result.outbid(), file);
+    }
+
+    @Test
+    @DisplayName("測試：經由 BidController 與拍賣引擎集中出價，最高價遞增、出價不遺失，並輸出 JSON 結果")
+    void run_ControllerWithEngine_HotAuctions_ShouldHoldInvariants() throws Exception {
+        // Arrange
+        BidLoadHarness.Config config = new BidLoadHarness.Config(true, true, 64, 10, 20,
+                BidLoadHarness.Distribution.HOT, 2, 0.9, 0, 42L);
+
+        // Act
+        BidLoadHarness.Result result = run(config);
+        Path file = BidLoadHarness.writeJson(result, directory);
+
+        // Assert
+        assertTrue(result.invariantsHold(), "正確性檢查失敗：" + result.violations());
+        assertEquals(64 * 20, result.requests());
+        assertEquals(result.requests(), result.accepted() + result.outbid() + result.closed() + result.errors());
+        assertTrue(result.accepted() > 0);
+        JsonNode json = new ObjectMapper().readTree(file.toFile());
+        assertEquals(1280, json.get("requests").asLong());
+        assertTrue(json.get("latencyMillis").has("p999"));
+        assertTrue(json.get("invariants").get("noLostBids").asBoolean());
+        assertEquals("HOT", json.get("config").get("distribution").asText());
+    }
+
+    @Test
+    @DisplayName("測試：直接呼叫 BidService 並使用資料庫條件式更新平均出價，正確性檢查通過")
+    void run_ServiceWithoutEngine_Uniform_ShouldHoldInvariants() throws Exception {
+        // Arrange
+        BidLoadHarness.Config config = new BidLoadHarness.Config(false, false, 64, 10, 20,
+                BidLoadHarness.Distribution.UNIFORM, 0, 0, 0, 42L);
+
+        // Act
+        BidLoadHarness.Result result = run(config);
+
+        // Assert
+        assertTrue(result.invariantsHold(), "正確性檢查失敗：" + result.violations());
+        assertEquals(0, result.errors());
+        assertTrue(result.p50Millis() <= result.p99Millis() && result.p99Millis() <= result.p999Millis());
+    }
+
+    @ParameterizedTest
+    @EnumSource(BidLoadHarness.Distribution.class)
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：大量 virtual thread 買家同時出價（-Dbenchmark=true 啟用）")
+    void benchmark(BidLoadHarness.Distribution distribution) throws Exception {
+        // Arrange
+        BidLoadHarness.Config config = BidLoadHarness.Config.fromSystemProperties(distribution);
+        Path output = Paths.get(System.getProperty("loadtest.output", "target/load-test"));
+
+        // Act
+        BidLoadHarness.Result result = run(config);
+        Path file = BidLoadHarness.writeJson(result, output);
+        print(result, file);
+
+        // Assert
+        assertTrue(result.invariantsHold(), "正確性檢查失敗：" + result.violations());
+    }
+}
@@ -0,0 +1,146 @@
+package com.ntou.auctionSite.loadtest;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 壓力測試用的 MongoDB 替身
+ * 商品與競標紀錄保存在記憶體中，出價相關的 repository 方法以每個商品一把鎖模擬 MongoDB 單一文件的原子更新語意：
+ * applyBidIfHigher 與 placeBidAtomically 只有在 ACTIVE、未截止且出價高於目前最高價時才會寫入，
+ * 並依寫入順序記錄每次成功更新的最高價，供檢查最高價是否單調遞增。
+ * 可設定每次寫入的延遲（微秒），用來模擬資料庫的往返時間。
+ */
+class InMemoryAuctionStore {
+
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+    private final Map<String, List<bidHistory>> histories = new ConcurrentHashMap<>();
+    // 每個商品成功寫入的最高價（依寫入順序）
+    private final Map<String, List<Integer>> appliedPrices = new ConcurrentHashMap<>();
+    private final long writeLatencyNanos;
+
+    InMemoryAuctionStore(int writeLatencyMicros) {
+        this.writeLatencyNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, writeLatencyMicros));
+    }
+
+    //建立進行中的拍賣（起標價 basicBidPrice，一小時後截止，不啟用防狙標）
+    Product createAuction(String productID, int basicBidPrice) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName("壓力測試商品 " + productID);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setProductStock(1);
+        product.setNowHighestBid(basicBidPrice);
+        product.setProductPrice(basicBidPrice);
+        product.setAuctionEndTime(LocalDateTime.now().plusHours(1));
+        products.put(productID, product);
+        histories.put(productID, Collections.synchronizedList(new ArrayList<>()));
+        appliedPrices.put(productID, new ArrayList<>());
+        return product;
+    }
+
+    Product product(String productID) {
+        return products.get(productID);
+    }
+
+    //依寫入順序回傳商品的競標紀錄
+    List<bidHistory> histories(String productID) {
+        List<bidHistory> list = histories.get(productID);
+        synchronized (list) {
+            return new ArrayList<>(list);
+        }
+    }
+
+    //依寫入順序回傳商品成功更新的最高價
+    List<Integer> appliedPrices(String productID) {
+        Product product = products.get(productID);
+        synchronized (product) {
+            return new ArrayList<>(appliedPrices.get(productID));
+        }
+    }
+
+    void saveHistory(bidHistory history) {
+        simulateLatency();
+        histories.get(history.getProductID()).add(history);
+    }
+
+    ProductRepository productRepository() {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(products.get(invocation.<String>getArgument(0))));
+        when(repository.findByProductType(any(ProductTypes.class)))
+                .thenAnswer(invocation -> products.values().stream()
+                        .filter(product -> product.getProductType() == invocation.getArgument(0))
+                        .toList());
+        when(repository.applyBidIfHigher(anyString(), anyInt(), anyString(), any(LocalDateTime.class), nullable(LocalDateTime.class)))
+                .thenAnswer(invocation -> applyIfHigher(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.getArgument(2), invocation.getArgument(3), invocation.getArgument(4)) != null);
+        when(repository.placeBidAtomically(anyString(), anyInt(), anyString(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> applyIfHigher(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.getArgument(2), invocation.getArgument(3), null));
+        return repository;
+    }
+
+    BidHistoryRepository bidHistoryRepository() {
+        BidHistoryRepository repository = mock(BidHistoryRepository.class);
+        when(repository.findByProductID(anyString()))
+                .thenAnswer(invocation -> histories(invocation.getArgument(0)));
+        return repository;
+    }
+
+    ProxyBidRepository proxyBidRepository() {
+        ProxyBidRepository repository = mock(ProxyBidRepository.class);
+        when(repository.findByProductID(anyString())).thenReturn(List.of());
+        return repository;
+    }
+
+    // 條件與 ProductRepositoryCustomImpl 相同；成功時回傳更新前的商品，條件不符回傳 null
+    private Product applyIfHigher(String productID, int bidPrice, String bidderID,
+                                  LocalDateTime now, LocalDateTime auctionEndTime) {
+        simulateLatency();
+        Product product = products.get(productID);
+        if (product == null) {
+            return null;
+        }
+        synchronized (product) {
+            if (product.getProductType() != ProductTypes.AUCTION
+                    || product.getProductStatus() != Product.ProductStatuses.ACTIVE
+                    || product.getAuctionEndTime() == null
+                    || !now.isBefore(product.getAuctionEndTime())
+                    || product.getNowHighestBid() >= bidPrice) {
+                return null;
+            }
+            Product before = new Product();
+            before.setProductID(productID);
+            before.setNowHighestBid(product.getNowHighestBid());
+            before.setAuctionEndTime(product.getAuctionEndTime());
+            product.setNowHighestBid(bidPrice);
+            product.setHighestBidderID(bidderID);
+            appliedPrices.get(productID).add(bidPrice);
+            if (auctionEndTime != null && auctionEndTime.isAfter(product.getAuctionEndTime())) {
+                product.setAuctionEndTime(auctionEndTime);
+            }
+            return before;
+        }
+    }
+
+    private void simulateLatency() {
+        if (writeLatencyNanos > 0) {
+            LockSupport.parkNanos(writeLatencyNanos);
+        }
+    }
+}
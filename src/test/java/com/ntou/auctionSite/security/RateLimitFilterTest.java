@@ -0,0 +1,159 @@
+package com.ntou.auctionSite.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 出價與下單限流測試
+ * 以可控制的時鐘驗證 token bucket 的容量與補充速率、閒置項目清除、併發時不超發，
+ * 以及 Filter 依使用者與端點群組限流並回傳 429
+ */
+@DisplayName("限流測試 (RateLimitFilter)")
+class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private TokenBucketRateLimiter limiter(int capacity, double refillPerSecond) {
+        return new TokenBucketRateLimiter(capacity, refillPerSecond, clock::get);
+    }
+
+    private MockHttpServletResponse send(RateLimitFilter filter, String method, String uri, String user) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                user == null ? null : new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    @DisplayName("測試：容量用完後拒絕，依補充速率恢復")
+    void tryAcquire_ShouldAllowBurstThenRefill() {
+        // Arrange
+        TokenBucketRateLimiter limiter = limiter(3, 2);
+
+        // Act & Assert
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("U001"), "容量內的請求應該允許");
+        }
+        long wait = limiter.tryAcquire("U001");
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(500), "每秒補充 2 個，最多等 500ms");
+        assertEquals(0, limiter.tryAcquire("U002"), "不同使用者各自計算");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, limiter.tryAcquire("U001"), "補充一個 token 後允許");
+        assertTrue(limiter.tryAcquire("U001") > 0);
+    }
+
+    @Test
+    @DisplayName("測試：只清除已經補滿的閒置使用者")
+    void evictIdle_ShouldRemoveOnlyRefilledBuckets() {
+        // Arrange
+        TokenBucketRateLimiter limiter = limiter(2, 1);
+        limiter.tryAcquire("IDLE");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        limiter.tryAcquire("BUSY");
+
+        // Act
+        int evicted = limiter.evictIdle();
+
+        // Assert
+        assertEquals(1, evicted);
+        assertEquals(1, limiter.size(), "剛出價的使用者 bucket 尚未補滿，應該保留");
+    }
+
+    @Test
+    @DisplayName("測試：大量執行緒同時取用同一個 bucket 不會超發")
+    void tryAcquire_Concurrently_ShouldNeverExceedCapacity() throws Exception {
+        // Arrange
+        TokenBucketRateLimiter limiter = limiter(100, 1);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch startGate = new CountDownLatch(1);
+
+        // Act
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    if (limiter.tryAcquire("BOT") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(100, allowed.get(), "時間沒有前進，只能允許容量內的請求");
+    }
+
+    @Test
+    @DisplayName("測試：超過出價限制回傳 429 與 Retry-After，下單、查詢與未登入的請求不受影響")
+    void filter_ShouldRejectExcessBidsPerUser() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(meterRegistry, true, limiter(2, 1), limiter(1, 1));
+
+        // Act
+        int first = send(filter, "POST", "/api/bids/PROD001", "U001").getStatus();
+        int proxy = send(filter, "POST", "/api/bids/PROD001/proxy", "U001").getStatus();
+        MockHttpServletResponse rejected = send(filter, "POST", "/api/bids/PROD001", "U001");
+        int otherUser = send(filter, "POST", "/api/bids/PROD001", "U002").getStatus();
+        int order = send(filter, "POST", "/api/orders/PROD001", "U001").getStatus();
+        int query = send(filter, "GET", "/api/bids/PROD001", "U001").getStatus();
+        int anonymous = send(filter, "POST", "/api/bids/PROD001", null).getStatus();
+
+        // Assert
+        assertEquals(200, first);
+        assertEquals(200, proxy, "代理出價與出價同一個群組");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(200, otherUser);
+        assertEquals(200, order, "下單使用另外的限制");
+        assertEquals(200, query, "只限制 POST");
+        assertEquals(200, anonymous, "未登入的請求交給授權規則處理");
+        assertEquals(3.0, meterRegistry.get("rate.limit.requests").tags("group", "bids", "outcome", "allowed").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limit.requests").tags("group", "bids", "outcome", "rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limit.requests").tags("group", "orders", "outcome", "allowed").counter().count());
+    }
+
+    @Test
+    @DisplayName("測試：停用限流時所有請求都通過")
+    void filter_WhenDisabled_ShouldPassEverything() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(meterRegistry, false, limiter(1, 1), limiter(1, 1));
+
+        // Act & Assert
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send(filter, "POST", "/api/orders/PROD001", "U001").getStatus());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.AuctionBidEvent;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.service.bid.AuctionBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * AuctionBroadcaster 單元測試
+ * 驗證出價事件依商品合併、拍賣結束事件立即送出，且結束事件之後不會再送出同一商品的出價事件
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("拍賣推播測試 (AuctionBroadcaster)")
+class AuctionBroadcasterTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private AuctionBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        // 時間窗設得很長：測試期間不會自動送出，由測試手動呼叫 flush()
+        broadcaster = new AuctionBroadcaster(messagingTemplate, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    @DisplayName("測試：同一時間窗內的大量出價只送出一則最新價格")
+    void publishBid_BurstWithinWindow_ShouldCoalesceToLatestPrice() {
+        // Act
+        for (int price = 101; price <= 200; price++) {
+            broadcaster.publishBid("P1", price, "U" + price);
+        }
+        broadcaster.publishBid("P2", 50, "U050");
+        broadcaster.flush();
+
+        // Assert
+        ArgumentCaptor<AuctionBidEvent> captor = ArgumentCaptor.forClass(AuctionBidEvent.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/auction/P1"), captor.capture());
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/auction/P2"), any(Object.class));
+        assertEquals(200, captor.getValue().getNowHighestBid(), "應送出時間窗內最新的最高價");
+        assertEquals("U200", captor.getValue().getHighestBidderID());
+        assertEquals(AuctionBidEvent.EventTypes.BID, captor.getValue().getType());
+    }
+
+    @Test
+    @DisplayName("測試：推播順序顛倒時，保留價格較高的出價")
+    void publishBid_OutOfOrder_ShouldKeepHigherPrice() {
+        // Act
+        broadcaster.publishBid("P1", 300, "U300");
+        broadcaster.publishBid("P1", 250, "U250");
+        broadcaster.flush();
+
+        // Assert
+        ArgumentCaptor<AuctionBidEvent> captor = ArgumentCaptor.forClass(AuctionBidEvent.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/auction/P1"), captor.capture());
+        assertEquals(300, captor.getValue().getNowHighestBid());
+    }
+
+    @Test
+    @DisplayName("測試：沒有新出價時 flush 不送出訊息")
+    void flush_WithoutBids_ShouldSendNothing() {
+        // Act
+        broadcaster.publishBid("P1", 100, "U100");
+        broadcaster.flush();
+        broadcaster.flush();
+
+        // Assert
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("測試：拍賣結束事件立即送出，並丟棄尚未送出的出價事件")
+    void publishClosed_ShouldSendImmediatelyAndDropPendingBid() {
+        // Arrange
+        Product product = new Product();
+        product.setProductID("P1");
+        product.setNowHighestBid(500);
+        product.setHighestBidderID("U500");
+        product.setProductStatus(Product.ProductStatuses.SOLD);
+        broadcaster.publishBid("P1", 500, "U500");
+
+        // Act
+        broadcaster.publishClosed(product);
+        broadcaster.flush();
+
+        // Assert
+        ArgumentCaptor<AuctionBidEvent> captor = ArgumentCaptor.forClass(AuctionBidEvent.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/auction/P1"), captor.capture());
+        List<AuctionBidEvent> events = captor.getAllValues();
+        assertEquals(AuctionBidEvent.EventTypes.CLOSED, events.get(0).getType());
+        assertEquals("SOLD", events.get(0).getProductStatus());
+    }
+
+    @Test
+    @DisplayName("測試：結束事件送出後遲到的出價事件不會在結束事件之後送出")
+    void publishBid_AfterClosed_ShouldNotBeSentAfterClosedEvent() {
+        // Arrange
+        broadcaster.publishBid("P1", 500, "U500");
+        broadcaster.publishClosed(closedProduct("P1", 500, "U500"));
+
+        // Act
+        broadcaster.publishBid("P1", 480, "U480");
+        broadcaster.flush();
+        broadcaster.flush();
+
+        // Assert
+        ArgumentCaptor<AuctionBidEvent> captor = ArgumentCaptor.forClass(AuctionBidEvent.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/auction/P1"), captor.capture());
+        assertEquals(AuctionBidEvent.EventTypes.CLOSED, captor.getValue().getType());
+    }
+
+    @Test
+    @DisplayName("測試：flush 正在送出出價時結束拍賣，結束事件一定在出價事件之後送出")
+    void publishClosed_DuringFlush_ShouldBeSentAfterFlushedBid() throws Exception {
+        // Arrange
+        List<AuctionBidEvent.EventTypes> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch sendingBid = new CountDownLatch(1);
+        CountDownLatch closeStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            AuctionBidEvent event = invocation.getArgument(1);
+            if (event.getType() == AuctionBidEvent.EventTypes.BID) {
+                sendingBid.countDown();
+                closeStarted.await(5, TimeUnit.SECONDS);
+                Thread.sleep(50);// 讓結束的執行緒有機會搶在出價送出前執行
+            }
+            sent.add(event.getType());
+            return null;
+        }).when(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+        broadcaster.publishBid("P1", 500, "U500");
+        ExecutorService closer = Executors.newSingleThreadExecutor();
+
+        // Act
+        Future<?> closing = closer.submit(() -> {
+            try {
+                sendingBid.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeStarted.countDown();
+            broadcaster.publishClosed(closedProduct("P1", 500, "U500"));
+        });
+        broadcaster.flush();
+        closing.get(5, TimeUnit.SECONDS);
+        broadcaster.flush();
+        closer.shutdown();
+
+        // Assert
+        assertEquals(List.of(AuctionBidEvent.EventTypes.BID, AuctionBidEvent.EventTypes.CLOSED), sent);
+    }
+
+    @Test
+    @DisplayName("測試：時間窗設為 0 時不合併，每筆出價直接送出且不累積在記憶體")
+    void publishBid_WindowDisabled_ShouldSendEachBidImmediately() {
+        // Arrange
+        AuctionBroadcaster direct = new AuctionBroadcaster(messagingTemplate, 0);
+
+        // Act
+        direct.publishBid("P1", 100, "U100");
+        direct.publishBid("P1", 120, "U120");
+
+        // Assert
+        verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/auction/P1"), any(Object.class));
+        direct.flush();
+        verify(messagingTemplate, times(2)).convertAndSend(anyString(), any(Object.class));
+        direct.shutdown();
+    }
+
+    private static Product closedProduct(String productID, int price, String bidderID) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setNowHighestBid(price);
+        product.setHighestBidderID(bidderID);
+        product.setProductStatus(Product.ProductStatuses.SOLD);
+        return product;
+    }
+}
@@ -0,0 +1,349 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.ProxyBid;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.BidResult;
+import com.ntou.auctionSite.service.history.HistoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AuctionEngine 單元測試
+ * 使用 Mockito 模擬 Repository，驗證記憶體拍賣引擎的出價判定、寫回與重建
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("拍賣引擎測試 (AuctionEngine)")
+class AuctionEngineTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private BidHistoryRepository bidHistoryRepository;
+
+    @Mock
+    private ProxyBidRepository proxyBidRepository;
+
+    @Mock
+    private HistoryService historyService;
+
+    private AuctionEngine auctionEngine;
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+    private final List<bidHistory> savedHistories = new CopyOnWriteArrayList<>();
+    // 接下來幾次寫回出價要失敗（模擬資料庫暫時無法連線）
+    private final AtomicInteger failingBidWrites = new AtomicInteger();
+    // 寫回這個商品的出價時卡住，直到 latch 打開
+    private volatile String blockedProduct;
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        auctionEngine = new AuctionEngine(productRepository, bidHistoryRepository, proxyBidRepository, historyService, true, 4, 2, 1);
+
+        when(productRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(products.get((String) invocation.getArgument(0))));
+        when(productRepository.applyBidIfHigher(anyString(), anyInt(), anyString(), any(LocalDateTime.class), nullable(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    if (failingBidWrites.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        throw new DataAccessResourceFailureException("connection refused");
+                    }
+                    if (invocation.getArgument(0).equals(blockedProduct)) {
+                        unblock.await();
+                    }
+                    Product product = products.get((String) invocation.getArgument(0));
+                    int price = invocation.getArgument(1);
+                    synchronized (product) {
+                        if (product.getNowHighestBid() >= price) {
+                            return false;
+                        }
+                        product.setNowHighestBid(price);
+                        product.setHighestBidderID(invocation.getArgument(2));
+                        return true;
+                    }
+                });
+        doAnswer(invocation -> savedHistories.add(invocation.getArgument(0)))
+                .when(historyService).recordBidHistory(any(bidHistory.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        auctionEngine.shutdown();
+    }
+
+    // 與資料庫查詢相同：只取 since 之後金額最高的一筆
+    private void stubHighestBidSince(String productId, List<bidHistory> histories) {
+        when(bidHistoryRepository.findFirstByProductIDAndTimeStampGreaterThanEqualOrderByBidAmountDesc(eq(productId), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    LocalDateTime since = invocation.getArgument(1);
+                    return histories.stream()
+                            .filter(history -> !history.getTimeStamp().isBefore(since))
+                            .max(Comparator.comparingInt(bidHistory::getBidAmount));
+                });
+    }
+
+    private Product createAuction(String productId, int startPrice) {
+        Product product = new Product();
+        product.setProductID(productId);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(LocalDateTime.now().plusMinutes(10));
+        product.setNowHighestBid(startPrice);
+        products.put(productId, product);
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：同一商品同價位大量同時出價，只會有一位得標者")
+    void placeBid_ConcurrentSamePrice_ShouldHaveExactlyOneWinner() throws Exception {
+        // Arrange
+        Product product = createAuction("PRODENGINE01", 100);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        AtomicInteger accepted = new AtomicInteger();
+
+        // Act
+        try {
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String bidderId = "U" + i;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    if (auctionEngine.placeBid("PRODENGINE01", bidderId, 200).result() == BidResult.ACCEPTED) {
+                        accepted.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        auctionEngine.close("PRODENGINE01");
+
+        // Assert
+        assertEquals(1, accepted.get(), "同價位只能有一位得標者");
+        assertEquals(200, product.getNowHighestBid(), "得標出價應該寫回資料庫");
+        assertEquals(1, savedHistories.size(), "只有成功的出價會寫入競標紀錄");
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("測試：多個商品同時競標，每個商品的最終最高價正確且沒有遺失出價")
+    void placeBid_ManyProductsInParallel_ShouldKeepEachAuctionConsistent() throws Exception {
+        // Arrange
+        int productCount = 50;
+        int bidsPerProduct = 100;
+        for (int p = 0; p < productCount; p++) {
+            createAuction("PROD" + p, 0);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger accepted = new AtomicInteger();
+
+        // Act：每個商品的出價以隨機順序送出
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < productCount; p++) {
+                List<Integer> prices = new ArrayList<>();
+                for (int price = 1; price <= bidsPerProduct; price++) {
+                    prices.add(price);
+                }
+                Collections.shuffle(prices, new Random(p));
+                String productId = "PROD" + p;
+                for (int price : prices) {
+                    futures.add(executor.submit(() -> {
+                        if (auctionEngine.placeBid(productId, "U" + price, price).result() == BidResult.ACCEPTED) {
+                            accepted.incrementAndGet();
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int p = 0; p < productCount; p++) {
+            auctionEngine.close("PROD" + p);
+        }
+
+        // Assert
+        for (int p = 0; p < productCount; p++) {
+            Product product = products.get("PROD" + p);
+            assertEquals(bidsPerProduct, product.getNowHighestBid(), "最高價應為該商品的最高出價");
+            assertEquals("U" + bidsPerProduct, product.getHighestBidderID());
+        }
+        assertEquals(accepted.get(), savedHistories.size(), "每一筆成功的出價都應該寫入競標紀錄");
+    }
+
+    @Test
+    @DisplayName("測試：啟動重建時，以競標紀錄補回商品文件遺失的最高出價")
+    void rebuild_WhenHistoryHasHigherBid_ShouldRestoreFromHistory() {
+        // Arrange
+        Product product = createAuction("PRODENGINE02", 100);
+        product.setCreatedTime(LocalDateTime.now().minusHours(1));
+        when(productRepository.findByProductType(ProductTypes.AUCTION)).thenReturn(List.of(product));
+        stubHighestBidSince("PRODENGINE02", List.of(
+                new bidHistory("U001", "PRODENGINE02", 120),
+                new bidHistory("U002", "PRODENGINE02", 150)));
+
+        // Act
+        auctionEngine.rebuild();
+        BidResult lowerBid = auctionEngine.placeBid("PRODENGINE02", "U003", 140).result();
+        auctionEngine.close("PRODENGINE02");
+
+        // Assert
+        assertEquals(BidResult.OUTBID, lowerBid, "重建後的最高價應為競標紀錄中的 150");
+        assertEquals(150, product.getNowHighestBid(), "遺失的出價應該補寫回商品");
+        assertEquals("U002", product.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：啟動重建時，忽略商品建立之前（同一個商品ID先前的拍賣）留下的出價")
+    void rebuild_WhenHistoryPredatesProduct_ShouldIgnoreOldBids() {
+        // Arrange
+        Product product = createAuction("PRODENGINE09", 100);
+        product.setCreatedTime(LocalDateTime.now().minusHours(1));
+        when(productRepository.findByProductType(ProductTypes.AUCTION)).thenReturn(List.of(product));
+        stubHighestBidSince("PRODENGINE09", List.of(
+                new bidHistory(null, "U001", LocalDateTime.now().minusDays(3), "PRODENGINE09", 900, null),
+                new bidHistory("U002", "PRODENGINE09", 130)));
+
+        // Act
+        auctionEngine.rebuild();
+        BidResult bid = auctionEngine.placeBid("PRODENGINE09", "U003", 140).result();
+        auctionEngine.close("PRODENGINE09");
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, bid, "舊拍賣的 900 不應成為這一輪的最高價");
+        assertEquals(140, product.getNowHighestBid());
+        assertEquals("U003", product.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：寫回失敗時各項寫入分別重試，代理出價寫入失敗也不影響出價寫回")
+    void placeBid_WhenWritesFailTransiently_ShouldRetryEachWrite() {
+        // Arrange
+        Product product = createAuction("PRODENGINE10", 100);
+        failingBidWrites.set(2);
+        when(proxyBidRepository.save(any(ProxyBid.class))).thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // Act
+        auctionEngine.placeProxyBid("PRODENGINE10", "U001", 300);
+        auctionEngine.placeBid("PRODENGINE10", "U002", 150);
+        auctionEngine.close("PRODENGINE10");
+
+        // Assert
+        assertEquals(151, product.getNowHighestBid(), "代理出價自動回應後的價格應該寫回");
+        assertEquals("U001", product.getHighestBidderID());
+        assertTrue(savedHistories.stream().anyMatch(history -> history.getBidAmount() == 151),
+                "競標紀錄不會因為代理出價寫入失敗而被跳過");
+    }
+
+    @Test
+    @DisplayName("測試：出價一直無法寫回時拒絕結束拍賣，資料庫恢復後才能結束並以最新出價結算")
+    void close_WhenAcceptedBidNotPersisted_ShouldRefuseUntilWritten() {
+        // Arrange
+        Product product = createAuction("PRODENGINE11", 100);
+        failingBidWrites.set(1_000);
+        assertEquals(BidResult.ACCEPTED, auctionEngine.placeBid("PRODENGINE11", "U001", 200).result());
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> auctionEngine.close("PRODENGINE11"));
+        assertEquals(100, product.getNowHighestBid());
+
+        failingBidWrites.set(0);
+        auctionEngine.close("PRODENGINE11");
+        assertEquals(200, product.getNowHighestBid(), "關閉前應該補寫已回應的出價");
+        assertEquals("U001", product.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：移除商品狀態時在 lane 外等待寫回，同一個 lane 上其他商品的出價不受影響")
+    void evict_ShouldNotBlockOtherProductsOnSameLane() throws Exception {
+        // Arrange：找兩個落在同一個 lane（共 4 個）的商品
+        String slow = "PRODENGINE12";
+        String other = "PRODENGINE13";
+        for (int i = 13; Math.floorMod(other.hashCode(), 4) != Math.floorMod(slow.hashCode(), 4); i++) {
+            other = "PRODENGINE" + i;
+        }
+        createAuction(slow, 100);
+        Product otherProduct = createAuction(other, 100);
+        blockedProduct = slow;
+        auctionEngine.placeBid(slow, "U001", 200);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        Future<?> eviction = executor.submit(() -> auctionEngine.evict(slow));
+        Thread.sleep(100);
+        String otherID = other;
+        BidResult result = CompletableFuture.supplyAsync(() -> auctionEngine.placeBid(otherID, "U002", 150).result())
+                .get(1, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, result);
+        assertFalse(eviction.isDone(), "evict 應該仍在等待寫回");
+        unblock.countDown();
+        eviction.get(5, TimeUnit.SECONDS);
+        assertEquals(200, products.get(slow).getNowHighestBid());
+        auctionEngine.close(otherID);
+        assertEquals(150, otherProduct.getNowHighestBid());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("測試：拍賣關閉或已截止後出價，應該回傳 CLOSED")
+    void placeBid_AfterCloseOrEndTime_ShouldReturnClosed() {
+        // Arrange
+        createAuction("PRODENGINE03", 100);
+        Product expired = createAuction("PRODENGINE04", 100);
+        expired.setAuctionEndTime(LocalDateTime.now().minusSeconds(1));
+
+        // Act
+        auctionEngine.close("PRODENGINE03");
+
+        // Assert
+        assertEquals(BidResult.CLOSED, auctionEngine.placeBid("PRODENGINE04", "U001", 200).result());
+        assertEquals(BidResult.CLOSED, auctionEngine.placeBid("PRODENGINE03", "U001", 200).result(), "關閉後的拍賣不應接受出價");
+    }
+
+    @Test
+    @DisplayName("測試：對不存在或非拍賣商品出價，應該拋出例外")
+    void placeBid_UnknownOrDirectProduct_ShouldThrowException() {
+        // Arrange
+        Product direct = createAuction("PRODDIRECT01", 100);
+        direct.setProductType(ProductTypes.DIRECT);
+
+        // Act & Assert
+        assertThrows(NoSuchElementException.class, () -> auctionEngine.placeBid("NOTEXIST", "U001", 200));
+        assertThrows(IllegalArgumentException.class, () -> auctionEngine.placeBid("PRODDIRECT01", "U001", 200));
+    }
+}
@@ -0,0 +1,192 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * AuctionExpiryScheduler 單元測試
+ * 驗證拍賣在截止時間觸發、改期與取消，以及啟動時只查詢進行中的拍賣
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("拍賣到期排程測試 (AuctionExpiryScheduler)")
+class AuctionExpirySchedulerTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private AuctionExpiryScheduler scheduler;
+    private final List<String> fired = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> firedAt = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new AuctionExpiryScheduler(productRepository, productId -> {
+            firedAt.put(productId, System.currentTimeMillis());
+            fired.add(productId);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    @DisplayName("測試：拍賣應該依截止時間先後，在截止後數毫秒內觸發")
+    void schedule_ShouldFireInDeadlineOrderRightAfterDeadline() throws Exception {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime end1 = now.plus(300, ChronoUnit.MILLIS);
+        LocalDateTime end2 = now.plus(100, ChronoUnit.MILLIS);
+        LocalDateTime end3 = now.plus(200, ChronoUnit.MILLIS);
+
+        // Act
+        scheduler.schedule("P1", end1);
+        scheduler.schedule("P2", end2);
+        scheduler.schedule("P3", end3);
+        Thread.sleep(600);
+
+        // Assert
+        assertEquals(List.of("P2", "P3", "P1"), fired, "應該依截止時間先後觸發");
+        assertTrue(firedAt.get("P1") >= epochMillis(end1), "不應在截止前觸發");
+        assertTrue(firedAt.get("P1") - epochMillis(end1) < 100, "應該在截止後數毫秒內觸發");
+        assertEquals(0, scheduler.scheduledCount());
+    }
+
+    @Test
+    @DisplayName("測試：改期後只會在新的截止時間觸發一次")
+    void schedule_WhenRescheduled_ShouldFireOnceAtNewDeadline() throws Exception {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime extended = now.plus(300, ChronoUnit.MILLIS);
+
+        // Act
+        scheduler.schedule("P1", now.plus(100, ChronoUnit.MILLIS));
+        scheduler.schedule("P1", extended);
+        Thread.sleep(200);
+        boolean firedEarly = fired.contains("P1");
+        Thread.sleep(300);
+
+        // Assert
+        assertFalse(firedEarly, "舊的截止時間不應觸發");
+        assertEquals(List.of("P1"), fired, "改期後只觸發一次");
+        assertTrue(firedAt.get("P1") >= epochMillis(extended));
+    }
+
+    @Test
+    @DisplayName("測試：數千個拍賣反覆被防狙標延長，改期仍然快速，且每個拍賣只在最後的截止時間準時觸發一次")
+    void schedule_ThousandsOfExtendingAuctions_ShouldStayFastAndPrecise() throws Exception {
+        // Arrange
+        int auctions = 5000;
+        int extensionsPerAuction = 20;
+        // 截止時間留足排程所需的時間，避免排程還沒完成就已經過了截止時間
+        LocalDateTime base = LocalDateTime.now().plus(1000, ChronoUnit.MILLIS);
+        Map<String, LocalDateTime> finalDeadlines = new ConcurrentHashMap<>();
+
+        // Act：每個拍賣先排在 base，之後每次延長 25ms（模擬截止前連續被狙標）
+        long start = System.nanoTime();
+        for (int extension = 0; extension < extensionsPerAuction; extension++) {
+            for (int i = 0; i < auctions; i++) {
+                LocalDateTime deadline = base.plus(extension * 25L + i % 50, ChronoUnit.MILLIS);
+                scheduler.schedule("P" + i, deadline);
+                finalDeadlines.put("P" + i, deadline);
+            }
+        }
+        long scheduleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Thread.sleep(Math.max(0, epochMillis(base) - System.currentTimeMillis()) + 1500);
+
+        // Assert
+        assertTrue(scheduleMillis < 1000,
+                "十萬次改期應該在一秒內完成，實際 " + scheduleMillis + "ms");
+        assertEquals(auctions, fired.size(), "每個拍賣只觸發一次");
+        assertEquals(auctions, new HashSet<>(fired).size());
+        List<Long> lateness = new ArrayList<>();
+        for (Map.Entry<String, LocalDateTime> entry : finalDeadlines.entrySet()) {
+            long late = firedAt.get(entry.getKey()) - epochMillis(entry.getValue());
+            assertTrue(late >= 0, "不應在最後的截止時間之前觸發");
+            lateness.add(late);
+        }
+        Collections.sort(lateness);
+        long p99 = lateness.get((int) (lateness.size() * 0.99) - 1);
+        assertTrue(p99 < 100, "p99 觸發延遲應該在 100ms 內，實際 " + p99 + "ms");
+        assertEquals(0, scheduler.scheduledCount());
+    }
+
+    @Test
+    @DisplayName("測試：取消排程後不應觸發")
+    void cancel_ShouldNotFire() throws Exception {
+        // Act
+        scheduler.schedule("P1", LocalDateTime.now().plus(100, ChronoUnit.MILLIS));
+        scheduler.cancel("P1");
+        Thread.sleep(250);
+
+        // Assert
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：下架的拍賣商品 sync 後應取消排程")
+    void sync_WhenProductInactive_ShouldCancel() throws Exception {
+        // Arrange
+        Product product = new Product();
+        product.setProductID("P1");
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(LocalDateTime.now().plus(100, ChronoUnit.MILLIS));
+
+        // Act
+        scheduler.sync(product);
+        product.setProductStatus(Product.ProductStatuses.INACTIVE);
+        scheduler.sync(product);
+        Thread.sleep(250);
+
+        // Assert
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：啟動時只查詢 ACTIVE 的拍賣，不載入所有拍賣商品")
+    void seed_ShouldQueryOnlyActiveAuctions() {
+        // Arrange
+        Product product = new Product();
+        product.setProductID("P1");
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(LocalDateTime.now().plusHours(1));
+        when(productRepository.findByProductTypeAndProductStatus(ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE))
+                .thenReturn(List.of(product));
+
+        // Act
+        scheduler.seed();
+
+        // Assert
+        assertEquals(1, scheduler.scheduledCount());
+        verify(productRepository, never()).findByProductType(any());
+        verify(productRepository, never()).findAll();
+    }
+}
@@ -0,0 +1,310 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.order.Order;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.OrderRepository;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.*;
+import com.ntou.auctionSite.service.history.BidLadderService;
+import com.ntou.auctionSite.service.order.OrderService;
+import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.utils.IdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 拍賣結算流程測試
+ * 以記憶體模擬結算狀態的條件式更新，驗證重複送出只建立一張訂單、失敗後以同一個訂單ID重試、
+ * 訂單已存在時直接標記完成、重試時庫存只扣一次，以及結束拍賣不再同步建立訂單
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("拍賣結算測試 (AuctionSettlementService)")
+class AuctionSettlementTest {
+
+    private static final String PRODUCT_ID = "PRODSETTLE01";
+    private static final String ORDER_ID = "ORDSETTLE001";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @Mock
+    private AuctionBroadcaster auctionBroadcaster;
+
+    @Mock
+    private AuctionSettlementService settlementService;
+
+    @Mock
+    private BidLadderService bidLadderService;
+
+    @Spy
+    private IdGenerator idGenerator = new IdGenerator(0, System::currentTimeMillis);
+
+    @InjectMocks
+    private BidService bidService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Product.SettlementStatuses> statuses = new ConcurrentHashMap<>();
+    private AuctionSettlementService settlement;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        settlement = new AuctionSettlementService(productRepository, orderService, meterRegistry, 4, 3, 10, 60_000);
+
+        product = new Product();
+        product.setProductID(PRODUCT_ID);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.SOLD);
+        product.setHighestBidderID("U001");
+        product.setAuctionEndTime(LocalDateTime.now().minusSeconds(1));
+        product.setSettlementOrderID(ORDER_ID);
+        product.setSettlementStatus(Product.SettlementStatuses.PENDING);
+        statuses.put(PRODUCT_ID, Product.SettlementStatuses.PENDING);
+
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+        // 與資料庫的條件式更新相同：只有 PENDING 能被取得處理權
+        when(productRepository.claimSettlement(eq(PRODUCT_ID), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> statuses.replace(PRODUCT_ID,
+                        Product.SettlementStatuses.PENDING, Product.SettlementStatuses.PROCESSING));
+        doAnswer(invocation -> statuses.replace(PRODUCT_ID,
+                Product.SettlementStatuses.PROCESSING, Product.SettlementStatuses.PENDING))
+                .when(productRepository).releaseSettlement(PRODUCT_ID);
+        doAnswer(invocation -> statuses.put(PRODUCT_ID, Product.SettlementStatuses.DONE))
+                .when(productRepository).completeSettlement(PRODUCT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        settlement.shutdown();
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (settlement.inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, settlement.inFlight(), "結算應該在時限內完成");
+    }
+
+    @Test
+    @DisplayName("測試：同一個商品重複送出結算，只會建立一張使用保留訂單ID的訂單")
+    void submit_Repeatedly_ShouldCreateExactlyOneOrder() throws Exception {
+        // Arrange
+        AtomicInteger created = new AtomicInteger();
+        when(orderService.createOrder(any(Order.class), eq("U001"), eq(ProductTypes.AUCTION), eq(ORDER_ID)))
+                .thenAnswer(invocation -> {
+                    created.incrementAndGet();
+                    Thread.sleep(20);
+                    return invocation.getArgument(0);
+                });
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            settlement.submit(product);
+        }
+        awaitIdle();
+        settlement.recover();
+        awaitIdle();
+
+        // Assert
+        assertEquals(1, created.get(), "同一個商品只能建立一張訂單");
+        assertEquals(Product.SettlementStatuses.DONE, statuses.get(PRODUCT_ID));
+        assertEquals(1.0, meterRegistry.get("auction.settlement.settled").counter().count());
+        assertEquals(1, meterRegistry.get("auction.settlement.lag").timer().count(), "應該記錄結算延遲");
+    }
+
+    @Test
+    @DisplayName("測試：建立訂單失敗時交回 PENDING，並以同一個訂單ID重試")
+    void submit_WhenOrderCreationFailsOnce_ShouldRetryWithSameOrderId() throws Exception {
+        // Arrange
+        AtomicInteger attempts = new AtomicInteger();
+        when(orderService.createOrder(any(Order.class), anyString(), any(ProductTypes.class), anyString()))
+                .thenAnswer(invocation -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new DataAccessResourceFailureException("connection reset");
+                    }
+                    return invocation.getArgument(0);
+                });
+
+        // Act
+        settlement.submit(product);
+        awaitIdle();
+
+        // Assert
+        assertEquals(2, attempts.get());
+        verify(orderService, times(2)).createOrder(any(Order.class), eq("U001"), eq(ProductTypes.AUCTION), eq(ORDER_ID));
+        verify(productRepository).releaseSettlement(PRODUCT_ID);
+        assertEquals(Product.SettlementStatuses.DONE, statuses.get(PRODUCT_ID));
+        assertEquals(1.0, meterRegistry.get("auction.settlement.retries").counter().count());
+        assertEquals(0.0, meterRegistry.get("auction.settlement.failed").counter().count());
+    }
+
+    @Test
+    @DisplayName("測試：訂單ID重複（其他執行者已建立同一張訂單）時視為已結算並標記完成")
+    void submit_WhenOrderAlreadyExists_ShouldMarkDone() throws Exception {
+        // Arrange
+        when(orderService.createOrder(any(Order.class), anyString(), any(ProductTypes.class), anyString()))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+        // Act
+        settlement.submit(product);
+        awaitIdle();
+
+        // Assert
+        assertEquals(Product.SettlementStatuses.DONE, statuses.get(PRODUCT_ID));
+        assertEquals(0.0, meterRegistry.get("auction.settlement.retries").counter().count());
+    }
+
+    @Test
+    @DisplayName("測試：訂單寫入後扣庫存失敗，重試時沿用既有訂單且庫存只扣一次")
+    void submit_WhenStockDeductionFailsAfterInsert_ShouldRetryWithoutDoubleDeduction() throws Exception {
+        // Arrange：使用真正的 OrderService，以記憶體模擬訂單的 insert 與扣庫存的條件式更新
+        product.setProductStock(1);
+        product.setNowHighestBid(500);
+        product.setSellerID("S001");
+        Map<String, Order> orders = new ConcurrentHashMap<>();
+        AtomicInteger deductCalls = new AtomicInteger();
+        when(productService.getProductForUpdate(PRODUCT_ID)).thenReturn(product);
+        when(orderRepository.insert(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            if (orders.putIfAbsent(order.getOrderID(), order) != null) {
+                throw new DuplicateKeyException("E11000 duplicate key");
+            }
+            return order;
+        });
+        when(orderRepository.findByOrderID(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(orders.get(invocation.<String>getArgument(0))));
+        when(productRepository.deductAuctionStock(eq(PRODUCT_ID), anyString(), anyInt(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    if (deductCalls.incrementAndGet() == 1) {
+                        throw new DataAccessResourceFailureException("connection reset");
+                    }
+                    String orderID = invocation.getArgument(1);
+                    int quantity = invocation.getArgument(2);
+                    if (orderID.equals(product.getStockDeductedOrderID()) || product.getProductStock() < quantity) {
+                        return null;
+                    }
+                    product.setProductStock(product.getProductStock() - quantity);
+                    product.setStockDeductedOrderID(orderID);
+                    return product;
+                });
+        OrderService realOrderService = new OrderService(orderRepository, productRepository, productService,
+                null, null, idGenerator);
+        settlement.shutdown();
+        settlement = new AuctionSettlementService(productRepository, realOrderService, meterRegistry, 4, 3, 10, 60_000);
+
+        // Act
+        settlement.submit(product);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (statuses.get(PRODUCT_ID) != Product.SettlementStatuses.DONE && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        awaitIdle();
+        // 再次執行同一張訂單（例如補償重送），不應再扣庫存
+        realOrderService.createOrder(orders.get(ORDER_ID), "U001", ProductTypes.AUCTION, ORDER_ID);
+
+        // Assert
+        assertEquals(Product.SettlementStatuses.DONE, statuses.get(PRODUCT_ID));
+        assertEquals(1, orders.size());
+        assertEquals(0, product.getProductStock());
+        assertEquals(ORDER_ID, product.getStockDeductedOrderID());
+        verify(productRepository, never()).save(any(Product.class));
+        verify(productService, times(1)).productUpdated(product);
+        assertEquals(1.0, meterRegistry.get("auction.settlement.retries").counter().count());
+    }
+
+    @Test
+    @DisplayName("測試：啟動補償會重新送出 PENDING 與租約過期的結算")
+    void recover_ShouldResubmitUnsettledAuctions() throws Exception {
+        // Arrange
+        when(productRepository.findBySettlementStatus(Product.SettlementStatuses.PENDING)).thenReturn(List.of(product));
+        when(productRepository.findBySettlementStatusAndSettlementClaimedTimeBefore(
+                eq(Product.SettlementStatuses.PROCESSING), any(LocalDateTime.class))).thenReturn(List.of());
+        when(orderService.createOrder(any(Order.class), anyString(), any(ProductTypes.class), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        settlement.recover();
+        awaitIdle();
+
+        // Assert
+        verify(orderService).createOrder(any(Order.class), eq("U001"), eq(ProductTypes.AUCTION), eq(ORDER_ID));
+        assertEquals(Product.SettlementStatuses.DONE, statuses.get(PRODUCT_ID));
+    }
+
+    @Test
+    @DisplayName("測試：結束拍賣只做一次原子更新並交給結算流程，不同步建立訂單")
+    void terminateAuction_ShouldCloseAtomicallyAndHandOffSettlement() {
+        // Arrange
+        when(auctionEngine.isEnabled()).thenReturn(false);
+        when(productRepository.closeAuctionAtomically(eq(PRODUCT_ID), any(LocalDateTime.class), anyString()))
+                .thenReturn(product);
+
+        // Act
+        bidService.terminateAuction(PRODUCT_ID);
+
+        // Assert
+        verify(settlementService).submit(product);
+        verify(productRepository, never()).save(any(Product.class));
+        verify(orderService, never()).createOrder(any(Order.class), anyString(), any(ProductTypes.class));
+        verify(auctionBroadcaster).publishClosed(product);
+    }
+
+    @Test
+    @DisplayName("測試：拍賣已經結束時重複觸發不會再次結算")
+    void terminateAuction_WhenAlreadyClosed_ShouldDoNothing() {
+        // Arrange
+        when(auctionEngine.isEnabled()).thenReturn(false);
+        when(productRepository.closeAuctionAtomically(eq(PRODUCT_ID), any(LocalDateTime.class), anyString()))
+                .thenReturn(null);
+        when(productService.getProductById(PRODUCT_ID)).thenReturn(product);
+
+        // Act
+        bidService.terminateAuction(PRODUCT_ID);
+
+        // Assert
+        verify(settlementService, never()).submit(any(Product.class));
+        verify(auctionBroadcaster, never()).publishClosed(any(Product.class));
+    }
+}
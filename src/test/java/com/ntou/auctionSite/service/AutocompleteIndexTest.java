@@ -0,0 +1,266 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.search.AutocompleteIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 搜尋框自動完成測試
+ * 驗證依熱門度排序、不分大小寫與全形半形、前綴停在邊的中間、商品改名、下架與刪除後的調整、
+ * 隨機的新增修改刪除後每個前綴的結果與逐一計算相同，以及啟動時重建的結果與逐筆更新相同
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("搜尋框自動完成測試 (AutocompleteIndex)")
+class AutocompleteIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private AutocompleteIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AutocompleteIndex(productRepository, true, 5, 1.0, 0.2);
+    }
+
+    private static Product product(String productID, String name, String category, int sales, int views) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName(name);
+        product.setProductCategory(category);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setTotalSales(sales);
+        product.setViewCount(views);
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：依熱門度回傳以輸入文字開頭的商品名稱與分類")
+    void complete_ShouldReturnPopularCompletions() {
+        // Arrange
+        index.update(product("P1", "巧克力餅乾", "零食", 5, 100));
+        index.update(product("P2", "巧克力蛋糕", "甜點", 200, 3000));
+        index.update(product("P3", "巧拼地墊", "居家", 0, 0));
+        index.update(product("P4", "蛋捲", "零食", 0, 10));
+
+        // Act & Assert
+        assertEquals(List.of("巧克力蛋糕", "巧克力餅乾", "巧拼地墊"), index.complete("巧", 10));
+        assertEquals(List.of("巧克力蛋糕", "巧克力餅乾"), index.complete("巧克", 10));
+        assertEquals(List.of("巧克力蛋糕"), index.complete("巧克", 1));
+        assertEquals(List.of("零食"), index.complete("零", 10));
+        assertEquals(List.of(), index.complete("巧克力餅乾禮盒", 10));
+        assertEquals(List.of(), index.complete("  ", 10));
+    }
+
+    @Test
+    @DisplayName("測試：不分大小寫與全形半形，回傳商品原本的寫法，最多 max-results 筆")
+    void complete_ShouldNormalizePrefix() {
+        // Arrange
+        for (int i = 0; i < 8; i++) {
+            index.update(product("P" + i, "iPhone " + (10 + i), "手機", i, 0));
+        }
+
+        // Act
+        List<String> result = index.complete("ＩＰＨＯ", 10);
+
+        // Assert
+        assertEquals(5, result.size());
+        assertEquals("iPhone 17", result.get(0));
+        assertEquals(List.of("iPhone 12"), index.complete("iphone  12", 10));
+    }
+
+    @Test
+    @DisplayName("測試：商品改名、下架與刪除後，不再被使用的字詞消失")
+    void update_ShouldFollowProductChanges() {
+        // Arrange
+        index.update(product("P1", "木頭書桌", "家具", 0, 0));
+        index.update(product("P2", "木頭書櫃", "家具", 0, 0));
+        index.update(product("P3", "木頭椅", "家具", 0, 0));
+
+        // Act
+        index.update(product("P1", "鐵製書桌", "家具", 0, 0));
+        Product withdrawn = product("P2", "木頭書櫃", "家具", 0, 0);
+        withdrawn.setProductStatus(Product.ProductStatuses.INACTIVE);
+        index.update(withdrawn);
+        index.remove("P3");
+
+        // Assert
+        assertEquals(List.of(), index.complete("木", 10));
+        assertEquals(List.of("鐵製書桌"), index.complete("鐵", 10));
+        assertEquals(List.of("家具"), index.complete("家", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("測試：多個商品使用同一個名稱時權重相加，最後一個移除時才消失")
+    void update_SharedSuggestion_ShouldSumWeights() {
+        // Arrange
+        index.update(product("P1", "藍牙耳機", "3C", 0, 0));
+        index.update(product("P2", "藍牙耳機", "3C", 0, 0));
+        index.update(product("P3", "藍牙喇叭", "3C", 1, 0));
+
+        // Act & Assert
+        assertEquals(List.of("藍牙耳機", "藍牙喇叭"), index.complete("藍牙", 10));
+        index.remove("P1");
+        assertEquals(List.of("藍牙喇叭", "藍牙耳機"), index.complete("藍牙", 10));
+        index.remove("P2");
+        assertEquals(List.of("藍牙喇叭"), index.complete("藍牙", 10));
+    }
+
+    @Test
+    @DisplayName("測試：隨機新增、修改、下架、刪除後，每個前綴的結果都與逐一計算相同")
+    void complete_AfterRandomChanges_ShouldMatchBruteForce() {
+        // Arrange
+        AutocompleteIndex countOnly = new AutocompleteIndex(productRepository, true, 4, 0, 0);
+        Map<String, Product> active = new HashMap<>();
+        Random random = new Random(7);
+
+        // Act & Assert
+        for (int step = 0; step < 3000; step++) {
+            String productID = "P" + random.nextInt(200);
+            int action = random.nextInt(10);
+            if (action < 7) {
+                Product product = product(productID, randomWord(random), randomWord(random), 0, 0);
+                if (action == 6) {
+                    product.setProductStatus(Product.ProductStatuses.SOLD);
+                    active.remove(productID);
+                }
+                else {
+                    active.put(productID, product);
+                }
+                countOnly.update(product);
+            }
+            else {
+                countOnly.remove(productID);
+                active.remove(productID);
+            }
+            if (step % 100 == 99) {
+                for (String prefix : List.of("a", "b", "ab", "ba", "aab", "abb", "bbb", "abab")) {
+                    assertEquals(bruteForce(active, prefix, 4), countOnly.complete(prefix, 10), "step " + step + " prefix " + prefix);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("測試：啟動時重建的結果與逐筆更新相同，只包含上架中的商品")
+    void rebuild_ShouldMatchIncrementalUpdates() {
+        // Arrange
+        Random random = new Random(11);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Product product = product("P" + i, randomWord(random), randomWord(random), random.nextInt(50), random.nextInt(500));
+            if (i % 9 == 0) {
+                product.setProductStatus(Product.ProductStatuses.INACTIVE);
+            }
+            products.add(product);
+            index.update(product);
+        }
+        when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> products.stream());
+        AutocompleteIndex rebuilt = new AutocompleteIndex(productRepository, true, 5, 1.0, 0.2);
+
+        // Act
+        rebuilt.rebuild();
+
+        // Assert
+        assertTrue(rebuilt.isReady());
+        assertEquals(index.size(), rebuilt.size());
+        for (String prefix : List.of("a", "b", "aa", "ab", "ba", "bb", "aba", "bab", "abba")) {
+            assertEquals(index.complete(prefix, 10), rebuilt.complete(prefix, 10), prefix);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：大量商品時每次自動完成的時間（-Dbenchmark=true 啟用，-Dbenchmark.sizes 指定商品數）")
+    void benchmark() {
+        String[] words = {"蘋果", "手機", "藍牙", "耳機", "保溫", "杯子", "木頭", "書桌", "機械", "鍵盤",
+                "無線", "滑鼠", "運動", "水壺", "筆記", "型電", "二手", "全新", "限量", "公仔"};
+        String[] prefixes = {"藍", "藍牙", "藍牙耳", "機械鍵盤", "限", "二手手機", "木頭書桌限"};
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000,1000000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        for (int size : sizes) {
+            // Arrange
+            Random random = new Random(size);
+            List<Product> products = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                products.add(product("P" + i, words[random.nextInt(words.length)] + words[random.nextInt(words.length)]
+                        + words[random.nextInt(words.length)] + " " + random.nextInt(1000), "分類" + random.nextInt(50),
+                        random.nextInt(100), random.nextInt(10_000)));
+            }
+            when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> products.stream());
+            AutocompleteIndex benchmarkIndex = new AutocompleteIndex(productRepository, true, 10, 1.0, 0.2);
+            long buildStart = System.nanoTime();
+            benchmarkIndex.rebuild();
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+            // Act
+            int rounds = 20_000;
+            long completeNanos = 0;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                benchmarkIndex.complete(prefixes[round % prefixes.length], 10);
+                completeNanos += System.nanoTime() - start;
+            }
+            long updateStart = System.nanoTime();
+            for (int i = 0; i < 10_000; i++) {
+                Product product = products.get(random.nextInt(size));
+                product.setTotalSales(product.getTotalSales() + 1);
+                benchmarkIndex.update(product);
+            }
+            long updateNanos = System.nanoTime() - updateStart;
+
+            // Assert
+            System.out.printf("%,d products: %,d suggestions, build %,d ms, complete %.2f us, update %.2f us%n",
+                    size, benchmarkIndex.size(), buildMillis, completeNanos / 1e3 / rounds, updateNanos / 1e3 / 10_000);
+            assertFalse(benchmarkIndex.complete("藍牙", 10).isEmpty());
+        }
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            word.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        return word.toString();
+    }
+
+    // 每個商品權重為 1 時的預期結果：名稱與分類各算一次（相同時只算一次），依商品數由多到少、同數量依字母順序
+    private static List<String> bruteForce(Map<String, Product> active, String prefix, int limit) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Product product : active.values()) {
+            counts.merge(product.getProductName(), 1, Integer::sum);
+            if (!product.getProductCategory().equals(product.getProductName())) {
+                counts.merge(product.getProductCategory(), 1, Integer::sum);
+            }
+        }
+        return counts.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
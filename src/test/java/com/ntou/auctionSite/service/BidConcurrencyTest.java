@@ -0,0 +1,186 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionBroadcaster;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.BidResult;
+import com.ntou.auctionSite.service.bid.BidService;
+import com.ntou.auctionSite.service.history.HistoryService;
+import com.ntou.auctionSite.service.product.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BidService 併發出價測試
+ * 以 Mockito 模擬 ProductRepository 的條件式更新，模擬 MongoDB 單一文件原子更新的語意，
+ * 驗證大量同時出價時每個價位只會有一位得標者
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("競標併發測試 (BidService)")
+class BidConcurrencyTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private HistoryService historyService;
+
+    @Mock
+    private AuctionEngine auctionEngine;//未啟用，走資料庫條件式更新
+
+    @Mock
+    private AuctionBroadcaster auctionBroadcaster;
+
+    @InjectMocks
+    private BidService bidService;
+
+    private Product auctionProduct;
+    private final List<bidHistory> savedHistories = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        auctionProduct = new Product();
+        auctionProduct.setProductID("PRODTEST0001");
+        auctionProduct.setProductType(ProductTypes.AUCTION);
+        auctionProduct.setProductStatus(Product.ProductStatuses.ACTIVE);
+        auctionProduct.setAuctionEndTime(LocalDateTime.now().plusMinutes(10));
+        auctionProduct.setNowHighestBid(100);
+
+        // 模擬 MongoDB 的條件式更新：檢查與寫入在同一把鎖內完成，成功時回傳更新前的商品
+        when(productRepository.placeBidAtomically(anyString(), anyInt(), anyString(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    int price = invocation.getArgument(1);
+                    String bidder = invocation.getArgument(2);
+                    LocalDateTime now = invocation.getArgument(3);
+                    synchronized (auctionProduct) {
+                        if (auctionProduct.getProductStatus() != Product.ProductStatuses.ACTIVE
+                                || !now.isBefore(auctionProduct.getAuctionEndTime())
+                                || auctionProduct.getNowHighestBid() >= price) {
+                            return null;
+                        }
+                        Product before = new Product();
+                        before.setProductID(auctionProduct.getProductID());
+                        before.setAuctionEndTime(auctionProduct.getAuctionEndTime());
+                        before.setNowHighestBid(auctionProduct.getNowHighestBid());
+                        auctionProduct.setNowHighestBid(price);
+                        auctionProduct.setHighestBidderID(bidder);
+                        return before;
+                    }
+                });
+        when(productService.getProductById("PRODTEST0001")).thenReturn(auctionProduct);
+        doAnswer(invocation -> savedHistories.add(invocation.getArgument(0)))
+                .when(historyService).recordBidHistory(any(bidHistory.class));
+    }
+
+    @Test
+    @DisplayName("測試：每個價位同時有大量出價時，只會有一位得標者")
+    void placeBid_ConcurrentSamePrice_ShouldHaveExactlyOneWinnerPerPriceLevel() throws Exception {
+        // Arrange
+        int priceLevels = 20;
+        int biddersPerLevel = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        Map<Integer, List<String>> winnersByPrice = new ConcurrentHashMap<>();
+
+        try {
+            for (int level = 1; level <= priceLevels; level++) {
+                int price = 100 + level * 10;
+                CountDownLatch startGate = new CountDownLatch(1);
+                List<Future<BidResult>> futures = new ArrayList<>();
+                for (int i = 0; i < biddersPerLevel; i++) {
+                    String bidderId = "U" + level + "_" + i;
+                    futures.add(executor.submit(() -> {
+                        startGate.await();
+                        BidResult result = bidService.placeBid(price, "PRODTEST0001", bidderId, bidderId);
+                        if (result == BidResult.ACCEPTED) {
+                            winnersByPrice.computeIfAbsent(price, k -> new CopyOnWriteArrayList<>()).add(bidderId);
+                        }
+                        return result;
+                    }));
+                }
+
+                // Act：同一價位的出價同時放行
+                startGate.countDown();
+                int accepted = 0;
+                for (Future<BidResult> future : futures) {
+                    BidResult result = future.get(10, TimeUnit.SECONDS);
+                    if (result == BidResult.ACCEPTED) {
+                        accepted++;
+                    } else {
+                        assertEquals(BidResult.OUTBID, result, "同價位的其他出價應該被判定為 OUTBID");
+                    }
+                }
+
+                // Assert
+                assertEquals(1, accepted, "價位 " + price + " 應該只有一位得標者");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(priceLevels, winnersByPrice.size(), "每個價位都應該有得標者");
+        winnersByPrice.values().forEach(winners -> assertEquals(1, winners.size()));
+        assertEquals(100 + priceLevels * 10, auctionProduct.getNowHighestBid(), "最終最高價應為最後一個價位");
+        assertEquals(winnersByPrice.get(100 + priceLevels * 10).get(0), auctionProduct.getHighestBidderID());
+        assertEquals(priceLevels, savedHistories.size(), "只有成功的出價才會寫入競標紀錄");
+        verify(auctionBroadcaster, times(priceLevels)).publishBid(eq("PRODTEST0001"), anyInt(), anyString());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("測試：拍賣已截止時出價，應該回傳 CLOSED")
+    void placeBid_AfterAuctionEnd_ShouldReturnClosed() {
+        // Arrange
+        auctionProduct.setAuctionEndTime(LocalDateTime.now().minusSeconds(1));
+
+        // Act
+        BidResult result = bidService.placeBid(500, "PRODTEST0001", "U001", "U001");
+
+        // Assert
+        assertEquals(BidResult.CLOSED, result);
+        verify(historyService, never()).recordBidHistory(any(bidHistory.class));
+    }
+
+    @Test
+    @DisplayName("測試：出價不高於目前最高價，應該回傳 OUTBID")
+    void placeBid_NotHigherThanCurrent_ShouldReturnOutbid() {
+        // Act
+        BidResult result = bidService.placeBid(100, "PRODTEST0001", "U001", "U001");
+
+        // Assert
+        assertEquals(BidResult.OUTBID, result);
+        assertNull(auctionProduct.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：以他人 ID 出價，應該拋出 SecurityException 且不寫入資料庫")
+    void placeBid_WithOtherUsersId_ShouldThrowSecurityException() {
+        // Act & Assert
+        assertThrows(SecurityException.class,
+                () -> bidService.placeBid(500, "PRODTEST0001", "U001", "U002"));
+        verify(productRepository, never()).placeBidAtomically(anyString(), anyInt(), anyString(), any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,227 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.history.BidHistoryWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BidHistoryWriter 單元測試
+ * 以 Mockito 模擬 MongoTemplate.bulkOps，驗證依筆數或時間批次寫入、關閉時寫完佇列、重試、
+ * 重試用完後放回佇列、放棄的筆數與指標
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("競標紀錄批次寫入測試 (BidHistoryWriter)")
+class BidHistoryWriterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private BidHistoryRepository bidHistoryRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<bidHistory>> batches = new CopyOnWriteArrayList<>();
+    private BidHistoryWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(bidHistory.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.<List<bidHistory>>getArgument(0)));
+            return bulkOperations;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private BidHistoryWriter asyncWriter(int batchSize, long flushIntervalMs) {
+        return new BidHistoryWriter(mongoTemplate, bidHistoryRepository, meterRegistry,
+                BidHistoryWriter.DurabilityMode.ASYNC, batchSize, flushIntervalMs, 10_000, 10);
+    }
+
+    private static int total(List<List<bidHistory>> batches) {
+        return batches.stream().mapToInt(List::size).sum();
+    }
+
+    @Test
+    @DisplayName("測試：累積到 batch-size 筆就立即以一次 bulk insert 寫入")
+    void write_WhenBatchFills_ShouldFlushWithoutWaitingForInterval() throws Exception {
+        // Arrange
+        writer = asyncWriter(100, 10_000);
+
+        // Act
+        for (int i = 0; i < 250; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1));
+        }
+        Thread.sleep(300);
+        List<List<bidHistory>> beforeFlush = new ArrayList<>(batches);
+        writer.flush();
+
+        // Assert
+        assertEquals(2, beforeFlush.size(), "湊滿的兩批不需要等到時間窗結束");
+        assertEquals(100, beforeFlush.get(0).size());
+        assertEquals(100, beforeFlush.get(1).size());
+        assertEquals(250, total(batches), "flush 後所有紀錄都應該寫入");
+        assertEquals(0, writer.queueDepth());
+        verify(bidHistoryRepository, never()).save(any(bidHistory.class));
+    }
+
+    @Test
+    @DisplayName("測試：筆數不足時，在 flush-interval 後寫入")
+    void write_WhenBatchNotFull_ShouldFlushAfterInterval() throws Exception {
+        // Arrange
+        writer = asyncWriter(1000, 20);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1));
+        }
+        Thread.sleep(300);
+
+        // Assert
+        assertEquals(1, batches.size(), "十筆紀錄應該合併成一次寫入");
+        assertEquals(10, batches.get(0).size());
+    }
+
+    @Test
+    @DisplayName("測試：關閉時佇列中尚未寫入的紀錄都會寫完")
+    void shutdown_ShouldFlushRemainingRecords() {
+        // Arrange
+        writer = asyncWriter(1000, 60_000);
+        for (int i = 0; i < 30; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1));
+        }
+
+        // Act
+        long start = System.currentTimeMillis();
+        writer.shutdown();
+
+        // Assert
+        assertEquals(30, total(batches));
+        assertTrue(System.currentTimeMillis() - start < 2000, "關閉時不應等到時間窗結束");
+        writer = null;
+    }
+
+    @Test
+    @DisplayName("測試：SYNC 模式每筆直接寫入，不經過佇列")
+    void write_InSyncMode_ShouldSaveImmediately() {
+        // Arrange
+        writer = new BidHistoryWriter(mongoTemplate, bidHistoryRepository, meterRegistry,
+                BidHistoryWriter.DurabilityMode.SYNC, 100, 5, 100, 10);
+        bidHistory history = new bidHistory("U001", "PROD001", 100);
+
+        // Act
+        writer.write(history);
+
+        // Assert
+        verify(bidHistoryRepository).save(history);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(bidHistory.class));
+    }
+
+    @Test
+    @DisplayName("測試：資料庫暫時失敗時重試，並回報寫入筆數、佇列深度與寫入延遲指標")
+    void write_WhenDatabaseFailsOnce_ShouldRetryAndReportMetrics() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            if (executions.incrementAndGet() == 1) {
+                throw new DataAccessResourceFailureException("connection reset");
+            }
+            return null;
+        });
+        writer = asyncWriter(1000, 60_000);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1));
+        }
+        writer.flush();
+
+        // Assert
+        // 背景執行緒與 flush() 可能各寫一批，但只有第一次執行失敗，因此執行次數 = 批次數 + 1
+        long batchesWritten = meterRegistry.get("bid.history.flush.latency").timer().count();
+        assertEquals(batchesWritten + 1, executions.get(), "第一次失敗後應該重試一次");
+        assertEquals(5.0, meterRegistry.get("bid.history.written").counter().count());
+        assertEquals(0.0, meterRegistry.get("bid.history.failed").counter().count());
+        assertEquals(0.0, meterRegistry.get("bid.history.queue.depth").gauge().value());
+    }
+
+    @Test
+    @DisplayName("測試：重試次數用完時批次退避後放回佇列，資料庫恢復後寫入且寫入成功才回呼")
+    void write_WhenAttemptsExhausted_ShouldRequeueWithBackoff() {
+        // Arrange：前 3 次（一輪重試）都失敗
+        AtomicInteger executions = new AtomicInteger();
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            if (executions.incrementAndGet() <= 3) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            return null;
+        });
+        AtomicInteger callbacks = new AtomicInteger();
+        writer = asyncWriter(1000, 60_000);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1), callbacks::incrementAndGet);
+        }
+        writer.flush();
+
+        // Assert
+        assertEquals(5.0, meterRegistry.get("bid.history.written").counter().count());
+        assertEquals(5.0, meterRegistry.get("bid.history.requeued").counter().count());
+        assertEquals(0, writer.droppedRecords());
+        assertEquals(5, callbacks.get());
+    }
+
+    @Test
+    @DisplayName("測試：資料庫一直無法寫入時，放回佇列次數用完或關閉後才放棄，並記錄放棄的筆數")
+    void write_WhenDatabaseStaysDown_ShouldCountDroppedRecords() {
+        // Arrange
+        when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("connection refused"));
+        AtomicInteger callbacks = new AtomicInteger();
+        writer = asyncWriter(1000, 60_000);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            writer.write(new bidHistory("U" + i, "PROD001", i + 1), callbacks::incrementAndGet);
+        }
+        writer.shutdown();
+
+        // Assert
+        assertEquals(5, writer.droppedRecords());
+        assertEquals(0.0, meterRegistry.get("bid.history.written").counter().count());
+        assertEquals(0, callbacks.get(), "沒有寫入的紀錄不應回呼");
+        writer = null;
+    }
+}
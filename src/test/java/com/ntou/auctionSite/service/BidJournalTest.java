@@ -0,0 +1,245 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.BidJournal;
+import com.ntou.auctionSite.service.bid.BidResult;
+import com.ntou.auctionSite.service.history.HistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 出價 journal 測試
+ * 驗證寫入後可完整讀回、當機後重播只補寫缺少的競標紀錄並補回商品最高價、
+ * segment 切換與回收、寫到一半的尾端被忽略，以及拍賣引擎在回應前寫入 journal
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("出價 journal 測試 (BidJournal)")
+class BidJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private BidHistoryRepository bidHistoryRepository;
+
+    @Mock
+    private ProxyBidRepository proxyBidRepository;
+
+    @Mock
+    private HistoryService historyService;
+
+    private BidJournal journal(int segmentBytes, long fsyncIntervalMs) {
+        BidJournal journal = new BidJournal(productRepository, bidHistoryRepository, new SimpleMeterRegistry(),
+                true, directory.toString(), segmentBytes, fsyncIntervalMs);
+        journal.open();
+        return journal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private List<BidJournal.Entry> readAll() throws Exception {
+        List<BidJournal.Entry> entries = new ArrayList<>();
+        for (Path path : segments()) {
+            entries.addAll(BidJournal.read(path));
+        }
+        return entries;
+    }
+
+    @Test
+    @DisplayName("測試：寫入的出價事件可以完整讀回（含中文ID與延長後的截止時間）")
+    void append_ShouldRoundTrip() throws Exception {
+        // Arrange
+        BidJournal journal = journal(1 << 20, 0);
+        bidHistory first = new bidHistory("買家甲", "PRODJ001", 150);
+        bidHistory second = new bidHistory("U002", "PRODJ001", 160);
+        LocalDateTime extendedEnd = LocalDateTime.now().plusMinutes(1).withNano(0);
+
+        // Act
+        journal.append(List.of(first, second), extendedEnd);
+        List<BidJournal.Entry> entries = readAll();
+        journal.close();
+
+        // Assert
+        assertEquals(2, entries.size());
+        assertEquals(first.getHistoryID(), entries.get(0).historyID());
+        assertEquals("買家甲", entries.get(0).bidderID());
+        assertEquals(150, entries.get(0).price());
+        assertEquals(first.getTimeStamp(), entries.get(0).timeStamp(), "出價時間應該精確保留");
+        assertEquals(extendedEnd, entries.get(1).extendedEnd());
+    }
+
+    @Test
+    @DisplayName("測試：當機後重播只補寫缺少的競標紀錄，每個商品以最高出價補回一次，成功後刪除檔案")
+    void open_AfterCrash_ShouldReplayMissingWrites() throws Exception {
+        // Arrange：寫入後沒有回報寫回完成，也沒有正常關閉（模擬當機）
+        BidJournal crashed = journal(1 << 20, 0);
+        bidHistory saved = new bidHistory("U001", "PRODJ002", 200);
+        bidHistory lost = new bidHistory("U002", "PRODJ002", 260);
+        bidHistory other = new bidHistory("U003", "PRODJ003", 90);
+        LocalDateTime extendedEnd = LocalDateTime.now().plusMinutes(2).withNano(0);
+        crashed.append(List.of(saved), null);
+        crashed.append(List.of(lost), extendedEnd);
+        crashed.append(List.of(other), null);
+        when(bidHistoryRepository.findAllById(anyIterable())).thenReturn(List.of(saved));
+
+        // Act
+        journal(1 << 20, 0);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<bidHistory>> replayed = ArgumentCaptor.forClass(List.class);
+        verify(bidHistoryRepository).saveAll(replayed.capture());
+        assertEquals(List.of(lost.getHistoryID(), other.getHistoryID()),
+                replayed.getValue().stream().map(bidHistory::getHistoryID).toList(), "已存在的競標紀錄不應重複寫入");
+        verify(productRepository).applyBidIfHigher(eq("PRODJ002"), eq(260), eq("U002"), any(LocalDateTime.class), eq(extendedEnd));
+        verify(productRepository).applyBidIfHigher(eq("PRODJ003"), eq(90), eq("U003"), any(LocalDateTime.class), isNull());
+        verify(productRepository, times(2)).applyBidIfHigher(anyString(), anyInt(), anyString(), any(), any());
+        assertEquals(1, segments().size(), "重播後只剩新開的 segment");
+        assertTrue(readAll().isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：資料庫無法寫入時保留 segment，下次啟動再重播")
+    void open_WhenReplayFails_ShouldKeepSegments() throws Exception {
+        // Arrange
+        BidJournal crashed = journal(1 << 20, 0);
+        crashed.append(List.of(new bidHistory("U001", "PRODJ004", 100)), null);
+        when(bidHistoryRepository.findAllById(anyIterable())).thenThrow(new RuntimeException("connection refused"));
+
+        // Act
+        journal(1 << 20, 0);
+
+        // Assert
+        assertEquals(2, segments().size());
+        assertEquals(1, readAll().size());
+    }
+
+    @Test
+    @DisplayName("測試：segment 寫滿時切換，全部寫回完成後回收舊的 segment")
+    void append_ShouldRotateAndReclaimPersistedSegments() throws Exception {
+        // Arrange
+        BidJournal journal = journal(4096, 5);
+        List<Long> tickets = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            tickets.add(journal.append(List.of(new bidHistory("U" + i, "PRODJ005", 100 + i)), null));
+        }
+        int segmentsBeforePersist = segments().size();
+        for (long ticket : tickets) {
+            journal.persisted(ticket, 1);// 競標紀錄
+            journal.persisted(ticket, 1);// 商品出價欄位
+        }
+        int segmentsAfterPersist = segments().size();
+        journal.close();
+
+        // Assert
+        assertTrue(segmentsBeforePersist > 1, "應該切換到新的 segment");
+        assertEquals(1, segmentsAfterPersist, "只保留使用中的 segment");
+        assertTrue(segments().isEmpty(), "全部寫回後正常關閉不留檔案");
+    }
+
+    @Test
+    @DisplayName("測試：寫到一半中斷的尾端紀錄被忽略，之前的紀錄不受影響")
+    void read_WithTornTail_ShouldStopAtLastCompleteRecord() throws Exception {
+        // Arrange
+        BidJournal journal = journal(1 << 20, 0);
+        journal.append(List.of(new bidHistory("U001", "PRODJ006", 100)), null);
+        journal.append(List.of(new bidHistory("U002", "PRODJ006", 110)), null);
+        journal.close();
+        Path segment = segments().get(0);
+        long secondRecordOffset;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            secondRecordOffset = 8 + header.flip().getInt();
+            // 破壞第二筆紀錄的內容（CRC 不符）
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), secondRecordOffset + 12);
+        }
+
+        // Act
+        List<BidJournal.Entry> entries = BidJournal.read(segment);
+
+        // Assert
+        assertEquals(1, entries.size());
+        assertEquals("U001", entries.get(0).bidderID());
+    }
+
+    @Test
+    @DisplayName("測試：拍賣引擎在回應前寫入 journal，競標紀錄與商品寫回後回收")
+    void engine_WithJournal_ShouldAppendBeforeAcknowledging() throws Exception {
+        // Arrange
+        BidJournal journal = journal(1 << 20, 0);
+        AuctionEngine engine = new AuctionEngine(productRepository, bidHistoryRepository, proxyBidRepository,
+                historyService, journal, true, 2, 1, 1);
+        Product product = new Product();
+        product.setProductID("PRODJ007");
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(LocalDateTime.now().plusMinutes(10));
+        product.setNowHighestBid(100);
+        when(productRepository.findById("PRODJ007")).thenReturn(Optional.of(product));
+        when(productRepository.applyBidIfHigher(anyString(), anyInt(), anyString(), any(LocalDateTime.class), nullable(LocalDateTime.class)))
+                .thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(historyService).recordBidHistory(any(bidHistory.class), any(Runnable.class));
+
+        try {
+            // Act
+            BidResult result = engine.placeBid("PRODJ007", "U001", 150).result();
+            List<BidJournal.Entry> journaled = readAll();
+            engine.close("PRODJ007");
+
+            // Assert
+            assertEquals(BidResult.ACCEPTED, result);
+            assertEquals(1, journaled.size(), "回應出價時 journal 中已有紀錄");
+            assertEquals(150, journaled.get(0).price());
+            verify(historyService).recordBidHistory(any(bidHistory.class), any(Runnable.class));
+            verify(historyService, never()).recordBidHistory(any(bidHistory.class));
+        } finally {
+            engine.shutdown();
+        }
+        journal.close();
+        assertTrue(segments().isEmpty(), "全部寫回後不留檔案");
+    }
+}
@@ -0,0 +1,223 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.history.BidLadderResponse;
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.history.BidLadderService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 出價排行測試
+ * 驗證進行中的拍賣由記憶體提供排序與翻頁、只保留前 capacity 筆、第一次查詢合併資料庫既有出價，
+ * 以及已結束的拍賣與超出記憶體範圍的翻頁改用資料庫查詢
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("出價排行測試 (BidLadderService)")
+class BidLadderServiceTest {
+
+    private static final String LIVE_ID = "PRODLADDER01";
+    private static final String CLOSED_ID = "PRODLADDER02";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private BidLadderService ladderService;
+
+    @BeforeEach
+    void setUp() {
+        ladderService = new BidLadderService(mongoTemplate, productRepository, 50, 100);
+        when(productRepository.findById(LIVE_ID)).thenReturn(Optional.of(product(LIVE_ID, Product.ProductStatuses.ACTIVE)));
+        when(productRepository.findById(CLOSED_ID)).thenReturn(Optional.of(product(CLOSED_ID, Product.ProductStatuses.SOLD)));
+        when(mongoTemplate.find(any(Query.class), eq(bidHistory.class))).thenReturn(List.of());
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userID"), eq(bidHistory.class), eq(String.class)))
+                .thenReturn(List.of());
+    }
+
+    private static Product product(String productID, Product.ProductStatuses status) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(status);
+        return product;
+    }
+
+    private static List<Integer> prices(BidLadderResponse response) {
+        return response.getBids().stream().map(BidLadderResponse.Rung::getBidAmount).toList();
+    }
+
+    @Test
+    @DisplayName("測試：進行中的拍賣依金額排序並以 cursor 翻頁，回傳不重複出價人數")
+    void getLadder_LiveAuction_ShouldPageFromMemory() {
+        // Arrange
+        for (int i = 1; i <= 25; i++) {
+            ladderService.record(new bidHistory("U" + (i % 5), LIVE_ID, 100 + i));
+        }
+
+        // Act
+        BidLadderResponse first = ladderService.getLadder(LIVE_ID, 10, null);
+        BidLadderResponse second = ladderService.getLadder(LIVE_ID, 10, first.getNextCursor());
+        BidLadderResponse third = ladderService.getLadder(LIVE_ID, 10, second.getNextCursor());
+
+        // Assert
+        assertTrue(first.isLive());
+        assertEquals(5, first.getDistinctBidders());
+        assertEquals(List.of(125, 124, 123, 122, 121, 120, 119, 118, 117, 116), prices(first));
+        assertEquals(115, second.getBids().get(0).getBidAmount(), "下一頁接在上一頁最後一筆之後");
+        assertEquals(5, third.getBids().size());
+        assertNull(third.getNextCursor(), "最後一頁沒有 nextCursor");
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(bidHistory.class));// 只有第一次載入
+    }
+
+    @Test
+    @DisplayName("測試：同價的出價較早者在前；記憶體只保留前 capacity 筆")
+    void record_ShouldKeepBoundedSortedLadder() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        bidHistory earlier = new bidHistory("HISTZ", "A", now.minusSeconds(1), LIVE_ID, 500, null);
+        bidHistory later = new bidHistory("HISTA", "B", now, LIVE_ID, 500, null);
+        ladderService.record(later);
+        ladderService.record(earlier);
+        for (int i = 0; i < 200; i++) {
+            ladderService.record(new bidHistory("U" + i, LIVE_ID, 100 + i));
+        }
+
+        // Act
+        BidLadderResponse page = ladderService.getLadder(LIVE_ID, 3, null);
+
+        // Assert
+        assertEquals(List.of(500, 500, 299), prices(page));
+        assertEquals("A", page.getBids().get(0).getBidderID(), "同價時較早的出價在前");
+        assertEquals(202, page.getDistinctBidders());
+    }
+
+    @Test
+    @DisplayName("測試：第一次查詢合併資料庫中既有的出價，同一筆出價不重複")
+    void getLadder_FirstQuery_ShouldMergeStoredBids() {
+        // Arrange
+        bidHistory recorded = new bidHistory("U1", LIVE_ID, 300);
+        ladderService.record(recorded);
+        bidHistory stored = new bidHistory("U2", LIVE_ID, 200);
+        when(mongoTemplate.find(any(Query.class), eq(bidHistory.class))).thenReturn(List.of(recorded, stored));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userID"), eq(bidHistory.class), eq(String.class)))
+                .thenReturn(List.of("U1", "U2"));
+
+        // Act
+        BidLadderResponse page = ladderService.getLadder(LIVE_ID, 10, null);
+
+        // Assert
+        assertEquals(List.of(300, 200), prices(page));
+        assertEquals(2, page.getDistinctBidders());
+    }
+
+    @Test
+    @DisplayName("測試：已結束的拍賣由資料庫依索引排序查詢，多取一筆判斷是否有下一頁")
+    void getLadder_ClosedAuction_ShouldQueryDatabase() {
+        // Arrange
+        List<bidHistory> stored = List.of(
+                new bidHistory("U1", CLOSED_ID, 300),
+                new bidHistory("U2", CLOSED_ID, 250),
+                new bidHistory("U1", CLOSED_ID, 200));
+        when(mongoTemplate.find(any(Query.class), eq(bidHistory.class))).thenReturn(stored);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userID"), eq(bidHistory.class), eq(String.class)))
+                .thenReturn(List.of("U1", "U2"));
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+
+        // Act
+        BidLadderResponse first = ladderService.getLadder(CLOSED_ID, 2, null);
+        ladderService.getLadder(CLOSED_ID, 2, first.getNextCursor());
+
+        // Assert
+        assertFalse(first.isLive());
+        assertEquals(List.of(300, 250), prices(first));
+        assertNotNull(first.getNextCursor());
+        assertEquals(2, first.getDistinctBidders());
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(bidHistory.class));
+        Query firstQuery = queries.getAllValues().get(0);
+        assertEquals(3, firstQuery.getLimit());
+        assertEquals(new Document("bidAmount", -1).append("timeStamp", 1).append("_id", 1), firstQuery.getSortObject());
+        Document keyset = queries.getAllValues().get(1).getQueryObject();
+        assertTrue(keyset.containsKey("$or"), "翻頁以上一頁最後一筆為起點，不使用 skip");
+        assertEquals(0, queries.getAllValues().get(1).getSkip());
+    }
+
+    @Test
+    @DisplayName("測試：翻頁超過記憶體保存的範圍時，從資料庫接續")
+    void getLadder_BeyondCapacity_ShouldContinueFromDatabase() {
+        // Arrange
+        for (int i = 0; i < 60; i++) {
+            ladderService.record(new bidHistory("U" + i, LIVE_ID, 1000 + i));
+        }
+        BidLadderResponse page = ladderService.getLadder(LIVE_ID, 40, null);
+        clearInvocations(mongoTemplate);
+
+        // Act
+        BidLadderResponse next = ladderService.getLadder(LIVE_ID, 40, page.getNextCursor());
+
+        // Assert
+        assertEquals(10, next.getBids().size(), "記憶體中只剩 capacity - 40 筆");
+        assertEquals(1019, next.getBids().get(0).getBidAmount());
+        verify(mongoTemplate).find(any(Query.class), eq(bidHistory.class));
+    }
+
+    @Test
+    @DisplayName("測試：大量執行緒同時出價，排行維持有界且保留最高的出價")
+    void record_Concurrently_ShouldStayBounded() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        try {
+            for (int i = 0; i < 2000; i++) {
+                int price = i;
+                futures.add(executor.submit(() -> ladderService.record(new bidHistory("U" + price, LIVE_ID, price))));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        BidLadderResponse page = ladderService.getLadder(LIVE_ID, 100, null);
+
+        // Assert
+        assertEquals(50, page.getBids().size() , "記憶體中只保留 capacity 筆");
+        assertEquals(1999, page.getBids().get(0).getBidAmount());
+        assertEquals(1950, page.getBids().get(49).getBidAmount());
+    }
+
+    @Test
+    @DisplayName("測試：limit 超出範圍或 cursor 不正確時拋出 IllegalArgumentException")
+    void getLadder_InvalidArguments_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> ladderService.getLadder(LIVE_ID, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> ladderService.getLadder(LIVE_ID, 101, null));
+        assertThrows(IllegalArgumentException.class, () -> ladderService.getLadder(LIVE_ID, 10, "not-a-cursor"));
+    }
+}
@@ -1,5 +1,6 @@
 package com.ntou.auctionSite.service;
 
+import com.ntou.auctionSite.dto.product.ProductSummary;
 import com.ntou.auctionSite.model.product.Product;
 import com.ntou.auctionSite.service.bid.BidService;
 import org.junit.jupiter.api.Test;
@@ -17,8 +18,8 @@ public class BidServiceTest {
 
     @Test
     public void testGetAllAuctionProduct() {
-        List<Product> auctionProductList= bidService.getAllAuctionProduct();
-        for(Product temp : auctionProductList){
+        List<ProductSummary> auctionProductList= bidService.getAllAuctionProduct();
+        for(ProductSummary temp : auctionProductList){
             System.out.println("-----------");
             System.out.println(temp.getProductName());
             System.out.println(temp.getProductID());
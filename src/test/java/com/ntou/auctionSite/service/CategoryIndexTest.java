@@ -0,0 +1,197 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.CategoryIndex;
+import com.ntou.auctionSite.service.product.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品分類索引測試
+ * 驗證上架、下架、修改分類、刪除時數量的增減、重複更新不會重複計算、啟動時由 aggregation 重建，
+ * 以及 getAllCategory 使用索引而不再讀取整個商品集合
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品分類索引測試 (CategoryIndex)")
+class CategoryIndexTest {
+
+    private static final String SELLER_ID = "USER0001";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    private CategoryIndex index;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        index = new CategoryIndex(productRepository);
+        productService = ProductServiceFixture.productService(productRepository, auctionEngine, expiryScheduler,
+                ProductServiceFixture.noCache(), index);
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productRepository.saveFields(any(Product.class), anyCollection())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productRepository.streamActiveCategories()).thenAnswer(invocation -> List.<Product>of().stream());
+    }
+
+    private static Product product(String productID, String category, Product.ProductStatuses status) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName("商品" + productID);
+        product.setSellerID(SELLER_ID);
+        product.setProductType(ProductTypes.DIRECT);
+        product.setProductStatus(status);
+        product.setProductCategory(category);
+        product.setProductStock(5);
+        product.setProductPrice(100);
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：上架、下架、修改分類與刪除時，分類數量隨之增減，數量為 0 的分類不再出現")
+    void update_ShouldTrackActiveProductsPerCategory() {
+        // Arrange
+        index.update(product("P1", "文具", Product.ProductStatuses.ACTIVE));
+        index.update(product("P2", "文具", Product.ProductStatuses.ACTIVE));
+        index.update(product("P3", "家具", Product.ProductStatuses.ACTIVE));
+        index.update(product("P4", "玩具", Product.ProductStatuses.INACTIVE));
+
+        // Act
+        index.update(product("P1", "文具", Product.ProductStatuses.INACTIVE));
+        index.update(product("P2", " 運動用品 ", Product.ProductStatuses.ACTIVE));
+        index.remove("P3");
+
+        // Assert
+        assertEquals(Map.of("運動用品", 1), index.counts());
+        assertEquals(List.of("運動用品"), index.categories());
+    }
+
+    @Test
+    @DisplayName("測試：同一個商品重複更新不會重複計算")
+    void update_Repeated_ShouldBeIdempotent() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            index.update(product("P1", "文具", Product.ProductStatuses.ACTIVE));
+            index.update(product("P2", "文具", Product.ProductStatuses.SOLD));
+            index.remove("P3");
+        }
+
+        // Assert
+        assertEquals(Map.of("文具", 1), index.counts());
+    }
+
+    @Test
+    @DisplayName("測試：啟動時以 aggregation 的結果重建，分類依名稱排序")
+    void rebuild_ShouldLoadActiveProductsFromAggregation() {
+        // Arrange
+        index.update(product("OLD", "舊分類", Product.ProductStatuses.ACTIVE));
+        when(productRepository.streamActiveCategories()).thenAnswer(invocation -> List.of(
+                product("P1", "家具", null),
+                product("P2", "3C周邊", null),
+                product("P3", "家具", null)).stream());
+
+        // Act
+        index.rebuild();
+
+        // Assert
+        assertTrue(index.isReady());
+        assertEquals(List.of("3C周邊", "家具"), index.categories());
+        assertEquals(2, index.counts().get("家具"));
+    }
+
+    @Test
+    @DisplayName("測試：多執行緒同時上下架、修改分類，數量不會多算或少算")
+    void update_Concurrent_ShouldStayConsistent() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act：同時反覆上下架、換分類，結束後再全部上架一次
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int round = 0; round < 200; round++) {
+                    for (int i = 0; i < 50; i++) {
+                        Product.ProductStatuses status = (round + offset) % 2 == 0
+                                ? Product.ProductStatuses.ACTIVE : Product.ProductStatuses.INACTIVE;
+                        index.update(product("P" + i, "分類" + ((i + round) % 5), status));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        for (int i = 0; i < 50; i++) {
+            index.update(product("P" + i, "分類" + (i % 5), Product.ProductStatuses.ACTIVE));
+        }
+
+        // Assert
+        assertEquals(5, index.counts().size());
+        index.counts().values().forEach(count -> assertEquals(10, count));
+    }
+
+    @Test
+    @DisplayName("測試：索引重建後 getAllCategory 由索引回傳，不再讀取所有商品；商品操作會更新索引")
+    void getAllCategory_WhenIndexReady_ShouldNotScanCatalog() {
+        // Arrange
+        index.rebuild();
+        Product product = product("PROD0001", "文具", Product.ProductStatuses.INACTIVE);
+        when(productRepository.findById("PROD0001")).thenReturn(Optional.of(product));
+
+        // Act
+        productService.publishProduct("PROD0001", SELLER_ID);
+        List<String> afterPublish = productService.getAllCategory();
+        productService.withdrawProduct("PROD0001", SELLER_ID);
+        List<String> afterWithdraw = productService.getAllCategory();
+
+        // Assert
+        assertEquals(List.of("文具"), afterPublish);
+        assertTrue(afterWithdraw.isEmpty());
+        assertTrue(productService.getCategoryCounts().isEmpty());
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("測試：索引尚未重建時 getAllCategory 改用完整掃描")
+    void getAllCategory_BeforeRebuild_ShouldFallBackToScan() {
+        // Arrange
+        when(productRepository.findAll()).thenReturn(List.of(
+                product("P1", "文具", Product.ProductStatuses.ACTIVE),
+                product("P2", "文具", Product.ProductStatuses.ACTIVE),
+                product("P3", "家具", Product.ProductStatuses.INACTIVE)));
+
+        // Act & Assert
+        assertEquals(List.of("文具"), productService.getAllCategory());
+        assertEquals(Map.of("文具", 2), productService.getCategoryCounts());
+    }
+}
@@ -0,0 +1,332 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.search.CompressedBitmap;
+import com.ntou.auctionSite.service.search.ProductFilter;
+import com.ntou.auctionSite.service.search.SearchIndex;
+import com.ntou.auctionSite.service.search.SearchRanking;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 篩選搜尋測試
+ * 驗證壓縮 bitmap 的 and/or/數量與 BitSet 相同（含 array 與 bitmap 兩種容器互相轉換）、
+ * 多個欄位組合篩選、各欄位數量不套用自己的條件、價格與評分邊界、關鍵字加上篩選，
+ * 以及商品修改後從原本的欄位值移到新的值
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("篩選搜尋測試 (CompressedBitmap / SearchIndex.filter)")
+class FacetFilterTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+    }
+
+    private static Product product(String productID, String name, String category, ProductTypes type,
+                                   Product.ProductStatuses status, int price, double rating) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName(name);
+        product.setProductCategory(category);
+        product.setProductType(type);
+        product.setProductStatus(status);
+        product.setProductPrice(price);
+        product.setAverageRating(rating);
+        return product;
+    }
+
+    private static ProductFilter filter(Set<String> categories, Set<ProductTypes> types,
+                                        Integer minPrice, Integer maxPrice, Double minRating) {
+        return new ProductFilter(categories, types, null, minPrice, maxPrice, minRating);
+    }
+
+    @Test
+    @DisplayName("測試：隨機新增刪除後 and、or、andCardinality 與 BitSet 結果相同")
+    void bitmap_ShouldMatchBitSet() {
+        // Arrange
+        Random random = new Random(3);
+        for (int round = 0; round < 30; round++) {
+            // 密度從很稀疏到接近全滿，讓容器在 array 與 bitmap 之間轉換
+            int range = 1 << (10 + random.nextInt(9));
+            double density = random.nextDouble();
+            CompressedBitmap left = new CompressedBitmap();
+            CompressedBitmap right = new CompressedBitmap();
+            BitSet leftBits = new BitSet();
+            BitSet rightBits = new BitSet();
+            for (int i = 0; i < range * density; i++) {
+                int a = random.nextInt(range);
+                int b = random.nextInt(range);
+                left.add(a);
+                leftBits.set(a);
+                right.add(b);
+                rightBits.set(b);
+                if (random.nextInt(4) == 0) {
+                    int c = random.nextInt(range);
+                    left.remove(c);
+                    leftBits.clear(c);
+                }
+            }
+
+            // Act
+            CompressedBitmap and = left.and(right);
+            CompressedBitmap or = left.or(right);
+
+            // Assert
+            BitSet expectedAnd = (BitSet) leftBits.clone();
+            expectedAnd.and(rightBits);
+            BitSet expectedOr = (BitSet) leftBits.clone();
+            expectedOr.or(rightBits);
+            assertArrayEquals(leftBits.stream().toArray(), left.toArray(), "round " + round);
+            assertEquals(leftBits.cardinality(), left.cardinality());
+            assertArrayEquals(expectedAnd.stream().toArray(), and.toArray(), "round " + round);
+            assertEquals(expectedAnd.cardinality(), left.andCardinality(right));
+            assertArrayEquals(expectedOr.stream().toArray(), or.toArray(), "round " + round);
+            int probe = random.nextInt(range);
+            assertEquals(leftBits.get(probe), left.contains(probe));
+        }
+    }
+
+    @Test
+    @DisplayName("測試：bitmap 容器填滿後再清空，數量與內容正確")
+    void bitmap_FillAndDrain_ShouldConvertContainers() {
+        // Arrange
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        // Act & Assert
+        for (int i = 0; i < 65536; i += 2) {
+            bitmap.add(i);
+        }
+        assertEquals(32768, bitmap.cardinality());
+        long dense = bitmap.sizeInBytes();
+        for (int i = 0; i < 65536; i += 2) {
+            if (i % 64 != 0) {
+                bitmap.remove(i);
+            }
+        }
+        assertEquals(1024, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < dense);
+        assertTrue(bitmap.contains(64));
+        assertFalse(bitmap.contains(66));
+        for (int i = 0; i < 65536; i += 64) {
+            bitmap.remove(i);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertArrayEquals(new int[]{7, 70000, 1 << 30}, CompressedBitmap.of(1 << 30, 70000, 7).toArray());
+    }
+
+    @Test
+    @DisplayName("測試：多個欄位組合篩選，同欄位為 OR、不同欄位為 AND")
+    void filter_ShouldCombineFacets() {
+        // Arrange
+        index.update(product("P1", "巧克力餅乾", "零食", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 80, 4.5));
+        index.update(product("P2", "洋芋片", "零食", ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, 120, 3.0));
+        index.update(product("P3", "木頭書桌", "家具", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 3000, 4.9));
+        index.update(product("P4", "鐵製書櫃", "家具", ProductTypes.DIRECT, Product.ProductStatuses.SOLD, 1500, 2.0));
+        index.update(product("P5", "藍牙耳機", "3C", ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, 999, 5.0));
+
+        // Act & Assert
+        assertEquals(Set.of("P1", "P3", "P4"), Set.copyOf(index.filter(null,
+                filter(null, Set.of(ProductTypes.DIRECT), null, null, null), 10).productIDs()));
+        assertEquals(Set.of("P1", "P2", "P5"), Set.copyOf(index.filter("",
+                filter(Set.of("零食", "3C"), null, null, null, null), 10).productIDs()));
+        assertEquals(Set.of("P3"), Set.copyOf(index.filter(null,
+                filter(Set.of("家具"), null, null, null, 4.0), 10).productIDs()));
+        assertEquals(Set.of("P4"), Set.copyOf(index.filter(null,
+                new ProductFilter(null, null, Set.of(Product.ProductStatuses.SOLD), null, null, null), 10).productIDs()));
+        SearchIndex.FilterResult limited = index.filter(null, ProductFilter.none(), 2);
+        assertEquals(2, limited.productIDs().size());
+        assertEquals(5, limited.total());
+        assertEquals(0, index.filter(null, filter(Set.of("服飾"), null, null, null, null), 10).total());
+    }
+
+    @Test
+    @DisplayName("測試：某欄位的數量只套用其他欄位的條件，價格與評分依區間計算")
+    void filter_ShouldReturnDisjunctiveCounts() {
+        // Arrange
+        index.update(product("P1", "巧克力餅乾", "零食", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 80, 4.5));
+        index.update(product("P2", "洋芋片", "零食", ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, 120, 3.0));
+        index.update(product("P3", "木頭書桌", "家具", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 3000, 4.9));
+        index.update(product("P4", "鐵製書櫃", "家具", ProductTypes.DIRECT, Product.ProductStatuses.SOLD, 1500, 2.0));
+        index.update(product("P5", "藍牙耳機", "3C", ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, 10000, 5.0));
+
+        // Act
+        SearchIndex.FilterResult result = index.filter(null,
+                filter(Set.of("零食"), Set.of(ProductTypes.DIRECT), null, null, null), 10);
+
+        // Assert
+        assertEquals(List.of("P1"), result.productIDs());
+        Map<String, Map<String, Integer>> facets = result.facets();
+        // 分類的數量只套用類型條件 (DIRECT)：零食 1、家具 2，依數量排序
+        assertEquals(List.of("家具", "零食"), List.copyOf(facets.get("category").keySet()));
+        assertEquals(Map.of("家具", 2, "零食", 1), facets.get("category"));
+        // 類型的數量只套用分類條件 (零食)
+        assertEquals(Map.of("DIRECT", 1, "AUCTION", 1), facets.get("type"));
+        // 其他欄位套用兩個條件，只剩 P1
+        assertEquals(Map.of("0-99", 1), facets.get("price"));
+        assertEquals(Map.of("4", 1), facets.get("rating"));
+        assertEquals(Map.of("ACTIVE", 1), facets.get("status"));
+
+        Map<String, Map<String, Integer>> all = index.filter(null, ProductFilter.none(), 10).facets();
+        assertEquals(Map.of("0-99", 1, "100-499", 1, "1000-4999", 2, "10000+", 1), all.get("price"));
+        assertEquals(Map.of("2", 1, "3", 1, "4", 2, "5", 1), all.get("rating"));
+    }
+
+    @Test
+    @DisplayName("測試：價格與評分的範圍落在區間中間時逐筆比對，包含邊界值")
+    void filter_PartialBuckets_ShouldCheckEachProduct() {
+        // Arrange
+        int[] prices = {0, 99, 100, 250, 499, 500, 999, 1000, 4999, 5000, 9999, 10000, 50000};
+        for (int i = 0; i < prices.length; i++) {
+            index.update(product("P" + i, "商品", "分類", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE,
+                    prices[i], i % 6 + 0.5));
+        }
+
+        // Act & Assert
+        for (int[] range : new int[][]{{250, 999}, {99, 100}, {0, 0}, {4999, 10000}, {10001, 60000}, {501, 998}}) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < prices.length; i++) {
+                if (prices[i] >= range[0] && prices[i] <= range[1]) {
+                    expected.add("P" + i);
+                }
+            }
+            SearchIndex.FilterResult result = index.filter(null, filter(null, null, range[0], range[1], null), 20);
+            assertEquals(Set.copyOf(expected), Set.copyOf(result.productIDs()), Arrays.toString(range));
+        }
+        assertEquals(Set.of("P4", "P5", "P10", "P11"),
+                Set.copyOf(index.filter(null, filter(null, null, null, null, 4.2), 20).productIDs()));
+        assertEquals(Set.of("P5", "P11"),
+                Set.copyOf(index.filter(null, filter(null, null, null, null, 5.5), 20).productIDs()));
+        assertEquals(13, index.filter(null, filter(null, null, null, null, 0.0), 20).total());
+        assertThrows(IllegalArgumentException.class, () -> filter(null, null, 500, 100, null));
+    }
+
+    @Test
+    @DisplayName("測試：關鍵字加上篩選，數量以關鍵字結果為範圍")
+    void filter_WithKeyword_ShouldIntersectMatches() {
+        // Arrange
+        index.update(product("P1", "巧克力餅乾", "零食", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 80, 4.5));
+        index.update(product("P2", "巧克力蛋糕", "甜點", ProductTypes.AUCTION, Product.ProductStatuses.ACTIVE, 450, 4.0));
+        index.update(product("P3", "奶油餅乾", "零食", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 60, 3.5));
+
+        // Act
+        SearchIndex.FilterResult result = index.filter("巧克力",
+                filter(Set.of("零食"), null, null, null, null), 10);
+
+        // Assert
+        assertEquals(List.of("P1"), result.productIDs());
+        assertEquals(1, result.total());
+        assertEquals(Map.of("零食", 1, "甜點", 1), result.facets().get("category"));
+        assertEquals(0, index.filter("不存在的字", ProductFilter.none(), 10).total());
+    }
+
+    @Test
+    @DisplayName("測試：商品修改或刪除後，從原本的欄位值移除")
+    void update_ShouldMoveProductBetweenFacets() {
+        // Arrange
+        index.update(product("P1", "木頭書桌", "家具", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 3000, 4.0));
+        index.update(product("P2", "木頭椅", "家具", ProductTypes.DIRECT, Product.ProductStatuses.ACTIVE, 800, 3.0));
+
+        // Act
+        index.update(product("P1", "木頭書桌", "二手家具", ProductTypes.AUCTION, Product.ProductStatuses.SOLD, 200, 1.0));
+        index.remove("P2");
+
+        // Assert
+        Map<String, Map<String, Integer>> facets = index.filter(null, ProductFilter.none(), 10).facets();
+        assertEquals(Map.of("二手家具", 1), facets.get("category"));
+        assertEquals(Map.of("AUCTION", 1), facets.get("type"));
+        assertEquals(Map.of("SOLD", 1), facets.get("status"));
+        assertEquals(Map.of("100-499", 1), facets.get("price"));
+        assertEquals(Map.of("1", 1), facets.get("rating"));
+        assertEquals(0, index.filter(null, filter(Set.of("家具"), null, null, null, null), 10).total());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：大量商品時 bitmap 篩選與逐筆比對的時間與記憶體（-Dbenchmark=true 啟用，-Dbenchmark.sizes 指定商品數）")
+    void benchmark() {
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000,1000000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        ProductTypes[] types = ProductTypes.values();
+        Product.ProductStatuses[] statuses = Product.ProductStatuses.values();
+        ProductFilter[] filters = {
+                filter(Set.of("分類1"), null, null, null, null),
+                filter(Set.of("分類1", "分類2", "分類3"), Set.of(ProductTypes.DIRECT), 100, 2500, null),
+                new ProductFilter(null, null, Set.of(Product.ProductStatuses.ACTIVE), null, 999, 3.5),
+                filter(null, Set.of(ProductTypes.AUCTION), 5000, null, 4.0)
+        };
+
+        for (int size : sizes) {
+            // Arrange
+            Random random = new Random(size);
+            List<Product> products = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                products.add(product("P" + i, "商品" + i, "分類" + random.nextInt(50), types[random.nextInt(types.length)],
+                        statuses[random.nextInt(statuses.length)], random.nextInt(20_000), random.nextInt(51) / 10.0));
+            }
+            when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> products.stream());
+            SearchIndex benchmarkIndex = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+            benchmarkIndex.rebuild();
+            Map<String, CompressedBitmap> byCategory = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                byCategory.computeIfAbsent(products.get(i).getProductCategory(), category -> new CompressedBitmap()).add(i);
+            }
+            long bitmapBytes = byCategory.values().stream().mapToLong(CompressedBitmap::sizeInBytes).sum();
+
+            // Act
+            int rounds = 200;
+            long filterNanos = 0;
+            long scanNanos = 0;
+            for (int round = 0; round < rounds; round++) {
+                ProductFilter current = filters[round % filters.length];
+                long start = System.nanoTime();
+                int total = benchmarkIndex.filter(null, current, 50).total();
+                filterNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                int scanned = (int) products.stream().filter(product -> matches(product, current)).count();
+                scanNanos += System.nanoTime() - start;
+                assertEquals(scanned, total);
+            }
+
+            // Assert
+            System.out.printf("%,d products: filter+facets %.2f ms, linear scan (no facets) %.2f ms, category bitmaps %,d KB (int[] %,d KB)%n",
+                    size, filterNanos / 1e6 / rounds, scanNanos / 1e6 / rounds, bitmapBytes / 1024, size * 4L / 1024);
+        }
+    }
+
+    private static boolean matches(Product product, ProductFilter filter) {
+        return (filter.categories().isEmpty() || filter.categories().contains(product.getProductCategory()))
+                && (filter.types().isEmpty() || filter.types().contains(product.getProductType()))
+                && (filter.statuses().isEmpty() || filter.statuses().contains(product.getProductStatus()))
+                && (filter.minPrice() == null || product.getProductPrice() >= filter.minPrice())
+                && (filter.maxPrice() == null || product.getProductPrice() <= filter.maxPrice())
+                && (filter.minRating() == null || product.getAverageRating() >= filter.minRating());
+    }
+}
@@ -0,0 +1,347 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.search.AutocompleteIndex;
+import com.ntou.auctionSite.service.search.SearchIndex;
+import com.ntou.auctionSite.service.search.SearchRanking;
+import com.ntou.auctionSite.service.search.SearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 容錯搜尋測試
+ * 驗證英文錯字（替換、插入、刪除、相鄰互換）、短詞與數字不容錯、完全符合的排在錯字前面、
+ * 中文打錯一個字仍找得到但不會放寬到只有少數字相同、隨機字典與逐一計算編輯距離的結果相同，
+ * 以及索引未就緒時改用 regex 查詢
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("容錯搜尋測試 (SearchIndex.fuzzySearch)")
+class FuzzySearchTest {
+
+    // 驗證結果正確性時給足夠的時間，避免 JIT 編譯前就超過時間上限
+    private static final long BUDGET = 5_000_000_000L;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+    }
+
+    private static Product product(String productID, String name, String category) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName(name);
+        product.setProductCategory(category);
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：英文拼錯一個字母（替換、多打、漏打、前後顛倒）仍找得到")
+    void fuzzySearch_ShouldTolerateLatinTypos() {
+        // Arrange
+        index.update(product("P1", "Apple iPhone 15", "手機"));
+        index.update(product("P2", "Samsung Galaxy S24", "手機"));
+        index.update(product("P3", "Sony Headphones", "耳機"));
+
+        // Act & Assert
+        assertEquals(List.of("P1"), index.fuzzySearch("iphnoe", 10, BUDGET));
+        assertEquals(List.of("P1"), index.fuzzySearch("appel iphone", 10, BUDGET));
+        assertEquals(List.of("P2"), index.fuzzySearch("samsng galaxxy", 10, BUDGET));
+        assertEquals(List.of("P3"), index.fuzzySearch("headphnes", 10, BUDGET));
+        // 最後一個詞可只輸入開頭，開頭也可以有錯字
+        assertEquals(List.of("P3"), index.fuzzySearch("sony headp", 10, BUDGET));
+        assertEquals(List.of("P3"), index.fuzzySearch("sony heaf", 10, BUDGET));
+        assertTrue(index.search("iphnoe", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：三個字母以下的詞與純數字不容錯")
+    void fuzzySearch_ShortWordsAndNumbers_ShouldMatchExactly() {
+        // Arrange
+        index.update(product("P1", "Apple iPhone 15", "手機"));
+        index.update(product("P2", "USB cable", "配件"));
+
+        // Act & Assert
+        assertEquals(List.of(), index.fuzzySearch("iphone 16", 10, BUDGET));
+        assertEquals(List.of("P1"), index.fuzzySearch("iphone 15", 10, BUDGET));
+        assertEquals(List.of(), index.fuzzySearch("usd cable", 10, BUDGET));
+        assertEquals(List.of("P2"), index.fuzzySearch("usb cabel", 10, BUDGET));
+    }
+
+    @Test
+    @DisplayName("測試：完全符合的商品排在錯字符合的前面")
+    void fuzzySearch_ExactMatches_ShouldRankFirst() {
+        // Arrange
+        index.update(product("P1", "running shows", "運動"));
+        index.update(product("P2", "running shoes", "運動"));
+        index.update(product("P3", "running shoe", "運動"));
+
+        // Act
+        List<String> result = index.fuzzySearch("running shoes", 10, BUDGET);
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals("P2", result.get(0));
+    }
+
+    @Test
+    @DisplayName("測試：中文打錯一個字仍找得到，只有少數字相同時不算符合，兩個字以下不容錯")
+    void fuzzySearch_ShouldTolerateCjkTypos() {
+        // Arrange
+        index.update(product("P1", "三星手機 Galaxy", "3C"));
+        index.update(product("P2", "蘋果手機", "3C"));
+        index.update(product("P3", "三星平板", "3C"));
+        index.update(product("P4", "智慧手錶", "3C"));
+        index.update(product("P5", "無線藍牙降噪耳機", "3C"));
+
+        // Act & Assert
+        assertEquals(List.of("P1"), index.fuzzySearch("三心手機", 10, BUDGET));
+        assertEquals(List.of("P2"), index.fuzzySearch("蘋菓手機", 10, BUDGET));
+        assertEquals("P1", index.fuzzySearch("三星手機", 10, BUDGET).get(0));
+        assertEquals(List.of(), index.fuzzySearch("手鍊", 10, BUDGET));
+        assertEquals(List.of("P4"), index.fuzzySearch("手錶", 10, BUDGET));
+        // 六個字以上可錯兩個字
+        assertEquals(List.of("P5"), index.fuzzySearch("無限藍牙將噪耳機", 10, BUDGET));
+        assertEquals(List.of("P1"), index.fuzzySearch("三心手機 galaxi", 10, BUDGET));
+    }
+
+    @Test
+    @DisplayName("測試：隨機字典中，結果與逐一計算編輯距離（第一個字母相同）相同")
+    void fuzzySearch_ShouldMatchBruteForce() {
+        // Arrange
+        Random random = new Random(5);
+        List<String> dictionary = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String word = randomWord(random);
+            dictionary.add(word);
+            index.update(product("P" + i, word + " common", "分類"));
+        }
+
+        // Act & Assert
+        for (int round = 0; round < 200; round++) {
+            String query = random.nextBoolean() ? randomWord(random) : mutate(dictionary.get(random.nextInt(dictionary.size())), random);
+            int maxEdits = query.length() >= 8 ? 2 : query.length() >= 4 ? 1 : 0;
+            Set<String> words = new HashSet<>();
+            Set<String> prefixWords = new HashSet<>();
+            Set<String> expected = new HashSet<>();
+            Set<String> expectedPrefix = new HashSet<>();
+            for (int i = 0; i < dictionary.size(); i++) {
+                String word = dictionary.get(i);
+                if (word.charAt(0) != query.charAt(0)) {
+                    continue;
+                }
+                if (distance(query, word) <= maxEdits) {
+                    words.add(word);
+                    expected.add("P" + i);
+                }
+                for (int end = 0; end <= word.length(); end++) {
+                    if (distance(query, word.substring(0, end)) <= maxEdits) {
+                        prefixWords.add(word);
+                        expectedPrefix.add("P" + i);
+                        break;
+                    }
+                }
+            }
+            // 展開的詞數有上限，超過時不比較
+            if (words.size() <= 64) {
+                assertEquals(expected, Set.copyOf(index.fuzzySearch(query + " common", 1000, BUDGET)), query);
+            }
+            if (prefixWords.size() <= 64) {
+                assertEquals(expectedPrefix, Set.copyOf(index.fuzzySearch("common " + query, 1000, BUDGET)), query);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("測試：超過時間上限時只用已展開的詞查詢，結果是完整結果的子集合")
+    void fuzzySearch_OverBudget_ShouldReturnPartialResults() {
+        // Arrange
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; i++) {
+            index.update(product("P" + i, randomWord(random) + " " + randomWord(random), "分類"));
+        }
+
+        // Act
+        List<String> full = index.fuzzySearch("abcdeabc", 1000, BUDGET);
+        List<String> partial = index.fuzzySearch("abcdeabc", 1000, 0);
+
+        // Assert
+        assertFalse(full.isEmpty());
+        assertTrue(full.containsAll(partial));
+        assertTrue(partial.size() < full.size());
+    }
+
+    @Test
+    @DisplayName("測試：中文容錯超過時間上限時退回一般查詢，仍找得到完全相同的商品")
+    void fuzzySearch_CjkOverBudget_ShouldFallBackToExactMatch() {
+        // Arrange
+        index.update(product("P1", "三星手機", "3C"));
+        index.update(product("P2", "蘋果手機", "3C"));
+
+        // Act
+        List<String> typo = index.fuzzySearch("三心手機", 10, 0);
+        List<String> exact = index.fuzzySearch("蘋果手機", 10, 0);
+
+        // Assert
+        assertEquals(List.of(), typo);
+        assertEquals(List.of("P2"), exact);
+        assertEquals(List.of("P1"), index.fuzzySearch("三心手機", 10, BUDGET));
+    }
+
+    @Test
+    @DisplayName("測試：索引就緒時依容錯結果取商品，未就緒時改用跳脫後的 regex 查詢")
+    void fuzzySearch_Service_ShouldUseIndexWhenReady() {
+        // Arrange
+        SearchService searchService = new SearchService(productRepository, index, new AutocompleteIndex(productRepository, true, 10, 1.0, 0.2), 500, 5);
+        when(productRepository.searchProducts(anyString())).thenReturn(List.of());
+        when(productRepository.findSummariesByProductIDIn(any())).thenAnswer(invocation -> {
+            List<ProductSummary> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                Product product = new Product();
+                product.setProductID((String) id);
+                found.add(ProductSummary.of(product));
+            }
+            return found;
+        });
+
+        // Act
+        List<ProductSummary> notReady = searchService.fuzzySearch("keybord");
+        when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> List.of(
+                product("P1", "機械 keyboard", "電腦周邊")).stream());
+        index.rebuild();
+        List<ProductSummary> ready = searchService.fuzzySearch("keybord");
+
+        // Assert
+        assertTrue(notReady.isEmpty());
+        verify(productRepository).searchProducts(Pattern.quote("keybord"));
+        assertEquals(List.of("P1"), ready.stream().map(ProductSummary::getProductID).toList());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：大量商品時容錯搜尋與一般搜尋的查詢時間（-Dbenchmark=true 啟用，-Dbenchmark.sizes 指定商品數）")
+    void benchmark() {
+        String[] brands = {"apple", "samsung", "sony", "logitech", "xiaomi", "asus", "lenovo", "nintendo", "panasonic", "philips"};
+        String[] items = {"headphones", "keyboard", "monitor", "charger", "speaker", "camera", "tablet", "controller", "notebook", "router"};
+        String[] cjk = {"藍牙耳機", "機械鍵盤", "無線滑鼠", "保溫水壺", "木頭書桌", "限量公仔", "運動手錶", "電競螢幕"};
+        // 型號詞由 a～e 組成，以這些字母開頭的查詢要走訪最多的字典
+        String[] queries = {"samsnug", "keybaord", "logitech monitr", "headphnes", "nintedno controler", "panasonc",
+                "藍芽耳機", "機戒鍵盤", "運動手表", "sony speakr", "camrea", "charegr", "aplpe notebok", "asus contrloler"};
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000,1000000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        for (int size : sizes) {
+            // Arrange
+            Random random = new Random(size);
+            SearchIndex benchmarkIndex = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+            for (int i = 0; i < size; i++) {
+                // 每個商品另有一個隨機的型號詞，讓字典大小隨商品數成長
+                benchmarkIndex.update(product("P" + i, brands[random.nextInt(brands.length)] + " "
+                        + items[random.nextInt(items.length)] + " " + randomWord(random) + random.nextInt(100)
+                        + " " + cjk[random.nextInt(cjk.length)], "分類" + random.nextInt(50)));
+            }
+            for (int i = 0; i < 3000; i++) {
+                benchmarkIndex.fuzzySearch(queries[i % queries.length], 50, 5_000_000);
+            }
+
+            // Act
+            int rounds = 50;
+            long[] fuzzyNanos = new long[rounds * queries.length];
+            long exactNanos = 0;
+            int found = 0;
+            for (int round = 0; round < rounds; round++) {
+                for (int q = 0; q < queries.length; q++) {
+                    long start = System.nanoTime();
+                    found += benchmarkIndex.fuzzySearch(queries[q], 50, 5_000_000).isEmpty() ? 0 : 1;
+                    fuzzyNanos[round * queries.length + q] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    benchmarkIndex.search(queries[q], 50);
+                    exactNanos += System.nanoTime() - start;
+                }
+            }
+
+            // Assert
+            Arrays.sort(fuzzyNanos);
+            System.out.printf("%,d products: fuzzy p50 %.2f ms, p99 %.2f ms, exact search of the same (misspelled) query %.2f ms, %d/%d fuzzy searches found results%n",
+                    size, fuzzyNanos[fuzzyNanos.length / 2] / 1e6, fuzzyNanos[fuzzyNanos.length * 99 / 100] / 1e6,
+                    exactNanos / 1e6 / fuzzyNanos.length, found, fuzzyNanos.length);
+            // 超過時間上限的查詢可能只用部分展開的詞，偶爾找不到
+            assertTrue(found >= fuzzyNanos.length * 0.95);
+        }
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 3 + random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(5)));
+        }
+        return word.toString();
+    }
+
+    // 隨機替換、插入、刪除或互換一個字元
+    private static String mutate(String word, Random random) {
+        StringBuilder mutated = new StringBuilder(word);
+        int at = random.nextInt(word.length());
+        switch (random.nextInt(4)) {
+            case 0 -> mutated.setCharAt(at, (char) ('a' + random.nextInt(5)));
+            case 1 -> mutated.insert(at, (char) ('a' + random.nextInt(5)));
+            case 2 -> mutated.deleteCharAt(at);
+            default -> {
+                if (at + 1 < word.length()) {
+                    mutated.setCharAt(at, word.charAt(at + 1));
+                    mutated.setCharAt(at + 1, word.charAt(at));
+                }
+            }
+        }
+        return mutated.toString();
+    }
+
+    // 插入、刪除、替換與相鄰互換各算一次的編輯距離
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1, d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,176 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.utils.IdGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ID 產生器測試
+ * 以可控制的時鐘驗證 ID 固定長度且依產生順序排序、同一毫秒序號用完與時間倒退時仍然遞增、
+ * 多執行緒同時產生不會重複，以及不同節點的 ID 不會相同
+ */
+@DisplayName("ID 產生器測試 (IdGenerator)")
+class IdGeneratorTest {
+
+    private static final long NOW = 1760000000000L;
+
+    @Test
+    @DisplayName("測試：ID 為前綴加 13 碼，字串順序與產生順序一致")
+    void next_ShouldBeFixedWidthAndSortable() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(7, clock::get);
+        List<String> ids = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 100 == 0) {
+                clock.addAndGet(3);
+            }
+            ids.add(generator.next(IdGenerator.PRODUCT));
+        }
+
+        // Assert
+        for (String id : ids) {
+            assertTrue(id.matches("PROD[0-9A-HJKMNP-TV-Z]{13}"), id);
+        }
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(ids, sorted);
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+    }
+
+    @Test
+    @DisplayName("測試：同一毫秒的序號用完時接續下一毫秒，不會重複")
+    void nextLong_WhenSequenceExhausted_ShouldCarryIntoNextMillisecond() {
+        // Arrange
+        IdGenerator generator = new IdGenerator(1, () -> NOW);
+        long previous = -1;
+
+        // Act & Assert
+        for (int i = 0; i < 3 * 4096; i++) {
+            long id = generator.nextLong();
+            assertTrue(id > previous);
+            assertEquals(1, (id >>> 12) & 1023);
+            previous = id;
+        }
+        assertEquals(NOW - 1735689600000L + 2, previous >>> 22);
+    }
+
+    @Test
+    @DisplayName("測試：系統時間倒退時 ID 仍然遞增")
+    void nextLong_WhenClockMovesBackwards_ShouldStayMonotonic() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(0, clock::get);
+
+        // Act
+        long before = generator.nextLong();
+        clock.set(NOW - 5_000);
+        long after = generator.nextLong();
+        clock.set(NOW + 1);
+        long resumed = generator.nextLong();
+
+        // Assert
+        assertTrue(after > before);
+        assertTrue(resumed > after);
+    }
+
+    @Test
+    @DisplayName("測試：多執行緒同時產生，所有 ID 都不重複")
+    void next_Concurrently_ShouldBeUnique() throws Exception {
+        // Arrange
+        IdGenerator generator = new IdGenerator(3, System::currentTimeMillis);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                List<String> ids = new ArrayList<>(50_000);
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.next(IdGenerator.ORDER));
+                }
+                return ids;
+            }));
+        }
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            all.addAll(future.get());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(400_000, all.size());
+    }
+
+    @Test
+    @DisplayName("測試：不同節點在同一毫秒產生的 ID 不同，節點編號超出範圍時拒絕")
+    void next_DifferentNodes_ShouldNotCollide() {
+        // Arrange
+        IdGenerator first = new IdGenerator(1, () -> NOW);
+        IdGenerator second = new IdGenerator(2, () -> NOW);
+
+        // Act & Assert
+        assertNotEquals(first.next(IdGenerator.REVIEW), second.next(IdGenerator.REVIEW));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024, () -> NOW));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1, () -> NOW));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：單執行緒與多執行緒每秒可產生的 ID 數，與 UUID 前綴比較（-Dbenchmark=true 啟用）")
+    void benchmark() throws Exception {
+        // Arrange
+        IdGenerator generator = new IdGenerator(0, System::currentTimeMillis);
+        int perThread = 2_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        run(1, perThread, () -> generator.next(IdGenerator.PRODUCT));// 暖機
+
+        // Act
+        double single = run(1, perThread, () -> generator.next(IdGenerator.PRODUCT));
+        double multi = run(threads, perThread, () -> generator.next(IdGenerator.PRODUCT));
+        double uuid = run(1, perThread, () -> "PROD" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+
+        // Assert
+        System.out.printf("IdGenerator 1 thread: %,.0f ids/s%n", single);
+        System.out.printf("IdGenerator %d threads: %,.0f ids/s%n", threads, multi);
+        System.out.printf("UUID prefix 1 thread: %,.0f ids/s%n", uuid);
+        assertTrue(single > 0 && multi > 0);
+    }
+
+    private static double run(int threads, int perThread, Supplier<String> supplier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                int length = 0;
+                for (int i = 0; i < perThread; i++) {
+                    length += supplier.get().length();
+                }
+                return length;
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return (double) threads * perThread / elapsed * 1_000_000_000L;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.product.EditProductRequest;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.CategoryIndex;
+import com.ntou.auctionSite.service.product.ProductCache;
+import com.ntou.auctionSite.service.product.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品快取測試
+ * 驗證 getProductById 經由快取讀取、修改商品後快取失效、容量與存活時間的淘汰、
+ * 拍賣商品預設不快取，以及載入期間被失效時不會把舊資料放回快取
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品快取測試 (ProductCache)")
+class ProductCacheTest {
+
+    private static final String SELLER_ID = "USER0001";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private ProductCache cache;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProductCache(meterRegistry, true, 32, 1000, 0, nanos::get);
+        productService = ProductServiceFixture.productService(productRepository, auctionEngine, expiryScheduler,
+                cache, new CategoryIndex(productRepository));
+        when(productRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(product(invocation.getArgument(0))));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productRepository.saveFields(any(Product.class), anyCollection())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static Product product(String productID) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName("商品" + productID);
+        product.setSellerID(SELLER_ID);
+        product.setProductType(productID.startsWith("AUC") ? ProductTypes.AUCTION : ProductTypes.DIRECT);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setProductStock(5);
+        product.setProductPrice(100);
+        return product;
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.counter(name, tag, value).count();
+    }
+
+    @Test
+    @DisplayName("測試：同一個商品第二次讀取直接由快取回傳，不再查詢資料庫")
+    void getProductById_SecondRead_ShouldHitCache() {
+        // Act
+        Product first = productService.getProductById("PROD0001");
+        Product second = productService.getProductById("PROD0001");
+
+        // Assert
+        assertSame(first, second);
+        verify(productRepository, times(1)).findById("PROD0001");
+        assertEquals(1, count("product.cache.requests", "result", "hit"));
+        assertEquals(1, count("product.cache.requests", "result", "miss"));
+    }
+
+    @Test
+    @DisplayName("測試：下架商品後快取失效，下次讀取得到資料庫中的新狀態")
+    void withdrawProduct_ShouldInvalidateCachedProduct() {
+        // Arrange
+        productService.getProductById("PROD0001");
+        Product withdrawn = product("PROD0001");
+        withdrawn.setProductStatus(Product.ProductStatuses.INACTIVE);
+
+        // Act
+        productService.withdrawProduct("PROD0001", SELLER_ID);
+        when(productRepository.findById("PROD0001")).thenReturn(Optional.of(withdrawn));
+        Product reloaded = productService.getProductById("PROD0001");
+
+        // Assert
+        assertEquals(Product.ProductStatuses.INACTIVE, reloaded.getProductStatus());
+        verify(productRepository, times(3)).findById("PROD0001");
+    }
+
+    @Test
+    @DisplayName("測試：修改商品時從資料庫讀取，驗證失敗也不會改到快取中的商品")
+    void editProduct_ShouldNotMutateCachedProduct() {
+        // Arrange
+        Product cached = productService.getProductById("PROD0001");
+
+        // Act
+        productService.getProductForUpdate("PROD0001").setProductPrice(999);
+
+        // Assert
+        assertEquals(100, cached.getProductPrice());
+        assertSame(cached, productService.getProductById("PROD0001"));
+    }
+
+    @Test
+    @DisplayName("測試：編輯拍賣商品只寫回修改的欄位，不覆寫整份文件（避免蓋掉尚未寫回的出價）")
+    void editProduct_ShouldWriteOnlyEditedFields() {
+        // Arrange
+        EditProductRequest request = new EditProductRequest();
+        request.setProductDescription("新的描述");
+        request.setProductCategory("文具");
+        Product auction = product("AUC0001");
+        auction.setCreatedTime(LocalDateTime.now().minusHours(1));
+        auction.setAuctionEndTime(LocalDateTime.now().plusHours(1));
+        when(productRepository.findById("AUC0001")).thenReturn(Optional.of(auction));
+        when(auctionEngine.isEnabled()).thenReturn(true);
+
+        // Act
+        productService.editProduct("AUC0001", request, SELLER_ID);
+
+        // Assert
+        ArgumentCaptor<Collection<String>> fields = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository).saveFields(any(Product.class), fields.capture());
+        assertEquals(Set.of("productDescription", "productCategory", "productStatus", "updatedTime"), Set.copyOf(fields.getValue()));
+        verify(productRepository, never()).save(any(Product.class));
+        verify(auctionEngine).evict("AUC0001");
+    }
+
+    @Test
+    @DisplayName("測試：超過存活時間後重新載入，超過容量時淘汰最久未讀取的商品")
+    void get_ShouldEvictByTtlAndSize() {
+        // Arrange
+        productService.getProductById("PROD0001");
+
+        // Act：超過存活時間
+        nanos.addAndGet(1_000_000_001L);
+        productService.getProductById("PROD0001");
+        // 超過容量（每個 segment 最多 2 筆，32 筆分散到 16 個 segment）
+        for (int i = 0; i < 200; i++) {
+            productService.getProductById(String.format("PROD%04d", i + 100));
+        }
+
+        // Assert
+        verify(productRepository, times(2)).findById("PROD0001");
+        assertEquals(1, count("product.cache.evictions", "cause", "expired"));
+        assertTrue(cache.size() <= 32, "快取數量不超過上限，實際 " + cache.size());
+        assertTrue(count("product.cache.evictions", "cause", "size") >= 200 + 1 - 32);
+    }
+
+    @Test
+    @DisplayName("測試：拍賣商品預設不快取，每次都讀取資料庫中的最高價")
+    void getProductById_AuctionProduct_ShouldBypassCache() {
+        // Act
+        productService.getProductById("AUC0001");
+        productService.getProductById("AUC0001");
+
+        // Assert
+        verify(productRepository, times(2)).findById("AUC0001");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("測試：載入期間商品被修改時，不會把載入到的舊資料放回快取")
+    void get_WhenInvalidatedDuringLoad_ShouldNotCacheStaleProduct() {
+        // Act：loader 執行期間另一個請求修改了商品
+        Product stale = cache.get("PROD0001", id -> {
+            Product loaded = product(id);
+            cache.invalidate(id);
+            return loaded;
+        });
+        Product fresh = productService.getProductById("PROD0001");
+
+        // Assert
+        assertNotSame(stale, fresh);
+        verify(productRepository, times(1)).findById("PROD0001");
+    }
+
+    @Test
+    @DisplayName("測試：商品不存在時拋出 NoSuchElementException 且不快取")
+    void getProductById_NotFound_ShouldThrowAndNotCache() {
+        // Arrange
+        when(productRepository.findById("PROD9999")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(NoSuchElementException.class, () -> productService.getProductById("PROD9999"));
+        assertThrows(NoSuchElementException.class, () -> productService.getProductById("PROD9999"));
+        verify(productRepository, times(2)).findById("PROD9999");
+    }
+}
@@ -0,0 +1,253 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.product.ProductCursorPageResponse;
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProductRepositoryCustomImpl;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.ProductCursor;
+import com.ntou.auctionSite.service.product.ProductService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品 cursor 翻頁測試
+ * 以記憶體中的商品模擬 (排序欄位, _id) 索引上的範圍查詢，驗證翻頁期間新增商品不會重複或漏掉、
+ * cursor 可以保存各種型別的排序值，以及 MongoDB 查詢條件對 null 值的處理
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品 cursor 翻頁測試 (ProductService)")
+class ProductCursorTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ProductService productService;
+
+    private final List<Product> catalog = new ArrayList<>();
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        // 模擬資料庫：依 (欄位, _id) 排序後從 cursor 之後取 limit 筆，null 視為最小值（與 MongoDB 相同）
+        when(productRepository.findSortedAfter(anyString(), any(Sort.Direction.class), any(), nullable(String.class), anyInt()))
+                .thenAnswer(invocation -> {
+                    String field = invocation.getArgument(0);
+                    Sort.Direction direction = invocation.getArgument(1);
+                    Object afterValue = invocation.getArgument(2);
+                    String afterID = invocation.getArgument(3);
+                    int limit = invocation.getArgument(4);
+                    Comparator<Product> order = keyOrder(field);
+                    if (direction.isDescending()) {
+                        order = order.reversed();
+                    }
+                    Product after = null;
+                    if (afterID != null) {
+                        after = probe(field, afterValue, afterID);
+                    }
+                    List<Product> result = new ArrayList<>();
+                    for (Product product : catalog.stream().sorted(order).toList()) {
+                        if (after == null || order.compare(product, after) > 0) {
+                            result.add(product);
+                        }
+                        if (result.size() == limit) {
+                            break;
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Product> keyOrder(String field) {
+        Comparator<Object> values = Comparator.nullsFirst((a, b) -> ((Comparable) a).compareTo(b));
+        return Comparator.<Product, Object>comparing(p -> sortValue(p, field), values).thenComparing(Product::getProductID);
+    }
+
+    private static Object sortValue(Product product, String field) {
+        return switch (field) {
+            case "createdTime" -> product.getCreatedTime();
+            case "auctionEndTime" -> product.getAuctionEndTime();
+            case "productPrice" -> product.getProductPrice();
+            default -> product.getProductName();
+        };
+    }
+
+    private static Product probe(String field, Object value, String productID) {
+        Product product = new Product();
+        product.setProductID(productID);
+        switch (field) {
+            case "createdTime" -> product.setCreatedTime((LocalDateTime) value);
+            case "auctionEndTime" -> product.setAuctionEndTime((LocalDateTime) value);
+            case "productPrice" -> product.setProductPrice((Integer) value);
+            default -> product.setProductName((String) value);
+        }
+        return product;
+    }
+
+    private Product add(int id, LocalDateTime createdTime, int price) {
+        Product product = new Product();
+        product.setProductID(String.format("PROD%08d", id));
+        product.setProductName("商品" + id);
+        product.setProductType(ProductTypes.DIRECT);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setCreatedTime(createdTime);
+        product.setProductPrice(price);
+        catalog.add(product);
+        return product;
+    }
+
+    private List<String> browse(String sortBy, String order, int limit, Runnable betweenPages) {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductCursorPageResponse page = productService.getProductsByCursor(sortBy, order, limit, cursor);
+            page.getProducts().forEach(p -> seen.add(p.getProductID()));
+            cursor = page.getNextCursor();
+            betweenPages.run();
+        } while (cursor != null);
+        return seen;
+    }
+
+    @Test
+    @DisplayName("測試：依建立時間由新到舊翻頁時持續有新商品上架，原有商品不重複也不遺漏")
+    void getProductsByCursor_WithInsertsWhileBrowsing_ShouldNotDuplicateOrSkip() {
+        // Arrange
+        for (int i = 0; i < 95; i++) {
+            add(i, base.minusMinutes(i / 3), 100);// 每三個商品同一個時間，測試同值時依 productID 排序
+        }
+        Set<String> original = new HashSet<>();
+        catalog.forEach(p -> original.add(p.getProductID()));
+        int[] next = {1000};
+
+        // Act：每翻一頁就上架兩個新商品（排在最前面，不應出現在後面的頁）
+        List<String> seen = browse("createdTime", "desc", 10, () -> {
+            add(next[0]++, base.plusMinutes(next[0]), 100);
+            add(next[0]++, base.plusMinutes(next[0]), 100);
+        });
+
+        // Assert
+        assertEquals(95, seen.size(), "每個原有商品剛好出現一次");
+        assertEquals(original, new HashSet<>(seen));
+        assertEquals(catalog.stream().filter(p -> original.contains(p.getProductID()))
+                        .sorted(keyOrder("createdTime").reversed()).map(Product::getProductID).toList(),
+                seen, "順序與排序結果相同");
+    }
+
+    @Test
+    @DisplayName("測試：排序值為 null 的商品在升冪時排最前面、降冪時排最後面，翻頁不遺漏")
+    void getProductsByCursor_WithNullSortValues_ShouldVisitEveryProduct() {
+        // Arrange：直購商品沒有拍賣截止時間
+        for (int i = 0; i < 30; i++) {
+            Product product = add(i, base, 100);
+            if (i % 2 == 0) {
+                product.setAuctionEndTime(base.plusHours(i));
+            }
+        }
+
+        // Act
+        List<String> ascending = browse("auctionEndTime", "asce", 7, () -> { });
+        List<String> descending = browse("auctionEndTime", "desc", 7, () -> { });
+
+        // Assert
+        assertEquals(30, new HashSet<>(ascending).size());
+        assertEquals(30, new HashSet<>(descending).size());
+        assertNull(catalog.stream().filter(p -> p.getProductID().equals(ascending.get(0))).findFirst().get().getAuctionEndTime());
+        assertNull(catalog.stream().filter(p -> p.getProductID().equals(descending.get(29))).findFirst().get().getAuctionEndTime());
+    }
+
+    @Test
+    @DisplayName("測試：帶 cursor 時沿用 cursor 中的排序方式，多取一筆判斷是否有下一頁")
+    void getProductsByCursor_ShouldKeepSortFromCursorAndFetchOneExtra() {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            add(i, base, 100 + i);
+        }
+        ProductCursorPageResponse first = productService.getProductsByCursor("productPrice", "desc", 2, null);
+
+        // Act
+        ProductCursorPageResponse second = productService.getProductsByCursor("productName", "asce", 2, first.getNextCursor());
+
+        // Assert
+        assertEquals(List.of(104, 103), first.getProducts().stream().map(ProductSummary::getProductPrice).toList());
+        assertEquals(List.of(102, 101), second.getProducts().stream().map(ProductSummary::getProductPrice).toList());
+        verify(productRepository).findSortedAfter("productPrice", Sort.Direction.DESC, null, null, 3);
+        verify(productRepository).findSortedAfter("productPrice", Sort.Direction.DESC, 103, "PROD00000003", 3);
+    }
+
+    @Test
+    @DisplayName("測試：cursor 可以保存整數、小數、時間、字串與 null 的排序值")
+    void cursor_ShouldRoundTripEveryValueType() {
+        List<Object> values = Arrays.asList(42, 4.5, base, "含|分隔符號的名稱", null);
+        for (Object value : values) {
+            ProductCursor cursor = new ProductCursor("createdTime", Sort.Direction.DESC, value, "PRODABC12345");
+            assertEquals(cursor, ProductCursor.decode(cursor.encode()));
+        }
+    }
+
+    @Test
+    @DisplayName("測試：cursor 不正確或 limit 超出範圍時拋出 IllegalArgumentException")
+    void getProductsByCursor_InvalidArguments_ShouldThrow() {
+        String unknownField = new ProductCursor("password", Sort.Direction.ASC, "x", "PROD1").encode();
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByCursor("createdTime", "desc", 10, "%%%"));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByCursor("createdTime", "desc", 10, unknownField));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByCursor("createdTime", "desc", 0, null));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByCursor("createdTime", "desc", 101, null));
+    }
+
+    @Test
+    @DisplayName("測試：MongoDB 查詢條件以 (欄位, _id) 排序並限制筆數，降冪時包含排在最後的 null 值")
+    void findSortedAfter_ShouldBuildKeysetQuery() {
+        // Arrange
+        ProductRepositoryCustomImpl repository = new ProductRepositoryCustomImpl(mongoTemplate);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+
+        // Act
+        repository.findSortedAfter("auctionEndTime", Sort.Direction.DESC, base, "PROD00000010", 21);
+        repository.findSortedAfter("productPrice", Sort.Direction.ASC, null, null, 21);
+
+        // Assert
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(Product.class));
+        Query keyset = queries.getAllValues().get(0);
+        assertEquals(new Document("auctionEndTime", -1).append("_id", -1), keyset.getSortObject());
+        assertEquals(21, keyset.getLimit());
+        assertEquals(0, keyset.getSkip(), "不使用 skip");
+        List<?> branches = (List<?>) keyset.getQueryObject().get("$or");
+        assertEquals(3, branches.size(), "較小的值、同值較小的 _id、null");
+        assertTrue(queries.getAllValues().get(1).getQueryObject().isEmpty(), "第一頁沒有條件");
+    }
+}
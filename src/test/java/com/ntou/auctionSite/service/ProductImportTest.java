@@ -0,0 +1,269 @@
+package com.ntou.auctionSite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.ntou.auctionSite.dto.product.ProductImportResult;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.CategoryIndex;
+import com.ntou.auctionSite.service.product.ProductImportService;
+import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.utils.IdGenerator;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品批次匯入測試
+ * 以記錄 bulk insert 的假 MongoTemplate 驗證 NDJSON / CSV 的解析、與新增商品相同的驗證規則、
+ * 以一次查詢取得的名稱集合檢查同名商品、分批寫入、productID 重複時重試，以及邊讀邊回傳結果
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品批次匯入測試 (ProductImportService)")
+class ProductImportTest {
+
+    private static final String SELLER_ID = "USER0001";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private final List<Product> inserted = new ArrayList<>();
+    private final List<Integer> bulkSizes = new ArrayList<>();
+    private final List<Product> pendingBulk = new ArrayList<>();
+    // 下一次 bulk 中要回傳 duplicate key 的位置
+    private final Set<Integer> duplicateNext = new HashSet<>();
+    private CategoryIndex categoryIndex;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        categoryIndex = new CategoryIndex(productRepository);
+        productService = ProductServiceFixture.productService(productRepository, auctionEngine, expiryScheduler,
+                ProductServiceFixture.noCache(), categoryIndex);
+
+        when(productRepository.streamActiveCategories()).thenAnswer(invocation -> List.<Product>of().stream());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenAnswer(invocation -> {
+            pendingBulk.clear();
+            return bulkOperations;
+        });
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            pendingBulk.addAll(invocation.getArgument(0));
+            return bulkOperations;
+        });
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            bulkSizes.add(pendingBulk.size());
+            List<BulkWriteError> errors = new ArrayList<>();
+            for (int i = 0; i < pendingBulk.size(); i++) {
+                if (duplicateNext.contains(i)) {
+                    errors.add(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), i));
+                }
+                else {
+                    inserted.add(pendingBulk.get(i));
+                }
+            }
+            duplicateNext.clear();
+            if (!errors.isEmpty()) {
+                throw new BulkOperationException("duplicate", new MongoBulkWriteException(
+                        BulkWriteResult.unacknowledged(), errors, null, null, Set.of()));
+            }
+            return null;
+        });
+    }
+
+    private ProductImportService importer(int batchSize) {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new ProductImportService(productService, productRepository, mongoTemplate, objectMapper,
+                new IdGenerator(0, System::currentTimeMillis), batchSize);
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String json(String name, int price, String category) {
+        return "{\"productName\":\"" + name + "\",\"productPrice\":" + price + ",\"productStock\":10,"
+                + "\"productType\":\"DIRECT\",\"productStatus\":\"ACTIVE\",\"productCategory\":\"" + category + "\"}";
+    }
+
+    @Test
+    @DisplayName("測試：NDJSON 每一列套用新增商品的驗證規則，同名商品（既有或檔案內重複）失敗，其他列照常匯入")
+    void importProducts_Ndjson_ShouldValidateEachRowAndCheckDuplicates() throws IOException {
+        // Arrange
+        Product existing = new Product();
+        existing.setProductName("舊商品");
+        when(productRepository.findProductNamesBySellerID(SELLER_ID)).thenReturn(List.of(existing));
+        String input = String.join("\n",
+                json(" 原子筆 ", 30, "文具"),
+                json("橡皮擦", 0, "文具"),
+                "",
+                json("舊商品", 50, "文具"),
+                json("原子筆", 30, "文具"),
+                "{not json",
+                json("筆記本", 80, "文具"));
+        List<ProductImportResult> results = new ArrayList<>();
+
+        // Act
+        ProductImportService.Summary summary = importer(500).importProducts(stream(input),
+                ProductImportService.Format.NDJSON, SELLER_ID, results::add);
+
+        // Assert
+        assertEquals(new ProductImportService.Summary(2, 4), summary);
+        Map<Integer, ProductImportResult> byLine = new HashMap<>();
+        results.forEach(result -> byLine.put(result.getLine(), result));
+        assertEquals(Set.of(1, 2, 4, 5, 6, 7), byLine.keySet(), "空白行不回傳結果，行號對應檔案");
+        assertEquals(ProductImportResult.Status.CREATED, byLine.get(1).getStatus());
+        assertTrue(byLine.get(2).getMessage().contains("price"));
+        assertEquals(ProductImportResult.Status.FAILED, byLine.get(4).getStatus());
+        assertEquals(ProductImportResult.Status.FAILED, byLine.get(5).getStatus(), "檔案內重複的名稱");
+        assertEquals(ProductImportResult.Status.FAILED, byLine.get(6).getStatus());
+        assertEquals(List.of("原子筆", "筆記本"), inserted.stream().map(Product::getProductName).toList());
+        Product pen = inserted.get(0);
+        assertEquals(SELLER_ID, pen.getSellerID());
+        assertTrue(pen.getProductID().startsWith("PROD"));
+        assertNotNull(pen.getCreatedTime());
+        assertEquals(List.of(2), bulkSizes, "兩個商品在同一個 bulk insert");
+        verify(productRepository, times(1)).findProductNamesBySellerID(SELLER_ID);
+        verify(productRepository, never()).findBySellerIDAndProductName(anyString(), anyString());
+        verify(productRepository, never()).findById(anyString());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("測試：CSV 依第一行的欄位名稱對應，支援 BOM、雙引號內的逗號與不匯入的欄位")
+    void importProducts_Csv_ShouldMapColumnsByHeader() throws IOException {
+        // Arrange
+        when(productRepository.findProductNamesBySellerID(SELLER_ID)).thenReturn(List.of());
+        String input = "\uFEFFproductCategory,productName,productPrice,productStock,productType,productStatus,viewCount\r\n"
+                + "文具,\"筆,黑色 \"\"特價\"\"\",25,3,direct,ACTIVE,999\r\n"
+                + "文具,橡皮擦,abc,3,DIRECT,ACTIVE,0\r\n"
+                + "文具,尺,10,0,DIRECT,ACTIVE,0\r\n";
+        List<ProductImportResult> results = new ArrayList<>();
+
+        // Act
+        ProductImportService.Summary summary = importer(500).importProducts(stream(input),
+                ProductImportService.Format.CSV, SELLER_ID, results::add);
+
+        // Assert
+        assertEquals(new ProductImportService.Summary(2, 1), summary);
+        assertEquals("Invalid value for productPrice: abc", results.stream()
+                .filter(result -> result.getLine() == 3).findFirst().orElseThrow().getMessage());
+        Product pen = inserted.get(0);
+        assertEquals("筆,黑色 \"特價\"", pen.getProductName());
+        assertEquals(25, pen.getProductPrice());
+        assertEquals(0, pen.getViewCount(), "不匯入系統欄位");
+        assertEquals(Product.ProductStatuses.SOLD, inserted.get(1).getProductStatus(), "庫存為 0 設為 SOLD");
+    }
+
+    @Test
+    @DisplayName("測試：依 batch-size 分批寫入，匯入的上架商品會更新分類索引並同步到期排程")
+    void importProducts_ShouldInsertInBatchesAndUpdateCategoryIndex() throws IOException {
+        // Arrange
+        when(productRepository.findProductNamesBySellerID(SELLER_ID)).thenReturn(List.of());
+        categoryIndex.rebuild();
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            input.append(json("商品" + i, 100, i % 2 == 0 ? "文具" : "家具")).append('\n');
+        }
+
+        // Act
+        importer(100).importProducts(stream(input.toString()), ProductImportService.Format.NDJSON, SELLER_ID, result -> { });
+
+        // Assert
+        assertEquals(List.of(100, 100, 50), bulkSizes);
+        assertEquals(Map.of("家具", 125, "文具", 125), categoryIndex.counts());
+        verify(expiryScheduler, times(250)).sync(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("測試：productID 重複時換一個 ID 重試，其他商品不受影響")
+    void importProducts_DuplicateProductID_ShouldRetryWithNewID() throws IOException {
+        // Arrange
+        when(productRepository.findProductNamesBySellerID(SELLER_ID)).thenReturn(List.of());
+        duplicateNext.add(1);
+        String input = json("A", 10, "文具") + "\n" + json("B", 10, "文具") + "\n" + json("C", 10, "文具");
+        List<ProductImportResult> results = new ArrayList<>();
+
+        // Act
+        ProductImportService.Summary summary = importer(500).importProducts(stream(input),
+                ProductImportService.Format.NDJSON, SELLER_ID, results::add);
+
+        // Assert
+        assertEquals(new ProductImportService.Summary(3, 0), summary);
+        assertEquals(List.of(3, 1), bulkSizes, "第二次只重試重複的商品");
+        assertEquals(Set.of("A", "B", "C"), new HashSet<>(inserted.stream().map(Product::getProductName).toList()));
+        assertEquals(3, results.stream().map(ProductImportResult::getProductID).distinct().count());
+    }
+
+    @Test
+    @DisplayName("測試：邊讀邊回傳，第一批的結果在檔案讀完之前就送出")
+    void importProducts_ShouldStreamResultsBeforeReadingWholeInput() throws IOException {
+        // Arrange
+        when(productRepository.findProductNamesBySellerID(SELLER_ID)).thenReturn(List.of());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(json("商品" + i, 100, "文具")).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        AtomicLong consumed = new AtomicLong();
+        InputStream input = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int n = super.read(b, off, len);
+                consumed.addAndGet(Math.max(n, 0));
+                return n;
+            }
+        };
+        AtomicLong consumedAtFirstResult = new AtomicLong(-1);
+        AtomicInteger count = new AtomicInteger();
+
+        // Act
+        importer(100).importProducts(input, ProductImportService.Format.NDJSON, SELLER_ID, result -> {
+            consumedAtFirstResult.compareAndSet(-1, consumed.get());
+            count.incrementAndGet();
+        });
+
+        // Assert
+        assertEquals(5000, count.get());
+        assertTrue(consumedAtFirstResult.get() < bytes.length / 10,
+                "第一筆結果送出時只讀了 " + consumedAtFirstResult.get() + " / " + bytes.length + " bytes");
+    }
+}
@@ -0,0 +1,147 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.ProductService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品分頁與排序測試
+ * 驗證分頁與排序交給資料庫（Pageable / Sort），不再載入整個商品集合，
+ * 並以十萬筆已依索引排序的商品模擬資料庫，確認第一頁與最後一頁內容正確且不會整個集合載入（延遲量測留給以真正 Mongo 執行的 benchmark）
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品分頁測試 (ProductService)")
+class ProductPagingTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @InjectMocks
+    private ProductService productService;
+
+    private static Product product(int i, LocalDateTime createdTime) {
+        Product product = new Product();
+        product.setProductID(String.format("PROD%08d", i));
+        product.setProductName("商品" + i);
+        product.setProductType(ProductTypes.DIRECT);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setCreatedTime(createdTime);
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：分頁查詢只向資料庫取一頁，依建立時間由新到舊、同時間依 productID 排序")
+    void getProductsByPage_ShouldPushPageAndSortToDatabase() {
+        // Arrange
+        when(productRepository.findSummariesBy(any(Pageable.class))).thenReturn(new SliceImpl<>(List.of()));
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+
+        // Act
+        productService.getProductsByPage(3, 20);
+
+        // Assert
+        verify(productRepository).findSummariesBy(pageable.capture());
+        assertEquals(2, pageable.getValue().getPageNumber(), "page 從 1 開始");
+        assertEquals(20, pageable.getValue().getPageSize());
+        assertEquals(40, pageable.getValue().getOffset());
+        assertEquals(Sort.by(Sort.Direction.DESC, "createdTime").and(Sort.by(Sort.Direction.DESC, "productID")),
+                pageable.getValue().getSort());
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("測試：排序交給資料庫，不存在的欄位依商品名稱排序，只有 desc 為降序")
+    void getAllProductSorted_ShouldPushSortToDatabase() {
+        // Arrange
+        when(productRepository.findSummariesBy(any(Sort.class))).thenReturn(List.of());
+        ArgumentCaptor<Sort> sorts = ArgumentCaptor.forClass(Sort.class);
+
+        // Act
+        productService.getAllProductSorted(" productPrice ", "desc");
+        productService.getAllProductSorted("notAField", "asce");
+
+        // Assert
+        verify(productRepository, times(2)).findSummariesBy(sorts.capture());
+        assertEquals(Sort.by(Sort.Direction.DESC, "productPrice").and(Sort.by(Sort.Direction.DESC, "productID")),
+                sorts.getAllValues().get(0));
+        assertEquals(Sort.by(Sort.Direction.ASC, "productName").and(Sort.by(Sort.Direction.ASC, "productID")),
+                sorts.getAllValues().get(1));
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("測試：頁碼或每頁數量小於 1 時拋出 IllegalArgumentException")
+    void getProductsByPage_InvalidArguments_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByPage(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByPage(1, 0));
+        verify(productRepository, never()).findSummariesBy(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("測試：十萬筆商品時第一頁與最後一頁的內容正確，且只向資料庫取一頁")
+    void getProductsByPage_WithHundredThousandProducts_ShouldReturnCorrectPages() {
+        // Arrange：以依 (createdTime desc, productID desc) 排好的陣列模擬資料庫索引
+        int total = 100_000;
+        LocalDateTime base = LocalDateTime.now();
+        Product[] indexed = new Product[total];
+        for (int i = 0; i < total; i++) {
+            indexed[i] = product(total - 1 - i, base.minusSeconds(i));
+        }
+        List<ProductSummary> summaries = Arrays.stream(indexed).map(ProductSummary::of).toList();
+        when(productRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(indexed)));
+        when(productRepository.findSummariesBy(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable request = invocation.getArgument(0);
+            int from = (int) Math.min(request.getOffset(), total);
+            int to = Math.min(from + request.getPageSize(), total);
+            return new SliceImpl<>(summaries.subList(from, to), request, to < total);
+        });
+        int pageSize = 20;
+        int lastPage = total / pageSize;
+
+        // Act
+        List<ProductSummary> first = productService.getProductsByPage(1, pageSize);
+        List<ProductSummary> last = productService.getProductsByPage(lastPage, pageSize);
+        List<ProductSummary> beyond = productService.getProductsByPage(lastPage + 1, pageSize);
+
+        // Assert
+        assertEquals(pageSize, first.size());
+        assertEquals("PROD00099999", first.get(0).getProductID(), "第一頁是最新的商品");
+        assertEquals("PROD00000000", last.get(pageSize - 1).getProductID(), "最後一頁是最舊的商品");
+        assertTrue(beyond.isEmpty(), "超過總頁數回傳空的列表");
+        verify(productRepository, never()).findAll();
+    }
+
+}
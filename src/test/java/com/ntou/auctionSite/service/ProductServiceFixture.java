@@ -0,0 +1,43 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.AuctionExpiryScheduler;
+import com.ntou.auctionSite.service.product.CategoryIndex;
+import com.ntou.auctionSite.service.product.ProductCache;
+import com.ntou.auctionSite.service.product.ProductService;
+import com.ntou.auctionSite.service.search.AutocompleteIndex;
+import com.ntou.auctionSite.service.search.SearchIndex;
+import com.ntou.auctionSite.service.search.SearchRanking;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 測試用的 ProductService
+ * 以 mock 的 repository、拍賣引擎與到期排程，加上測試指定的快取與分類索引組成；
+ * 搜尋索引與自動完成使用真正的實作（讀取同一個 repository），讓各測試類別只需要準備自己要驗證的部分
+ */
+final class ProductServiceFixture {
+
+    private ProductServiceFixture() {
+    }
+
+    static ProductService productService(ProductRepository repository, AuctionEngine auctionEngine,
+                                         AuctionExpiryScheduler expiryScheduler, ProductCache productCache,
+                                         CategoryIndex categoryIndex) {
+        ProductService productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "repository", repository);
+        ReflectionTestUtils.setField(productService, "auctionEngine", auctionEngine);
+        ReflectionTestUtils.setField(productService, "expiryScheduler", expiryScheduler);
+        ReflectionTestUtils.setField(productService, "productCache", productCache);
+        ReflectionTestUtils.setField(productService, "categoryIndex", categoryIndex);
+        ReflectionTestUtils.setField(productService, "searchIndex", new SearchIndex(repository, SearchRanking.defaults(), true, 500));
+        ReflectionTestUtils.setField(productService, "autocompleteIndex", new AutocompleteIndex(repository, true, 10, 1.0, 0.2));
+        return productService;
+    }
+
+    // 停用的快取：每次都從 repository 讀取
+    static ProductCache noCache() {
+        return new ProductCache(new SimpleMeterRegistry(), false, 0, 0, 0, System::nanoTime);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ntou.auctionSite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProductRepositoryCustomImpl;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 商品列表精簡資料測試
+ * 驗證所有回傳 ProductSummary 的 repository 查詢都只投影列表欄位、cursor 翻頁只多取排序欄位，
+ * 以及列表回傳的 JSON 不含商品描述等大欄位
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品列表精簡資料測試 (ProductSummary)")
+class ProductSummaryTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private static Product fullProduct() {
+        Product product = new Product();
+        product.setProductID("PROD0000000001");
+        product.setSellerID("U001");
+        product.setProductName("機械鍵盤");
+        product.setProductDescription("很長的商品描述".repeat(500));
+        product.setProductPrice(2500);
+        product.setProductImage("https://example.com/keyboard.png");
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setProductCategory("電腦周邊");
+        product.setNowHighestBid(2700);
+        product.setAuctionEndTime(LocalDateTime.of(2026, 1, 1, 12, 0));
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：FIELDS 與 FIELD_NAMES 一致，且不含商品描述")
+    void fields_ShouldMatchFieldNames() {
+        // Act
+        Set<String> fromFields = Document.parse(ProductSummary.FIELDS).keySet();
+
+        // Assert
+        assertEquals(Set.of(ProductSummary.FIELD_NAMES), fromFields);
+        assertFalse(fromFields.contains("productDescription"));
+    }
+
+    @Test
+    @DisplayName("測試：ProductRepository 所有回傳 ProductSummary 的查詢都套用 FIELDS 投影")
+    void repository_SummaryQueries_ShouldProjectFields() {
+        // Arrange
+        List<Method> summaryMethods = new ArrayList<>();
+        for (Method method : ProductRepository.class.getDeclaredMethods()) {
+            if (method.getGenericReturnType() instanceof ParameterizedType type
+                    && Arrays.asList(type.getActualTypeArguments()).contains(ProductSummary.class)) {
+                summaryMethods.add(method);
+            }
+        }
+
+        // Assert
+        assertTrue(summaryMethods.size() >= 9, "列表查詢：分頁、排序、拍賣、搜尋與賣家列表");
+        for (Method method : summaryMethods) {
+            org.springframework.data.mongodb.repository.Query query =
+                    method.getAnnotation(org.springframework.data.mongodb.repository.Query.class);
+            assertNotNull(query, method.getName() + " 缺少 @Query");
+            assertEquals(ProductSummary.FIELDS, query.fields(), method.getName());
+        }
+    }
+
+    @Test
+    @DisplayName("測試：cursor 翻頁只取列表欄位與排序欄位")
+    void findSortedAfter_ShouldProjectSummaryAndSortField() {
+        // Arrange
+        ProductRepositoryCustomImpl repository = new ProductRepositoryCustomImpl(mongoTemplate);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+
+        // Act
+        repository.findSortedAfter("viewCount", Sort.Direction.DESC, 10, "PROD0000000001", 21);
+
+        // Assert
+        verify(mongoTemplate).find(query.capture(), eq(Product.class));
+        Set<String> projected = query.getValue().getFieldsObject().keySet();
+        Set<String> expected = Arrays.stream(ProductSummary.FIELD_NAMES).collect(Collectors.toSet());
+        expected.add("viewCount");
+        assertEquals(expected, projected);
+        assertEquals(21, query.getValue().getLimit());
+    }
+
+    @Test
+    @DisplayName("測試：列表 JSON 保留前端需要的欄位名稱，不含描述，大小遠小於完整商品")
+    void summary_ShouldSerializeOnlyListFields() throws Exception {
+        // Arrange
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Product product = fullProduct();
+
+        // Act
+        String full = objectMapper.writeValueAsString(product);
+        String summary = objectMapper.writeValueAsString(ProductSummary.of(product));
+
+        // Assert
+        Set<String> keys = new HashSet<>();
+        objectMapper.readTree(summary).fieldNames().forEachRemaining(keys::add);
+        assertEquals(Set.of("productID", "productName", "productPrice", "productImage", "productType",
+                "productStatus", "nowHighestBid", "auctionEndTime"), keys);
+        assertTrue(summary.length() * 10 < full.length(), "summary " + summary.length() + " bytes, full " + full.length() + " bytes");
+    }
+}
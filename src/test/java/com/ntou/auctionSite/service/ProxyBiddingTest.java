@@ -0,0 +1,215 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.history.bidHistory;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.bid.AuctionEngine;
+import com.ntou.auctionSite.service.bid.BidOutcome;
+import com.ntou.auctionSite.service.bid.BidResult;
+import com.ntou.auctionSite.service.history.HistoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 代理出價（最高出價）測試
+ * 驗證拍賣引擎一次結算多個代理出價、同價時先設定者得標，以及每一步出價都寫入競標紀錄
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("代理出價測試 (AuctionEngine)")
+class ProxyBiddingTest {
+
+    private static final String PRODUCT_ID = "PRODPROXY001";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private BidHistoryRepository bidHistoryRepository;
+
+    @Mock
+    private ProxyBidRepository proxyBidRepository;
+
+    @Mock
+    private HistoryService historyService;
+
+    private AuctionEngine auctionEngine;
+    private Product product;
+    private final List<bidHistory> savedHistories = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        auctionEngine = new AuctionEngine(productRepository, bidHistoryRepository, proxyBidRepository, historyService, true, 4, 2, 10);
+
+        product = new Product();
+        product.setProductID(PRODUCT_ID);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(LocalDateTime.now().plusMinutes(10));
+        product.setNowHighestBid(100);
+
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+        when(productRepository.applyBidIfHigher(anyString(), anyInt(), anyString(), any(LocalDateTime.class), nullable(LocalDateTime.class)))
+                .thenAnswer(invocation -> {
+                    int price = invocation.getArgument(1);
+                    synchronized (product) {
+                        if (product.getNowHighestBid() >= price) {
+                            return false;
+                        }
+                        product.setNowHighestBid(price);
+                        product.setHighestBidderID(invocation.getArgument(2));
+                        return true;
+                    }
+                });
+        doAnswer(invocation -> savedHistories.add(invocation.getArgument(0)))
+                .when(historyService).recordBidHistory(any(bidHistory.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        auctionEngine.shutdown();
+    }
+
+    private List<String> historySteps() {
+        List<String> steps = new ArrayList<>();
+        for (bidHistory history : savedHistories) {
+            steps.add(history.getUserID() + "@" + history.getBidAmount());
+        }
+        return steps;
+    }
+
+    @Test
+    @DisplayName("測試：代理出價對一般出價自動以最小增額回應，同價時代理出價先設定者得標")
+    void proxyBid_AgainstDirectBids_ShouldRespondWithMinimumIncrement() {
+        // Act
+        BidOutcome proxy = auctionEngine.placeProxyBid(PRODUCT_ID, "A", 500);
+        BidOutcome lower = auctionEngine.placeBid(PRODUCT_ID, "X", 200);
+        BidOutcome tie = auctionEngine.placeBid(PRODUCT_ID, "Y", 500);
+        BidOutcome higher = auctionEngine.placeBid(PRODUCT_ID, "Y", 510);
+        auctionEngine.close(PRODUCT_ID);
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, proxy.result());
+        assertEquals(110, proxy.nowHighestBid(), "只有一個代理出價時以起標價加一個增額領先");
+        assertEquals(BidResult.OUTBID, lower.result(), "一般出價會被代理出價立即超過");
+        assertEquals(210, lower.nowHighestBid());
+        assertEquals(BidResult.OUTBID, tie.result(), "與代理上限同價時，較早設定的代理出價得標");
+        assertEquals(500, tie.nowHighestBid());
+        assertEquals("A", tie.highestBidderID());
+        assertEquals(BidResult.ACCEPTED, higher.result(), "超過代理上限後才會領先");
+        assertEquals(List.of("A@110", "X@200", "A@210", "Y@500", "A@500", "Y@510"), historySteps(),
+                "每一步出價都應該寫入競標紀錄");
+        assertEquals(510, product.getNowHighestBid());
+        assertEquals("Y", product.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：多個代理出價在一次請求內結算，成交價為次高上限加一個增額")
+    void proxyBid_CompetingProxies_ShouldResolveInOnePass() {
+        // Act
+        auctionEngine.placeProxyBid(PRODUCT_ID, "A", 300);
+        auctionEngine.placeProxyBid(PRODUCT_ID, "B", 250);
+        BidOutcome outcome = auctionEngine.placeProxyBid(PRODUCT_ID, "C", 1000);
+        auctionEngine.close(PRODUCT_ID);
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, outcome.result());
+        assertEquals(310, outcome.nowHighestBid());
+        assertEquals(List.of("A@110", "B@250", "A@260", "A@300", "C@310"), historySteps());
+        assertEquals(310, product.getNowHighestBid(), "只寫回最終的最高價");
+        assertEquals("C", product.getHighestBidderID());
+        verify(proxyBidRepository).deleteById("PRODPROXY001:A");
+        verify(proxyBidRepository).deleteById("PRODPROXY001:B");
+        verify(proxyBidRepository, never()).deleteById("PRODPROXY001:C");
+    }
+
+    @Test
+    @DisplayName("測試：代理上限相同時，先設定的買家得標，成交價為該上限")
+    void proxyBid_EqualMaximum_ShouldFavourEarlierProxy() {
+        // Act
+        BidOutcome first = auctionEngine.placeProxyBid(PRODUCT_ID, "A", 400);
+        BidOutcome second = auctionEngine.placeProxyBid(PRODUCT_ID, "B", 400);
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, first.result());
+        assertEquals(BidResult.OUTBID, second.result());
+        assertEquals(400, second.nowHighestBid());
+        assertEquals("A", second.highestBidderID());
+        assertTrue(second.priceChanged());
+    }
+
+    @Test
+    @DisplayName("測試：大量同時送出相同上限的代理出價，只有最先處理的一位得標")
+    void proxyBid_SameMomentEqualMaximum_ShouldHaveExactlyOneWinner() throws Exception {
+        // Arrange
+        int bidders = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        Map<String, BidResult> results = new ConcurrentHashMap<>();
+
+        // Act
+        try {
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < bidders; i++) {
+                String bidderId = "U" + i;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    results.put(bidderId, auctionEngine.placeProxyBid(PRODUCT_ID, bidderId, 1000).result());
+                    return null;
+                }));
+            }
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        auctionEngine.close(PRODUCT_ID);
+
+        // Assert
+        List<String> winners = results.entrySet().stream()
+                .filter(entry -> entry.getValue() == BidResult.ACCEPTED)
+                .map(Map.Entry::getKey)
+                .toList();
+        assertEquals(1, winners.size(), "相同上限只能有一位得標者");
+        String winner = winners.get(0);
+        assertEquals(winner, savedHistories.get(0).getUserID(), "得標者應該是最先被處理的代理出價");
+        assertEquals(1000, product.getNowHighestBid(), "同價競爭時成交價為上限");
+        assertEquals(winner, product.getHighestBidderID());
+    }
+
+    @Test
+    @DisplayName("測試：領先者提高自己的上限不會抬高價格，降低上限應該拋出例外")
+    void proxyBid_LeaderRaisesOwnMaximum_ShouldNotRaisePrice() {
+        // Act
+        auctionEngine.placeProxyBid(PRODUCT_ID, "A", 300);
+        BidOutcome raised = auctionEngine.placeProxyBid(PRODUCT_ID, "A", 600);
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, raised.result());
+        assertFalse(raised.priceChanged(), "只有自己的代理出價時價格不變");
+        assertEquals(110, raised.nowHighestBid());
+        assertThrows(IllegalArgumentException.class, () -> auctionEngine.placeProxyBid(PRODUCT_ID, "A", 500));
+        assertEquals(BidResult.OUTBID, auctionEngine.placeBid(PRODUCT_ID, "B", 550).result(),
+                "提高後的上限仍然有效");
+    }
+}
@@ -0,0 +1,405 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.dto.product.ProductSummary;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.service.search.AutocompleteIndex;
+import com.ntou.auctionSite.service.search.SearchIndex;
+import com.ntou.auctionSite.service.search.SearchRanking;
+import com.ntou.auctionSite.service.search.SearchService;
+import com.ntou.auctionSite.service.search.SearchTokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品搜尋索引測試
+ * 驗證中文 bigram 與英數詞的斷詞、多字查詢近似子字串比對、單字查詢、英文前綴查詢、
+ * 商品修改與刪除後 posting list 的調整、描述只索引前段、BM25 與商品訊號的排序、只取前 k 筆與完整排序一致，
+ * 以及索引未就緒時改用跳脫後的 regex 查詢
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品搜尋索引測試 (SearchIndex)")
+class SearchIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+        when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> List.<Product>of().stream());
+    }
+
+    private static Product product(String productID, String name, String category, String description) {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName(name);
+        product.setProductCategory(category);
+        product.setProductDescription(description);
+        return product;
+    }
+
+    private static ProductSummary summary(String productID) {
+        Product product = new Product();
+        product.setProductID(productID);
+        return ProductSummary.of(product);
+    }
+
+    @Test
+    @DisplayName("測試：斷詞產生中文單字與 bigram、小寫英數詞與詞頻，全形英數轉半形")
+    void tokenizer_ShouldSplitCjkAndLatin() {
+        // Act
+        Map<String, Integer> terms = SearchTokenizer.indexTerms("Apple 蘋果手機 ＵＳＢ-C apple");
+        List<SearchTokenizer.Term> query = SearchTokenizer.queryTerms("蘋果手機");
+
+        // Assert
+        assertTrue(terms.keySet().containsAll(List.of("apple", "usb", "c", "蘋", "果", "手", "機", "蘋果", "果手", "手機")));
+        assertFalse(terms.containsKey("蘋果手機"));
+        assertEquals(2, terms.get("apple"));
+        assertEquals(1, terms.get("蘋果"));
+        assertEquals(List.of("蘋果", "果手", "手機"), query.stream().map(SearchTokenizer.Term::text).toList());
+        assertTrue(query.stream().allMatch(SearchTokenizer.Term::cjk));
+        assertEquals(List.of(new SearchTokenizer.Term("機", true)), SearchTokenizer.queryTerms(" 機 "));
+        assertTrue(SearchTokenizer.queryTerms("!! --").isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：中文查詢需所有 bigram 都出現，可搜尋名稱、分類與描述")
+    void search_Cjk_ShouldMatchAllBigrams() {
+        // Arrange
+        index.update(product("P1", "蘋果手機殼", "手機配件", null));
+        index.update(product("P2", "香蕉蘋果", "水果", null));
+        index.update(product("P3", "手機支架", "手機配件", "適用各種蘋果手機"));
+
+        // Act & Assert
+        assertEquals(Set.of("P1", "P2", "P3"), Set.copyOf(index.search("蘋果", 10)));
+        assertEquals(Set.of("P1", "P3"), Set.copyOf(index.search("蘋果手機", 10)));
+        assertEquals(List.of("P2"), index.search("水果", 10));
+        assertEquals(List.of(), index.search("果機", 10));
+        assertEquals(Set.of("P1", "P3"), Set.copyOf(index.search("配件", 10)));
+        assertEquals(Set.of("P1", "P3"), Set.copyOf(index.search("機", 10)));
+        assertEquals(1, index.search("蘋果", 1).size());
+    }
+
+    @Test
+    @DisplayName("測試：英數詞不分大小寫，最後一個詞可只輸入開頭")
+    void search_Latin_ShouldMatchPrefixOfLastTerm() {
+        // Arrange
+        index.update(product("P1", "Logitech Keyboard K380", "電腦周邊", null));
+        index.update(product("P2", "Logi Mouse", "電腦周邊", null));
+        index.update(product("P3", "Keychron K2", "電腦周邊", null));
+
+        // Act & Assert
+        assertEquals(Set.of("P1", "P2"), Set.copyOf(index.search("LOG", 10)));
+        assertEquals(Set.of("P1", "P3"), Set.copyOf(index.search("ke", 10)));
+        assertEquals(List.of("P1"), index.search("logitech key", 10));
+        assertEquals(List.of(), index.search("log keyc", 10));
+        assertEquals(List.of("P3"), index.search("k2", 10));
+        assertEquals(Set.of("P1", "P2", "P3"), Set.copyOf(index.search("電腦 周邊", 10)));
+    }
+
+    @Test
+    @DisplayName("測試：商品修改後只符合新內容，刪除後不再出現，文件編號可重複使用")
+    void update_AndRemove_ShouldAdjustPostings() {
+        // Arrange
+        index.update(product("P1", "木頭書桌", "家具", null));
+        index.update(product("P2", "木頭椅子", "家具", null));
+
+        // Act
+        index.update(product("P1", "鐵製書桌", "家具", null));
+        index.remove("P2");
+        index.update(product("P3", "木頭衣櫃", "家具", null));
+
+        // Assert
+        assertEquals(List.of("P3"), index.search("木頭", 10));
+        assertEquals(List.of("P1"), index.search("鐵製書桌", 10));
+        assertEquals(List.of(), index.search("椅子", 10));
+        assertEquals(2, index.size());
+        assertEquals(2, index.search("家具", 10).size());
+    }
+
+    @Test
+    @DisplayName("測試：詞已經沒有商品時移出字典並回收詞編號，重複上架不同的詞字典不會持續成長")
+    void remove_WhenPostingEmpty_ShouldDropTermAndRecycleId() {
+        // Arrange
+        index.update(product("P1", "desk lamp", null, null));
+        int baseline = index.termCount();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            index.update(product("P2", "gadget" + i, null, null));
+            index.remove("P2");
+        }
+        index.update(product("P1", "desk chair", null, null));
+
+        // Assert
+        assertEquals(baseline, index.termCount(), "只剩 P1 的 desk、chair 兩個詞");
+        assertEquals(List.of(), index.search("lamp", 10));
+        assertEquals(List.of(), index.search("gadget", 10));
+        assertEquals(List.of("P1"), index.search("chair", 10));
+        index.update(product("P3", "lamp", null, null));
+        assertEquals(List.of("P3"), index.search("lam", 10), "回收的詞編號可以給新的詞使用");
+        assertEquals(List.of("P1"), index.search("desk", 10));
+    }
+
+    @Test
+    @DisplayName("測試：描述只索引前 max-description-length 個字，停用時不建立索引")
+    void update_ShouldTruncateDescriptionAndRespectEnabled() {
+        // Arrange
+        SearchIndex truncated = new SearchIndex(productRepository, SearchRanking.defaults(), true, 4);
+        SearchIndex disabled = new SearchIndex(productRepository, SearchRanking.defaults(), false, 500);
+
+        // Act
+        truncated.update(product("P1", "筆記本", "文具", "方格內頁附書籤"));
+        disabled.update(product("P1", "筆記本", "文具", null));
+        disabled.rebuild();
+
+        // Assert
+        assertEquals(List.of("P1"), truncated.search("方格內頁", 10));
+        assertEquals(List.of(), truncated.search("書籤", 10));
+        assertEquals(0, disabled.size());
+        assertFalse(disabled.isReady());
+        verify(productRepository, never()).streamSearchDocuments();
+    }
+
+    @Test
+    @DisplayName("測試：啟動時由資料庫串流重建，重建後取代先前的內容")
+    void rebuild_ShouldReplaceContentAndBecomeReady() {
+        // Arrange
+        index.update(product("OLD", "舊商品", null, null));
+        when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> List.of(
+                product("P1", "藍牙耳機", "3C", null),
+                product("P2", "有線耳機", "3C", null)).stream());
+
+        // Act
+        assertFalse(index.isReady());
+        index.rebuild();
+
+        // Assert
+        assertTrue(index.isReady());
+        assertEquals(2, index.size());
+        assertEquals(Set.of("P1", "P2"), Set.copyOf(index.search("耳機", 10)));
+        assertEquals(List.of(), index.search("舊商品", 10));
+    }
+
+    @Test
+    @DisplayName("測試：模糊搜尋使用索引並依索引順序回傳，結果數受 max-results 限制")
+    void blurSearch_WhenIndexReady_ShouldFetchSummariesInIndexOrder() {
+        // Arrange
+        when(productRepository.streamSearchDocuments()).thenAnswer(invocation -> List.of(
+                product("P1", "保溫杯", "生活", null),
+                product("P2", "保溫瓶", "生活", null),
+                product("P3", "保溫便當盒", "生活", null)).stream());
+        index.rebuild();
+        when(productRepository.findSummariesByProductIDIn(any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            List<ProductSummary> found = new ArrayList<>();
+            ids.forEach(id -> found.add(0, summary(id)));// 模擬 $in 不保證順序
+            return found;
+        });
+        SearchService searchService = new SearchService(productRepository, index, new AutocompleteIndex(productRepository, true, 10, 1.0, 0.2), 2, 5);
+
+        // Act
+        List<ProductSummary> result = searchService.blurSearch("保溫");
+
+        // Assert
+        assertEquals(List.of("P1", "P2"), result.stream().map(ProductSummary::getProductID).toList());
+        verify(productRepository, never()).searchProducts(anyString());
+        assertTrue(searchService.blurSearch("水壺").isEmpty());
+    }
+
+    @Test
+    @DisplayName("測試：文字相關度以 BM25 計分，詞頻高、內容短的商品排前面")
+    void search_ShouldRankByBm25() {
+        // Arrange
+        index.update(product("P1", "露營用品組", "戶外", "附保溫杯一個，另有帳篷、睡袋、折疊桌椅、炊具與照明設備"));
+        index.update(product("P2", "保溫杯", "生活", "保溫杯 500ml"));
+        index.update(product("P3", "不鏽鋼保溫杯", "生活", null));
+
+        // Act
+        List<String> result = index.search("保溫杯", 10);
+
+        // Assert
+        assertEquals(List.of("P2", "P3", "P1"), result);
+    }
+
+    @Test
+    @DisplayName("測試：文字相同時依商品訊號排序：上架中、銷售量、評分、瀏覽次數、上架時間")
+    void search_ShouldBlendCommerceSignals() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        Product inactive = product("P1", "機械鍵盤", "電腦周邊", null);
+        inactive.setProductStatus(Product.ProductStatuses.INACTIVE);
+        inactive.setTotalSales(1000);
+        Product plain = product("P2", "機械鍵盤", "電腦周邊", null);
+        plain.setProductStatus(Product.ProductStatuses.ACTIVE);
+        plain.setCreatedTime(now.minusDays(365));
+        Product popular = product("P3", "機械鍵盤", "電腦周邊", null);
+        popular.setProductStatus(Product.ProductStatuses.ACTIVE);
+        popular.setTotalSales(120);
+        popular.setAverageRating(4.8);
+        popular.setReviewCount(40);
+        popular.setViewCount(5000);
+        popular.setCreatedTime(now.minusDays(365));
+        Product fresh = product("P4", "機械鍵盤", "電腦周邊", null);
+        fresh.setProductStatus(Product.ProductStatuses.ACTIVE);
+        fresh.setCreatedTime(now);
+        List.of(inactive, plain, popular, fresh).forEach(index::update);
+
+        // Act
+        List<String> result = index.search("機械鍵盤", 10);
+
+        // Assert
+        assertEquals(List.of("P3", "P4", "P2", "P1"), result);
+    }
+
+    @Test
+    @DisplayName("測試：只有少數評論的高分不完全採信，權重可調整")
+    void search_RankingWeights_ShouldBeConfigurable() {
+        // Arrange
+        Product fewReviews = product("P1", "手沖咖啡壺", "廚房用品", null);
+        fewReviews.setAverageRating(5);
+        fewReviews.setReviewCount(1);
+        Product manyReviews = product("P2", "手沖咖啡壺", "廚房用品", null);
+        manyReviews.setAverageRating(4.5);
+        manyReviews.setReviewCount(200);
+        Product bestSeller = product("P3", "手沖咖啡壺", "廚房用品", null);
+        bestSeller.setTotalSales(300);
+        SearchIndex salesOnly = new SearchIndex(productRepository,
+                new SearchRanking(1.0, 5.0, 0, 0, 0, 0, 30, 0), true, 500);
+        SearchIndex ratingOnly = new SearchIndex(productRepository,
+                new SearchRanking(1.0, 0, 1.0, 0, 0, 0, 30, 0), true, 500);
+
+        // Act
+        List.of(fewReviews, manyReviews, bestSeller).forEach(product -> {
+            salesOnly.update(product);
+            ratingOnly.update(product);
+        });
+
+        // Assert
+        assertEquals("P3", salesOnly.search("咖啡", 10).get(0));
+        assertEquals(List.of("P2", "P1", "P3"), ratingOnly.search("咖啡", 10));
+    }
+
+    @Test
+    @DisplayName("測試：只取前 k 筆的結果與取全部後的前 k 筆相同")
+    void search_TopK_ShouldMatchFullRanking() {
+        // Arrange
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            Product product = product("P" + i, "藍牙喇叭" + (i % 7 == 0 ? " 藍牙" : ""), "3C", null);
+            product.setTotalSales(random.nextInt(500));
+            product.setViewCount(random.nextInt(100_000));
+            product.setProductStatus(random.nextBoolean() ? Product.ProductStatuses.ACTIVE : Product.ProductStatuses.INACTIVE);
+            index.update(product);
+        }
+
+        // Act
+        List<String> all = index.search("藍牙", 5000);
+        List<String> top = index.search("藍牙", 20);
+
+        // Assert
+        assertEquals(2000, all.size());
+        assertEquals(2000, Set.copyOf(all).size());
+        assertEquals(all.subList(0, 20), top);
+    }
+
+    @Test
+    @DisplayName("測試：索引未就緒時改用 regex 查詢，關鍵字中的特殊字元會被跳脫")
+    void blurSearch_WhenIndexNotReady_ShouldQuoteKeyword() {
+        // Arrange
+        when(productRepository.searchProducts(anyString())).thenReturn(List.of(summary("P1")));
+        SearchService searchService = new SearchService(productRepository, index, new AutocompleteIndex(productRepository, true, 10, 1.0, 0.2), 500, 5);
+
+        // Act
+        List<ProductSummary> result = searchService.blurSearch(".*(a+)+");
+
+        // Assert
+        assertEquals(1, result.size());
+        verify(productRepository).searchProducts(Pattern.quote(".*(a+)+"));
+        verify(productRepository, never()).findSummariesByProductIDIn(any());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("壓力測試：反向索引與逐筆 regex 比對的查詢時間（-Dbenchmark=true 啟用，-Dbenchmark.sizes 指定商品數）")
+    void benchmark() {
+        String[] words = {"蘋果", "手機", "藍牙", "耳機", "保溫", "杯子", "木頭", "書桌", "機械", "鍵盤",
+                "無線", "滑鼠", "運動", "水壺", "筆記", "型電", "二手", "全新", "限量", "公仔"};
+        String[] categories = {"3C", "家具", "文具", "生活", "玩具", "服飾", "電腦周邊", "廚房用品"};
+        String[] queries = {"藍牙耳機", "木頭書桌", "限量公仔", "手機", "機", "水壺 運動", "電腦周邊"};
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000,1000000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        for (int size : sizes) {
+            // Arrange
+            Random random = new Random(size);
+            SearchIndex benchmarkIndex = new SearchIndex(productRepository, SearchRanking.defaults(), true, 500);
+            String[] names = new String[size];
+            String[] productCategories = new String[size];
+            long buildStart = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                names[i] = words[random.nextInt(words.length)] + words[random.nextInt(words.length)]
+                        + words[random.nextInt(words.length)] + " Model" + random.nextInt(1000);
+                productCategories[i] = categories[random.nextInt(categories.length)];
+                benchmarkIndex.update(product("P" + i, names[i], productCategories[i], null));
+            }
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+            // Act
+            long indexNanos = 0;
+            long regexNanos = 0;
+            int rounds = 5;
+            for (int round = 0; round < rounds; round++) {
+                for (String query : queries) {
+                    long start = System.nanoTime();
+                    benchmarkIndex.search(query, 500);
+                    indexNanos += System.nanoTime() - start;
+
+                    // 原本的 searchProducts：名稱或分類不分大小寫的 regex，必須逐筆比對
+                    start = System.nanoTime();
+                    Pattern pattern = Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE);
+                    int matched = 0;
+                    for (int i = 0; i < size; i++) {
+                        if (pattern.matcher(names[i]).find() || pattern.matcher(productCategories[i]).find()) {
+                            matched++;
+                        }
+                    }
+                    regexNanos += System.nanoTime() - start;
+                    assertTrue(matched >= 0);
+                }
+            }
+
+            // Assert
+            int searches = rounds * queries.length;
+            System.out.printf("%,d products: build %,d ms, index %.3f ms/search, regex scan %.3f ms/search%n",
+                    size, buildMillis, indexNanos / 1e6 / searches, regexNanos / 1e6 / searches);
+            assertEquals(size, benchmarkIndex.size());
+        }
+    }
+}
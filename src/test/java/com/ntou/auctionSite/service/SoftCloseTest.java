@@ -0,0 +1,242 @@
+package com.ntou.auctionSite.service;
+
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.model.product.ProductTypes;
+import com.ntou.auctionSite.repository.ProductRepository;
+import com.ntou.auctionSite.repository.ProxyBidRepository;
+import com.ntou.auctionSite.repository.history.BidHistoryRepository;
+import com.ntou.auctionSite.service.bid.*;
+import com.ntou.auctionSite.service.history.HistoryService;
+import com.ntou.auctionSite.service.product.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 防狙標（soft close）測試
+ * 驗證截止前觸發區間內的出價會延長截止時間、延長後不會被舊的截止時間關閉，
+ * 以及 BidService 會改排到期時間並推播延長事件；建立拍賣時只寫回拍賣設定的欄位
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("防狙標測試 (Soft close)")
+class SoftCloseTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private BidHistoryRepository bidHistoryRepository;
+
+    @Mock
+    private ProxyBidRepository proxyBidRepository;
+
+    @Mock
+    private HistoryService historyService;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private AuctionEngine auctionEngine;
+
+    @Mock
+    private AuctionExpiryScheduler expiryScheduler;
+
+    @Mock
+    private AuctionBroadcaster auctionBroadcaster;
+
+    @InjectMocks
+    private BidService bidService;
+
+    private AuctionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new AuctionEngine(productRepository, bidHistoryRepository, proxyBidRepository, historyService, true, 2, 1, 1);
+        when(productRepository.applyBidIfHigher(anyString(), anyInt(), anyString(), any(LocalDateTime.class), nullable(LocalDateTime.class)))
+                .thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    private Product createAuction(String productId, LocalDateTime endTime, int window, int extension) {
+        Product product = new Product();
+        product.setProductID(productId);
+        product.setProductType(ProductTypes.AUCTION);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setAuctionEndTime(endTime);
+        product.setNowHighestBid(100);
+        product.setSoftCloseWindowSeconds(window);
+        product.setSoftCloseExtensionSeconds(extension);
+        when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        return product;
+    }
+
+    @Test
+    @DisplayName("測試：截止前觸發區間內的出價延長截止時間，區間外的出價不延長")
+    void placeBid_WithinSoftCloseWindow_ShouldExtendEndTime() {
+        // Arrange
+        LocalDateTime nearEnd = LocalDateTime.now().plusSeconds(10);
+        LocalDateTime farEnd = LocalDateTime.now().plusMinutes(10);
+        createAuction("PRODSNIPE01", nearEnd, 30, 60);
+        createAuction("PRODSNIPE02", farEnd, 30, 60);
+
+        // Act
+        BidOutcome sniped = engine.placeBid("PRODSNIPE01", "U001", 200);
+        BidOutcome early = engine.placeBid("PRODSNIPE02", "U001", 200);
+        engine.close("PRODSNIPE01");
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, sniped.result());
+        assertEquals(nearEnd.plusSeconds(60), sniped.extendedEndTime(), "應該延後 60 秒");
+        assertFalse(early.extended(), "距離截止還很久的出價不應延長");
+        verify(productRepository).applyBidIfHigher(eq("PRODSNIPE01"), eq(200), eq("U001"),
+                any(LocalDateTime.class), eq(nearEnd.plusSeconds(60)));
+    }
+
+    @Test
+    @DisplayName("測試：被出價拒絕時不延長；未設定防狙標的拍賣不延長")
+    void placeBid_RejectedOrDisabled_ShouldNotExtend() {
+        // Arrange
+        createAuction("PRODSNIPE03", LocalDateTime.now().plusSeconds(5), 30, 60);
+        createAuction("PRODSNIPE04", LocalDateTime.now().plusSeconds(5), 0, 0);
+
+        // Act
+        BidOutcome outbid = engine.placeBid("PRODSNIPE03", "U001", 50);
+        BidOutcome disabled = engine.placeBid("PRODSNIPE04", "U001", 200);
+
+        // Assert
+        assertEquals(BidResult.OUTBID, outbid.result());
+        assertFalse(outbid.extended());
+        assertEquals(BidResult.ACCEPTED, disabled.result());
+        assertFalse(disabled.extended());
+    }
+
+    @Test
+    @DisplayName("測試：延長後，舊的截止時間到了也不會關閉拍賣，新的截止時間到了才會關閉")
+    void closeIfEnded_AfterExtension_ShouldWaitForNewEndTime() {
+        // Arrange
+        LocalDateTime end = LocalDateTime.now().plus(500, ChronoUnit.MILLIS);
+        createAuction("PRODSNIPE05", end, 2, 1);
+        LocalDateTime extendedEnd = engine.placeBid("PRODSNIPE05", "U001", 200).extendedEndTime();
+
+        // Act
+        boolean closedAtOldEnd = engine.closeIfEnded("PRODSNIPE05", end.plus(1, ChronoUnit.MILLIS));
+        boolean stillOpen = engine.placeBid("PRODSNIPE05", "U002", 300).result() == BidResult.ACCEPTED;
+        boolean closedAtNewEnd = engine.closeIfEnded("PRODSNIPE05", LocalDateTime.now().plusSeconds(10));
+
+        // Assert
+        assertEquals(end.plusSeconds(1), extendedEnd);
+        assertFalse(closedAtOldEnd, "截止時間已延長，不應關閉");
+        assertTrue(stillOpen, "延長期間仍可出價");
+        assertTrue(closedAtNewEnd);
+        assertEquals(BidResult.CLOSED, engine.placeBid("PRODSNIPE05", "U003", 400).result());
+    }
+
+    @Test
+    @DisplayName("測試：BidService 收到延長結果時改排到期時間並推播延長事件")
+    void bidService_WhenExtended_ShouldRescheduleAndBroadcast() {
+        // Arrange
+        LocalDateTime extendedEnd = LocalDateTime.now().plusMinutes(1);
+        when(auctionEngine.isEnabled()).thenReturn(true);
+        when(auctionEngine.placeBid("PRODSNIPE06", "U001", 200))
+                .thenReturn(BidOutcome.accepted(200, "U001", extendedEnd));
+
+        // Act
+        BidResult result = bidService.placeBid(200, "PRODSNIPE06", "U001", "U001");
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, result);
+        verify(expiryScheduler).schedule("PRODSNIPE06", extendedEnd);
+        verify(auctionBroadcaster).publishExtended("PRODSNIPE06", extendedEnd);
+        verify(auctionBroadcaster).publishBid("PRODSNIPE06", 200, "U001");
+    }
+
+    @Test
+    @DisplayName("測試：未啟用拍賣引擎時，依資料庫原子更新前的商品算出延長後的截止時間")
+    void bidService_DirectPath_ShouldDeriveExtendedEndFromAtomicUpdate() {
+        // Arrange
+        LocalDateTime end = LocalDateTime.now().plusSeconds(10);
+        Product before = new Product();
+        before.setProductID("PRODSNIPE07");
+        before.setAuctionEndTime(end);
+        before.setSoftCloseWindowSeconds(30);
+        before.setSoftCloseExtensionSeconds(60);
+        when(auctionEngine.isEnabled()).thenReturn(false);
+        when(productRepository.placeBidAtomically(eq("PRODSNIPE07"), eq(200), eq("U001"), any(LocalDateTime.class)))
+                .thenReturn(before);
+
+        // Act
+        BidResult result = bidService.placeBid(200, "PRODSNIPE07", "U001", "U001");
+
+        // Assert
+        assertEquals(BidResult.ACCEPTED, result);
+        verify(expiryScheduler).schedule("PRODSNIPE07", end.plusSeconds(60));
+        verify(auctionBroadcaster).publishExtended("PRODSNIPE07", end.plusSeconds(60));
+    }
+
+    @Test
+    @DisplayName("測試：拍賣尚未截止（已被延長）時結束拍賣，應該拋出例外且不修改商品")
+    void terminateAuction_WhenExtended_ShouldNotClose() {
+        // Arrange
+        when(auctionEngine.isEnabled()).thenReturn(true);
+        when(auctionEngine.closeIfEnded(eq("PRODSNIPE08"), any(LocalDateTime.class))).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> bidService.terminateAuction("PRODSNIPE08"));
+        verify(productRepository, never()).save(any(Product.class));
+        verify(auctionEngine, never()).evict("PRODSNIPE08");
+    }
+
+    @Test
+    @DisplayName("測試：建立拍賣時只寫回拍賣設定的欄位，不會以整份文件蓋掉瀏覽次數與評分")
+    void createAuction_ShouldWriteOnlyAuctionFields() {
+        // Arrange
+        Product product = new Product();
+        product.setProductID("PRODSNIPE09");
+        product.setSellerID("seller");
+        product.setProductType(ProductTypes.DIRECT);
+        product.setProductStatus(Product.ProductStatuses.ACTIVE);
+        product.setProductStock(1);
+        when(productService.getProductForUpdate("PRODSNIPE09")).thenReturn(product);
+        when(productRepository.saveFields(any(Product.class), anyCollection())).thenAnswer(invocation -> invocation.getArgument(0));
+        LocalDateTime end = LocalDateTime.now().plusMinutes(10);
+
+        // Act
+        Product saved = bidService.createAuction(100, end, "PRODSNIPE09", "seller", 30, 60);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> fields = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository).saveFields(eq(product), fields.capture());
+        assertTrue(fields.getValue().containsAll(List.of("nowHighestBid", "auctionEndTime", "productType",
+                "softCloseWindowSeconds", "softCloseExtensionSeconds")));
+        assertFalse(fields.getValue().contains("viewCount"));
+        assertFalse(fields.getValue().contains("averageRating"));
+        verify(productRepository, never()).save(any(Product.class));
+        assertEquals(30, saved.getSoftCloseWindowSeconds());
+        verify(expiryScheduler).schedule("PRODSNIPE09", end);
+    }
+}
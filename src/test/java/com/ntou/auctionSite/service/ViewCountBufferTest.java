@@ -0,0 +1,228 @@
+package com.ntou.auctionSite.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.ntou.auctionSite.model.product.Product;
+import com.ntou.auctionSite.service.product.ViewCountBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 商品瀏覽次數緩衝測試
+ * 以記錄 $inc 的假 BulkOperations 取代 MongoDB，驗證大量瀏覽只產生一次寫入、依 batch-size 分批、
+ * 寫入失敗時次數保留到下一次（部分失敗時只保留失敗的商品）、flush 與瀏覽同時進行時次數不會遺失，以及關閉時寫回剩下的次數
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("商品瀏覽次數緩衝測試 (ViewCountBuffer)")
+class ViewCountBufferTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    // 已寫入資料庫的瀏覽次數與每次 bulk 的商品數
+    private final Map<String, Long> written = new HashMap<>();
+    private final List<Integer> bulkSizes = new ArrayList<>();
+    private final List<Object[]> queued = new ArrayList<>();
+    private final AtomicBoolean failNext = new AtomicBoolean();
+    // 下一次 bulk 中要失敗的商品（模擬 unordered bulk 部分失敗）
+    private final Set<String> failProducts = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenAnswer(invocation -> {
+            queued.clear();
+            return bulkOperations;
+        });
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Update update = invocation.getArgument(1);
+            Document inc = (Document) update.getUpdateObject().get("$inc");
+            queued.add(new Object[]{query.getQueryObject().get("_id"), ((Number) inc.get("viewCount")).longValue()});
+            return bulkOperations;
+        });
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            if (failNext.getAndSet(false)) {
+                throw new RuntimeException("connection reset");
+            }
+            bulkSizes.add(queued.size());
+            List<BulkWriteError> errors = new ArrayList<>();
+            for (int i = 0; i < queued.size(); i++) {
+                Object[] op = queued.get(i);
+                if (failProducts.remove((String) op[0])) {
+                    errors.add(new BulkWriteError(50, "operation exceeded time limit", new BsonDocument(), i));
+                    continue;
+                }
+                written.merge((String) op[0], (Long) op[1], Long::sum);
+            }
+            if (!errors.isEmpty()) {
+                throw new BulkOperationException("partial failure", new MongoBulkWriteException(
+                        BulkWriteResult.unacknowledged(), errors, null, null, Set.of()));
+            }
+            return null;
+        });
+    }
+
+    private ViewCountBuffer buffer(int batchSize) {
+        return new ViewCountBuffer(mongoTemplate, new SimpleMeterRegistry(), true, batchSize);
+    }
+
+    @Test
+    @DisplayName("測試：熱門商品被瀏覽上萬次，一次 flush 只寫一次 $inc")
+    void flush_HotProduct_ShouldWriteOncePerInterval() {
+        // Arrange
+        ViewCountBuffer buffer = buffer(500);
+        for (int i = 0; i < 10_000; i++) {
+            buffer.record("PROD0001");
+        }
+        buffer.record("PROD0002");
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        assertEquals(Map.of("PROD0001", 10_000L, "PROD0002", 1L), written);
+        assertEquals(List.of(2), bulkSizes);
+        verify(bulkOperations).updateOne(any(Query.class), eq(new Update().inc("viewCount", 10_000)));
+        assertEquals(0, buffer.pendingViews("PROD0001"));
+    }
+
+    @Test
+    @DisplayName("測試：依 batch-size 分批寫入，沒有新瀏覽時不寫入")
+    void flush_ShouldSplitIntoBatches() {
+        // Arrange
+        ViewCountBuffer buffer = buffer(100);
+        for (int i = 0; i < 250; i++) {
+            buffer.record(String.format("PROD%04d", i));
+        }
+
+        // Act
+        buffer.flush();
+        buffer.flush();
+
+        // Assert
+        assertEquals(List.of(100, 100, 50), bulkSizes);
+        assertEquals(250, written.size());
+    }
+
+    @Test
+    @DisplayName("測試：寫入失敗時瀏覽次數保留，下一次 flush 再寫")
+    void flush_WhenBulkFails_ShouldRetryNextTime() {
+        // Arrange
+        ViewCountBuffer buffer = buffer(500);
+        buffer.record("PROD0001");
+        buffer.record("PROD0001");
+        failNext.set(true);
+
+        // Act
+        buffer.flush();
+        buffer.record("PROD0001");
+        buffer.flush();
+
+        // Assert
+        assertEquals(Map.of("PROD0001", 3L), written);
+    }
+
+    @Test
+    @DisplayName("測試：bulk 只有部分商品寫入失敗時，只加回失敗的商品，已寫入的不會重複計算")
+    void flush_WhenBulkPartiallyFails_ShouldRetryOnlyFailedProducts() {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ViewCountBuffer buffer = new ViewCountBuffer(mongoTemplate, meterRegistry, true, 500);
+        buffer.record("PROD0001");
+        buffer.record("PROD0002");
+        buffer.record("PROD0002");
+        buffer.record("PROD0003");
+        failProducts.add("PROD0002");
+
+        // Act
+        buffer.flush();
+        long pendingAfterFailure = buffer.pendingViews("PROD0002");
+        buffer.flush();
+
+        // Assert
+        assertEquals(2, pendingAfterFailure);
+        assertEquals(Map.of("PROD0001", 1L, "PROD0002", 2L, "PROD0003", 1L), written);
+        assertEquals(List.of(3, 1), bulkSizes);
+        assertEquals(1.0, meterRegistry.counter("product.views.failed").count());
+        assertEquals(3.0, meterRegistry.counter("product.views.flushed").count());
+    }
+
+    @Test
+    @DisplayName("測試：多執行緒瀏覽的同時反覆 flush，寫入的總次數等於瀏覽次數")
+    void flush_WhileRecording_ShouldNotLoseViews() throws Exception {
+        // Arrange
+        ViewCountBuffer buffer = buffer(500);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    buffer.record("PROD" + (i % 20));
+                }
+            }));
+        }
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            buffer.flush();
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        buffer.shutdown();
+
+        // Assert
+        assertEquals(160_000L, written.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(8_000L, written.get("PROD0"));
+    }
+
+    @Test
+    @DisplayName("測試：停用時不記錄也不寫入")
+    void record_WhenDisabled_ShouldDoNothing() {
+        // Arrange
+        ViewCountBuffer buffer = new ViewCountBuffer(mongoTemplate, new SimpleMeterRegistry(), false, 500);
+
+        // Act
+        buffer.record("PROD0001");
+        buffer.shutdown();
+
+        // Assert
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Product.class));
+    }
+}